@@ -0,0 +1,38 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.loadtest.LoadGenerator;
+import com.parkit.parkingsystem.loadtest.LoadTestSettings;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks with the GC profiler so every result comes with its
+ * allocation rate per operation. Accepts the usual JMH command line options,
+ * for example a benchmark name filter. With loadtest as first argument, runs
+ * the load generator with the settings that follow instead.
+ *
+ */
+
+public class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+
+	}
+
+	public static void main(String[] args)
+			throws RunnerException, CommandLineOptionException, SQLException, InterruptedException {
+		if (args.length > 0 && "loadtest".equals(args[0])) {
+			LoadGenerator.run(LoadTestSettings.parse(Arrays.copyOfRange(args, 1, args.length)));
+			return;
+		}
+		new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build())
+				.run();
+	}
+}
@@ -0,0 +1,125 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.FareEngine;
+import com.parkit.parkingsystem.service.Tariffs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of pricing one ticket, and of repricing a batch of stays through the
+ * bulk FareEngine API, with the flat default tariff or with time of day bands
+ * and a daily cap.
+ *
+ */
+
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+@State(Scope.Thread)
+public class FareCalculatorBenchmark {
+
+	@Param({ "CAR", "BIKE" })
+	private ParkingType parkingType;
+
+	@Param({ "false", "true" })
+	private boolean userRecurring;
+
+	private static final int BATCH_SIZE = 1024;
+
+	private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+	private final FareEngine fareEngine = new FareEngine();
+	private final FareEngine bandedFareEngine = new FareEngine(bandedTariffs());
+	private Ticket ticket;
+	private double price;
+	private long[] inTimes;
+	private long[] outTimes;
+	private ParkingType[] parkingTypes;
+	private boolean[] userRecurrings;
+	private long[] fareCents;
+
+	@Setup
+	public void setUp() {
+		long now = System.currentTimeMillis();
+		ticket = new Ticket();
+		ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+		ticket.setInTime(new Date(now - TimeUnit.MINUTES.toMillis(95)));
+		ticket.setOutTime(new Date(now));
+		ticket.setUserRecurring(userRecurring);
+		price = 2.37499;
+
+		inTimes = new long[BATCH_SIZE];
+		outTimes = new long[BATCH_SIZE];
+		parkingTypes = new ParkingType[BATCH_SIZE];
+		userRecurrings = new boolean[BATCH_SIZE];
+		fareCents = new long[BATCH_SIZE];
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			inTimes[i] = now - TimeUnit.MINUTES.toMillis(i);
+			outTimes[i] = now;
+		}
+		Arrays.fill(parkingTypes, parkingType);
+		Arrays.fill(userRecurrings, userRecurring);
+	}
+
+	@Benchmark
+	public double calculateFare() {
+		fareCalculatorService.calculateFare(ticket);
+		return ticket.getPrice();
+	}
+
+	@Benchmark
+	public long fareCents() {
+		return fareEngine.fareCents(inTimes[BATCH_SIZE - 1], outTimes[BATCH_SIZE - 1], parkingType, userRecurring);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public long[] bulkFareCents() {
+		fareEngine.fareCents(inTimes, outTimes, parkingTypes, userRecurrings, fareCents);
+		return fareCents;
+	}
+
+	/**
+	 * A stay of several days over every band
+	 */
+	@Benchmark
+	public long bandedFareCents() {
+		return bandedFareEngine.fareCents(inTimes[BATCH_SIZE - 1] - TimeUnit.DAYS.toMillis(3),
+				outTimes[BATCH_SIZE - 1], parkingType, userRecurring);
+	}
+
+	@Benchmark
+	public double roundedFare() {
+		return Fare.roundedFare(price);
+	}
+
+	private static Tariffs bandedTariffs() {
+		Properties properties = new Properties();
+		properties.setProperty("CAR.bands", "00:00-07:00 0.5, 07:00-10:00 2.5, 10:00-16:00 1.5, 16:00-19:00 2.5, 19:00-24:00 1.0");
+		properties.setProperty("CAR.dailyCap", "20");
+		properties.setProperty("BIKE.bands", "07:00-19:00 1.0, 19:00-07:00 0.5");
+		properties.setProperty("BIKE.dailyCap", "8");
+		return Tariffs.fromProperties(properties);
+	}
+}
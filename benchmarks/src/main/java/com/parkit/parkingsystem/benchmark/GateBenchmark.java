@@ -0,0 +1,185 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.EmbeddedParkingStore;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.loadtest.InMemoryParkingSpotDAO;
+import com.parkit.parkingsystem.loadtest.InMemoryTicketDAO;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A vehicle entering then leaving through ParkingService, against the in
+ * memory DAO stand-ins, the EmbeddedParkingStore, or the JDBC DAOs on an
+ * embedded H2 database in MySQL mode.
+ *
+ */
+
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class GateBenchmark {
+
+	private static final int CAR_SPOTS = 200;
+
+	@State(Scope.Benchmark)
+	public static class Lot {
+
+		@Param({ "memory", "embedded", "h2" })
+		private String backend;
+
+		private ParkingSpotStore parkingSpotDAO;
+		private TicketStore ticketDAO;
+		private TransactionManager transactionManager = TransactionManager.NONE;
+		private DataBaseConfig dataBaseConfig;
+
+		@Setup(Level.Trial)
+		public void setUp() throws SQLException, ClassNotFoundException {
+			if ("memory".equals(backend)) {
+				parkingSpotDAO = new InMemoryParkingSpotDAO(CAR_SPOTS, 0, 0);
+				ticketDAO = new InMemoryTicketDAO(0);
+				return;
+			}
+			if ("embedded".equals(backend)) {
+				EmbeddedParkingStore store = EmbeddedParkingStore.inMemory();
+				for (int number = 1; number <= CAR_SPOTS; number++) {
+					store.addParkingSpot(number, ParkingType.CAR);
+				}
+				parkingSpotDAO = store;
+				ticketDAO = store;
+				return;
+			}
+			dataBaseConfig = new EmbeddedDataBaseConfig();
+			new SchemaMigrator(dataBaseConfig).migrate();
+			addCarSpots(dataBaseConfig);
+			ParkingSpotDAO jdbcParkingSpotDAO = new ParkingSpotDAO();
+			jdbcParkingSpotDAO.setDataBaseConfig(dataBaseConfig);
+			jdbcParkingSpotDAO.loadFreeSpotIndex();
+			TicketDAO jdbcTicketDAO = new TicketDAO();
+			jdbcTicketDAO.setDataBaseConfig(dataBaseConfig);
+			jdbcTicketDAO.loadRecurringUserCache(100_000, 1_000);
+			jdbcTicketDAO.loadOpenTicketIndex();
+			parkingSpotDAO = jdbcParkingSpotDAO;
+			ticketDAO = jdbcTicketDAO;
+			transactionManager = dataBaseConfig;
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			if (dataBaseConfig != null) {
+				dataBaseConfig.shutdown();
+			}
+		}
+
+		private static void addCarSpots(DataBaseConfig dataBaseConfig) throws SQLException, ClassNotFoundException {
+			Connection con = dataBaseConfig.getConnection();
+			try (PreparedStatement ps = con
+					.prepareStatement("insert ignore into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)")) {
+				for (int number = 100; number < 100 + CAR_SPOTS; number++) {
+					ps.setInt(1, number);
+					ps.setString(2, ParkingType.CAR.toString());
+					ps.addBatch();
+				}
+				ps.executeBatch();
+			} finally {
+				dataBaseConfig.closeConnection(con);
+			}
+		}
+	}
+
+	/**
+	 * One gate: its own scripted input and a plate sequence no other gate uses
+	 */
+	@State(Scope.Thread)
+	public static class Gate {
+		private static final AtomicInteger GATE_IDS = new AtomicInteger();
+
+		private ScriptedInputReader inputReader;
+		private ParkingService parkingService;
+
+		@Setup(Level.Trial)
+		public void setUp(Lot lot) {
+			inputReader = new ScriptedInputReader(Integer.toString(GATE_IDS.incrementAndGet(), 36));
+			parkingService = new ParkingService(inputReader, lot.parkingSpotDAO, lot.ticketDAO);
+			parkingService.setTransactionManager(lot.transactionManager);
+		}
+	}
+
+	@Benchmark
+	public void entryAndExit(Gate gate) {
+		gate.inputReader.nextVehicle();
+		gate.parkingService.processIncomingVehicle();
+		gate.parkingService.processExitingVehicle();
+	}
+
+	/**
+	 * Answers the shell prompts: always a car, a new plate per vehicle
+	 */
+	static final class ScriptedInputReader extends InputReaderUtil {
+		private final String gateId;
+		private long vehicles;
+		private String vehicleRegNumber;
+
+		ScriptedInputReader(String gateId) {
+			this.gateId = gateId;
+		}
+
+		void nextVehicle() {
+			vehicleRegNumber = gateId + "-" + Long.toString(vehicles++, 36);
+		}
+
+		@Override
+		public int readSelection() {
+			return 1;
+		}
+
+		@Override
+		public String readVehicleRegistrationNumber() {
+			return vehicleRegNumber;
+		}
+	}
+
+	static final class EmbeddedDataBaseConfig extends DataBaseConfig {
+		@Override
+		protected String getUrl() {
+			return "jdbc:h2:mem:parking;MODE=MySQL;DB_CLOSE_DELAY=-1";
+		}
+
+		@Override
+		protected String getUser() {
+			return "sa";
+		}
+
+		@Override
+		protected String getPassword() {
+			return "";
+		}
+	}
+}
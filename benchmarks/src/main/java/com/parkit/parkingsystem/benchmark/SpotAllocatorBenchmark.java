@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.allocation.AllocationStrategy;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of handing out a spot with each allocation strategy in a large lot
+ * kept 90% full: one vehicle takes the next spot while one parked vehicle
+ * picked at random leaves.
+ *
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+@State(Scope.Thread)
+public class SpotAllocatorBenchmark {
+
+	@Param({ "LOWEST_NUMBER", "ROUND_ROBIN", "LEAST_RECENTLY_USED", "ZONE_BALANCED" })
+	private AllocationStrategy strategy;
+
+	@Param({ "5000" })
+	private int spots;
+
+	private static final int ZONE_SIZE = 250;
+
+	private FreeSpotIndex freeSpotIndex;
+	private int[] parked;
+	private int parkedCount;
+	private final SplittableRandom random = new SplittableRandom(42);
+
+	@Setup
+	public void setUp() {
+		freeSpotIndex = new FreeSpotIndex(strategy.allocators(ZONE_SIZE));
+		for (int number = 1; number <= spots; number++) {
+			freeSpotIndex.setAvailable(number, ParkingType.CAR, true);
+		}
+		parked = new int[spots];
+		parkedCount = 0;
+		while (parkedCount < spots * 9 / 10) {
+			enter();
+		}
+	}
+
+	@Benchmark
+	public int enterAndExit() {
+		int number = enter();
+		int leaving = random.nextInt(parkedCount);
+		freeSpotIndex.setAvailable(parked[leaving], ParkingType.CAR, true);
+		parked[leaving] = parked[--parkedCount];
+		return number;
+	}
+
+	private int enter() {
+		int number = freeSpotIndex.nextFreeSpot(ParkingType.CAR);
+		freeSpotIndex.claim(number, ParkingType.CAR);
+		parked[parkedCount++] = number;
+		return number;
+	}
+}
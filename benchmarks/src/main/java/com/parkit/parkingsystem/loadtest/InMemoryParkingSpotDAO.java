@@ -0,0 +1,64 @@
+package com.parkit.parkingsystem.loadtest;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ParkingSpotStore stand-in keeping the spots in a FreeSpotIndex, each call
+ * waiting a simulated database round trip. Used by the load generator and
+ * by GateBenchmark, with no latency, to measure the service code alone.
+ *
+ */
+
+public class InMemoryParkingSpotDAO implements ParkingSpotStore {
+
+	private final FreeSpotIndex spots = new FreeSpotIndex();
+	private final long latencyNanos;
+
+	/**
+	 * Cars get spots 1 to carSpots, bikes the following ones
+	 *
+	 * @param carSpots      number of car spots
+	 * @param bikeSpots     number of bike spots
+	 * @param latencyMicros simulated round trip of each call, 0 for none
+	 */
+	public InMemoryParkingSpotDAO(int carSpots, int bikeSpots, long latencyMicros) {
+		this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+		for (int number = 1; number <= carSpots + bikeSpots; number++) {
+			spots.setAvailable(number, number <= carSpots ? ParkingType.CAR : ParkingType.BIKE, true);
+		}
+	}
+
+	@Override
+	public int getNextAvailableSlot(ParkingType parkingType) {
+		return spots.nextFreeSpot(parkingType);
+	}
+
+	@Override
+	public boolean claimParkingSpot(ParkingSpot parkingSpot) {
+		roundTrip();
+		if (spots.claim(parkingSpot.getId(), parkingSpot.getParkingType())) {
+			parkingSpot.setAvailable(false);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean updateParking(ParkingSpot parkingSpot) {
+		roundTrip();
+		spots.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable());
+		return true;
+	}
+
+	private void roundTrip() {
+		if (latencyNanos > 0) {
+			LockSupport.parkNanos(latencyNanos);
+		}
+	}
+}
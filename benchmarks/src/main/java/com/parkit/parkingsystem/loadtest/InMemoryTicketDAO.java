@@ -0,0 +1,71 @@
+package com.parkit.parkingsystem.loadtest;
+
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TicketStore stand-in keeping open tickets by plate, each call waiting a
+ * simulated database round trip.
+ *
+ */
+
+public class InMemoryTicketDAO implements TicketStore {
+
+	private final AtomicInteger ids = new AtomicInteger();
+	private final Map<String, Ticket> openTickets = new ConcurrentHashMap<>();
+	private final Set<String> recurringPlates = ConcurrentHashMap.newKeySet();
+	private final long latencyNanos;
+
+	/**
+	 * @param latencyMicros simulated round trip of each call, 0 for none
+	 */
+	public InMemoryTicketDAO(long latencyMicros) {
+		this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+	}
+
+	@Override
+	public boolean saveTicket(Ticket ticket) {
+		roundTrip();
+		ticket.setId(ids.incrementAndGet());
+		return openTickets.putIfAbsent(ticket.getVehicleRegNumber(), ticket) == null;
+	}
+
+	@Override
+	public Ticket getTicket(String vehicleRegNumber) {
+		roundTrip();
+		Ticket ticket = openTickets.get(vehicleRegNumber);
+		if (ticket != null) {
+			ticket.setUserRecurring(recurringPlates.contains(vehicleRegNumber));
+		}
+		return ticket;
+	}
+
+	@Override
+	public boolean updateTicket(Ticket ticket) {
+		roundTrip();
+		if (!openTickets.remove(ticket.getVehicleRegNumber(), ticket)) {
+			return false;
+		}
+		recurringPlates.add(ticket.getVehicleRegNumber());
+		return true;
+	}
+
+	@Override
+	public Boolean recurringUsers(String vehicleRegNumber) {
+		roundTrip();
+		return recurringPlates.contains(vehicleRegNumber);
+	}
+
+	private void roundTrip() {
+		if (latencyNanos > 0) {
+			LockSupport.parkNanos(latencyNanos);
+		}
+	}
+}
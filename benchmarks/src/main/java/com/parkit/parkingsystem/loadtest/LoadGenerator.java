@@ -0,0 +1,297 @@
+package com.parkit.parkingsystem.loadtest;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.EmbeddedParkingStore;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.model.EntryRequest;
+import com.parkit.parkingsystem.model.ExitRequest;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives ParkingService from many simulated gates at once to measure the
+ * sustained throughput of the whole entry and exit path.
+ *
+ * Each gate is a thread admitting vehicles at its share of the arrival rate.
+ * Every admitted vehicle stays an exponentially distributed time, then leaves
+ * through the same gate. Some arrivals reuse plates of vehicles that already
+ * left, so recurring users are looked up, and some are bikes. Every entry is
+ * checked against the spots held by parked vehicles to catch double
+ * allocations. Vehicles still parked at the end are let out, outside of the
+ * measurements.
+ *
+ */
+
+public class LoadGenerator {
+
+	private static final Logger logger = LogManager.getLogger("LoadGenerator");
+
+	private static final int SEEN_PLATES = 1 << 16;
+	private static final int LOGGED_FAILURES = 10;
+
+	private final LoadTestSettings settings;
+	private final ParkingService parkingService;
+
+	private final ConcurrentMap<Integer, String> occupiedSpots = new ConcurrentHashMap<>();
+	private final Set<String> parkedPlates = ConcurrentHashMap.newKeySet();
+	private final AtomicReferenceArray<String> seenPlates = new AtomicReferenceArray<>(SEEN_PLATES);
+	private final AtomicLong seenPlateCount = new AtomicLong();
+	private final AtomicLong plateSequence = new AtomicLong();
+
+	private final LatencyHistogram entryLatency = new LatencyHistogram("LoadGenerator.entry");
+	private final LatencyHistogram exitLatency = new LatencyHistogram("LoadGenerator.exit");
+	private final LongAdder entries = new LongAdder();
+	private final LongAdder exits = new LongAdder();
+	private final LongAdder recurringEntries = new LongAdder();
+	private final LongAdder entryFailures = new LongAdder();
+	private final LongAdder exitFailures = new LongAdder();
+	private final LongAdder nullTickets = new LongAdder();
+	private final LongAdder doubleAllocations = new LongAdder();
+	private final AtomicLong loggedFailures = new AtomicLong();
+	private final LongAccumulator measuredEndNanos = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+	public LoadGenerator(LoadTestSettings settings, ParkingSpotStore parkingSpotDAO, TicketStore ticketDAO,
+			TransactionManager transactionManager) {
+		this.settings = settings;
+		this.parkingService = new ParkingService(null, parkingSpotDAO, ticketDAO);
+		parkingService.setTransactionManager(transactionManager);
+	}
+
+	/**
+	 * Run a load test against the backend of the settings
+	 *
+	 * @param settings what to run
+	 * @return the measurements
+	 * @throws SQLException         if the database can not be prepared
+	 * @throws InterruptedException if interrupted while the gates run
+	 */
+	public static LoadTestReport run(LoadTestSettings settings) throws SQLException, InterruptedException {
+		logger.info("Starting load test {}", settings);
+		if (settings.getBackend() == LoadTestSettings.Backend.MEMORY) {
+			return new LoadGenerator(settings,
+					new InMemoryParkingSpotDAO(settings.getCarSpots(), settings.getBikeSpots(),
+							settings.getLatencyMicros()),
+					new InMemoryTicketDAO(settings.getLatencyMicros()), TransactionManager.NONE).run();
+		}
+		if (settings.getBackend() == LoadTestSettings.Backend.EMBEDDED) {
+			try (EmbeddedParkingStore store = EmbeddedParkingStore.inMemory()) {
+				for (int number = 1; number <= settings.getCarSpots() + settings.getBikeSpots(); number++) {
+					store.addParkingSpot(number, number <= settings.getCarSpots() ? ParkingType.CAR : ParkingType.BIKE);
+				}
+				return new LoadGenerator(settings, store, store, TransactionManager.NONE).run();
+			}
+		}
+		DataBaseConfig dataBaseConfig = new DataBaseConfig();
+		dataBaseConfig.setPoolMaxSize(settings.getGates() + 2);
+		try {
+			new SchemaMigrator(dataBaseConfig).migrate();
+			ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+			parkingSpotDAO.setDataBaseConfig(dataBaseConfig);
+			parkingSpotDAO.loadFreeSpotIndex();
+			TicketDAO ticketDAO = new TicketDAO();
+			ticketDAO.setDataBaseConfig(dataBaseConfig);
+			ticketDAO.loadRecurringUserCache(1_000_000, 10_000);
+			ticketDAO.loadOpenTicketIndex();
+			return new LoadGenerator(settings, parkingSpotDAO, ticketDAO, dataBaseConfig).run();
+		} finally {
+			dataBaseConfig.shutdown();
+		}
+	}
+
+	/**
+	 * Run the gates for the duration of the settings
+	 *
+	 * @return the measurements
+	 * @throws InterruptedException if interrupted while the gates run
+	 */
+	public LoadTestReport run() throws InterruptedException {
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.getDurationMillis());
+		List<Thread> gates = new ArrayList<>();
+		for (int gate = 1; gate <= settings.getGates(); gate++) {
+			String gateId = "load-" + gate;
+			Thread thread = new Thread(() -> runGate(gateId, deadline), gateId);
+			thread.setDaemon(true);
+			gates.add(thread);
+		}
+		gates.forEach(Thread::start);
+		for (Thread gate : gates) {
+			gate.join();
+		}
+		LoadTestReport report = new LoadTestReport(
+				TimeUnit.NANOSECONDS.toMillis(Math.max(0, measuredEndNanos.get() - start)), entries.sum(),
+				exits.sum(), recurringEntries.sum(), entryFailures.sum(), exitFailures.sum(), nullTickets.sum(),
+				doubleAllocations.sum(), entryLatency.snapshot(), exitLatency.snapshot());
+		logger.info("Load test done: {}", report);
+		return report;
+	}
+
+	private void runGate(String gateId, long deadline) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		PriorityQueue<ParkedVehicle> parked = new PriorityQueue<>(
+				Comparator.comparingLong(vehicle -> vehicle.departureNanos));
+		long arrivalIntervalNanos = settings.getArrivalsPerSecond() > 0
+				? (long) (TimeUnit.SECONDS.toNanos(1) * settings.getGates() / settings.getArrivalsPerSecond())
+				: 0;
+		long nextArrival = System.nanoTime();
+		long now;
+		while ((now = System.nanoTime()) < deadline) {
+			ParkedVehicle leaving = parked.peek();
+			if (leaving != null && leaving.departureNanos <= now) {
+				exit(parked.poll(), gateId, true);
+			} else if (nextArrival <= now) {
+				nextArrival += arrivalIntervalNanos;
+				ParkedVehicle vehicle = enter(gateId, random);
+				if (vehicle != null) {
+					parked.add(vehicle);
+				}
+			} else {
+				long wakeUp = Math.min(deadline, nextArrival);
+				if (leaving != null) {
+					wakeUp = Math.min(wakeUp, leaving.departureNanos);
+				}
+				LockSupport.parkNanos(wakeUp - now);
+			}
+		}
+		measuredEndNanos.accumulate(System.nanoTime());
+		while (!parked.isEmpty()) {
+			exit(parked.poll(), gateId, false);
+		}
+	}
+
+	private ParkedVehicle enter(String gateId, ThreadLocalRandom random) {
+		String plate = nextPlate(random);
+		ParkingType parkingType = random.nextDouble() < settings.getBikeRatio() ? ParkingType.BIKE : ParkingType.CAR;
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			Ticket ticket = parkingService.enter(new EntryRequest(plate, parkingType, gateId, new Date()));
+			if (ticket == null) {
+				nullTickets.increment();
+				return null;
+			}
+			failed = false;
+			entries.increment();
+			if (ticket.isUserRecurring()) {
+				recurringEntries.increment();
+			}
+			int spot = ticket.getParkingSpot().getId();
+			String holder = occupiedSpots.putIfAbsent(spot, plate);
+			if (holder != null) {
+				doubleAllocations.increment();
+				if (loggedFailures.incrementAndGet() <= LOGGED_FAILURES) {
+					logger.error("Spot {} given to {} while {} is parked in it", spot, plate, holder);
+				}
+			}
+			double stay = -Math.log(1 - random.nextDouble()) * settings.getMeanStayMillis();
+			return new ParkedVehicle(plate, spot, System.nanoTime() + (long) (stay * 1_000_000));
+		} catch (Exception e) {
+			entryFailures.increment();
+			logFailure("entry", plate, e);
+			return null;
+		} finally {
+			entryLatency.record(start, failed);
+			if (failed) {
+				parkedPlates.remove(plate);
+			}
+		}
+	}
+
+	private void exit(ParkedVehicle vehicle, String gateId, boolean measured) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		// the vehicle leaves its spot before the gate frees it for the next one
+		occupiedSpots.remove(vehicle.spot, vehicle.plate);
+		try {
+			Ticket ticket = parkingService.exit(new ExitRequest(vehicle.plate, gateId, new Date()));
+			if (ticket == null) {
+				if (measured) {
+					nullTickets.increment();
+				}
+				return;
+			}
+			failed = false;
+			if (measured) {
+				exits.increment();
+			}
+		} catch (Exception e) {
+			if (measured) {
+				exitFailures.increment();
+			}
+			logFailure("exit", vehicle.plate, e);
+		} finally {
+			if (measured) {
+				exitLatency.record(start, failed);
+			}
+			if (failed) {
+				occupiedSpots.putIfAbsent(vehicle.spot, vehicle.plate);
+			}
+			parkedPlates.remove(vehicle.plate);
+			seenPlates.set((int) (seenPlateCount.getAndIncrement() % SEEN_PLATES), vehicle.plate);
+		}
+	}
+
+	/**
+	 * A plate of a vehicle that left for the repeat ratio of the arrivals, a
+	 * new one otherwise. The plate is never one of a parked vehicle.
+	 */
+	private String nextPlate(ThreadLocalRandom random) {
+		long seen = seenPlateCount.get();
+		if (seen > 0 && random.nextDouble() < settings.getRepeatRatio()) {
+			for (int attempt = 0; attempt < 4; attempt++) {
+				String plate = seenPlates.get(random.nextInt((int) Math.min(seen, SEEN_PLATES)));
+				if (plate != null && parkedPlates.add(plate)) {
+					return plate;
+				}
+			}
+		}
+		String plate = "LT" + Long.toString(plateSequence.incrementAndGet(), 36).toUpperCase(Locale.ROOT);
+		parkedPlates.add(plate);
+		return plate;
+	}
+
+	private void logFailure(String operation, String plate, Exception e) {
+		if (loggedFailures.incrementAndGet() <= LOGGED_FAILURES) {
+			logger.warn("Failed {} of {}: {}", operation, plate, e.getMessage());
+		}
+	}
+
+	private static final class ParkedVehicle {
+		private final String plate;
+		private final int spot;
+		private final long departureNanos;
+
+		private ParkedVehicle(String plate, int spot, long departureNanos) {
+			this.plate = plate;
+			this.spot = spot;
+			this.departureNanos = departureNanos;
+		}
+	}
+}
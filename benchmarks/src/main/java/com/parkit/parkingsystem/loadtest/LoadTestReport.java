@@ -0,0 +1,103 @@
+package com.parkit.parkingsystem.loadtest;
+
+import com.parkit.parkingsystem.metrics.LatencySnapshot;
+
+import java.util.Locale;
+
+/**
+ * Outcome of a load test.
+ *
+ */
+
+public class LoadTestReport {
+	private final long elapsedMillis;
+	private final long entries;
+	private final long exits;
+	private final long recurringEntries;
+	private final long entryFailures;
+	private final long exitFailures;
+	private final long nullTickets;
+	private final long doubleAllocations;
+	private final LatencySnapshot entryLatency;
+	private final LatencySnapshot exitLatency;
+
+	public LoadTestReport(long elapsedMillis, long entries, long exits, long recurringEntries, long entryFailures,
+			long exitFailures, long nullTickets, long doubleAllocations, LatencySnapshot entryLatency,
+			LatencySnapshot exitLatency) {
+		this.elapsedMillis = elapsedMillis;
+		this.entries = entries;
+		this.exits = exits;
+		this.recurringEntries = recurringEntries;
+		this.entryFailures = entryFailures;
+		this.exitFailures = exitFailures;
+		this.nullTickets = nullTickets;
+		this.doubleAllocations = doubleAllocations;
+		this.entryLatency = entryLatency;
+		this.exitLatency = exitLatency;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public long getEntries() {
+		return entries;
+	}
+
+	public long getExits() {
+		return exits;
+	}
+
+	/**
+	 * @return entries recognised as recurring users
+	 */
+	public long getRecurringEntries() {
+		return recurringEntries;
+	}
+
+	/**
+	 * @return entries that threw, a full parking included
+	 */
+	public long getEntryFailures() {
+		return entryFailures;
+	}
+
+	public long getExitFailures() {
+		return exitFailures;
+	}
+
+	public long getNullTickets() {
+		return nullTickets;
+	}
+
+	/**
+	 * @return entries given a spot that another parked vehicle holds
+	 */
+	public long getDoubleAllocations() {
+		return doubleAllocations;
+	}
+
+	public LatencySnapshot getEntryLatency() {
+		return entryLatency;
+	}
+
+	public LatencySnapshot getExitLatency() {
+		return exitLatency;
+	}
+
+	/**
+	 * @return successful entries and exits per second
+	 */
+	public double getOperationsPerSecond() {
+		return elapsedMillis == 0 ? 0 : (entries + exits) * 1000.0 / elapsedMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT,
+				"%.0f ops/s over %dms: %d entries (%d recurring), %d exits, %d entry failures, %d exit failures, "
+						+ "%d null tickets, %d double allocations%n  %s%n  %s",
+				getOperationsPerSecond(), elapsedMillis, entries, recurringEntries, exits, entryFailures,
+				exitFailures, nullTickets, doubleAllocations, entryLatency, exitLatency);
+	}
+}
@@ -0,0 +1,200 @@
+package com.parkit.parkingsystem.loadtest;
+
+import java.util.Locale;
+
+/**
+ * Parameters of a load test, parsed from --name=value arguments.
+ *
+ */
+
+public class LoadTestSettings {
+
+	public enum Backend {
+		/**
+		 * In memory stand-ins of the DAOs
+		 */
+		MEMORY,
+		/**
+		 * An EmbeddedParkingStore, without simulated latency
+		 */
+		EMBEDDED,
+		/**
+		 * The database of DataBaseConfig
+		 */
+		MYSQL
+	}
+
+	private Backend backend = Backend.MEMORY;
+	private int gates = 4;
+	private long durationMillis = 30_000;
+	private double arrivalsPerSecond = 500;
+	private long meanStayMillis = 2_000;
+	private double repeatRatio = 0.3;
+	private double bikeRatio = 0.2;
+	private int carSpots = 800;
+	private int bikeSpots = 200;
+	private long latencyMicros;
+
+	/**
+	 * @param args --backend=memory|embedded|mysql --gates=N --duration-seconds=N
+	 *             --arrivals-per-second=N --mean-stay-millis=N --repeat-ratio=R
+	 *             --bike-ratio=R --car-spots=N --bike-spots=N --latency-micros=N
+	 * @return the settings, defaults for what is not given
+	 * @throws IllegalArgumentException on an unknown or malformed argument
+	 */
+	public static LoadTestSettings parse(String[] args) {
+		LoadTestSettings settings = new LoadTestSettings();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (!arg.startsWith("--") || separator < 0) {
+				throw new IllegalArgumentException("Expected --name=value but got " + arg);
+			}
+			String name = arg.substring(2, separator);
+			String value = arg.substring(separator + 1);
+			switch (name) {
+			case "backend":
+				settings.setBackend(Backend.valueOf(value.toUpperCase(Locale.ROOT)));
+				break;
+			case "gates":
+				settings.setGates(Integer.parseInt(value));
+				break;
+			case "duration-seconds":
+				settings.setDurationMillis(Long.parseLong(value) * 1000);
+				break;
+			case "arrivals-per-second":
+				settings.setArrivalsPerSecond(Double.parseDouble(value));
+				break;
+			case "mean-stay-millis":
+				settings.setMeanStayMillis(Long.parseLong(value));
+				break;
+			case "repeat-ratio":
+				settings.setRepeatRatio(Double.parseDouble(value));
+				break;
+			case "bike-ratio":
+				settings.setBikeRatio(Double.parseDouble(value));
+				break;
+			case "car-spots":
+				settings.setCarSpots(Integer.parseInt(value));
+				break;
+			case "bike-spots":
+				settings.setBikeSpots(Integer.parseInt(value));
+				break;
+			case "latency-micros":
+				settings.setLatencyMicros(Long.parseLong(value));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown load test setting " + name);
+			}
+		}
+		return settings;
+	}
+
+	public Backend getBackend() {
+		return backend;
+	}
+
+	public void setBackend(Backend backend) {
+		this.backend = backend;
+	}
+
+	public int getGates() {
+		return gates;
+	}
+
+	public void setGates(int gates) {
+		this.gates = gates;
+	}
+
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	public void setDurationMillis(long durationMillis) {
+		this.durationMillis = durationMillis;
+	}
+
+	/**
+	 * @return arrivals per second over all gates, 0 for as fast as the gates
+	 *         can go
+	 */
+	public double getArrivalsPerSecond() {
+		return arrivalsPerSecond;
+	}
+
+	public void setArrivalsPerSecond(double arrivalsPerSecond) {
+		this.arrivalsPerSecond = arrivalsPerSecond;
+	}
+
+	/**
+	 * @return mean of the exponentially distributed stays, sets the exit rate
+	 */
+	public long getMeanStayMillis() {
+		return meanStayMillis;
+	}
+
+	public void setMeanStayMillis(long meanStayMillis) {
+		this.meanStayMillis = meanStayMillis;
+	}
+
+	/**
+	 * @return share of arrivals using a plate seen before
+	 */
+	public double getRepeatRatio() {
+		return repeatRatio;
+	}
+
+	public void setRepeatRatio(double repeatRatio) {
+		this.repeatRatio = repeatRatio;
+	}
+
+	/**
+	 * @return share of arrivals that are bikes
+	 */
+	public double getBikeRatio() {
+		return bikeRatio;
+	}
+
+	public void setBikeRatio(double bikeRatio) {
+		this.bikeRatio = bikeRatio;
+	}
+
+	/**
+	 * @return car spots of the in memory parking
+	 */
+	public int getCarSpots() {
+		return carSpots;
+	}
+
+	public void setCarSpots(int carSpots) {
+		this.carSpots = carSpots;
+	}
+
+	/**
+	 * @return bike spots of the in memory parking
+	 */
+	public int getBikeSpots() {
+		return bikeSpots;
+	}
+
+	public void setBikeSpots(int bikeSpots) {
+		this.bikeSpots = bikeSpots;
+	}
+
+	/**
+	 * @return simulated round trip of each in memory DAO call
+	 */
+	public long getLatencyMicros() {
+		return latencyMicros;
+	}
+
+	public void setLatencyMicros(long latencyMicros) {
+		this.latencyMicros = latencyMicros;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT,
+				"backend=%s gates=%d duration=%dms arrivals=%.0f/s stay=%dms repeat=%.2f bikes=%.2f",
+				backend, gates, durationMillis, arrivalsPerSecond, meanStayMillis, repeatRatio, bikeRatio);
+	}
+}
@@ -0,0 +1,85 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.loadtest.LoadGenerator;
+import com.parkit.parkingsystem.loadtest.LoadTestReport;
+import com.parkit.parkingsystem.loadtest.LoadTestSettings;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains LoadGenerator unit tests
+ *
+ */
+
+class LoadGeneratorTest {
+
+    @Test
+    @DisplayName("Settings are parsed from --name=value arguments")
+    void parseSettings() {
+	// WHEN
+	LoadTestSettings settings = LoadTestSettings.parse(new String[] { "--backend=mysql", "--gates=16",
+		"--duration-seconds=5", "--repeat-ratio=0.5", "--bike-ratio=0" });
+	// THEN
+	assertEquals(LoadTestSettings.Backend.MYSQL, settings.getBackend());
+	assertEquals(16, settings.getGates());
+	assertEquals(5000, settings.getDurationMillis());
+	assertEquals(0.5, settings.getRepeatRatio());
+	assertEquals(0, settings.getBikeRatio());
+	assertThrows(IllegalArgumentException.class, () -> LoadTestSettings.parse(new String[] { "--speed=1" }));
+    }
+
+    @Test
+    @DisplayName("Concurrent gates against the in memory parking never share a spot")
+    void inMemoryLoad() throws Exception {
+	// GIVEN
+	LoadTestSettings settings = LoadTestSettings.parse(new String[] { "--gates=4", "--arrivals-per-second=0",
+		"--mean-stay-millis=5", "--car-spots=20", "--bike-spots=5", "--repeat-ratio=0.5" });
+	settings.setDurationMillis(500);
+	// WHEN
+	LoadTestReport report = LoadGenerator.run(settings);
+	// THEN
+	assertTrue(report.getEntries() > 100, report.toString());
+	assertTrue(report.getExits() > 100, report.toString());
+	assertTrue(report.getRecurringEntries() > 0, report.toString());
+	assertEquals(0, report.getDoubleAllocations());
+	assertEquals(0, report.getNullTickets());
+	assertEquals(0, report.getExitFailures());
+	assertEquals(report.getEntries() + report.getEntryFailures(), report.getEntryLatency().getCount());
+    }
+
+    @Test
+    @DisplayName("A parking handing out the same spot twice is reported")
+    void doubleAllocationIsReported() throws Exception {
+	// GIVEN
+	ParkingSpotDAO parkingSpotDAO = mock(ParkingSpotDAO.class);
+	when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
+	when(parkingSpotDAO.claimParkingSpot(any(ParkingSpot.class))).thenReturn(true);
+	when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+	TicketDAO ticketDAO = mock(TicketDAO.class);
+	when(ticketDAO.recurringUsers(anyString())).thenReturn(false);
+	when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+	LoadTestSettings settings = LoadTestSettings.parse(new String[] { "--gates=1", "--arrivals-per-second=0",
+		"--mean-stay-millis=60000" });
+	settings.setDurationMillis(100);
+	// WHEN
+	LoadTestReport report = new LoadGenerator(settings, parkingSpotDAO, ticketDAO, TransactionManager.NONE).run();
+	// THEN
+	assertTrue(report.getDoubleAllocations() > 0);
+	assertEquals(report.getEntries(), report.getDoubleAllocations() + 1);
+    }
+}
@@ -1,14 +1,39 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.replay.ReplayCommand;
+import com.parkit.parkingsystem.report.ReportCommand;
 import com.parkit.parkingsystem.service.InteractiveShell;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Paths;
+import java.util.Arrays;
+
 public class App {
 	private static final Logger logger = LogManager.getLogger("App");
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws Exception {
 		logger.info("Initializing Parking System");
+		if (args.length > 0 && "replay".equals(args[0])) {
+			ReplayCommand.run(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && "report".equals(args[0])) {
+			ReportCommand.run(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 1 && "embedded".equals(args[0])) {
+			InteractiveShell.loadEmbeddedInterface(Paths.get(args[1]));
+			return;
+		}
+		if (args.length > 2 && "lot".equals(args[0])) {
+			InteractiveShell.loadLotInterface(Paths.get(args[1]), Integer.parseInt(args[2]));
+			return;
+		}
+		if (args.length > 1 && "journal".equals(args[0])) {
+			InteractiveShell.loadInterface(Paths.get(args[1]));
+			return;
+		}
 		InteractiveShell.loadInterface();
 	}
 }
@@ -0,0 +1,51 @@
+package com.parkit.parkingsystem.allocation;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * The spot allocators to choose from, by name.
+ *
+ */
+
+public enum AllocationStrategy {
+	LOWEST_NUMBER, ROUND_ROBIN, LEAST_RECENTLY_USED, ZONE_BALANCED;
+
+	/**
+	 * @param zoneSize number of spots of a zone, only used by ZONE_BALANCED
+	 * @return a new allocator of this strategy on each call, one per parking
+	 *         type
+	 */
+	public Supplier<SpotAllocator> allocators(int zoneSize) {
+		switch (this) {
+		case ROUND_ROBIN:
+			return RoundRobinAllocator::new;
+		case LEAST_RECENTLY_USED:
+			return LeastRecentlyUsedAllocator::new;
+		case ZONE_BALANCED:
+			if (zoneSize <= 0) {
+				throw new IllegalArgumentException("The zone size must be positive");
+			}
+			return () -> new ZoneBalancedAllocator(zoneSize);
+		default:
+			return LowestNumberAllocator::new;
+		}
+	}
+
+	/**
+	 * @param name name of the strategy, such as lowest-number or round-robin
+	 * @return the strategy
+	 * @throws IllegalArgumentException if no strategy has that name
+	 */
+	public static AllocationStrategy fromName(String name) {
+		String constant = name.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+		for (AllocationStrategy strategy : values()) {
+			if (strategy.name().equals(constant)) {
+				return strategy;
+			}
+		}
+		throw new IllegalArgumentException("Unknown spot allocation strategy " + name + ", expected one of "
+				+ Arrays.toString(values()).toLowerCase(Locale.ROOT).replace('_', '-'));
+	}
+}
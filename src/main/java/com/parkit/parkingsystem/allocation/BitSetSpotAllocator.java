@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem.allocation;
+
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Base of the allocators keeping the free spots in a bitset, where bit n is
+ * set when spot number n is free.
+ *
+ */
+
+abstract class BitSetSpotAllocator implements SpotAllocator {
+
+	private final BitSet freeSpots = new BitSet();
+	private int freeSpotCount;
+
+	@Override
+	public void spotFreed(int number) {
+		if (!freeSpots.get(number)) {
+			freeSpots.set(number);
+			freeSpotCount++;
+			freed(number);
+		}
+	}
+
+	@Override
+	public void spotTaken(int number) {
+		if (freeSpots.get(number)) {
+			freeSpots.clear(number);
+			freeSpotCount--;
+			taken(number);
+		}
+	}
+
+	@Override
+	public boolean isFree(int number) {
+		return freeSpots.get(number);
+	}
+
+	@Override
+	public int countFreeSpots() {
+		return freeSpotCount;
+	}
+
+	@Override
+	public void clear() {
+		freeSpots.clear();
+		freeSpotCount = 0;
+	}
+
+	/**
+	 * Called once a spot has been freed
+	 */
+	void freed(int number) {
+	}
+
+	/**
+	 * Called once a spot has been taken
+	 */
+	void taken(int number) {
+	}
+
+	/**
+	 * @param from lowest spot number to look at
+	 * @param to   spot number to stop before
+	 * @return the lowest eligible free spot in the range, 0 when none
+	 */
+	int lowestFreeSpot(int from, int to, IntPredicate eligible) {
+		for (int number = freeSpots.nextSetBit(Math.max(1, from)); number >= 0
+				&& number < to; number = freeSpots.nextSetBit(number + 1)) {
+			if (eligible.test(number)) {
+				return number;
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,102 @@
+package com.parkit.parkingsystem.allocation;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Gives the spot free for the longest time, so every spot wears out at the
+ * same pace. The free spots are kept in a doubly linked list in the order
+ * they were freed, with the links in arrays indexed by spot number: freeing,
+ * taking and picking a spot are constant time.
+ *
+ */
+
+public class LeastRecentlyUsedAllocator implements SpotAllocator {
+
+	private static final int NONE = 0;
+
+	private int[] previous = new int[16];
+	private int[] next = new int[16];
+	private boolean[] free = new boolean[16];
+	private int head = NONE;
+	private int tail = NONE;
+	private int freeSpotCount;
+
+	@Override
+	public void spotFreed(int number) {
+		if (number <= NONE) {
+			throw new IllegalArgumentException("Invalid spot number " + number);
+		}
+		if (isFree(number)) {
+			return;
+		}
+		ensureCapacity(number);
+		free[number] = true;
+		previous[number] = tail;
+		next[number] = NONE;
+		if (tail == NONE) {
+			head = number;
+		} else {
+			next[tail] = number;
+		}
+		tail = number;
+		freeSpotCount++;
+	}
+
+	@Override
+	public void spotTaken(int number) {
+		if (!isFree(number)) {
+			return;
+		}
+		free[number] = false;
+		if (previous[number] == NONE) {
+			head = next[number];
+		} else {
+			next[previous[number]] = next[number];
+		}
+		if (next[number] == NONE) {
+			tail = previous[number];
+		} else {
+			previous[next[number]] = previous[number];
+		}
+		freeSpotCount--;
+	}
+
+	@Override
+	public boolean isFree(int number) {
+		return number > NONE && number < free.length && free[number];
+	}
+
+	@Override
+	public int countFreeSpots() {
+		return freeSpotCount;
+	}
+
+	@Override
+	public int nextSpot(IntPredicate eligible) {
+		for (int number = head; number != NONE; number = next[number]) {
+			if (eligible.test(number)) {
+				return number;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(free, false);
+		head = NONE;
+		tail = NONE;
+		freeSpotCount = 0;
+	}
+
+	private void ensureCapacity(int number) {
+		if (number < free.length) {
+			return;
+		}
+		int capacity = Math.max(free.length * 2, number + 1);
+		previous = Arrays.copyOf(previous, capacity);
+		next = Arrays.copyOf(next, capacity);
+		free = Arrays.copyOf(free, capacity);
+	}
+}
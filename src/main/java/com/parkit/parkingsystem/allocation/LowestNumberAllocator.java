@@ -0,0 +1,16 @@
+package com.parkit.parkingsystem.allocation;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Gives the lowest free spot number, the order of GET_NEXT_PARKING_SPOT.
+ *
+ */
+
+public class LowestNumberAllocator extends BitSetSpotAllocator {
+
+	@Override
+	public int nextSpot(IntPredicate eligible) {
+		return lowestFreeSpot(1, Integer.MAX_VALUE, eligible);
+	}
+}
@@ -0,0 +1,32 @@
+package com.parkit.parkingsystem.allocation;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Gives the first free spot after the last one taken, going back to the
+ * lowest number after the highest, so the vehicles are spread over every
+ * spot in turn.
+ *
+ */
+
+public class RoundRobinAllocator extends BitSetSpotAllocator {
+
+	private int lastTaken;
+
+	@Override
+	void taken(int number) {
+		lastTaken = number;
+	}
+
+	@Override
+	public int nextSpot(IntPredicate eligible) {
+		int number = lowestFreeSpot(lastTaken + 1, Integer.MAX_VALUE, eligible);
+		return number > 0 ? number : lowestFreeSpot(1, lastTaken + 1, eligible);
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		lastTaken = 0;
+	}
+}
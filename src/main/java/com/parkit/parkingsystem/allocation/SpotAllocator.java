@@ -0,0 +1,54 @@
+package com.parkit.parkingsystem.allocation;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Picks the free spot of one parking type the next vehicle is given. An
+ * allocator keeps the free spots in its own in memory order and is told of
+ * every spot freed or taken, so picking a spot never scans the parking.
+ *
+ * Allocators are not thread safe, FreeSpotIndex synchronizes every call.
+ *
+ */
+
+public interface SpotAllocator {
+
+	/**
+	 * Record a spot as free, nothing when it already is
+	 *
+	 * @param number spot number
+	 */
+	void spotFreed(int number);
+
+	/**
+	 * Record a spot as taken, nothing when it already is
+	 *
+	 * @param number spot number
+	 */
+	void spotTaken(int number);
+
+	/**
+	 * @param number spot number
+	 * @return true when the spot is free
+	 */
+	boolean isFree(int number);
+
+	/**
+	 * @return number of free spots
+	 */
+	int countFreeSpots();
+
+	/**
+	 * Get the free spot to give next, in the order of the allocator. The spot
+	 * stays free until it is taken.
+	 *
+	 * @param eligible the spots the caller accepts
+	 * @return spot number, 0 when no eligible spot is free
+	 */
+	int nextSpot(IntPredicate eligible);
+
+	/**
+	 * Forget every spot
+	 */
+	void clear();
+}
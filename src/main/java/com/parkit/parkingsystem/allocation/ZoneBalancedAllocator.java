@@ -0,0 +1,82 @@
+package com.parkit.parkingsystem.allocation;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Gives the lowest free spot of the zone with the most free spots, so the
+ * vehicles are spread over the levels or areas of the parking. Zones are
+ * ranges of consecutive spot numbers: with a zone size of 100, spots 1 to
+ * 100 are zone 0, spots 101 to 200 zone 1 and so on. The zones with a free
+ * spot are kept in a tree ordered by free spots, so freeing or taking a spot
+ * is logarithmic in the number of zones.
+ *
+ */
+
+public class ZoneBalancedAllocator extends BitSetSpotAllocator {
+
+	private final int zoneSize;
+	private int[] freeInZone = new int[4];
+	private final TreeSet<Integer> zones = new TreeSet<>((zone, other) -> freeInZone[zone] != freeInZone[other]
+			? Integer.compare(freeInZone[other], freeInZone[zone])
+			: Integer.compare(zone, other));
+
+	/**
+	 * @param zoneSize number of spots of a zone
+	 */
+	public ZoneBalancedAllocator(int zoneSize) {
+		if (zoneSize <= 0) {
+			throw new IllegalArgumentException("The zone size must be positive");
+		}
+		this.zoneSize = zoneSize;
+	}
+
+	@Override
+	void freed(int number) {
+		changeFreeSpots(zoneOf(number), 1);
+	}
+
+	@Override
+	void taken(int number) {
+		changeFreeSpots(zoneOf(number), -1);
+	}
+
+	@Override
+	public int nextSpot(IntPredicate eligible) {
+		for (int zone : zones) {
+			int from = zone * zoneSize + 1;
+			int number = lowestFreeSpot(from, from + zoneSize, eligible);
+			if (number > 0) {
+				return number;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		zones.clear();
+		Arrays.fill(freeInZone, 0);
+	}
+
+	private int zoneOf(int number) {
+		return (number - 1) / zoneSize;
+	}
+
+	/**
+	 * The zone leaves the tree while its count changes, as the count is its
+	 * key
+	 */
+	private void changeFreeSpots(int zone, int delta) {
+		if (zone >= freeInZone.length) {
+			freeInZone = Arrays.copyOf(freeInZone, Math.max(freeInZone.length * 2, zone + 1));
+		}
+		zones.remove(zone);
+		freeInZone[zone] += delta;
+		if (freeInZone[zone] > 0) {
+			zones.add(zone);
+		}
+	}
+}
@@ -0,0 +1,344 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of JDBC connections.
+ *
+ * Connections handed out are proxies: calling close() on them gives the
+ * underlying connection back to the pool instead of closing the socket. Idle
+ * connections are validated before reuse, callers wait at most the acquire
+ * timeout for a free slot, and connections held longer than the leak
+ * detection threshold are reported.
+ *
+ */
+
+public class ConnectionPool {
+
+	/**
+	 * Opens a new physical connection.
+	 */
+	public interface ConnectionFactory {
+		Connection create() throws SQLException;
+	}
+
+	private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+	/**
+	 * Connections used more recently than this are handed out without a
+	 * validation round trip.
+	 */
+	private static final long VALIDATION_BYPASS_MILLIS = 500;
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+	private static final long HOUSEKEEPING_PERIOD_MILLIS = 1000;
+
+	private final ConnectionFactory connectionFactory;
+	private final int minSize;
+	private final int maxSize;
+	private final long acquireTimeoutMillis;
+	private final long leakDetectionThresholdMillis;
+
+	private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+	private final Set<Lease> activeLeases = ConcurrentHashMap.newKeySet();
+	private final Semaphore permits;
+	private final ScheduledExecutorService housekeeper;
+
+	private final AtomicInteger totalConnections = new AtomicInteger();
+	private final AtomicInteger pendingAcquires = new AtomicInteger();
+	private final AtomicLong createdConnections = new AtomicLong();
+	private final AtomicLong destroyedConnections = new AtomicLong();
+	private final AtomicLong acquiredConnections = new AtomicLong();
+	private final AtomicLong acquireTimeouts = new AtomicLong();
+	private final AtomicLong leakedConnections = new AtomicLong();
+
+	private volatile boolean closed;
+
+	/**
+	 * @param connectionFactory            opens physical connections
+	 * @param minSize                      idle connections kept warm
+	 * @param maxSize                      upper bound of open connections
+	 * @param acquireTimeoutMillis         max wait for a free connection
+	 * @param leakDetectionThresholdMillis lease duration after which a
+	 *                                     connection is reported as leaked, 0
+	 *                                     to disable
+	 */
+	public ConnectionPool(ConnectionFactory connectionFactory, int minSize, int maxSize, long acquireTimeoutMillis,
+			long leakDetectionThresholdMillis) {
+		if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+			throw new IllegalArgumentException("Invalid pool size min=" + minSize + " max=" + maxSize);
+		}
+		this.connectionFactory = connectionFactory;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+		this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+		this.permits = new Semaphore(maxSize, true);
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "connection-pool-housekeeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		housekeeper.scheduleWithFixedDelay(this::houseKeep, HOUSEKEEPING_PERIOD_MILLIS, HOUSEKEEPING_PERIOD_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Borrow a connection, waiting at most the acquire timeout.
+	 *
+	 * @return a connection to give back with close()
+	 * @throws SQLException if the pool is closed, exhausted or the database is
+	 *                      unreachable
+	 */
+	public Connection acquire() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+		pendingAcquires.incrementAndGet();
+		try {
+			if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				acquireTimeouts.incrementAndGet();
+				throw new SQLTimeoutException(
+						"Timed out after " + acquireTimeoutMillis + "ms waiting for a DB connection, " + getStats());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a DB connection", e);
+		} finally {
+			pendingAcquires.decrementAndGet();
+		}
+		try {
+			PooledConnection pooledConnection = takeIdleConnection();
+			if (pooledConnection == null) {
+				pooledConnection = openConnection();
+			}
+			Lease lease = new Lease(pooledConnection,
+					leakDetectionThresholdMillis > 0 ? new Throwable("Connection acquired here") : null);
+			activeLeases.add(lease);
+			acquiredConnections.incrementAndGet();
+			return lease.proxy;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private PooledConnection takeIdleConnection() {
+		PooledConnection pooledConnection;
+		while ((pooledConnection = idleConnections.pollFirst()) != null) {
+			if (isAlive(pooledConnection)) {
+				return pooledConnection;
+			}
+			logger.warn("Discarding broken DB connection");
+			destroy(pooledConnection);
+		}
+		return null;
+	}
+
+	private boolean isAlive(PooledConnection pooledConnection) {
+		if (System.currentTimeMillis() - pooledConnection.lastReleased < VALIDATION_BYPASS_MILLIS) {
+			return true;
+		}
+		try {
+			return pooledConnection.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private PooledConnection openConnection() throws SQLException {
+		Connection connection = connectionFactory.create();
+		totalConnections.incrementAndGet();
+		createdConnections.incrementAndGet();
+		return new PooledConnection(connection);
+	}
+
+	private void release(Lease lease) {
+		if (!activeLeases.remove(lease)) {
+			return;
+		}
+		PooledConnection pooledConnection = lease.pooledConnection;
+		boolean reusable = !closed;
+		try {
+			if (reusable && !pooledConnection.connection.getAutoCommit()) {
+				pooledConnection.connection.rollback();
+				pooledConnection.connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			logger.warn("Unable to reset DB connection, discarding it", e);
+			reusable = false;
+		}
+		if (reusable) {
+			pooledConnection.lastReleased = System.currentTimeMillis();
+			idleConnections.offerFirst(pooledConnection);
+		} else {
+			destroy(pooledConnection);
+		}
+		permits.release();
+	}
+
+	private void destroy(PooledConnection pooledConnection) {
+		totalConnections.decrementAndGet();
+		destroyedConnections.incrementAndGet();
+		try {
+			pooledConnection.connection.close();
+		} catch (SQLException e) {
+			logger.error("Error while closing connection", e);
+		}
+	}
+
+	private void houseKeep() {
+		try {
+			detectLeaks();
+			fillToMinimum();
+		} catch (RuntimeException e) {
+			logger.error("Connection pool housekeeping failed", e);
+		}
+	}
+
+	/**
+	 * Report connections held longer than the leak detection threshold. Each
+	 * lease is reported once.
+	 *
+	 * @return number of newly detected leaks
+	 */
+	public int detectLeaks() {
+		if (leakDetectionThresholdMillis <= 0) {
+			return 0;
+		}
+		int detected = 0;
+		long now = System.currentTimeMillis();
+		for (Lease lease : activeLeases) {
+			if (!lease.reportedAsLeak && now - lease.acquiredAt >= leakDetectionThresholdMillis) {
+				lease.reportedAsLeak = true;
+				leakedConnections.incrementAndGet();
+				detected++;
+				logger.warn("DB connection held for more than {}ms, possible leak", leakDetectionThresholdMillis,
+						lease.acquiredBy);
+			}
+		}
+		return detected;
+	}
+
+	private void fillToMinimum() {
+		while (!closed && idleConnections.size() < minSize && totalConnections.get() < maxSize
+				&& permits.tryAcquire()) {
+			try {
+				PooledConnection pooledConnection = openConnection();
+				pooledConnection.lastReleased = System.currentTimeMillis();
+				idleConnections.offerLast(pooledConnection);
+			} catch (SQLException e) {
+				logger.warn("Unable to open DB connection to keep the pool warm", e);
+				return;
+			} finally {
+				permits.release();
+			}
+		}
+	}
+
+	/**
+	 * Close idle connections and refuse further acquires. Connections still in
+	 * use are closed when they are given back.
+	 */
+	public void close() {
+		closed = true;
+		housekeeper.shutdownNow();
+		PooledConnection pooledConnection;
+		while ((pooledConnection = idleConnections.pollFirst()) != null) {
+			destroy(pooledConnection);
+		}
+	}
+
+	/**
+	 * @return a snapshot of the pool counters
+	 */
+	public PoolStats getStats() {
+		return new PoolStats(totalConnections.get(), idleConnections.size(), activeLeases.size(),
+				pendingAcquires.get(), createdConnections.get(), destroyedConnections.get(),
+				acquiredConnections.get(), acquireTimeouts.get(), leakedConnections.get());
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	private static final class PooledConnection {
+		private final Connection connection;
+		private volatile long lastReleased;
+
+		private PooledConnection(Connection connection) {
+			this.connection = connection;
+		}
+	}
+
+	/**
+	 * One borrowing of a pooled connection. The proxy stops working once the
+	 * lease has been given back, so a stale reference can not reach a
+	 * connection that was handed to somebody else.
+	 */
+	private final class Lease implements InvocationHandler {
+		private final PooledConnection pooledConnection;
+		private final Throwable acquiredBy;
+		private final long acquiredAt = System.currentTimeMillis();
+		private final Connection proxy;
+		private volatile boolean returned;
+		private volatile boolean reportedAsLeak;
+
+		private Lease(PooledConnection pooledConnection, Throwable acquiredBy) {
+			this.pooledConnection = pooledConnection;
+			this.acquiredBy = acquiredBy;
+			this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				if (!returned) {
+					returned = true;
+					release(this);
+				}
+				return null;
+			case "isClosed":
+				return returned || pooledConnection.connection.isClosed();
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "PooledConnection[" + pooledConnection.connection + "]";
+			default:
+				if (returned) {
+					throw new SQLException("Connection has already been returned to the pool");
+				}
+				try {
+					return method.invoke(pooledConnection.connection, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		}
+	}
+}
@@ -1,9 +1,13 @@
 package com.parkit.parkingsystem.config;
 
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This class connect and close database
@@ -12,15 +16,53 @@ import java.sql.*;
  *
  */
 
-public class DataBaseConfig {
+public class DataBaseConfig implements TransactionManager {
 	/**
 	 * DatabaseConfig logger
 	 */
 
 	private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+	private static final LatencyHistogram getConnectionLatency = Metrics.histogram("DataBaseConfig.getConnection");
+
+	private static final String DRIVER_CLASS_NAME = "com.mysql.cj.jdbc.Driver";
+
+	private final String url;
+	private final String user;
+	private final String password;
+
+	private int poolMinSize = 2;
+	private int poolMaxSize = 10;
+	private long acquireTimeoutMillis = 5000;
+	private long leakDetectionThresholdMillis = 30000;
+
+	private ConnectionPool connectionPool;
+
+	private final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<>();
+
+	/**
+	 * Connect to the prod schema of the local server
+	 */
+	public DataBaseConfig() {
+		this("jdbc:mysql://localhost:3306/prod?serverTimezone=UTC", "root", "rootroot");
+	}
+
+	/**
+	 * Connect to another schema or server, such as the shard of a lot
+	 * 
+	 * @param url      JDBC url of the schema
+	 * @param user     database user
+	 * @param password password of the user
+	 */
+	public DataBaseConfig(String url, String user, String password) {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+	}
+
 	/**
-	 * Connect to sql
+	 * Borrow a connection from the pool. Closing it gives it back. Inside a
+	 * transaction the connection of the transaction is returned.
 	 * 
 	 * @return connect to database
 	 * @throws ClassNotFoundException
@@ -28,22 +70,170 @@ public class DataBaseConfig {
 	 */
 
 	public Connection getConnection() throws ClassNotFoundException, SQLException {
+		Transaction transaction = currentTransaction.get();
+		if (transaction != null) {
+			return transaction.connection;
+		}
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			Connection con = getConnectionPool().acquire();
+			failed = false;
+			return con;
+		} finally {
+			getConnectionLatency.record(start, failed);
+		}
+	}
+
+	@Override
+	public <T> T inTransaction(UnitOfWork<T> work) throws Exception {
+		if (currentTransaction.get() != null) {
+			return work.execute();
+		}
+		Connection con = getConnection();
+		Transaction transaction = new Transaction(con);
+		currentTransaction.set(transaction);
+		try {
+			con.setAutoCommit(false);
+			T result = work.execute();
+			con.commit();
+			transaction.completed(true);
+			return result;
+		} catch (Exception | Error e) {
+			try {
+				con.rollback();
+			} catch (SQLException rollbackError) {
+				logger.error("Error while rolling back transaction", rollbackError);
+			}
+			transaction.completed(false);
+			throw e;
+		} finally {
+			currentTransaction.remove();
+			closeConnection(con);
+		}
+	}
+
+	/**
+	 * @return true when the calling thread runs inside a transaction
+	 */
+
+	public boolean isInTransaction() {
+		return currentTransaction.get() != null;
+	}
+
+	/**
+	 * Run an action once the current transaction is committed, right away when
+	 * there is no transaction.
+	 * 
+	 * @param action in memory change to apply once the write is durable
+	 */
+
+	public void afterCommit(Runnable action) {
+		Transaction transaction = currentTransaction.get();
+		if (transaction == null) {
+			action.run();
+		} else {
+			transaction.afterCommit.add(action);
+		}
+	}
+
+	/**
+	 * Run an action if the current transaction is rolled back, never when
+	 * there is no transaction.
+	 * 
+	 * @param action in memory change undoing what the transaction did
+	 */
+
+	public void afterRollback(Runnable action) {
+		Transaction transaction = currentTransaction.get();
+		if (transaction != null) {
+			transaction.afterRollback.add(action);
+		}
+	}
+
+	/**
+	 * The pool is created on first use so the JDBC driver is only loaded once.
+	 * 
+	 * @return the connection pool of this configuration
+	 * @throws ClassNotFoundException
+	 */
+
+	public synchronized ConnectionPool getConnectionPool() throws ClassNotFoundException {
+		if (connectionPool == null) {
+			Class.forName(DRIVER_CLASS_NAME);
+			connectionPool = new ConnectionPool(this::createConnection, poolMinSize, poolMaxSize,
+					acquireTimeoutMillis, leakDetectionThresholdMillis);
+		}
+		return connectionPool;
+	}
+
+	/**
+	 * Open a physical connection to sql
+	 * 
+	 * @return a new connection
+	 * @throws SQLException
+	 */
+
+	protected Connection createConnection() throws SQLException {
 		logger.info("Create DB connection");
-		Class.forName("com.mysql.cj.jdbc.Driver");
-		return DriverManager.getConnection("jdbc:mysql://localhost:3306/prod?serverTimezone=UTC", "root", "rootroot");
+		return DriverManager.getConnection(getUrl(), getUser(), getPassword());
+	}
+
+	protected String getUrl() {
+		return url;
+	}
+
+	protected String getUser() {
+		return user;
+	}
+
+	protected String getPassword() {
+		return password;
+	}
+
+	/**
+	 * Close the pool and all its idle connections
+	 */
+
+	public synchronized void shutdown() {
+		if (connectionPool != null) {
+			logger.info("Closing DB connection pool {}", connectionPool.getStats());
+			connectionPool.close();
+			connectionPool = null;
+		}
+	}
+
+	public void setPoolMinSize(int poolMinSize) {
+		this.poolMinSize = poolMinSize;
+	}
+
+	public void setPoolMaxSize(int poolMaxSize) {
+		this.poolMaxSize = poolMaxSize;
+	}
+
+	public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+	}
+
+	public void setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+		this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
 	}
 
 	/**
-	 * Close database connection
+	 * Give a connection back to the pool
 	 * 
 	 * @param con Connection con
 	 */
 
 	public void closeConnection(Connection con) {
+		Transaction transaction = currentTransaction.get();
+		if (transaction != null && transaction.connection == con) {
+			return;
+		}
 		if (con != null) {
 			try {
 				con.close();
-				logger.info("Closing DB connection");
+				logger.info("Releasing DB connection");
 			} catch (SQLException e) {
 				logger.error("Error while closing connection", e);
 			}
@@ -82,4 +272,24 @@ public class DataBaseConfig {
 			}
 		}
 	}
+
+	private static final class Transaction {
+		private final Connection connection;
+		private final List<Runnable> afterCommit = new ArrayList<>();
+		private final List<Runnable> afterRollback = new ArrayList<>();
+
+		private Transaction(Connection connection) {
+			this.connection = connection;
+		}
+
+		private void completed(boolean committed) {
+			for (Runnable action : committed ? afterCommit : afterRollback) {
+				try {
+					action.run();
+				} catch (RuntimeException e) {
+					logger.error("Error while completing transaction", e);
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,185 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maps each parking lot to the schema holding its spots and tickets.
+ *
+ * Spot numbers are only unique within a lot, so every lot has a schema of its
+ * own, on any server. Lots on the same server still get their own connection
+ * pool, so a busy lot can not take the connections of a quiet one. A lot is
+ * added, or moved to another server, by editing its entries:
+ *
+ * <pre>
+ * lot.1.url=jdbc:mysql://db1:3306/lot_1?serverTimezone=UTC
+ * lot.1.user=parking
+ * lot.1.password=secret
+ * lot.1.poolMaxSize=20
+ * </pre>
+ *
+ * poolMaxSize is optional. Two lots are taken to share a schema when their
+ * urls name the same schema on the same host and port, whatever the
+ * parameters, the case or the default port left out; MySQL urls listing
+ * several hosts share a schema as soon as one host does.
+ *
+ */
+
+public class LotRouter {
+
+	private static final Logger logger = LogManager.getLogger("LotRouter");
+
+	private static final Pattern LOT_URL_KEY = Pattern.compile("lot\\.(\\d+)\\.url");
+	private static final Pattern MYSQL_URL = Pattern.compile(
+			"jdbc:(?:mysql|mariadb)(?::\\w+)?://(?:[^/?]*@)?([^/?]*)(?:/([^?;]*))?.*", Pattern.CASE_INSENSITIVE);
+	private static final int MYSQL_DEFAULT_PORT = 3306;
+
+	private final Map<Integer, DataBaseConfig> dataBaseConfigs;
+
+	/**
+	 * @param dataBaseConfigs schema of each lot
+	 */
+	public LotRouter(Map<Integer, DataBaseConfig> dataBaseConfigs) {
+		this.dataBaseConfigs = Collections.unmodifiableMap(new TreeMap<>(dataBaseConfigs));
+	}
+
+	/**
+	 * @param file properties file listing the schema of each lot
+	 * @return a router over the lots of the file
+	 * @throws IOException if the file can not be read
+	 */
+	public static LotRouter load(Path file) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		return fromProperties(properties);
+	}
+
+	/**
+	 * @param properties the url, user, password and optional poolMaxSize of
+	 *                   each lot
+	 * @return a router over the lots of the properties
+	 * @throws IllegalArgumentException if an entry is missing or two lots
+	 *                                  share a schema
+	 */
+	public static LotRouter fromProperties(Properties properties) {
+		Map<Integer, DataBaseConfig> dataBaseConfigs = new HashMap<>();
+		Map<String, Integer> lotsBySchema = new HashMap<>();
+		for (String key : properties.stringPropertyNames()) {
+			Matcher matcher = LOT_URL_KEY.matcher(key);
+			if (!matcher.matches()) {
+				continue;
+			}
+			int lotId = Integer.parseInt(matcher.group(1));
+			String url = properties.getProperty(key).trim();
+			for (String schema : schemasOf(url)) {
+				Integer sharingLot = lotsBySchema.put(schema, lotId);
+				if (sharingLot != null) {
+					throw new IllegalArgumentException(
+							"Lots " + sharingLot + " and " + lotId + " share the schema " + schema);
+				}
+			}
+			DataBaseConfig dataBaseConfig = new DataBaseConfig(url, required(properties, lotId, "user"),
+					required(properties, lotId, "password"));
+			String poolMaxSize = properties.getProperty("lot." + lotId + ".poolMaxSize");
+			if (poolMaxSize != null) {
+				dataBaseConfig.setPoolMaxSize(Integer.parseInt(poolMaxSize.trim()));
+			}
+			dataBaseConfigs.put(lotId, dataBaseConfig);
+		}
+		if (dataBaseConfigs.isEmpty()) {
+			throw new IllegalArgumentException("No lot.<id>.url entry found");
+		}
+		logger.info("Routing lots {}", dataBaseConfigs.keySet());
+		return new LotRouter(dataBaseConfigs);
+	}
+
+	/**
+	 * @param lotId parking lot
+	 * @return the configuration of the schema of the lot
+	 * @throws IllegalArgumentException if the lot is unknown
+	 */
+	public DataBaseConfig getDataBaseConfig(int lotId) {
+		DataBaseConfig dataBaseConfig = dataBaseConfigs.get(lotId);
+		if (dataBaseConfig == null) {
+			throw new IllegalArgumentException("Unknown lot " + lotId);
+		}
+		return dataBaseConfig;
+	}
+
+	/**
+	 * @return the lots, in ascending order
+	 */
+	public Set<Integer> getLotIds() {
+		return dataBaseConfigs.keySet();
+	}
+
+	/**
+	 * Close the connection pools of every lot
+	 */
+	public void shutdown() {
+		for (DataBaseConfig dataBaseConfig : dataBaseConfigs.values()) {
+			dataBaseConfig.shutdown();
+		}
+	}
+
+	/**
+	 * @return host:port/schema for each host of a MySQL url, in lower case
+	 *         as MySQL host names and, on most servers, schema names ignore
+	 *         case; the url itself for other databases
+	 */
+	private static List<String> schemasOf(String url) {
+		Matcher matcher = MYSQL_URL.matcher(url);
+		if (!matcher.matches()) {
+			return Collections.singletonList(url);
+		}
+		String schema = matcher.group(2) == null ? "" : matcher.group(2).toLowerCase(Locale.ROOT);
+		List<String> schemas = new ArrayList<>();
+		for (String host : matcher.group(1).split(",")) {
+			schemas.add(hostAndPort(host.trim().toLowerCase(Locale.ROOT)) + "/" + schema);
+		}
+		return schemas;
+	}
+
+	/**
+	 * The loopback addresses are one host, named localhost
+	 */
+	private static String hostAndPort(String host) {
+		int portStart = host.startsWith("[") ? host.indexOf("]:") + 1 : host.lastIndexOf(':');
+		int port = MYSQL_DEFAULT_PORT;
+		if (portStart > 0 && host.indexOf(':', portStart + 1) < 0 && portStart + 1 < host.length()) {
+			port = Integer.parseInt(host.substring(portStart + 1));
+			host = host.substring(0, portStart);
+		}
+		if (host.isEmpty() || host.equals("127.0.0.1") || host.equals("[::1]")) {
+			host = "localhost";
+		}
+		return host + ":" + port;
+	}
+
+	private static String required(Properties properties, int lotId, String name) {
+		String value = properties.getProperty("lot." + lotId + "." + name);
+		if (value == null) {
+			throw new IllegalArgumentException("Missing lot." + lotId + "." + name);
+		}
+		return value;
+	}
+}
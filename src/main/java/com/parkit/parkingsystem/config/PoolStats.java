@@ -0,0 +1,76 @@
+package com.parkit.parkingsystem.config;
+
+/**
+ * Point in time snapshot of the connection pool counters.
+ *
+ */
+
+public class PoolStats {
+	private final int totalConnections;
+	private final int idleConnections;
+	private final int activeConnections;
+	private final int pendingAcquires;
+	private final long createdConnections;
+	private final long destroyedConnections;
+	private final long acquiredConnections;
+	private final long acquireTimeouts;
+	private final long leakedConnections;
+
+	public PoolStats(int totalConnections, int idleConnections, int activeConnections, int pendingAcquires,
+			long createdConnections, long destroyedConnections, long acquiredConnections, long acquireTimeouts,
+			long leakedConnections) {
+		this.totalConnections = totalConnections;
+		this.idleConnections = idleConnections;
+		this.activeConnections = activeConnections;
+		this.pendingAcquires = pendingAcquires;
+		this.createdConnections = createdConnections;
+		this.destroyedConnections = destroyedConnections;
+		this.acquiredConnections = acquiredConnections;
+		this.acquireTimeouts = acquireTimeouts;
+		this.leakedConnections = leakedConnections;
+	}
+
+	public int getTotalConnections() {
+		return totalConnections;
+	}
+
+	public int getIdleConnections() {
+		return idleConnections;
+	}
+
+	public int getActiveConnections() {
+		return activeConnections;
+	}
+
+	public int getPendingAcquires() {
+		return pendingAcquires;
+	}
+
+	public long getCreatedConnections() {
+		return createdConnections;
+	}
+
+	public long getDestroyedConnections() {
+		return destroyedConnections;
+	}
+
+	public long getAcquiredConnections() {
+		return acquiredConnections;
+	}
+
+	public long getAcquireTimeouts() {
+		return acquireTimeouts;
+	}
+
+	public long getLeakedConnections() {
+		return leakedConnections;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolStats[total=" + totalConnections + ", idle=" + idleConnections + ", active=" + activeConnections
+				+ ", pending=" + pendingAcquires + ", created=" + createdConnections + ", destroyed="
+				+ destroyedConnections + ", acquired=" + acquiredConnections + ", timeouts=" + acquireTimeouts
+				+ ", leaks=" + leakedConnections + "]";
+	}
+}
@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks with EXPLAIN that the hot queries of DBConstants are served by the
+ * indexes created by the schema migrations rather than by full scans.
+ * Lookups by primary key, like those of the recurring_user summary, are not
+ * checked.
+ *
+ */
+
+public class QueryPlanChecker {
+
+	private static final Logger logger = LogManager.getLogger("QueryPlanChecker");
+
+	public static final String TICKET_PLATE_INDEX = "IDX_TICKET_PLATE";
+	public static final String PARKING_TYPE_AVAILABLE_INDEX = "IDX_PARKING_TYPE_AVAILABLE";
+
+	private static final HotQuery[] HOT_QUERIES = {
+			new HotQuery("GET_NEXT_PARKING_SPOT", DBConstants.GET_NEXT_PARKING_SPOT, "parking",
+					PARKING_TYPE_AVAILABLE_INDEX, "CAR"),
+			new HotQuery("GET_TICKET", DBConstants.GET_TICKET, "t", TICKET_PLATE_INDEX, "ABCDEF") };
+
+	private final DataBaseConfig dataBaseConfig;
+
+	public QueryPlanChecker(DataBaseConfig dataBaseConfig) {
+		this.dataBaseConfig = dataBaseConfig;
+	}
+
+	/**
+	 * Explain every hot query
+	 *
+	 * @return one message per query not using its index, empty when all do
+	 * @throws SQLException if a query can not be explained
+	 */
+	public List<String> check() throws SQLException {
+		List<String> violations = new ArrayList<>();
+		Connection con = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			for (HotQuery hotQuery : HOT_QUERIES) {
+				String usedKey = explain(con, hotQuery);
+				if (!hotQuery.index.equalsIgnoreCase(usedKey)) {
+					violations.add(hotQuery.name + " reads table " + hotQuery.table + " with key " + usedKey
+							+ " instead of " + hotQuery.index);
+				}
+			}
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("Unable to check query plans", e);
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+		for (String violation : violations) {
+			logger.warn("Query plan check failed: {}", violation);
+		}
+		return violations;
+	}
+
+	private String explain(Connection con, HotQuery hotQuery) throws SQLException {
+		try (PreparedStatement ps = con.prepareStatement("explain " + hotQuery.sql)) {
+			ps.setString(1, hotQuery.parameter);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					if (hotQuery.table.equals(rs.getString("table"))) {
+						return rs.getString("key");
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private static final class HotQuery {
+		private final String name;
+		private final String sql;
+		private final String table;
+		private final String index;
+		private final String parameter;
+
+		private HotQuery(String name, String sql, String table, String index, String parameter) {
+			this.name = name;
+			this.sql = sql;
+			this.table = table;
+			this.index = index;
+			this.parameter = parameter;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date at startup.
+ *
+ * Migrations are SQL scripts under db/migration on the classpath, named
+ * V[version]__[description].sql and listed in MIGRATIONS. The schema_version
+ * table records which versions have been applied; pending ones run in version
+ * order. MySQL commits DDL statements implicitly, so a migration that fails
+ * half way has to be fixed by hand before the next start.
+ *
+ */
+
+public class SchemaMigrator {
+
+	private static final Logger logger = LogManager.getLogger("SchemaMigrator");
+
+	private static final String MIGRATION_LOCATION = "db/migration/";
+
+	/**
+	 * Every migration, oldest first
+	 */
+	static final String[] MIGRATIONS = { "V1__create_tables.sql", "V2__hot_query_indexes.sql",
+			"V3__ticket_history.sql", "V4__reservations.sql", "V5__ticket_updated_at.sql" };
+
+	private static final String CREATE_SCHEMA_VERSION = "create table if not exists schema_version("
+			+ "VERSION int PRIMARY KEY, DESCRIPTION varchar(100) NOT NULL, INSTALLED_ON DATETIME NOT NULL)";
+	private static final String GET_SCHEMA_VERSION = "select max(VERSION) from schema_version";
+	private static final String SAVE_SCHEMA_VERSION = "insert into schema_version(VERSION, DESCRIPTION, INSTALLED_ON) values(?,?,now())";
+
+	private final DataBaseConfig dataBaseConfig;
+
+	public SchemaMigrator(DataBaseConfig dataBaseConfig) {
+		this.dataBaseConfig = dataBaseConfig;
+	}
+
+	/**
+	 * Apply every migration newer than the current schema version
+	 *
+	 * @return the schema version after migrating
+	 * @throws SQLException if a migration fails
+	 */
+	public int migrate() throws SQLException {
+		Connection con = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			try (Statement statement = con.createStatement()) {
+				statement.execute(CREATE_SCHEMA_VERSION);
+			}
+			int currentVersion = getCurrentVersion(con);
+			for (String migration : MIGRATIONS) {
+				int version = versionOf(migration);
+				if (version > currentVersion) {
+					apply(con, migration, version);
+					currentVersion = version;
+				}
+			}
+			logger.info("Database schema is at version {}", currentVersion);
+			return currentVersion;
+		} catch (ClassNotFoundException | IOException e) {
+			throw new SQLException("Unable to migrate database schema", e);
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+	}
+
+	private int getCurrentVersion(Connection con) throws SQLException {
+		try (PreparedStatement ps = con.prepareStatement(GET_SCHEMA_VERSION); ResultSet rs = ps.executeQuery()) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+
+	private void apply(Connection con, String migration, int version) throws SQLException, IOException {
+		logger.info("Applying schema migration {}", migration);
+		try (Statement statement = con.createStatement()) {
+			for (String sql : readStatements(MIGRATION_LOCATION + migration)) {
+				statement.execute(sql);
+			}
+		}
+		try (PreparedStatement ps = con.prepareStatement(SAVE_SCHEMA_VERSION)) {
+			ps.setInt(1, version);
+			ps.setString(2, descriptionOf(migration));
+			ps.execute();
+		}
+	}
+
+	static int versionOf(String migration) {
+		return Integer.parseInt(migration.substring(1, migration.indexOf("__")));
+	}
+
+	private static String descriptionOf(String migration) {
+		return migration.substring(migration.indexOf("__") + 2, migration.lastIndexOf('.')).replace('_', ' ');
+	}
+
+	/**
+	 * Split a script on semicolons, dropping comments
+	 */
+	static List<String> readStatements(String resource) throws IOException {
+		InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(resource);
+		if (in == null) {
+			throw new IOException("Missing migration " + resource);
+		}
+		List<String> statements = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			boolean inComment = false;
+			while ((line = reader.readLine()) != null) {
+				String trimmed = line.trim();
+				if (inComment || trimmed.startsWith("/*")) {
+					inComment = !trimmed.endsWith("*/");
+					continue;
+				}
+				if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+					continue;
+				}
+				current.append(line).append('\n');
+				if (trimmed.endsWith(";")) {
+					statements.add(current.substring(0, current.lastIndexOf(";")).trim());
+					current.setLength(0);
+				}
+			}
+		}
+		if (current.toString().trim().length() > 0) {
+			statements.add(current.toString().trim());
+		}
+		return statements;
+	}
+}
@@ -0,0 +1,40 @@
+package com.parkit.parkingsystem.config;
+
+/**
+ * Runs a unit of work so that every DAO call made from it shares one
+ * connection and one transaction.
+ *
+ */
+
+public interface TransactionManager {
+
+	/**
+	 * Work to run inside a transaction.
+	 *
+	 * @param <T> result of the work
+	 */
+	interface UnitOfWork<T> {
+		T execute() throws Exception;
+	}
+
+	/**
+	 * Runs the work directly, each DAO call using its own connection.
+	 */
+	TransactionManager NONE = new TransactionManager() {
+		@Override
+		public <T> T inTransaction(UnitOfWork<T> work) throws Exception {
+			return work.execute();
+		}
+	};
+
+	/**
+	 * Run the work in a transaction. The transaction is committed when the work
+	 * returns and rolled back when it throws. A call made while a transaction
+	 * is already running joins it.
+	 *
+	 * @param work the unit of work
+	 * @return what the work returned
+	 * @throws Exception what the work threw
+	 */
+	<T> T inTransaction(UnitOfWork<T> work) throws Exception;
+}
@@ -9,12 +9,49 @@ package com.parkit.parkingsystem.constants;
 public class DBConstants {
 
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, TYPE, AVAILABLE from parking";
+    public static final String GET_PARKING_SPOTS_AVAILABILITY = "select p.PARKING_NUMBER, p.TYPE, p.AVAILABLE and not exists"
+            + " (select 1 from ticket t where t.PARKING_NUMBER = p.PARKING_NUMBER and t.OUT_TIME is null) from parking p";
+    public static final String COUNT_PARKING_SPOTS = "select TYPE, count(*), sum(case when AVAILABLE then 1 else 0 end) from parking group by TYPE";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String CLAIM_PARKING_SPOT = "update parking set available = false where PARKING_NUMBER = ? and AVAILABLE = true";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
-    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
-    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME  limit 1";
-    public static final String RECURRING_USERS = "select count(*) from ticket t where t.VEHICLE_REG_NUMBER = ? and OUT_TIME is not null";
+    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=? and OUT_TIME is null";
+    public static final String SAVE_TICKET_IF_NONE_OPEN = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)"
+            + " select ?,?,?,?,? from dual where not exists"
+            + " (select 1 from ticket o where o.VEHICLE_REG_NUMBER = ? and o.OUT_TIME is null)";
+    public static final String CLOSE_OPEN_TICKET = "update ticket set PRICE=?, OUT_TIME=? where VEHICLE_REG_NUMBER=? and OUT_TIME is null";
+    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE,"
+            + " coalesce((select u.CLOSED_TICKETS from recurring_user u where u.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER), 0)"
+            + " from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME desc limit 1";
+    public static final String GET_OPEN_TICKETS = "select t.PARKING_NUMBER, t.ID, t.VEHICLE_REG_NUMBER, t.IN_TIME, p.TYPE,"
+            + " coalesce((select u.CLOSED_TICKETS from recurring_user u where u.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER), 0)"
+            + " from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME is null";
+    public static final String RECURRING_USERS = "select CLOSED_TICKETS > 0 from recurring_user where VEHICLE_REG_NUMBER = ?";
+    public static final String GET_RECURRING_PLATES = "select VEHICLE_REG_NUMBER from recurring_user where CLOSED_TICKETS > 0";
+    public static final String SAVE_CLOSED_TICKET = "insert into recurring_user(VEHICLE_REG_NUMBER, CLOSED_TICKETS, LAST_OUT_TIME) values(?,1,?)"
+            + " on duplicate key update CLOSED_TICKETS = CLOSED_TICKETS + 1, LAST_OUT_TIME = greatest(LAST_OUT_TIME, values(LAST_OUT_TIME))";
+
+    public static final String GET_ARCHIVABLE_TICKETS = "select ID from ticket where OUT_TIME < ? order by OUT_TIME limit ?";
+    public static final String ARCHIVE_TICKET = "insert into ticket_history(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME, UPDATED_AT)"
+            + " select ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME, UPDATED_AT from ticket where ID = ?";
+    public static final String DELETE_TICKET = "delete from ticket where ID = ?";
+    public static final String GET_CLOSED_TICKETS = "select t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t, parking p"
+            + " where p.PARKING_NUMBER = t.PARKING_NUMBER and t.OUT_TIME is not null and t.UPDATED_AT > ? and t.UPDATED_AT <= ?"
+            + " union all select h.PRICE, h.IN_TIME, h.OUT_TIME, p.TYPE from ticket_history h, parking p"
+            + " where p.PARKING_NUMBER = h.PARKING_NUMBER and h.UPDATED_AT > ? and h.UPDATED_AT <= ?";
+    public static final String GET_DATABASE_TIME = "select current_timestamp(3)";
+    public static final String GET_HISTORY_PARTITIONS = "select PARTITION_NAME from information_schema.PARTITIONS"
+            + " where TABLE_SCHEMA = database() and TABLE_NAME = 'ticket_history'";
+
+    public static final String GET_NEXT_UNRESERVED_PARKING_SPOT = "select min(p.PARKING_NUMBER) from parking p where p.AVAILABLE = true and p.TYPE = ?"
+            + " and not exists (select 1 from reservation r where r.PARKING_NUMBER = p.PARKING_NUMBER and r.START_TIME < ? and r.END_TIME > ?)";
+    public static final String GET_RESERVATIONS = "select r.ID, r.PARKING_NUMBER, p.TYPE, r.VEHICLE_REG_NUMBER, r.START_TIME, r.END_TIME"
+            + " from reservation r, parking p where p.PARKING_NUMBER = r.PARKING_NUMBER and r.END_TIME > ?";
+    public static final String SAVE_RESERVATION = "insert into reservation(PARKING_NUMBER, VEHICLE_REG_NUMBER, START_TIME, END_TIME) values(?,?,?,?)";
+    public static final String DELETE_RESERVATION = "delete from reservation where ID = ?";
+    public static final String DELETE_PAST_RESERVATIONS = "delete from reservation where END_TIME <= ?";
 
     private DBConstants() {
 
@@ -3,12 +3,15 @@ package com.parkit.parkingsystem.constants;
 /**
  * 
  * @author Dave Discamps this class contains both bike or car for one hour and
- *         reduc.
+ *         reduc. They are the defaults of the entries missing from the
+ *         Tariffs.
  *
  */
 public class Fare {
     public static final double BIKE_RATE_PER_HOUR = 1.0;
     public static final double CAR_RATE_PER_HOUR = 1.5;
+    public static final double RECURRING_USER_REDUCTION = 0.95;
+    public static final long FREE_PARKING_SECONDS = 30 * 60;
 
     public static double roundedFare(double price) {
 	return (double) Math.round(price * 100) / 100;
@@ -0,0 +1,480 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Storage engine keeping the spots and tickets in memory, for sites running
+ * without a database server.
+ *
+ * Spots live in arrays indexed by spot number and their availability in a
+ * FreeSpotIndex. Tickets live in parallel primitive arrays indexed by ticket
+ * id. Plates are found through an open addressing table of ticket ids, so
+ * no map entry or boxed key is allocated per plate.
+ *
+ * When opened on a file, every change is appended to it as a journal record
+ * before the call returns and the file is replayed on the next open. The
+ * records are flushed to the operating system, not synced to the disk: a
+ * process crash loses nothing, a power cut may lose the last changes. The
+ * journal is compacted to one record per spot and per ticket at each open.
+ *
+ */
+
+public class EmbeddedParkingStore implements ParkingSpotStore, TicketStore, AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger("EmbeddedParkingStore");
+
+	private static final byte SPOT_RECORD = 1;
+	private static final byte AVAILABILITY_RECORD = 2;
+	private static final byte TICKET_SAVED_RECORD = 3;
+	private static final byte TICKET_PAID_RECORD = 4;
+
+	private static final long NO_OUT_TIME = Long.MIN_VALUE;
+	private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final FreeSpotIndex freeSpotIndex = new FreeSpotIndex();
+
+	/**
+	 * type of every spot, indexed by spot number, null for unknown numbers
+	 */
+	private ParkingType[] spotTypes = new ParkingType[16];
+	private int spotCount;
+
+	/**
+	 * tickets, indexed by ticket id starting at 1
+	 */
+	private int ticketCount;
+	private int[] ticketSpots = new int[64];
+	private String[] ticketPlates = new String[64];
+	private long[] ticketInTimes = new long[64];
+	private long[] ticketOutTimes = new long[64];
+	private double[] ticketPrices = new double[64];
+
+	/**
+	 * plate table: latest ticket id of a plate, 0 for an empty slot, and
+	 * whether the plate already has a paid ticket
+	 */
+	private int[] plateTickets = new int[64];
+	private boolean[] plateRecurring = new boolean[64];
+	private int plateCount;
+
+	private final Path file;
+	private DataOutputStream journal;
+
+	private EmbeddedParkingStore(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return a store kept in memory only
+	 */
+	public static EmbeddedParkingStore inMemory() {
+		return new EmbeddedParkingStore(null);
+	}
+
+	/**
+	 * Open a store persisted in a file, replaying what the file holds
+	 *
+	 * @param file journal file, created when missing
+	 * @return the store
+	 * @throws IOException if the file can not be read or written
+	 */
+	public static EmbeddedParkingStore open(Path file) throws IOException {
+		EmbeddedParkingStore store = new EmbeddedParkingStore(file);
+		if (Files.exists(file)) {
+			store.replay();
+		}
+		store.compact();
+		store.journal = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+		logger.info("Opened {} with {} spots and {} tickets", file, store.spotCount, store.ticketCount);
+		return store;
+	}
+
+	/**
+	 * Add a free spot, or do nothing if a spot has that number already
+	 *
+	 * @param number      spot number, from 1
+	 * @param parkingType type of the spot
+	 * @return true when the spot has been added
+	 */
+	public boolean addParkingSpot(int number, ParkingType parkingType) {
+		if (number <= 0) {
+			throw new IllegalArgumentException("Spot number must be positive, got " + number);
+		}
+		lock.writeLock().lock();
+		try {
+			if (number < spotTypes.length && spotTypes[number] != null) {
+				return false;
+			}
+			applySpot(number, parkingType, true);
+			append(out -> {
+				out.writeByte(SPOT_RECORD);
+				out.writeInt(number);
+				out.writeByte(parkingType.ordinal());
+				out.writeBoolean(true);
+			});
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of spots of every type
+	 */
+	public int countParkingSpots() {
+		lock.readLock().lock();
+		try {
+			return spotCount;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int getNextAvailableSlot(ParkingType parkingType) {
+		return freeSpotIndex.nextFreeSpot(parkingType);
+	}
+
+	@Override
+	public boolean updateParking(ParkingSpot parkingSpot) {
+		int number = parkingSpot.getId();
+		boolean available = parkingSpot.isAvailable();
+		lock.writeLock().lock();
+		try {
+			if (!isSpot(number, parkingSpot.getParkingType())) {
+				logger.error("Unknown {} spot {}", parkingSpot.getParkingType(), number);
+				return false;
+			}
+			freeSpotIndex.setAvailable(number, spotTypes[number], available);
+			appendAvailability(number, available);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean claimParkingSpot(ParkingSpot parkingSpot) {
+		int number = parkingSpot.getId();
+		lock.writeLock().lock();
+		try {
+			if (!isSpot(number, parkingSpot.getParkingType())
+					|| !freeSpotIndex.claim(number, parkingSpot.getParkingType())) {
+				return false;
+			}
+			appendAvailability(number, false);
+			parkingSpot.setAvailable(false);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean saveTicket(Ticket ticket) {
+		String plate = ticket.getVehicleRegNumber();
+		int number = ticket.getParkingSpot().getId();
+		long inTime = ticket.getInTime().getTime();
+		long outTime = ticket.getOutTime() == null ? NO_OUT_TIME : ticket.getOutTime().getTime();
+		double price = ticket.getPrice();
+		lock.writeLock().lock();
+		try {
+			if (!isSpot(number, ticket.getParkingSpot().getParkingType())) {
+				logger.error("Unknown {} spot {}", ticket.getParkingSpot().getParkingType(), number);
+				return false;
+			}
+			int latest = plateTickets[plateSlot(plate)];
+			if (latest != 0 && ticketOutTimes[latest] == NO_OUT_TIME) {
+				logger.error("Vehicle {} already has open ticket {}", plate, latest);
+				return false;
+			}
+			int id = ticketCount + 1;
+			applyTicket(id, number, plate, inTime, outTime, price);
+			append(out -> {
+				out.writeByte(TICKET_SAVED_RECORD);
+				out.writeInt(id);
+				out.writeInt(number);
+				out.writeUTF(plate);
+				out.writeLong(inTime);
+				out.writeLong(outTime);
+				out.writeDouble(price);
+			});
+			ticket.setId(id);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the open ticket of a vehicle, null once it has left
+	 */
+	@Override
+	public Ticket getTicket(String vehicleRegNumber) {
+		lock.readLock().lock();
+		try {
+			int slot = plateSlot(vehicleRegNumber);
+			int id = plateTickets[slot];
+			if (id == 0 || ticketOutTimes[id] != NO_OUT_TIME) {
+				return null;
+			}
+			int number = ticketSpots[id];
+			Ticket ticket = new Ticket();
+			ticket.setParkingSpot(new ParkingSpot(number, spotTypes[number], false));
+			ticket.setId(id);
+			ticket.setVehicleRegNumber(vehicleRegNumber);
+			ticket.setPrice(ticketPrices[id]);
+			ticket.setInTime(new Date(ticketInTimes[id]));
+			ticket.setUserRecurring(plateRecurring[slot]);
+			return ticket;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean updateTicket(Ticket ticket) {
+		int id = ticket.getId();
+		long outTime = ticket.getOutTime().getTime();
+		double price = ticket.getPrice();
+		lock.writeLock().lock();
+		try {
+			if (id <= 0 || id > ticketCount || !ticketPlates[id].equals(ticket.getVehicleRegNumber())) {
+				logger.error("Unknown ticket {} for vehicle {}", id, ticket.getVehicleRegNumber());
+				return false;
+			}
+			if (ticketOutTimes[id] != NO_OUT_TIME) {
+				logger.error("Ticket {} of vehicle {} is already paid", id, ticket.getVehicleRegNumber());
+				return false;
+			}
+			applyPaid(id, outTime, price);
+			append(out -> {
+				out.writeByte(TICKET_PAID_RECORD);
+				out.writeInt(id);
+				out.writeLong(outTime);
+				out.writeDouble(price);
+			});
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public Boolean recurringUsers(String vehicleRegNumber) {
+		lock.readLock().lock();
+		try {
+			return plateRecurring[plateSlot(vehicleRegNumber)];
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Flush and close the journal file
+	 */
+	@Override
+	public void close() {
+		lock.writeLock().lock();
+		try {
+			if (journal != null) {
+				journal.close();
+				journal = null;
+			}
+		} catch (IOException e) {
+			logger.error("Error closing {}", file, e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private boolean isSpot(int number, ParkingType parkingType) {
+		return number > 0 && number < spotTypes.length && spotTypes[number] == parkingType;
+	}
+
+	private void applySpot(int number, ParkingType parkingType, boolean available) {
+		if (number >= spotTypes.length) {
+			spotTypes = Arrays.copyOf(spotTypes, Math.max(number + 1, spotTypes.length * 2));
+		}
+		if (spotTypes[number] == null) {
+			spotCount++;
+		}
+		spotTypes[number] = parkingType;
+		freeSpotIndex.setAvailable(number, parkingType, available);
+	}
+
+	private void applyTicket(int id, int number, String plate, long inTime, long outTime, double price) {
+		if (id >= ticketSpots.length) {
+			int capacity = ticketSpots.length * 2;
+			ticketSpots = Arrays.copyOf(ticketSpots, capacity);
+			ticketPlates = Arrays.copyOf(ticketPlates, capacity);
+			ticketInTimes = Arrays.copyOf(ticketInTimes, capacity);
+			ticketOutTimes = Arrays.copyOf(ticketOutTimes, capacity);
+			ticketPrices = Arrays.copyOf(ticketPrices, capacity);
+		}
+		ticketCount = Math.max(ticketCount, id);
+		ticketSpots[id] = number;
+		ticketPlates[id] = plate;
+		ticketInTimes[id] = inTime;
+		ticketOutTimes[id] = outTime;
+		ticketPrices[id] = price;
+		int slot = plateSlot(plate);
+		if (plateTickets[slot] == 0) {
+			plateCount++;
+		}
+		plateTickets[slot] = id;
+		plateRecurring[slot] |= outTime != NO_OUT_TIME;
+		if (plateCount * 2 > plateTickets.length) {
+			resizePlates();
+		}
+	}
+
+	private void applyPaid(int id, long outTime, double price) {
+		ticketOutTimes[id] = outTime;
+		ticketPrices[id] = price;
+		plateRecurring[plateSlot(ticketPlates[id])] = true;
+	}
+
+	/**
+	 * Linear probing for the slot of a plate, or for the empty slot it would
+	 * take
+	 */
+	private int plateSlot(String plate) {
+		int mask = plateTickets.length - 1;
+		int slot = mix(plate.hashCode()) & mask;
+		while (plateTickets[slot] != 0 && !ticketPlates[plateTickets[slot]].equals(plate)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void resizePlates() {
+		int[] oldTickets = plateTickets;
+		boolean[] oldRecurring = plateRecurring;
+		plateTickets = new int[oldTickets.length * 2];
+		plateRecurring = new boolean[oldTickets.length * 2];
+		for (int i = 0; i < oldTickets.length; i++) {
+			if (oldTickets[i] != 0) {
+				int slot = plateSlot(ticketPlates[oldTickets[i]]);
+				plateTickets[slot] = oldTickets[i];
+				plateRecurring[slot] = oldRecurring[i];
+			}
+		}
+	}
+
+	private static int mix(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private interface JournalRecord {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private void append(JournalRecord record) {
+		if (journal == null) {
+			return;
+		}
+		try {
+			record.write(journal);
+			journal.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to write to " + file, e);
+		}
+	}
+
+	private void appendAvailability(int number, boolean available) {
+		append(out -> {
+			out.writeByte(AVAILABILITY_RECORD);
+			out.writeInt(number);
+			out.writeBoolean(available);
+		});
+	}
+
+	private void replay() throws IOException {
+		long records = 0;
+		try (InputStream in = Files.newInputStream(file);
+				DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+			int tag;
+			while ((tag = data.read()) >= 0) {
+				try {
+					readRecord((byte) tag, data);
+				} catch (EOFException e) {
+					logger.warn("Ignoring a truncated record at the end of {}", file);
+					break;
+				}
+				records++;
+			}
+		}
+		logger.debug("Replayed {} records from {}", records, file);
+	}
+
+	private void readRecord(byte tag, DataInputStream in) throws IOException {
+		switch (tag) {
+		case SPOT_RECORD:
+			applySpot(in.readInt(), PARKING_TYPES[in.readByte()], in.readBoolean());
+			break;
+		case AVAILABILITY_RECORD:
+			int number = in.readInt();
+			freeSpotIndex.setAvailable(number, spotTypes[number], in.readBoolean());
+			break;
+		case TICKET_SAVED_RECORD:
+			applyTicket(in.readInt(), in.readInt(), in.readUTF(), in.readLong(), in.readLong(), in.readDouble());
+			break;
+		case TICKET_PAID_RECORD:
+			applyPaid(in.readInt(), in.readLong(), in.readDouble());
+			break;
+		default:
+			throw new IOException("Unknown record " + tag + " in " + file);
+		}
+	}
+
+	/**
+	 * Rewrite the file with the current state only and swap it in
+	 */
+	private void compact() throws IOException {
+		Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compacted)))) {
+			for (int number = 1; number < spotTypes.length; number++) {
+				if (spotTypes[number] != null) {
+					out.writeByte(SPOT_RECORD);
+					out.writeInt(number);
+					out.writeByte(spotTypes[number].ordinal());
+					out.writeBoolean(freeSpotIndex.isAvailable(number, spotTypes[number]));
+				}
+			}
+			for (int id = 1; id <= ticketCount; id++) {
+				out.writeByte(TICKET_SAVED_RECORD);
+				out.writeInt(id);
+				out.writeInt(ticketSpots[id]);
+				out.writeUTF(ticketPlates[id]);
+				out.writeLong(ticketInTimes[id]);
+				out.writeLong(ticketOutTimes[id]);
+				out.writeDouble(ticketPrices[id]);
+			}
+		}
+		Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
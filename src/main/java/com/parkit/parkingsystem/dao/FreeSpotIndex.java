@@ -0,0 +1,162 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.allocation.LowestNumberAllocator;
+import com.parkit.parkingsystem.allocation.SpotAllocator;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * In memory index of the free parking spots, one SpotAllocator per parking
+ * type. The allocator decides which free spot is handed out next; by
+ * default the lowest number, the spot GET_NEXT_PARKING_SPOT would return, so
+ * the lowest-number-first order is kept without a DB round trip.
+ *
+ */
+
+public class FreeSpotIndex {
+
+	private static final IntPredicate ANY_SPOT = number -> true;
+
+	private final Map<ParkingType, SpotAllocator> freeSpots = new EnumMap<>(ParkingType.class);
+
+	public FreeSpotIndex() {
+		this(LowestNumberAllocator::new);
+	}
+
+	/**
+	 * @param allocators gives a new allocator for each parking type
+	 */
+	public FreeSpotIndex(Supplier<SpotAllocator> allocators) {
+		for (ParkingType parkingType : ParkingType.values()) {
+			freeSpots.put(parkingType, allocators.get());
+		}
+	}
+
+	/**
+	 * Get the free spot of a type to hand out next
+	 * 
+	 * @param parkingType type of the spot
+	 * @return spot number, 0 when every spot of that type is taken
+	 */
+
+	public int nextFreeSpot(ParkingType parkingType) {
+		return nextFreeSpot(parkingType, ANY_SPOT);
+	}
+
+	/**
+	 * Get the free spot of a type to hand out next among the eligible ones
+	 * 
+	 * @param parkingType type of the spot
+	 * @param eligible    the spots the caller accepts
+	 * @return spot number, 0 when no eligible spot of that type is free
+	 */
+
+	public int nextFreeSpot(ParkingType parkingType, IntPredicate eligible) {
+		SpotAllocator spots = freeSpots.get(parkingType);
+		synchronized (spots) {
+			return spots.nextSpot(eligible);
+		}
+	}
+
+	/**
+	 * Record the availability of a spot
+	 * 
+	 * @param number      spot number
+	 * @param parkingType type of the spot
+	 * @param available   true when the spot is free
+	 */
+
+	public void setAvailable(int number, ParkingType parkingType, boolean available) {
+		SpotAllocator spots = freeSpots.get(parkingType);
+		synchronized (spots) {
+			if (available) {
+				spots.spotFreed(number);
+			} else {
+				spots.spotTaken(number);
+			}
+		}
+	}
+
+	/**
+	 * Record the availability of a spot and get the one it replaces, in one
+	 * step so concurrent changes of the spot each see the previous one
+	 * 
+	 * @param number      spot number
+	 * @param parkingType type of the spot
+	 * @param available   true when the spot is free
+	 * @return true when the spot was free
+	 */
+
+	public boolean swapAvailable(int number, ParkingType parkingType, boolean available) {
+		SpotAllocator spots = freeSpots.get(parkingType);
+		synchronized (spots) {
+			boolean previous = spots.isFree(number);
+			if (available) {
+				spots.spotFreed(number);
+			} else {
+				spots.spotTaken(number);
+			}
+			return previous;
+		}
+	}
+
+	/**
+	 * @param number      spot number
+	 * @param parkingType type of the spot
+	 * @return true when the spot is free
+	 */
+
+	public boolean isAvailable(int number, ParkingType parkingType) {
+		SpotAllocator spots = freeSpots.get(parkingType);
+		synchronized (spots) {
+			return spots.isFree(number);
+		}
+	}
+
+	/**
+	 * Atomically take a spot out of the free set
+	 * 
+	 * @param number      spot number
+	 * @param parkingType type of the spot
+	 * @return true when the spot was free and is now taken by the caller
+	 */
+
+	public boolean claim(int number, ParkingType parkingType) {
+		SpotAllocator spots = freeSpots.get(parkingType);
+		synchronized (spots) {
+			if (!spots.isFree(number)) {
+				return false;
+			}
+			spots.spotTaken(number);
+			return true;
+		}
+	}
+
+	/**
+	 * @param parkingType type of the spot
+	 * @return number of free spots of that type
+	 */
+
+	public int countFreeSpots(ParkingType parkingType) {
+		SpotAllocator spots = freeSpots.get(parkingType);
+		synchronized (spots) {
+			return spots.countFreeSpots();
+		}
+	}
+
+	/**
+	 * Forget every spot, used before reloading the index
+	 */
+
+	public void clear() {
+		for (SpotAllocator spots : freeSpots.values()) {
+			synchronized (spots) {
+				spots.clear();
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,324 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects single row writes from many gate threads and flushes them together:
+ * writes sharing the same SQL go out as one JDBC batch and the whole group is
+ * committed in one transaction, so the database syncs its log once per group
+ * instead of once per write.
+ *
+ * A group is flushed when the first write in it has waited the commit window
+ * or when the group reaches the maximum batch size. Each caller gets a future
+ * completed with its update count once the group is committed.
+ *
+ * A write may carry a follow-up write, run in the same transaction only when
+ * the first one updated a row, for changes that must commit together.
+ *
+ */
+
+public class GroupCommitWriter {
+
+	/**
+	 * Sets the parameters of one write on the shared statement.
+	 */
+	public interface StatementBinder {
+		void bind(PreparedStatement ps) throws SQLException;
+	}
+
+	private static final Logger logger = LogManager.getLogger("GroupCommitWriter");
+
+	private static final long IDLE_POLL_MILLIS = 100;
+
+	private final DataBaseConfig dataBaseConfig;
+	private final long commitWindowMillis;
+	private final int maxBatchSize;
+	private final BlockingQueue<PendingWrite> pendingWrites = new LinkedBlockingQueue<>();
+	private final Thread flusher;
+	private volatile boolean running = true;
+
+	/**
+	 * held while queueing a write and while closing, so no write can be
+	 * queued once close has drained the queue
+	 */
+	private final Object queueLock = new Object();
+
+	/**
+	 * @param dataBaseConfig     where the writes go
+	 * @param commitWindowMillis how long a write may wait for others to join
+	 *                           its group
+	 * @param maxBatchSize       number of writes that triggers a flush right
+	 *                           away
+	 */
+	public GroupCommitWriter(DataBaseConfig dataBaseConfig, long commitWindowMillis, int maxBatchSize) {
+		this.dataBaseConfig = dataBaseConfig;
+		this.commitWindowMillis = commitWindowMillis;
+		this.maxBatchSize = maxBatchSize;
+		this.flusher = new Thread(this::flushLoop, "group-commit-writer");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Queue a write for the next group.
+	 *
+	 * @param sql    statement to run
+	 * @param binder sets the statement parameters
+	 * @return completed with the update count when the write is committed
+	 */
+	public CompletableFuture<Integer> submit(String sql, StatementBinder binder) {
+		return submit(new PendingWrite(sql, binder, null));
+	}
+
+	/**
+	 * Queue a write and its follow-up for the next group. The follow-up only
+	 * runs when the write updates exactly one row, and commits or fails with
+	 * it.
+	 *
+	 * @param sql            statement to run
+	 * @param binder         sets the statement parameters
+	 * @param followUpSql    statement to run after it
+	 * @param followUpBinder sets the follow-up statement parameters
+	 * @return completed with the update count of the first write when both are
+	 *         committed
+	 */
+	public CompletableFuture<Integer> submit(String sql, StatementBinder binder, String followUpSql,
+			StatementBinder followUpBinder) {
+		return submit(new PendingWrite(sql, binder, new PendingWrite(followUpSql, followUpBinder, null)));
+	}
+
+	private CompletableFuture<Integer> submit(PendingWrite write) {
+		synchronized (queueLock) {
+			if (!running) {
+				write.durable.completeExceptionally(new IllegalStateException("Group commit writer is closed"));
+				return write.durable;
+			}
+			pendingWrites.add(write);
+		}
+		return write.durable;
+	}
+
+	/**
+	 * Queue a write and wait until it is committed.
+	 *
+	 * @param sql    statement to run
+	 * @param binder sets the statement parameters
+	 * @return the update count of the write
+	 * @throws SQLException if the write could not be committed
+	 */
+	public int write(String sql, StatementBinder binder) throws SQLException {
+		return await(submit(sql, binder));
+	}
+
+	/**
+	 * Queue a write and its follow-up and wait until both are committed.
+	 *
+	 * @param sql            statement to run
+	 * @param binder         sets the statement parameters
+	 * @param followUpSql    statement to run when the first one updates a row
+	 * @param followUpBinder sets the follow-up statement parameters
+	 * @return the update count of the first write
+	 * @throws SQLException if the writes could not be committed
+	 */
+	public int write(String sql, StatementBinder binder, String followUpSql, StatementBinder followUpBinder)
+			throws SQLException {
+		return await(submit(sql, binder, followUpSql, followUpBinder));
+	}
+
+	private static int await(CompletableFuture<Integer> durable) throws SQLException {
+		try {
+			return durable.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			throw new SQLException("Group commit failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Flush what is queued and stop the background thread. Writes submitted
+	 * afterwards fail at once.
+	 */
+	public void close() {
+		synchronized (queueLock) {
+			running = false;
+		}
+		try {
+			flusher.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		List<PendingWrite> remaining = new ArrayList<>();
+		pendingWrites.drainTo(remaining);
+		if (!remaining.isEmpty()) {
+			flush(remaining);
+		}
+	}
+
+	private void flushLoop() {
+		List<PendingWrite> group = new ArrayList<>(maxBatchSize);
+		while (running) {
+			try {
+				PendingWrite first = pendingWrites.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				group.add(first);
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(commitWindowMillis);
+				while (group.size() < maxBatchSize) {
+					PendingWrite next = pendingWrites.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					group.add(next);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				synchronized (queueLock) {
+					running = false;
+				}
+			}
+			if (!group.isEmpty()) {
+				flush(group);
+				group = new ArrayList<>(maxBatchSize);
+			}
+		}
+	}
+
+	private void flush(List<PendingWrite> group) {
+		Connection con = null;
+		boolean committed = false;
+		try {
+			con = dataBaseConfig.getConnection();
+			con.setAutoCommit(false);
+			Map<PendingWrite, Integer> updateCounts = new LinkedHashMap<>();
+			executeBatches(con, group, updateCounts);
+			List<PendingWrite> followUps = new ArrayList<>();
+			for (Map.Entry<PendingWrite, Integer> result : updateCounts.entrySet()) {
+				if (result.getKey().followUp != null && result.getValue() == 1) {
+					followUps.add(result.getKey().followUp);
+				}
+			}
+			executeBatches(con, followUps, new LinkedHashMap<>());
+			con.commit();
+			for (Map.Entry<PendingWrite, Integer> result : updateCounts.entrySet()) {
+				result.getKey().durable.complete(result.getValue());
+			}
+			committed = true;
+			logger.debug("Committed a group of {} writes", group.size());
+		} catch (Exception ex) {
+			logger.error("Error committing a group of {} writes, retrying them one by one", group.size(), ex);
+			rollback(con);
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+		if (!committed) {
+			for (PendingWrite write : group) {
+				flushAlone(write);
+			}
+		}
+	}
+
+	private void executeBatches(Connection con, List<PendingWrite> writes, Map<PendingWrite, Integer> updateCounts)
+			throws SQLException {
+		Map<String, List<PendingWrite>> bySql = new LinkedHashMap<>();
+		for (PendingWrite write : writes) {
+			bySql.computeIfAbsent(write.sql, sql -> new ArrayList<>()).add(write);
+		}
+		for (Map.Entry<String, List<PendingWrite>> statement : bySql.entrySet()) {
+			executeBatch(con, statement.getKey(), statement.getValue(), updateCounts);
+		}
+	}
+
+	private void executeBatch(Connection con, String sql, List<PendingWrite> writes,
+			Map<PendingWrite, Integer> updateCounts) throws SQLException {
+		PreparedStatement ps = null;
+		try {
+			ps = con.prepareStatement(sql);
+			for (PendingWrite write : writes) {
+				write.binder.bind(ps);
+				ps.addBatch();
+			}
+			int[] counts = ps.executeBatch();
+			for (int i = 0; i < writes.size(); i++) {
+				updateCounts.put(writes.get(i), counts[i] == Statement.SUCCESS_NO_INFO ? 1 : counts[i]);
+			}
+		} finally {
+			dataBaseConfig.closePreparedStatement(ps);
+		}
+	}
+
+	/**
+	 * Run a write on its own so that one bad row does not fail the writes it
+	 * was grouped with.
+	 */
+	private void flushAlone(PendingWrite write) {
+		Connection con = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			con.setAutoCommit(false);
+			int updateCount = executeUpdate(con, write);
+			if (write.followUp != null && updateCount == 1) {
+				executeUpdate(con, write.followUp);
+			}
+			con.commit();
+			write.durable.complete(updateCount);
+		} catch (Exception ex) {
+			rollback(con);
+			write.durable.completeExceptionally(ex);
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+	}
+
+	private int executeUpdate(Connection con, PendingWrite write) throws SQLException {
+		PreparedStatement ps = null;
+		try {
+			ps = con.prepareStatement(write.sql);
+			write.binder.bind(ps);
+			return ps.executeUpdate();
+		} finally {
+			dataBaseConfig.closePreparedStatement(ps);
+		}
+	}
+
+	private void rollback(Connection con) {
+		if (con != null) {
+			try {
+				con.rollback();
+			} catch (SQLException e) {
+				logger.error("Error while rolling back group commit", e);
+			}
+		}
+	}
+
+	private static final class PendingWrite {
+		private final String sql;
+		private final StatementBinder binder;
+		private final PendingWrite followUp;
+		private final CompletableFuture<Integer> durable = new CompletableFuture<>();
+
+		private PendingWrite(String sql, StatementBinder binder, PendingWrite followUp) {
+			this.sql = sql;
+			this.binder = binder;
+			this.followUp = followUp;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.LongObjectHashMap;
+import com.parkit.parkingsystem.util.PlateCodec;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The tickets of the vehicles currently in the parking, by plate.
+ *
+ * Loaded from the ticket table at startup and kept up to date by TicketDAO
+ * as tickets are saved and paid, so the ticket of a leaving vehicle is found
+ * without a query. Like RecurringUserCache it only sees tickets written
+ * through this process, so it assumes a single application writes to the
+ * ticket table.
+ *
+ * A ticket saved by this process is indexed without its id, as saving does
+ * not read the generated key back. TicketDAO pays such a ticket by plate
+ * instead of by id.
+ *
+ * Plates are looked up in their canonical form, keyed by their PlateCodec
+ * code so a lookup allocates no String. The codes are spread over stripes,
+ * each guarded by its own lock, so gates working on different plates rarely
+ * wait on each other. The few plates that do not fit in a long are kept by
+ * canonical String in a concurrent map.
+ *
+ */
+
+public class OpenTicketIndex {
+
+	private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+	/**
+	 * 2^STRIPE_BITS stripes, the stripe of a code being the top bits of its
+	 * hash
+	 */
+	private static final int STRIPE_BITS = 4;
+
+	private final LongObjectHashMap<OpenTicket>[] stripes;
+	private final Map<String, OpenTicket> unencodableOpenTickets = new ConcurrentHashMap<>();
+
+	@SuppressWarnings("unchecked")
+	public OpenTicketIndex() {
+		stripes = new LongObjectHashMap[1 << STRIPE_BITS];
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new LongObjectHashMap<>();
+		}
+	}
+
+	/**
+	 * Record the ticket of a vehicle entering
+	 *
+	 * @param ticket the saved ticket, without out time
+	 */
+	public void put(Ticket ticket) {
+		String vehicleRegNumber = ticket.getVehicleRegNumber();
+		long code = PlateCodec.encode(vehicleRegNumber);
+		if (code == PlateCodec.NOT_ENCODABLE) {
+			unencodableOpenTickets.put(PlateCodec.normalize(vehicleRegNumber),
+					new OpenTicket(ticket, vehicleRegNumber));
+			return;
+		}
+		boolean canonical = vehicleRegNumber.equals(PlateCodec.decode(code));
+		OpenTicket openTicket = new OpenTicket(ticket, canonical ? null : vehicleRegNumber);
+		LongObjectHashMap<OpenTicket> stripe = stripe(code);
+		synchronized (stripe) {
+			stripe.put(code, openTicket);
+		}
+	}
+
+	/**
+	 * @param vehicleRegNumber vehicle registration number
+	 * @return a new copy of the open ticket of the vehicle, null when the
+	 *         vehicle is not in the parking
+	 */
+	public Ticket get(String vehicleRegNumber) {
+		long code = PlateCodec.encode(vehicleRegNumber);
+		if (code == PlateCodec.NOT_ENCODABLE) {
+			OpenTicket openTicket = unencodableOpenTickets.get(PlateCodec.normalize(vehicleRegNumber));
+			return openTicket == null ? null : openTicket.toTicket(openTicket.savedPlate);
+		}
+		OpenTicket openTicket;
+		LongObjectHashMap<OpenTicket> stripe = stripe(code);
+		synchronized (stripe) {
+			openTicket = stripe.get(code);
+		}
+		if (openTicket == null) {
+			return null;
+		}
+		return openTicket.toTicket(openTicket.savedPlate != null ? openTicket.savedPlate : PlateCodec.decode(code));
+	}
+
+	/**
+	 * Forget the ticket of a vehicle that left
+	 *
+	 * @param vehicleRegNumber vehicle registration number
+	 */
+	public void remove(String vehicleRegNumber) {
+		long code = PlateCodec.encode(vehicleRegNumber);
+		if (code == PlateCodec.NOT_ENCODABLE) {
+			unencodableOpenTickets.remove(PlateCodec.normalize(vehicleRegNumber));
+			return;
+		}
+		LongObjectHashMap<OpenTicket> stripe = stripe(code);
+		synchronized (stripe) {
+			stripe.remove(code);
+		}
+	}
+
+	/**
+	 * @return number of vehicles in the parking
+	 */
+	public int size() {
+		int size = unencodableOpenTickets.size();
+		for (LongObjectHashMap<OpenTicket> stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Fibonacci hashing: the top bits of the product depend on every bit of
+	 * the code, while short plates leave its low bits at zero
+	 */
+	private LongObjectHashMap<OpenTicket> stripe(long code) {
+		return stripes[(int) ((code * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - STRIPE_BITS))];
+	}
+
+	private static final class OpenTicket {
+		private final int id;
+		private final int lotId;
+		private final int parkingNumber;
+		private final byte parkingType;
+		private final long inTime;
+		private final boolean userRecurring;
+
+		/**
+		 * plate as saved in the ticket table, null when it is the canonical one
+		 */
+		private final String savedPlate;
+
+		private OpenTicket(Ticket ticket, String savedPlate) {
+			this.id = ticket.getId();
+			this.lotId = ticket.getLotId();
+			this.parkingNumber = ticket.getParkingSpot().getId();
+			this.parkingType = (byte) ticket.getParkingSpot().getParkingType().ordinal();
+			this.inTime = ticket.getInTime().getTime();
+			this.userRecurring = ticket.isUserRecurring();
+			this.savedPlate = savedPlate;
+		}
+
+		private Ticket toTicket(String vehicleRegNumber) {
+			Ticket ticket = new Ticket();
+			ticket.setId(id);
+			ticket.setParkingSpot(new ParkingSpot(lotId, parkingNumber, PARKING_TYPES[parkingType], false));
+			ticket.setVehicleRegNumber(vehicleRegNumber);
+			ticket.setInTime(new Date(inTime));
+			ticket.setUserRecurring(userRecurring);
+			return ticket;
+		}
+	}
+}
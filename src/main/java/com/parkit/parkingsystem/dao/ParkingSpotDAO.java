@@ -1,8 +1,13 @@
 package com.parkit.parkingsystem.dao;
 
+import com.parkit.parkingsystem.allocation.LowestNumberAllocator;
+import com.parkit.parkingsystem.allocation.SpotAllocator;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.Occupancy;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,56 +15,383 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.function.Supplier;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotStore {
 	private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
+	private static final LatencyHistogram getNextAvailableSlotLatency = Metrics
+			.histogram("ParkingSpotDAO.getNextAvailableSlot");
+	private static final LatencyHistogram updateParkingLatency = Metrics.histogram("ParkingSpotDAO.updateParking");
+	private static final LatencyHistogram claimParkingSpotLatency = Metrics
+			.histogram("ParkingSpotDAO.claimParkingSpot");
+	private static final LatencyHistogram loadFreeSpotIndexLatency = Metrics
+			.histogram("ParkingSpotDAO.loadFreeSpotIndex");
+	private static final LatencyHistogram countOccupancyLatency = Metrics.histogram("ParkingSpotDAO.countOccupancy");
+
 	private DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+	private FreeSpotIndex freeSpotIndex;
+
+	private Supplier<SpotAllocator> spotAllocators = LowestNumberAllocator::new;
+
+	private GroupCommitWriter groupCommitWriter;
+
+	private SpotWriteBehind spotWriteBehind;
+
+	private SpotAvailabilityListener spotAvailabilityListener;
+
+	private ReservationIndex reservationIndex;
+
+	private int lotId = ParkingSpot.DEFAULT_LOT_ID;
+
+	@Override
 	public int getNextAvailableSlot(ParkingType parkingType) {
-		Connection con = null;
-		PreparedStatement ps = null;
-		ResultSet rs = null;
-		int result = -1;
-		try {
-			con = getDataBaseConfig().getConnection();
-			ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
-			ps.setString(1, parkingType.toString());
-			rs = ps.executeQuery();
-			if (rs.next()) {
-				result = rs.getInt(1);
+		return getNextAvailableSlotLatency.time(() -> {
+			long now = System.currentTimeMillis();
+			if (freeSpotIndex != null) {
+				return reservationIndex == null ? freeSpotIndex.nextFreeSpot(parkingType)
+						: freeSpotIndex.nextFreeSpot(parkingType, number -> !reservationIndex.isHeld(number, now));
 			}
-		} catch (Exception ex) {
+			Connection con = null;
+			PreparedStatement ps = null;
+			ResultSet rs = null;
+			try {
+				con = getDataBaseConfig().getConnection();
+				if (reservationIndex == null) {
+					ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
+					ps.setString(1, parkingType.toString());
+				} else {
+					ps = con.prepareStatement(DBConstants.GET_NEXT_UNRESERVED_PARKING_SPOT);
+					ps.setString(1, parkingType.toString());
+					ps.setTimestamp(2, new Timestamp(now + Math.max(1, reservationIndex.getHoldMillis())));
+					ps.setTimestamp(3, new Timestamp(now));
+				}
+				rs = ps.executeQuery();
+				return rs.next() ? rs.getInt(1) : -1;
+			} finally {
+				getDataBaseConfig().closeResultSet(rs);
+				getDataBaseConfig().closePreparedStatement(ps);
+				getDataBaseConfig().closeConnection(con);
+			}
+		}, ex -> {
 			logger.error("Error fetching next available slot", ex);
-		} finally {
-			getDataBaseConfig().closeResultSet(rs);
-			getDataBaseConfig().closePreparedStatement(ps);
-			getDataBaseConfig().closeConnection(con);
-		}
-		return result;
+			return -1;
+		});
 	}
 
+	@Override
 	public boolean updateParking(ParkingSpot parkingSpot) {
 // update the availability for that parking slot
-		Connection con = null;
-		PreparedStatement ps = null;
-		try {
-			con = getDataBaseConfig().getConnection();
-			ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
-			ps.setBoolean(1, parkingSpot.isAvailable());
-			ps.setInt(2, parkingSpot.getId());
-			int updateRowCount = ps.executeUpdate();
-			getDataBaseConfig().closePreparedStatement(ps);
-			return (updateRowCount == 1);
-		} catch (Exception ex) {
+		return updateParkingLatency.time(() -> {
+			checkOwnLot(parkingSpot);
+			if (isWriteBehind()) {
+				int number = parkingSpot.getId();
+				ParkingType parkingType = parkingSpot.getParkingType();
+				boolean available = parkingSpot.isAvailable();
+				boolean previous = freeSpotIndex.swapAvailable(number, parkingType, available);
+				spotWriteBehind.markAvailable(number, available);
+				if (previous != available) {
+					availabilityChanged(parkingType, available);
+				}
+				getDataBaseConfig().afterRollback(() -> {
+					freeSpotIndex.setAvailable(number, parkingType, previous);
+					spotWriteBehind.markAvailable(number, previous);
+					if (previous != available) {
+						availabilityChanged(parkingType, previous);
+					}
+				});
+				return true;
+			}
+			Connection con = null;
+			PreparedStatement ps = null;
+			try {
+				int updateRowCount;
+				if (groupCommitWriter != null && !getDataBaseConfig().isInTransaction()) {
+					updateRowCount = groupCommitWriter.write(DBConstants.UPDATE_PARKING_SPOT, batch -> {
+						batch.setBoolean(1, parkingSpot.isAvailable());
+						batch.setInt(2, parkingSpot.getId());
+					});
+				} else {
+					con = getDataBaseConfig().getConnection();
+					ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+					ps.setBoolean(1, parkingSpot.isAvailable());
+					ps.setInt(2, parkingSpot.getId());
+					updateRowCount = ps.executeUpdate();
+				}
+				if (updateRowCount == 1) {
+					boolean available = parkingSpot.isAvailable();
+					getDataBaseConfig().afterCommit(
+							() -> spotUpdated(parkingSpot.getId(), parkingSpot.getParkingType(), available));
+				}
+				return (updateRowCount == 1);
+			} finally {
+				getDataBaseConfig().closePreparedStatement(ps);
+				getDataBaseConfig().closeConnection(con);
+			}
+		}, ex -> {
 			logger.error("Error updating parking info", ex);
 			return false;
-		} finally {
-			getDataBaseConfig().closePreparedStatement(ps);
-			getDataBaseConfig().closeConnection(con);
+		});
+	}
+
+	/**
+	 * Take a free spot for a vehicle. The spot is only marked as taken if it is
+	 * still available, so two gates claiming the same spot at once can not
+	 * both succeed.
+	 * 
+	 * @param parkingSpot the spot to take
+	 * @return true when the caller now owns the spot, false when another gate
+	 *         took it first or the update failed
+	 */
+	@Override
+	public boolean claimParkingSpot(ParkingSpot parkingSpot) {
+		return claimParkingSpotLatency.time(() -> {
+			checkOwnLot(parkingSpot);
+			if (freeSpotIndex != null && !freeSpotIndex.claim(parkingSpot.getId(), parkingSpot.getParkingType())) {
+				return false;
+			}
+			if (isWriteBehind()) {
+				int number = parkingSpot.getId();
+				ParkingType parkingType = parkingSpot.getParkingType();
+				spotWriteBehind.markAvailable(number, false);
+				parkingSpot.setAvailable(false);
+				availabilityChanged(parkingType, false);
+				getDataBaseConfig().afterRollback(() -> {
+					freeSpotIndex.setAvailable(number, parkingType, true);
+					spotWriteBehind.markAvailable(number, true);
+					availabilityChanged(parkingType, true);
+				});
+				return true;
+			}
+			Connection con = null;
+			PreparedStatement ps = null;
+			try {
+				int updateRowCount;
+				if (groupCommitWriter != null && !getDataBaseConfig().isInTransaction()) {
+					updateRowCount = groupCommitWriter.write(DBConstants.CLAIM_PARKING_SPOT,
+							batch -> batch.setInt(1, parkingSpot.getId()));
+				} else {
+					con = getDataBaseConfig().getConnection();
+					ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+					ps.setInt(1, parkingSpot.getId());
+					updateRowCount = ps.executeUpdate();
+				}
+				boolean claimed = updateRowCount == 1;
+				if (claimed) {
+					parkingSpot.setAvailable(false);
+					getDataBaseConfig().afterCommit(() -> availabilityChanged(parkingSpot.getParkingType(), false));
+					if (freeSpotIndex != null) {
+						getDataBaseConfig().afterRollback(() -> freeSpotIndex.setAvailable(parkingSpot.getId(),
+								parkingSpot.getParkingType(), true));
+					}
+				}
+				return claimed;
+			} catch (Exception ex) {
+				if (freeSpotIndex != null) {
+					freeSpotIndex.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), true);
+				}
+				throw ex;
+			} finally {
+				getDataBaseConfig().closePreparedStatement(ps);
+				getDataBaseConfig().closeConnection(con);
+			}
+		}, ex -> {
+			logger.error("Error claiming parking spot", ex);
+			return false;
+		});
+	}
+
+	/**
+	 * Load the availability of every spot from the parking table into an in
+	 * memory index. Once loaded, next available slots are served from the
+	 * index and kept up to date by updateParking. A spot with an open ticket
+	 * is loaded as taken whatever the parking table says, as a write-behind
+	 * flush lost in a crash leaves it marked free.
+	 * 
+	 * @return true when the index has been loaded
+	 */
+	public boolean loadFreeSpotIndex() {
+		return loadFreeSpotIndexLatency.time(() -> {
+			Connection con = null;
+			PreparedStatement ps = null;
+			ResultSet rs = null;
+			try {
+				con = getDataBaseConfig().getConnection();
+				ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS_AVAILABILITY);
+				rs = ps.executeQuery();
+				FreeSpotIndex index = new FreeSpotIndex(spotAllocators);
+				while (rs.next()) {
+					index.setAvailable(rs.getInt(1), ParkingType.valueOf(rs.getString(2)), rs.getBoolean(3));
+				}
+				freeSpotIndex = index;
+				return true;
+			} finally {
+				getDataBaseConfig().closeResultSet(rs);
+				getDataBaseConfig().closePreparedStatement(ps);
+				getDataBaseConfig().closeConnection(con);
+			}
+		}, ex -> {
+			logger.error("Error loading free parking spots", ex);
+			return false;
+		});
+	}
+
+	/**
+	 * Count the spots of each type. Free spots are counted in the free spot
+	 * index once loaded, as the parking table lags behind it with
+	 * write-behind.
+	 * 
+	 * @return the free and total spots of each type, null when the count
+	 *         failed
+	 */
+	public Occupancy countOccupancy() {
+		return countOccupancyLatency.time(() -> {
+			Connection con = null;
+			PreparedStatement ps = null;
+			ResultSet rs = null;
+			try {
+				con = getDataBaseConfig().getConnection();
+				ps = con.prepareStatement(DBConstants.COUNT_PARKING_SPOTS);
+				rs = ps.executeQuery();
+				Occupancy occupancy = Occupancy.EMPTY;
+				while (rs.next()) {
+					ParkingType parkingType = ParkingType.valueOf(rs.getString(1));
+					int freeSpots = freeSpotIndex != null ? freeSpotIndex.countFreeSpots(parkingType) : rs.getInt(3);
+					occupancy = occupancy.withSpots(parkingType, freeSpots, rs.getInt(2));
+				}
+				return occupancy;
+			} finally {
+				getDataBaseConfig().closeResultSet(rs);
+				getDataBaseConfig().closePreparedStatement(ps);
+				getDataBaseConfig().closeConnection(con);
+			}
+		}, ex -> {
+			logger.error("Error counting parking spots", ex);
+			return null;
+		});
+	}
+
+	public FreeSpotIndex getFreeSpotIndex() {
+		return freeSpotIndex;
+	}
+
+	public void setFreeSpotIndex(FreeSpotIndex freeSpotIndex) {
+		this.freeSpotIndex = freeSpotIndex;
+	}
+
+	/**
+	 * Pick the next available slots with allocators of another strategy than
+	 * the lowest number. Only used by the free spot index, loaded after this
+	 * call; without it the parking table always gives the lowest number.
+	 * 
+	 * @param spotAllocators gives a new allocator for each parking type
+	 */
+	public void setSpotAllocators(Supplier<SpotAllocator> spotAllocators) {
+		this.spotAllocators = spotAllocators;
+	}
+
+	/**
+	 * Send availability updates through a group commit writer, or null to
+	 * write each update in its own statement.
+	 * 
+	 * @param groupCommitWriter
+	 */
+	public void setGroupCommitWriter(GroupCommitWriter groupCommitWriter) {
+		this.groupCommitWriter = groupCommitWriter;
+	}
+
+	/**
+	 * Keep the availability of the spots in the free spot index and write it
+	 * to the parking table in the background, or null to write each change
+	 * right away. Only used once the free spot index is loaded.
+	 * 
+	 * @param spotWriteBehind
+	 */
+	public void setSpotWriteBehind(SpotWriteBehind spotWriteBehind) {
+		this.spotWriteBehind = spotWriteBehind;
+	}
+
+	/**
+	 * Report the spots taken and freed to a listener, such as the
+	 * OccupancyService, or null to report them nowhere
+	 * 
+	 * @param spotAvailabilityListener
+	 */
+	public void setSpotAvailabilityListener(SpotAvailabilityListener spotAvailabilityListener) {
+		this.spotAvailabilityListener = spotAvailabilityListener;
+	}
+
+	public ReservationIndex getReservationIndex() {
+		return reservationIndex;
+	}
+
+	/**
+	 * Keep the spots held by a reservation out of the next available slots,
+	 * or null to hand out every free spot. Claiming a spot by its number is
+	 * not checked, so the booked vehicle can still take it.
+	 * 
+	 * @param reservationIndex
+	 */
+	public void setReservationIndex(ReservationIndex reservationIndex) {
+		this.reservationIndex = reservationIndex;
+	}
+
+	/**
+	 * Without the free spot index the update is taken as a change, as the
+	 * service only frees taken spots
+	 */
+	private void spotUpdated(int number, ParkingType parkingType, boolean available) {
+		boolean changed = freeSpotIndex == null || freeSpotIndex.isAvailable(number, parkingType) != available;
+		if (freeSpotIndex != null) {
+			freeSpotIndex.setAvailable(number, parkingType, available);
+		}
+		if (changed) {
+			availabilityChanged(parkingType, available);
 		}
 	}
 
+	private void availabilityChanged(ParkingType parkingType, boolean available) {
+		if (spotAvailabilityListener == null) {
+			return;
+		}
+		if (available) {
+			spotAvailabilityListener.spotFreed(parkingType);
+		} else {
+			spotAvailabilityListener.spotTaken(parkingType);
+		}
+	}
+
+	private boolean isWriteBehind() {
+		return spotWriteBehind != null && freeSpotIndex != null;
+	}
+
+	/**
+	 * Spot numbers are only unique within a lot, so a spot of another lot must
+	 * never reach the parking table of this one
+	 *
+	 * @throws SQLException if the spot is of another lot
+	 */
+	private void checkOwnLot(ParkingSpot parkingSpot) throws SQLException {
+		if (parkingSpot.getLotId() != lotId) {
+			throw new SQLException("Spot " + parkingSpot.getId() + " of lot " + parkingSpot.getLotId()
+					+ " sent to the parking table of lot " + lotId);
+		}
+	}
+
+	public int getLotId() {
+		return lotId;
+	}
+
+	/**
+	 * @param lotId the lot whose parking table this DAO reads and writes
+	 */
+	public void setLotId(int lotId) {
+		this.lotId = lotId;
+	}
+
 	public DataBaseConfig getDataBaseConfig() {
 		return dataBaseConfig;
 	}
@@ -68,6 +400,4 @@ public class ParkingSpotDAO {
 		this.dataBaseConfig = dataBaseConfig;
 	}
 
-	
-
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+/**
+ * Where the availability of the parking spots is kept. ParkingSpotDAO keeps
+ * it in the parking table, EmbeddedParkingStore in memory.
+ *
+ */
+
+public interface ParkingSpotStore {
+
+	/**
+	 * Get the free spot number of a type to hand out next, the lowest one
+	 * unless the store picks spots with another SpotAllocator
+	 *
+	 * @param parkingType type of the spot
+	 * @return spot number, 0 or less when none is free
+	 */
+	int getNextAvailableSlot(ParkingType parkingType);
+
+	/**
+	 * Record the availability of a spot
+	 *
+	 * @param parkingSpot the spot and its new availability
+	 * @return true when the spot has been updated
+	 */
+	boolean updateParking(ParkingSpot parkingSpot);
+
+	/**
+	 * Take a free spot for a vehicle, only if it is still available
+	 *
+	 * @param parkingSpot the spot to take
+	 * @return true when the caller now owns the spot
+	 */
+	boolean claimParkingSpot(ParkingSpot parkingSpot);
+}
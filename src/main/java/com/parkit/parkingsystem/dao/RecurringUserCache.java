@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.util.BloomFilter;
+import com.parkit.parkingsystem.util.PlateCodec;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory bounded answer to "has this vehicle already left the parking once".
+ *
+ * Every plate with a closed ticket is added to a Bloom filter, so a plate the
+ * filter has never seen is known not to be recurring without a query. Plates
+ * recently confirmed as recurring are kept in a small LRU set; a filter hit
+ * outside that set may be a false positive and has to be checked against the
+ * recurring_user summary.
+ *
+ * Plates are compared in their canonical form. The filter is fed their
+ * PlateCodec code, so the common answer, a plate never seen leaving, is given
+ * without allocating.
+ *
+ * The cache only sees tickets closed through this process, so it assumes a
+ * single application writes to the ticket table.
+ *
+ */
+
+public class RecurringUserCache {
+
+	private final BloomFilter closedTicketPlates;
+	private final Map<String, Boolean> confirmedPlates;
+
+	/**
+	 * @param expectedPlates  number of distinct plates the filter is sized for
+	 * @param confirmedPlates number of confirmed recurring plates kept
+	 */
+	public RecurringUserCache(long expectedPlates, int confirmedPlates) {
+		this.closedTicketPlates = new BloomFilter(expectedPlates, 0.01);
+		this.confirmedPlates = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > confirmedPlates;
+			}
+		};
+	}
+
+	/**
+	 * @param vehicleRegNumber vehicle registration number
+	 * @return TRUE or FALSE when the cache knows the answer, null when the
+	 *         recurring_user summary has to be checked
+	 */
+	public Boolean isRecurring(String vehicleRegNumber) {
+		if (!mightHaveLeft(vehicleRegNumber)) {
+			return Boolean.FALSE;
+		}
+		String plate = PlateCodec.normalize(vehicleRegNumber);
+		synchronized (confirmedPlates) {
+			return confirmedPlates.get(plate) != null ? Boolean.TRUE : null;
+		}
+	}
+
+	/**
+	 * Record a plate that has a closed ticket
+	 * 
+	 * @param vehicleRegNumber vehicle registration number
+	 */
+	public void markRecurring(String vehicleRegNumber) {
+		warm(vehicleRegNumber);
+		String plate = PlateCodec.normalize(vehicleRegNumber);
+		synchronized (confirmedPlates) {
+			confirmedPlates.put(plate, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * Record a plate found in the recurring_user summary while warming the
+	 * cache. It is only added to the filter so warming does not flush the LRU
+	 * set.
+	 * 
+	 * @param vehicleRegNumber vehicle registration number
+	 */
+	public void warm(String vehicleRegNumber) {
+		long code = PlateCodec.encode(vehicleRegNumber);
+		if (code == PlateCodec.NOT_ENCODABLE) {
+			closedTicketPlates.add(PlateCodec.normalize(vehicleRegNumber));
+		} else {
+			closedTicketPlates.add(code);
+		}
+	}
+
+	private boolean mightHaveLeft(String vehicleRegNumber) {
+		long code = PlateCodec.encode(vehicleRegNumber);
+		return code == PlateCodec.NOT_ENCODABLE
+				? closedTicketPlates.mightContain(PlateCodec.normalize(vehicleRegNumber))
+				: closedTicketPlates.mightContain(code);
+	}
+}
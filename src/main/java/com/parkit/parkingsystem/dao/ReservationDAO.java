@@ -0,0 +1,291 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.Reservation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the reservations in the reservation table and in a ReservationIndex,
+ * which answers every lookup once loaded. Like the other in memory indexes,
+ * the index assumes this process is the only one booking the spots of its
+ * lot.
+ *
+ * A reservation is published to the index once saved with its id. Bookings
+ * are serialized so that none can take a window between the lookup of a
+ * free spot and the publication of another booking; the gates reading the
+ * index are not held up by them. Reservations over, including the ones of
+ * vehicles that never came, are deleted at startup and then on a schedule.
+ *
+ */
+
+public class ReservationDAO implements AutoCloseable {
+	private static final Logger logger = LogManager.getLogger("ReservationDAO");
+
+	private static final LatencyHistogram reserveLatency = Metrics.histogram("ReservationDAO.reserve");
+	private static final LatencyHistogram removeReservationLatency = Metrics
+			.histogram("ReservationDAO.removeReservation");
+	private static final LatencyHistogram loadReservationIndexLatency = Metrics
+			.histogram("ReservationDAO.loadReservationIndex");
+	private static final LatencyHistogram expireReservationsLatency = Metrics
+			.histogram("ReservationDAO.expireReservations");
+
+	private DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+	private ReservationIndex reservationIndex;
+
+	private final Object bookingLock = new Object();
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Delete the reservations already over, then load the spots and the
+	 * other reservations into a new index.
+	 *
+	 * @param holdMillis how long before its start a reservation holds its spot
+	 * @return true when the index has been loaded
+	 */
+	public boolean loadReservationIndex(long holdMillis) {
+		return loadReservationIndexLatency.time(() -> {
+			Connection con = null;
+			PreparedStatement ps = null;
+			ResultSet rs = null;
+			try {
+				Timestamp now = new Timestamp(System.currentTimeMillis());
+				con = getDataBaseConfig().getConnection();
+				ps = con.prepareStatement(DBConstants.DELETE_PAST_RESERVATIONS);
+				ps.setTimestamp(1, now);
+				int purged = ps.executeUpdate();
+				getDataBaseConfig().closePreparedStatement(ps);
+				ReservationIndex index = new ReservationIndex(holdMillis);
+				ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+				rs = ps.executeQuery();
+				while (rs.next()) {
+					index.addSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(2)));
+				}
+				getDataBaseConfig().closeResultSet(rs);
+				getDataBaseConfig().closePreparedStatement(ps);
+				ps = con.prepareStatement(DBConstants.GET_RESERVATIONS);
+				ps.setTimestamp(1, now);
+				rs = ps.executeQuery();
+				while (rs.next()) {
+					Reservation reservation = new Reservation(rs.getInt(1), rs.getInt(2),
+							ParkingType.valueOf(rs.getString(3)), rs.getString(4), rs.getTimestamp(5),
+							rs.getTimestamp(6));
+					if (!index.add(reservation)) {
+						logger.error("{} overlaps another reservation of its spot", reservation);
+					}
+				}
+				reservationIndex = index;
+				logger.info("Loaded {} reservations, deleted {} past ones", index.size(), purged);
+				return true;
+			} finally {
+				getDataBaseConfig().closeResultSet(rs);
+				getDataBaseConfig().closePreparedStatement(ps);
+				getDataBaseConfig().closeConnection(con);
+			}
+		}, ex -> {
+			logger.error("Error loading reservations", ex);
+			return false;
+		});
+	}
+
+	/**
+	 * Book the lowest spot of a type free from the start to the end time
+	 *
+	 * @param vehicleRegNumber vehicle registration number
+	 * @param parkingType      type of the spot
+	 * @param startTime        start of the booking
+	 * @param endTime          end of the booking
+	 * @return the saved reservation, null when no spot is free for the window
+	 *         or the reservation could not be saved
+	 */
+	public Reservation reserve(String vehicleRegNumber, ParkingType parkingType, Date startTime, Date endTime) {
+		return reserveLatency.time(() -> {
+			if (reservationIndex == null) {
+				throw new IllegalStateException("Reservations are not loaded");
+			}
+			synchronized (bookingLock) {
+				int number = reservationIndex.findFreeSpot(parkingType, startTime.getTime(), endTime.getTime());
+				if (number <= 0) {
+					return null;
+				}
+				Reservation saved = new Reservation(save(number, vehicleRegNumber, startTime, endTime), number,
+						parkingType, vehicleRegNumber, startTime, endTime);
+				if (!reservationIndex.add(saved)) {
+					throw new IllegalStateException(saved + " overlaps another reservation of its spot");
+				}
+				return saved;
+			}
+		}, ex -> {
+			logger.error("Error saving reservation", ex);
+			return null;
+		});
+	}
+
+	/**
+	 * @return the id generated for the reservation
+	 */
+	private int save(int number, String vehicleRegNumber, Date startTime, Date endTime)
+			throws ClassNotFoundException, SQLException {
+		Connection con = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			con = getDataBaseConfig().getConnection();
+			ps = con.prepareStatement(DBConstants.SAVE_RESERVATION, Statement.RETURN_GENERATED_KEYS);
+			ps.setInt(1, number);
+			ps.setString(2, vehicleRegNumber);
+			ps.setTimestamp(3, new Timestamp(startTime.getTime()));
+			ps.setTimestamp(4, new Timestamp(endTime.getTime()));
+			ps.executeUpdate();
+			rs = ps.getGeneratedKeys();
+			if (!rs.next()) {
+				throw new SQLException("No id generated for the reservation of spot " + number);
+			}
+			return rs.getInt(1);
+		} finally {
+			getDataBaseConfig().closeResultSet(rs);
+			getDataBaseConfig().closePreparedStatement(ps);
+			getDataBaseConfig().closeConnection(con);
+		}
+	}
+
+	/**
+	 * @param vehicleRegNumber vehicle registration number
+	 * @param arrivalTime      time the vehicle arrives
+	 * @return the reservation of the vehicle for that time, or null
+	 */
+	public Reservation getReservation(String vehicleRegNumber, Date arrivalTime) {
+		if (reservationIndex == null) {
+			return null;
+		}
+		return reservationIndex.findArrival(vehicleRegNumber, arrivalTime.getTime());
+	}
+
+	/**
+	 * Delete a reservation, once its vehicle has arrived or when it is
+	 * cancelled. Its spot is released when the transaction commits.
+	 *
+	 * @param reservation the reservation
+	 * @return true when the reservation has been deleted
+	 */
+	public boolean removeReservation(Reservation reservation) {
+		return removeReservationLatency.time(() -> {
+			Connection con = null;
+			PreparedStatement ps = null;
+			try {
+				con = getDataBaseConfig().getConnection();
+				ps = con.prepareStatement(DBConstants.DELETE_RESERVATION);
+				ps.setInt(1, reservation.getId());
+				boolean removed = ps.executeUpdate() == 1;
+				if (removed && reservationIndex != null) {
+					ReservationIndex index = reservationIndex;
+					getDataBaseConfig().afterCommit(() -> index.remove(reservation));
+				}
+				return removed;
+			} finally {
+				getDataBaseConfig().closePreparedStatement(ps);
+				getDataBaseConfig().closeConnection(con);
+			}
+		}, ex -> {
+			logger.error("Error deleting reservation", ex);
+			return false;
+		});
+	}
+
+	/**
+	 * Delete the reservations over, whether their vehicle came or not, from
+	 * the reservation table and the index
+	 *
+	 * @return number of reservations deleted from the table, -1 when the
+	 *         deletion failed
+	 */
+	public int expireReservations() {
+		return expireReservationsLatency.time(() -> {
+			long now = System.currentTimeMillis();
+			Connection con = null;
+			PreparedStatement ps = null;
+			try {
+				con = getDataBaseConfig().getConnection();
+				ps = con.prepareStatement(DBConstants.DELETE_PAST_RESERVATIONS);
+				ps.setTimestamp(1, new Timestamp(now));
+				int purged = ps.executeUpdate();
+				if (reservationIndex != null) {
+					ReservationIndex index = reservationIndex;
+					getDataBaseConfig().afterCommit(() -> index.expire(now));
+				}
+				if (purged > 0) {
+					logger.info("Deleted {} past reservations", purged);
+				}
+				return purged;
+			} finally {
+				getDataBaseConfig().closePreparedStatement(ps);
+				getDataBaseConfig().closeConnection(con);
+			}
+		}, ex -> {
+			logger.error("Error expiring reservations", ex);
+			return -1;
+		});
+	}
+
+	/**
+	 * Expire the reservations over in the background
+	 *
+	 * @param periodMillis time between two expiries
+	 */
+	public synchronized void startExpiring(long periodMillis) {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "reservation-expirer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::expireReservations, periodMillis, periodMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop expiring reservations in the background
+	 */
+	@Override
+	public synchronized void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	public ReservationIndex getReservationIndex() {
+		return reservationIndex;
+	}
+
+	public void setReservationIndex(ReservationIndex reservationIndex) {
+		this.reservationIndex = reservationIndex;
+	}
+
+	public DataBaseConfig getDataBaseConfig() {
+		return dataBaseConfig;
+	}
+
+	public void setDataBaseConfig(DataBaseConfig dataBaseConfig) {
+		this.dataBaseConfig = dataBaseConfig;
+	}
+}
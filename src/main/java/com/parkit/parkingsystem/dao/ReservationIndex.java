@@ -0,0 +1,203 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.util.PlateCodec;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In memory index of the reservations. The reservations of a spot never
+ * overlap, so kept in a tree by start time the only one that can overlap a
+ * window is the last one starting before the window ends: whether a spot is
+ * free for a window is one tree lookup, logarithmic in the reservations of
+ * the spot. Finding a free spot of a type checks the spots of that type
+ * lowest number first, like GET_NEXT_PARKING_SPOT.
+ *
+ * A reservation holds its spot for walk-in vehicles from holdMillis before
+ * its start, as a vehicle let in then could still be parked when the booked
+ * vehicle arrives. The booked vehicle may arrive from that time on.
+ *
+ * The reservations of a vehicle are found by its canonical plate, as given
+ * by PlateCodec.normalize.
+ *
+ */
+
+public class ReservationIndex {
+
+	private final long holdMillis;
+	private final Map<ParkingType, BitSet> spotsByType = new EnumMap<>(ParkingType.class);
+	private final Map<Integer, TreeMap<Long, Reservation>> reservationsBySpot = new HashMap<>();
+	private final Map<String, List<Reservation>> reservationsByPlate = new HashMap<>();
+
+	/**
+	 * @param holdMillis how long before its start a reservation holds its spot
+	 */
+	public ReservationIndex(long holdMillis) {
+		if (holdMillis < 0) {
+			throw new IllegalArgumentException("The hold time can not be negative");
+		}
+		this.holdMillis = holdMillis;
+		for (ParkingType parkingType : ParkingType.values()) {
+			spotsByType.put(parkingType, new BitSet());
+		}
+	}
+
+	public long getHoldMillis() {
+		return holdMillis;
+	}
+
+	/**
+	 * Record a spot that can be booked
+	 *
+	 * @param number      spot number
+	 * @param parkingType type of the spot
+	 */
+	public synchronized void addSpot(int number, ParkingType parkingType) {
+		spotsByType.get(parkingType).set(number);
+	}
+
+	/**
+	 * @param number spot number
+	 * @param from   start of the window, epoch millis
+	 * @param to     end of the window, epoch millis
+	 * @return true when no reservation of the spot overlaps the window
+	 */
+	public synchronized boolean isFree(int number, long from, long to) {
+		TreeMap<Long, Reservation> reservations = reservationsBySpot.get(number);
+		if (reservations == null) {
+			return true;
+		}
+		Map.Entry<Long, Reservation> last = reservations.lowerEntry(to);
+		return last == null || !last.getValue().overlaps(from, to);
+	}
+
+	/**
+	 * @param number spot number
+	 * @param now    current time, epoch millis
+	 * @return true when a walk-in vehicle must not be given the spot
+	 */
+	public boolean isHeld(int number, long now) {
+		return !isFree(number, now, now + Math.max(1, holdMillis));
+	}
+
+	/**
+	 * @param parkingType type of the spot
+	 * @param from        start of the window, epoch millis
+	 * @param to          end of the window, epoch millis
+	 * @return the lowest spot number of the type free for the window, 0 when
+	 *         none is
+	 */
+	public synchronized int findFreeSpot(ParkingType parkingType, long from, long to) {
+		BitSet spots = spotsByType.get(parkingType);
+		for (int number = spots.nextSetBit(1); number >= 0; number = spots.nextSetBit(number + 1)) {
+			if (isFree(number, from, to)) {
+				return number;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Record a reservation
+	 *
+	 * @param reservation the reservation
+	 * @return false when it overlaps another reservation of its spot
+	 */
+	public synchronized boolean add(Reservation reservation) {
+		int number = reservation.getParkingNumber();
+		if (!isFree(number, reservation.getStartTime().getTime(), reservation.getEndTime().getTime())) {
+			return false;
+		}
+		spotsByType.get(reservation.getParkingType()).set(number);
+		reservationsBySpot.computeIfAbsent(number, spot -> new TreeMap<>())
+				.put(reservation.getStartTime().getTime(), reservation);
+		reservationsByPlate
+				.computeIfAbsent(PlateCodec.normalize(reservation.getVehicleRegNumber()), plate -> new ArrayList<>())
+				.add(reservation);
+		return true;
+	}
+
+	/**
+	 * Forget a reservation
+	 *
+	 * @param reservation the reservation
+	 * @return true when it was recorded
+	 */
+	public synchronized boolean remove(Reservation reservation) {
+		TreeMap<Long, Reservation> reservations = reservationsBySpot.get(reservation.getParkingNumber());
+		if (reservations == null
+				|| !reservations.remove(reservation.getStartTime().getTime(), reservation)) {
+			return false;
+		}
+		if (reservations.isEmpty()) {
+			reservationsBySpot.remove(reservation.getParkingNumber());
+		}
+		String plate = PlateCodec.normalize(reservation.getVehicleRegNumber());
+		List<Reservation> ofPlate = reservationsByPlate.get(plate);
+		ofPlate.remove(reservation);
+		if (ofPlate.isEmpty()) {
+			reservationsByPlate.remove(plate);
+		}
+		return true;
+	}
+
+	/**
+	 * Forget the reservations over. Those of a spot never overlap, so the
+	 * ones over are the first by start time.
+	 *
+	 * @param now current time, epoch millis
+	 * @return number of reservations forgotten
+	 */
+	public synchronized int expire(long now) {
+		List<Reservation> over = new ArrayList<>();
+		for (TreeMap<Long, Reservation> reservations : reservationsBySpot.values()) {
+			for (Reservation reservation : reservations.values()) {
+				if (reservation.getEndTime().getTime() > now) {
+					break;
+				}
+				over.add(reservation);
+			}
+		}
+		for (Reservation reservation : over) {
+			remove(reservation);
+		}
+		return over.size();
+	}
+
+	/**
+	 * @param vehicleRegNumber vehicle registration number
+	 * @param time             arrival time, epoch millis
+	 * @return the reservation of the vehicle the arrival falls in, from
+	 *         holdMillis before its start to its end, or null
+	 */
+	public synchronized Reservation findArrival(String vehicleRegNumber, long time) {
+		List<Reservation> ofPlate = reservationsByPlate.get(PlateCodec.normalize(vehicleRegNumber));
+		if (ofPlate == null) {
+			return null;
+		}
+		for (Reservation reservation : ofPlate) {
+			if (reservation.overlaps(time, time + holdMillis + 1)) {
+				return reservation;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return number of reservations recorded
+	 */
+	public synchronized int size() {
+		int size = 0;
+		for (TreeMap<Long, Reservation> reservations : reservationsBySpot.values()) {
+			size += reservations.size();
+		}
+		return size;
+	}
+}
@@ -0,0 +1,23 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Told of the spots ParkingSpotDAO takes and frees, once the change is
+ * committed or, with write-behind, made in the free spot index. A rolled
+ * back change is reported again as the opposite change.
+ *
+ */
+
+public interface SpotAvailabilityListener {
+
+	/**
+	 * @param parkingType type of the spot taken by a vehicle
+	 */
+	void spotTaken(ParkingType parkingType);
+
+	/**
+	 * @param parkingType type of the spot freed by a vehicle
+	 */
+	void spotFreed(ParkingType parkingType);
+}
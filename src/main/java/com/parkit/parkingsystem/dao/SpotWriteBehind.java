@@ -0,0 +1,148 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes spot availability changes to the parking table in the background.
+ *
+ * Only the latest availability of each changed spot is kept until the next
+ * flush, so a spot taken and freed several times between two flushes costs
+ * one row update. Every flush sends the changed spots as one batch in one
+ * transaction. A flush that fails puts its changes back, unless a newer
+ * change for the same spot came in meanwhile.
+ *
+ * With write-behind the FreeSpotIndex of ParkingSpotDAO is the authoritative
+ * state of the spots and the parking table lags behind it by up to a flush
+ * interval, so only one process may allocate the spots of a parking.
+ *
+ */
+
+public class SpotWriteBehind implements AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger("SpotWriteBehind");
+
+	private static final LatencyHistogram flushLatency = Metrics.histogram("SpotWriteBehind.flush");
+
+	private final DataBaseConfig dataBaseConfig;
+	private final Map<Integer, Boolean> changedSpots = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService flusher;
+
+	/**
+	 * @param dataBaseConfig      where the changes are written
+	 * @param flushIntervalMillis time between the end of a flush and the start
+	 *                            of the next one
+	 */
+	public SpotWriteBehind(DataBaseConfig dataBaseConfig, long flushIntervalMillis) {
+		this.dataBaseConfig = dataBaseConfig;
+		this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "spot-write-behind");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Record the availability of a spot for the next flush
+	 *
+	 * @param number    spot number
+	 * @param available true when the spot is free
+	 */
+	public void markAvailable(int number, boolean available) {
+		changedSpots.put(number, available);
+	}
+
+	/**
+	 * @return number of spots changed since the last flush
+	 */
+	public int countPendingSpots() {
+		return changedSpots.size();
+	}
+
+	/**
+	 * Write the changed spots now
+	 *
+	 * @return true when every change has been written
+	 */
+	public synchronized boolean flush() {
+		if (changedSpots.isEmpty()) {
+			return true;
+		}
+		List<Integer> numbers = new ArrayList<>(changedSpots.keySet());
+		List<Boolean> availabilities = new ArrayList<>(numbers.size());
+		for (Integer number : numbers) {
+			availabilities.add(changedSpots.remove(number));
+		}
+		long start = System.nanoTime();
+		boolean failed = false;
+		Connection con = null;
+		PreparedStatement ps = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			con.setAutoCommit(false);
+			ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+			for (int i = 0; i < numbers.size(); i++) {
+				ps.setBoolean(1, availabilities.get(i));
+				ps.setInt(2, numbers.get(i));
+				ps.addBatch();
+			}
+			ps.executeBatch();
+			con.commit();
+			logger.debug("Wrote the availability of {} spots", numbers.size());
+			return true;
+		} catch (Exception ex) {
+			failed = true;
+			logger.error("Error writing the availability of {} spots, retrying at the next flush", numbers.size(), ex);
+			rollback(con);
+			for (int i = 0; i < numbers.size(); i++) {
+				changedSpots.putIfAbsent(numbers.get(i), availabilities.get(i));
+			}
+			return false;
+		} finally {
+			dataBaseConfig.closePreparedStatement(ps);
+			dataBaseConfig.closeConnection(con);
+			flushLatency.record(start, failed);
+		}
+	}
+
+	/**
+	 * Stop flushing in the background and write what is left
+	 */
+	@Override
+	public void close() {
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (!flush()) {
+			logger.error("Closing with the availability of {} spots not written", changedSpots.size());
+		}
+	}
+
+	private void rollback(Connection con) {
+		if (con != null) {
+			try {
+				con.rollback();
+			} catch (Exception e) {
+				logger.error("Error while rolling back spot availability", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves old closed tickets from the ticket table to ticket_history, so the
+ * ticket table the gates query only holds open and recent tickets.
+ *
+ * Tickets are moved oldest first in chunks, each chunk copied and deleted in
+ * one transaction, with a pause between chunks so the gates keep most of the
+ * database. ticket_history has one partition per month of exit; the
+ * partitions needed are split from the p_future partition before moving.
+ *
+ * Recurring users are counted in the recurring_user summary when their
+ * ticket is paid, so archiving does not change who is recurring.
+ *
+ */
+
+public class TicketArchiver implements AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger("TicketArchiver");
+
+	private static final LatencyHistogram archiveChunkLatency = Metrics.histogram("TicketArchiver.archiveChunk");
+
+	private static final String FUTURE_PARTITION = "p_future";
+	private static final DateTimeFormatter MONTH_PARTITION = DateTimeFormatter.ofPattern("'p'uuuuMM");
+
+	/**
+	 * exits before this month are kept in the p_start partition
+	 */
+	private static final YearMonth FIRST_PARTITIONED_MONTH = YearMonth.of(2020, 1);
+
+	private final DataBaseConfig dataBaseConfig;
+	private final long archiveAfterMillis;
+	private final int chunkSize;
+	private final long pauseMillis;
+
+	private final Object schedulerLock = new Object();
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * set by close and checked between chunks, so a run in progress stops
+	 * without close waiting for it
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * @param dataBaseConfig     where the tickets are
+	 * @param archiveAfterMillis age of a closed ticket, from its exit, before
+	 *                           it is archived
+	 * @param chunkSize          number of tickets moved per transaction
+	 * @param pauseMillis        pause between two chunks
+	 */
+	public TicketArchiver(DataBaseConfig dataBaseConfig, long archiveAfterMillis, int chunkSize, long pauseMillis) {
+		this.dataBaseConfig = dataBaseConfig;
+		this.archiveAfterMillis = archiveAfterMillis;
+		this.chunkSize = chunkSize;
+		this.pauseMillis = pauseMillis;
+	}
+
+	/**
+	 * Archive in the background
+	 *
+	 * @param periodMillis time between the end of a run and the start of the
+	 *                     next one
+	 */
+	public void start(long periodMillis) {
+		synchronized (schedulerLock) {
+			if (scheduler != null) {
+				return;
+			}
+			stopped = false;
+			scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "ticket-archiver");
+				thread.setDaemon(true);
+				return thread;
+			});
+			scheduler.scheduleWithFixedDelay(() -> {
+				try {
+					archive();
+				} catch (SQLException e) {
+					logger.error("Error archiving tickets, retrying at the next run", e);
+				}
+			}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Archive the tickets closed longer ago than the archive age
+	 *
+	 * @return number of tickets archived
+	 * @throws SQLException if a chunk could not be archived
+	 */
+	public int archive() throws SQLException {
+		return archive(new Date(System.currentTimeMillis() - archiveAfterMillis));
+	}
+
+	/**
+	 * Archive the tickets closed before a date. Stops after the current chunk
+	 * when the archiver is closed or the thread is interrupted.
+	 *
+	 * @param closedBefore exit time before which tickets are archived
+	 * @return number of tickets archived
+	 * @throws SQLException if a chunk could not be archived
+	 */
+	public synchronized int archive(Date closedBefore) throws SQLException {
+		Timestamp cutoff = new Timestamp(closedBefore.getTime());
+		addMonthlyPartitions(cutoff.toLocalDateTime().toLocalDate());
+		int archived = 0;
+		int moved;
+		do {
+			moved = archiveChunk(cutoff);
+			archived += moved;
+		} while (moved == chunkSize && !stopped && pause());
+		logger.info("Archived {} tickets closed before {}", archived, cutoff);
+		return archived;
+	}
+
+	/**
+	 * Stop archiving in the background. A run in progress stops after its
+	 * current chunk; close does not wait for it.
+	 */
+	@Override
+	public void close() {
+		stopped = true;
+		synchronized (schedulerLock) {
+			if (scheduler != null) {
+				scheduler.shutdownNow();
+				scheduler = null;
+			}
+		}
+	}
+
+	private int archiveChunk(Timestamp closedBefore) throws SQLException {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			int moved = dataBaseConfig.inTransaction(() -> moveChunk(closedBefore));
+			failed = false;
+			return moved;
+		} catch (SQLException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SQLException("Unable to archive tickets", e);
+		} finally {
+			archiveChunkLatency.record(start, failed);
+		}
+	}
+
+	private int moveChunk(Timestamp closedBefore) throws Exception {
+		Connection con = null;
+		PreparedStatement select = null;
+		PreparedStatement copy = null;
+		PreparedStatement delete = null;
+		ResultSet rs = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			select = con.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKETS);
+			select.setTimestamp(1, closedBefore);
+			select.setInt(2, chunkSize);
+			rs = select.executeQuery();
+			copy = con.prepareStatement(DBConstants.ARCHIVE_TICKET);
+			delete = con.prepareStatement(DBConstants.DELETE_TICKET);
+			int moved = 0;
+			while (rs.next()) {
+				int id = rs.getInt(1);
+				copy.setInt(1, id);
+				copy.addBatch();
+				delete.setInt(1, id);
+				delete.addBatch();
+				moved++;
+			}
+			if (moved > 0) {
+				copy.executeBatch();
+				delete.executeBatch();
+			}
+			return moved;
+		} finally {
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(select);
+			dataBaseConfig.closePreparedStatement(copy);
+			dataBaseConfig.closePreparedStatement(delete);
+			dataBaseConfig.closeConnection(con);
+		}
+	}
+
+	/**
+	 * Split p_future so that every month up to the one of the cutoff has its
+	 * own partition. The first monthly partition also takes the earlier
+	 * exits not in p_start.
+	 */
+	private void addMonthlyPartitions(LocalDate closedBefore) throws SQLException {
+		YearMonth until = YearMonth.from(closedBefore);
+		if (until.isBefore(FIRST_PARTITIONED_MONTH)) {
+			return;
+		}
+		Connection con = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			ps = con.prepareStatement(DBConstants.GET_HISTORY_PARTITIONS);
+			rs = ps.executeQuery();
+			YearMonth last = null;
+			while (rs.next()) {
+				String name = rs.getString(1);
+				if (name != null && name.matches("p\\d{6}")) {
+					YearMonth month = YearMonth.parse(name, MONTH_PARTITION);
+					last = last == null || month.isAfter(last) ? month : last;
+				}
+			}
+			YearMonth next = last == null ? until : last.plusMonths(1);
+			if (next.isAfter(until)) {
+				return;
+			}
+			StringBuilder sql = new StringBuilder("alter table ticket_history reorganize partition ")
+					.append(FUTURE_PARTITION).append(" into (");
+			for (YearMonth month = next; !month.isAfter(until); month = month.plusMonths(1)) {
+				sql.append("partition ").append(month.format(MONTH_PARTITION)).append(" values less than ('")
+						.append(month.plusMonths(1).atDay(1)).append("'), ");
+			}
+			sql.append("partition ").append(FUTURE_PARTITION).append(" values less than (MAXVALUE))");
+			try (Statement statement = con.createStatement()) {
+				statement.execute(sql.toString());
+			}
+			logger.info("Added ticket_history partitions from {} to {}", next, until);
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("Unable to add ticket_history partitions", e);
+		} finally {
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			dataBaseConfig.closeConnection(con);
+		}
+	}
+
+	/**
+	 * @return false when the archiver was closed or the thread interrupted
+	 *         during the pause
+	 */
+	private boolean pause() {
+		try {
+			Thread.sleep(pauseMillis);
+			return !stopped;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
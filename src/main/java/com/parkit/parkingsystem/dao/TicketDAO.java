@@ -3,6 +3,8 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import org.apache.logging.log4j.LogManager;
@@ -11,6 +13,7 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 
 /**
@@ -19,42 +22,75 @@ import java.sql.Timestamp;
  *
  */
 
-public class TicketDAO {
+public class TicketDAO implements TicketStore {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    private static final LatencyHistogram saveTicketLatency = Metrics.histogram("TicketDAO.saveTicket");
+    private static final LatencyHistogram getTicketLatency = Metrics.histogram("TicketDAO.getTicket");
+    private static final LatencyHistogram updateTicketLatency = Metrics.histogram("TicketDAO.updateTicket");
+    private static final LatencyHistogram recurringUsersLatency = Metrics.histogram("TicketDAO.recurringUsers");
+    private static final LatencyHistogram loadRecurringUserCacheLatency = Metrics
+	    .histogram("TicketDAO.loadRecurringUserCache");
+    private static final LatencyHistogram loadOpenTicketIndexLatency = Metrics
+	    .histogram("TicketDAO.loadOpenTicketIndex");
+
     private DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    private GroupCommitWriter groupCommitWriter;
+
+    private RecurringUserCache recurringUserCache;
+
+    private OpenTicketIndex openTicketIndex;
+
+    private int lotId = ParkingSpot.DEFAULT_LOT_ID;
+
     /**
      * 
      * @param ticket
      * @return
      */
 
+    @Override
     public boolean saveTicket(Ticket ticket) {
-	Connection con = null;
-	PreparedStatement ps = null;
-	try {
-	    con = getDataBaseConfig().getConnection();
-	    ps = con.prepareStatement(DBConstants.SAVE_TICKET);
-// ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-
-	    ps.setInt(1, ticket.getParkingSpot().getId());
-	    ps.setString(2, ticket.getVehicleRegNumber());
-	    ps.setDouble(3, ticket.getPrice());
-	    ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
-	    ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : (new Timestamp(ticket.getOutTime().getTime())));
+	return saveTicketLatency.time(() -> {
+	    checkOwnLot(ticket);
+	    if (groupCommitWriter != null && !getDataBaseConfig().isInTransaction()) {
+		if (groupCommitWriter.write(DBConstants.SAVE_TICKET, ps -> bindSaveTicket(ps, ticket)) != 1) {
+		    return false;
+		}
+		ticketOpened(ticket);
+		return true;
+	    }
+	    Connection con = null;
+	    PreparedStatement ps = null;
+	    try {
+		con = getDataBaseConfig().getConnection();
+		ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+		bindSaveTicket(ps, ticket);
 
-	    return ps.execute();
-	} catch (Exception ex) {
-	    logger.error("Error fetching next available slot", ex);
+		if (ps.executeUpdate() != 1) {
+		    return false;
+		}
+		ticketOpened(ticket);
+		return true;
+	    } finally {
+		getDataBaseConfig().closePreparedStatement(ps);
+		getDataBaseConfig().closeConnection(con);
+	    }
+	}, ex -> {
+	    logger.error("Error saving ticket", ex);
 	    return false;
+	});
+    }
 
-	} finally {
-	    getDataBaseConfig().closePreparedStatement(ps);
-	    getDataBaseConfig().closeConnection(con);
-	}
-
+    private void bindSaveTicket(PreparedStatement ps, Ticket ticket) throws SQLException {
+// ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+	ps.setInt(1, ticket.getParkingSpot().getId());
+	ps.setString(2, ticket.getVehicleRegNumber());
+	ps.setDouble(3, ticket.getPrice());
+	ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+	ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : (new Timestamp(ticket.getOutTime().getTime())));
     }
 
     /**
@@ -63,38 +99,47 @@ public class TicketDAO {
      * @return
      */
 
+    @Override
     public Ticket getTicket(String vehicleRegNumber) {
-	Connection con = null;
-	PreparedStatement ps = null;
-	ResultSet rs = null;
-	Ticket ticket = null;
-	try {
-	    con = getDataBaseConfig().getConnection();
-	    ps = con.prepareStatement(DBConstants.GET_TICKET);
+	return getTicketLatency.time(() -> {
+	    if (openTicketIndex != null) {
+		Ticket openTicket = openTicketIndex.get(vehicleRegNumber);
+		if (openTicket != null) {
+		    return openTicket;
+		}
+	    }
+	    Connection con = null;
+	    PreparedStatement ps = null;
+	    ResultSet rs = null;
+	    try {
+		con = getDataBaseConfig().getConnection();
+		ps = con.prepareStatement(DBConstants.GET_TICKET);
 // ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-	    ps.setString(1, vehicleRegNumber);
-	    rs = ps.executeQuery();
-	    if (rs.next()) {
-		ticket = new Ticket();
-		ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)), false);
+		ps.setString(1, vehicleRegNumber);
+		rs = ps.executeQuery();
+		if (!rs.next()) {
+		    return null;
+		}
+		Ticket ticket = new Ticket();
+		ParkingSpot parkingSpot = new ParkingSpot(lotId, rs.getInt(1), ParkingType.valueOf(rs.getString(6)),
+			false);
 		ticket.setParkingSpot(parkingSpot);
 		ticket.setId(rs.getInt(2));
 		ticket.setVehicleRegNumber(vehicleRegNumber);
 		ticket.setPrice(rs.getDouble(3));
 		ticket.setInTime(rs.getTimestamp(4));
 		ticket.setOutTime(rs.getTimestamp(5));
-
+		ticket.setUserRecurring(rs.getInt(7) > 0);
+		return ticket;
+	    } finally {
+		getDataBaseConfig().closeResultSet(rs);
+		getDataBaseConfig().closePreparedStatement(ps);
+		getDataBaseConfig().closeConnection(con);
 	    }
-
-	} catch (Exception ex) {
-	    logger.error("Error fetching next available slot", ex);
-	} finally {
-	    getDataBaseConfig().closeResultSet(rs);
-	    getDataBaseConfig().closePreparedStatement(ps);
-	    getDataBaseConfig().closeConnection(con);
-
-	}
-	return ticket;
+	}, ex -> {
+	    logger.error("Error fetching ticket", ex);
+	    return null;
+	});
     }
 
     /**
@@ -102,25 +147,159 @@ public class TicketDAO {
      * @param ticket
      * @return
      */
+    @Override
     public boolean updateTicket(Ticket ticket) {
-	Connection con = null;
-	PreparedStatement ps = null;
-	try {
-	    con = getDataBaseConfig().getConnection();
-	    ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
-	    ps.setDouble(1, ticket.getPrice());
-	    ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
-	    ps.setInt(3, ticket.getId());
-	    ps.execute();
+	return updateTicketLatency.time(() -> {
+	    checkOwnLot(ticket);
+	    if (groupCommitWriter != null && !getDataBaseConfig().isInTransaction()) {
+		if (groupCommitWriter.write(updateTicketQuery(ticket), ps -> bindUpdateTicket(ps, ticket),
+			DBConstants.SAVE_CLOSED_TICKET, ps -> bindClosedTicket(ps, ticket)) != 1) {
+		    return false;
+		}
+		ticketClosed(ticket);
+		return true;
+	    }
+	    Connection con = null;
+	    PreparedStatement ps = null;
+	    try {
+		con = getDataBaseConfig().getConnection();
+		ps = con.prepareStatement(updateTicketQuery(ticket));
+		bindUpdateTicket(ps, ticket);
+		if (ps.executeUpdate() != 1) {
+		    return false;
+		}
+		saveClosedTicket(con, ticket);
+		ticketClosed(ticket);
+		return true;
+	    } finally {
+		getDataBaseConfig().closePreparedStatement(ps);
+		getDataBaseConfig().closeConnection(con);
+	    }
+	}, ex -> {
+	    logger.error("Error saving ticket info", ex);
+	    return false;
+	});
+    }
+
+    /**
+     * Save the ticket of a vehicle entering unless the vehicle already has an
+     * open ticket, so that saving the same ticket twice keeps one row.
+     * 
+     * @param ticket the new ticket
+     * @return true when the ticket is saved, now or before
+     */
+    public boolean saveOpenTicket(Ticket ticket) {
+	return saveTicketLatency.time(() -> {
+	    Connection con = null;
+	    PreparedStatement ps = null;
+	    try {
+		con = getDataBaseConfig().getConnection();
+		ps = con.prepareStatement(DBConstants.SAVE_TICKET_IF_NONE_OPEN);
+		bindSaveTicket(ps, ticket);
+		ps.setString(6, ticket.getVehicleRegNumber());
+		ps.executeUpdate();
+		ticketOpened(ticket);
+		return true;
+	    } finally {
+		getDataBaseConfig().closePreparedStatement(ps);
+		getDataBaseConfig().closeConnection(con);
+	    }
+	}, ex -> {
+	    logger.error("Error saving ticket", ex);
+	    return false;
+	});
+    }
+
+    /**
+     * Save the price and exit time on the open ticket of the vehicle. Closing
+     * a ticket twice leaves the first exit time and counts the ticket once in
+     * the recurring user summary.
+     * 
+     * @param ticket the paid ticket
+     * @return true when the vehicle has no open ticket left
+     */
+    public boolean closeOpenTicket(Ticket ticket) {
+	return updateTicketLatency.time(() -> {
+	    getDataBaseConfig().inTransaction(() -> {
+		Connection con = null;
+		PreparedStatement ps = null;
+		try {
+		    con = getDataBaseConfig().getConnection();
+		    ps = con.prepareStatement(DBConstants.CLOSE_OPEN_TICKET);
+		    ps.setDouble(1, ticket.getPrice());
+		    ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+		    ps.setString(3, ticket.getVehicleRegNumber());
+		    if (ps.executeUpdate() == 1) {
+			saveClosedTicket(con, ticket);
+		    }
+		    return null;
+		} finally {
+		    getDataBaseConfig().closePreparedStatement(ps);
+		    getDataBaseConfig().closeConnection(con);
+		}
+	    });
+	    ticketClosed(ticket);
 	    return true;
-	} catch (Exception ex) {
+	}, ex -> {
 	    logger.error("Error saving ticket info", ex);
 	    return false;
+	});
+    }
+
+    /**
+     * Count the closed ticket in the recurring user summary, on the connection
+     * that closed it
+     */
+    private void saveClosedTicket(Connection con, Ticket ticket) throws SQLException {
+	PreparedStatement ps = null;
+	try {
+	    ps = con.prepareStatement(DBConstants.SAVE_CLOSED_TICKET);
+	    bindClosedTicket(ps, ticket);
+	    ps.executeUpdate();
 	} finally {
 	    getDataBaseConfig().closePreparedStatement(ps);
-	    getDataBaseConfig().closeConnection(con);
 	}
+    }
+
+    private void bindClosedTicket(PreparedStatement ps, Ticket ticket) throws SQLException {
+	ps.setString(1, ticket.getVehicleRegNumber());
+	ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+    }
+
+    private void ticketOpened(Ticket ticket) {
+	if (openTicketIndex != null) {
+	    OpenTicketIndex index = openTicketIndex;
+	    getDataBaseConfig().afterCommit(() -> index.put(ticket));
+	}
+    }
+
+    private void ticketClosed(Ticket ticket) {
+	String vehicleRegNumber = ticket.getVehicleRegNumber();
+	if (recurringUserCache != null) {
+	    getDataBaseConfig().afterCommit(() -> recurringUserCache.markRecurring(vehicleRegNumber));
+	}
+	if (openTicketIndex != null) {
+	    OpenTicketIndex index = openTicketIndex;
+	    getDataBaseConfig().afterCommit(() -> index.remove(vehicleRegNumber));
+	}
+    }
 
+    /**
+     * A ticket without id comes from the open ticket index and is paid by
+     * plate, the vehicle having a single open ticket.
+     */
+    private static String updateTicketQuery(Ticket ticket) {
+	return ticket.getId() == 0 ? DBConstants.CLOSE_OPEN_TICKET : DBConstants.UPDATE_TICKET;
+    }
+
+    private void bindUpdateTicket(PreparedStatement ps, Ticket ticket) throws SQLException {
+	ps.setDouble(1, ticket.getPrice());
+	ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+	if (ticket.getId() == 0) {
+	    ps.setString(3, ticket.getVehicleRegNumber());
+	} else {
+	    ps.setInt(3, ticket.getId());
+	}
     }
 
     /**
@@ -129,30 +308,148 @@ public class TicketDAO {
      * @return
      */
 
+    @Override
     public Boolean recurringUsers(String vehicleRegNumber) {
+	return recurringUsersLatency.time(() -> {
+	    if (recurringUserCache != null) {
+		Boolean known = recurringUserCache.isRecurring(vehicleRegNumber);
+		if (known != null) {
+		    return known;
+		}
+	    }
+	    Connection con = null;
+	    PreparedStatement ps = null;
+	    ResultSet rs = null;
+	    try {
+		con = getDataBaseConfig().getConnection();
+		ps = con.prepareStatement(DBConstants.RECURRING_USERS);
+		ps.setString(1, vehicleRegNumber);
+		rs = ps.executeQuery();
+		boolean isRecurring = rs.next() && rs.getBoolean(1);
+		if (isRecurring && recurringUserCache != null) {
+		    recurringUserCache.markRecurring(vehicleRegNumber);
+		}
+		return isRecurring;
+	    } finally {
+		getDataBaseConfig().closeResultSet(rs);
+		getDataBaseConfig().closePreparedStatement(ps);
+		getDataBaseConfig().closeConnection(con);
+	    }
+	}, ex -> {
+	    logger.error("Error recurring users info", ex);
+	    return false;
+	});
+    }
 
-	Connection con = null;
-	PreparedStatement ps = null;
-	ResultSet rs = null;
-	Boolean isRecurring = false;
-	try {
-	    con = getDataBaseConfig().getConnection();
-	    ps = con.prepareStatement(DBConstants.RECURRING_USERS);
-	    ps.setString(1, vehicleRegNumber);
-	    rs = ps.executeQuery();
-	    if (rs.next()) {
+    /**
+     * Warm a recurring user cache with every plate that has a closed ticket.
+     * Once loaded, recurringUsers only queries the recurring user summary for
+     * plates the cache can not answer.
+     * 
+     * @param expectedPlates  number of distinct plates the cache is sized for
+     * @param confirmedPlates number of confirmed recurring plates kept
+     * @return true when the cache has been loaded
+     */
+    public boolean loadRecurringUserCache(long expectedPlates, int confirmedPlates) {
+	return loadRecurringUserCacheLatency.time(() -> {
+	    Connection con = null;
+	    PreparedStatement ps = null;
+	    ResultSet rs = null;
+	    try {
+		con = getDataBaseConfig().getConnection();
+		ps = con.prepareStatement(DBConstants.GET_RECURRING_PLATES);
+		rs = ps.executeQuery();
+		RecurringUserCache cache = new RecurringUserCache(expectedPlates, confirmedPlates);
+		while (rs.next()) {
+		    cache.warm(rs.getString(1));
+		}
+		recurringUserCache = cache;
+		return true;
+	    } finally {
+		getDataBaseConfig().closeResultSet(rs);
+		getDataBaseConfig().closePreparedStatement(ps);
+		getDataBaseConfig().closeConnection(con);
+	    }
+	}, ex -> {
+	    logger.error("Error loading recurring users", ex);
+	    return false;
+	});
+    }
+
+    public void setRecurringUserCache(RecurringUserCache recurringUserCache) {
+	this.recurringUserCache = recurringUserCache;
+    }
 
-		isRecurring = rs.getBoolean(1);
+    /**
+     * Index the tickets of the vehicles currently in the parking. Once loaded,
+     * getTicket answers leaving vehicles from memory and only queries the
+     * ticket table for plates without an open ticket.
+     * 
+     * @return true when the index has been loaded
+     */
+    public boolean loadOpenTicketIndex() {
+	return loadOpenTicketIndexLatency.time(() -> {
+	    Connection con = null;
+	    PreparedStatement ps = null;
+	    ResultSet rs = null;
+	    try {
+		con = getDataBaseConfig().getConnection();
+		ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+		rs = ps.executeQuery();
+		OpenTicketIndex index = new OpenTicketIndex();
+		while (rs.next()) {
+		    Ticket ticket = new Ticket();
+		    ticket.setParkingSpot(
+			    new ParkingSpot(lotId, rs.getInt(1), ParkingType.valueOf(rs.getString(5)), false));
+		    ticket.setId(rs.getInt(2));
+		    ticket.setVehicleRegNumber(rs.getString(3));
+		    ticket.setInTime(rs.getTimestamp(4));
+		    ticket.setUserRecurring(rs.getInt(6) > 0);
+		    index.put(ticket);
+		}
+		openTicketIndex = index;
+		logger.debug("Indexed {} open tickets", index.size());
+		return true;
+	    } finally {
+		getDataBaseConfig().closeResultSet(rs);
+		getDataBaseConfig().closePreparedStatement(ps);
+		getDataBaseConfig().closeConnection(con);
 	    }
+	}, ex -> {
+	    logger.error("Error loading open tickets", ex);
+	    return false;
+	});
+    }
 
-	} catch (Exception ex) {
-	    logger.error("Error recurring users info", ex);
-	} finally {
-	    getDataBaseConfig().closeResultSet(rs);
-	    getDataBaseConfig().closePreparedStatement(ps);
-	    getDataBaseConfig().closeConnection(con);
+    public OpenTicketIndex getOpenTicketIndex() {
+	return openTicketIndex;
+    }
+
+    public void setOpenTicketIndex(OpenTicketIndex openTicketIndex) {
+	this.openTicketIndex = openTicketIndex;
+    }
+
+    /**
+     * Tickets of another lot belong to the ticket table of that lot
+     * 
+     * @throws SQLException if the ticket is of another lot
+     */
+    private void checkOwnLot(Ticket ticket) throws SQLException {
+	if (ticket.getLotId() != lotId) {
+	    throw new SQLException("Ticket of vehicle " + ticket.getVehicleRegNumber() + " in lot "
+		    + ticket.getLotId() + " sent to the ticket table of lot " + lotId);
 	}
-	return isRecurring;
+    }
+
+    public int getLotId() {
+	return lotId;
+    }
+
+    /**
+     * @param lotId the lot whose ticket table this DAO reads and writes
+     */
+    public void setLotId(int lotId) {
+	this.lotId = lotId;
     }
 
     /**
@@ -167,4 +464,14 @@ public class TicketDAO {
 	this.dataBaseConfig = dataBaseConfig;
     }
 
+    /**
+     * Send ticket writes through a group commit writer, or null to write each
+     * ticket in its own statement.
+     * 
+     * @param groupCommitWriter
+     */
+    public void setGroupCommitWriter(GroupCommitWriter groupCommitWriter) {
+	this.groupCommitWriter = groupCommitWriter;
+    }
+
 }
\ No newline at end of file
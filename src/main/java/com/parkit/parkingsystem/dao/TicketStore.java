@@ -0,0 +1,44 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * Where the tickets are kept. TicketDAO keeps them in the ticket table,
+ * EmbeddedParkingStore in memory.
+ *
+ */
+
+public interface TicketStore {
+
+	/**
+	 * Save the ticket of a vehicle entering
+	 *
+	 * @param ticket the new ticket
+	 * @return true when the ticket has been saved
+	 */
+	boolean saveTicket(Ticket ticket);
+
+	/**
+	 * Get the open ticket of a vehicle in the parking. Once it left, a store
+	 * may return its latest ticket, which has an out time, or null.
+	 *
+	 * @param vehicleRegNumber vehicle registration number
+	 * @return the ticket, null when the vehicle has none
+	 */
+	Ticket getTicket(String vehicleRegNumber);
+
+	/**
+	 * Save the price and exit time of a ticket
+	 *
+	 * @param ticket the paid ticket
+	 * @return true when the ticket has been updated, false when it was
+	 *         already paid
+	 */
+	boolean updateTicket(Ticket ticket);
+
+	/**
+	 * @param vehicleRegNumber vehicle registration number
+	 * @return true when the vehicle already left the parking at least once
+	 */
+	Boolean recurringUsers(String vehicleRegNumber);
+}
@@ -0,0 +1,345 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.OpenTicketIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.ReservationIndex;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.PlateCodec;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores the writes of the gates in a WriteAheadJournal and applies them to
+ * the database in the background, so that entries and exits go on while the
+ * database is slow or restarting.
+ *
+ * Saved and paid tickets and spot updates are acknowledged once journaled,
+ * and the gates never wait on the database. The store takes over the free
+ * spot index of the ParkingSpotDAO: spots are handed out and claimed in it
+ * and each change is journaled, while the DAO, left without the index,
+ * writes the applied changes straight to the parking table. Like the index,
+ * this assumes a single application hands out the spots of the lot. A ticket
+ * journaled but not applied yet is served from memory, so a vehicle can
+ * leave before its entry reached the database; once applied, its ticket is
+ * served from the open ticket index of the TicketDAO. The records pending at
+ * startup are replayed on both indexes, which the database does not reflect
+ * yet.
+ *
+ * Records are applied with statements that can run twice without effect,
+ * as the journal applies the last record again after a crash. Run the
+ * ParkingService of this store without a TransactionManager: the journal
+ * record is the unit of work.
+ *
+ */
+
+public class JournaledParkingStore implements ParkingSpotStore, TicketStore, AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger("JournaledParkingStore");
+
+	private static final byte TICKET_SAVED = 1;
+	private static final byte TICKET_PAID = 2;
+	private static final byte SPOT_UPDATED = 3;
+
+	private static final long NO_OUT_TIME = Long.MIN_VALUE;
+	private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+	private final ParkingSpotDAO parkingSpotDAO;
+	private final TicketDAO ticketDAO;
+	private final WriteAheadJournal journal;
+	private final FreeSpotIndex freeSpotIndex;
+	private final OpenTicketIndex openTicketIndex;
+
+	/**
+	 * latest journaled ticket of each canonical plate not applied yet
+	 */
+	private final Map<String, PendingTicket> pendingTickets = new HashMap<>();
+
+	/**
+	 * Start applying what the journal holds to the database
+	 *
+	 * @param parkingSpotDAO where spot updates are applied, its free spot
+	 *                       index loaded or loaded here
+	 * @param ticketDAO      where tickets are applied, its open ticket index
+	 *                       loaded or loaded here
+	 * @param journal        the journal, not draining yet
+	 * @throws IOException if an index or the pending records can not be read
+	 */
+	public JournaledParkingStore(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO, WriteAheadJournal journal)
+			throws IOException {
+		this.parkingSpotDAO = parkingSpotDAO;
+		this.ticketDAO = ticketDAO;
+		this.journal = journal;
+		if (parkingSpotDAO.getFreeSpotIndex() == null && !parkingSpotDAO.loadFreeSpotIndex()) {
+			throw new IOException("Unable to load the free parking spots");
+		}
+		if (ticketDAO.getOpenTicketIndex() == null && !ticketDAO.loadOpenTicketIndex()) {
+			throw new IOException("Unable to load the open tickets");
+		}
+		freeSpotIndex = parkingSpotDAO.getFreeSpotIndex();
+		openTicketIndex = ticketDAO.getOpenTicketIndex();
+		parkingSpotDAO.setFreeSpotIndex(null);
+		try {
+			journal.readPending(this::track);
+		} catch (Exception e) {
+			throw new IOException("Unable to read the pending journal records", e);
+		}
+		journal.startDraining(this::apply);
+	}
+
+	@Override
+	public int getNextAvailableSlot(ParkingType parkingType) {
+		ReservationIndex reservationIndex = parkingSpotDAO.getReservationIndex();
+		if (reservationIndex == null) {
+			return freeSpotIndex.nextFreeSpot(parkingType);
+		}
+		long now = System.currentTimeMillis();
+		return freeSpotIndex.nextFreeSpot(parkingType, number -> !reservationIndex.isHeld(number, now));
+	}
+
+	/**
+	 * The spot is taken in the free spot index, then the claim is journaled;
+	 * it is given back if it can not be
+	 */
+	@Override
+	public boolean claimParkingSpot(ParkingSpot parkingSpot) {
+		if (!isOwnLot(parkingSpot) || !freeSpotIndex.claim(parkingSpot.getId(), parkingSpot.getParkingType())) {
+			return false;
+		}
+		if (!journalSpot(parkingSpot.getId(), parkingSpot.getParkingType(), false)) {
+			freeSpotIndex.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), true);
+			return false;
+		}
+		parkingSpot.setAvailable(false);
+		return true;
+	}
+
+	/**
+	 * The update is journaled before it reaches the free spot index, so a
+	 * released spot is handed out again only once its release is journaled
+	 */
+	@Override
+	public boolean updateParking(ParkingSpot parkingSpot) {
+		if (!isOwnLot(parkingSpot)
+				|| !journalSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable())) {
+			return false;
+		}
+		freeSpotIndex.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable());
+		return true;
+	}
+
+	/**
+	 * A vehicle with an open ticket, journaled or applied, can not enter
+	 * again: its first ticket would be lost and its spot held for good
+	 */
+	@Override
+	public boolean saveTicket(Ticket ticket) {
+		return journalTicket(TICKET_SAVED, ticket);
+	}
+
+	@Override
+	public boolean updateTicket(Ticket ticket) {
+		return journalTicket(TICKET_PAID, ticket);
+	}
+
+	/**
+	 * A ticket paid but not applied yet is still in the open ticket index; the
+	 * pending record hides it, so the vehicle can not leave twice
+	 */
+	@Override
+	public Ticket getTicket(String vehicleRegNumber) {
+		synchronized (pendingTickets) {
+			PendingTicket pending = pendingTickets.get(PlateCodec.normalize(vehicleRegNumber));
+			if (pending != null) {
+				return pending.ticket.getOutTime() == null ? copy(pending.ticket) : null;
+			}
+		}
+		return openTicketIndex.get(vehicleRegNumber);
+	}
+
+	@Override
+	public Boolean recurringUsers(String vehicleRegNumber) {
+		synchronized (pendingTickets) {
+			PendingTicket pending = pendingTickets.get(PlateCodec.normalize(vehicleRegNumber));
+			if (pending != null && pending.ticket.getOutTime() != null) {
+				return true;
+			}
+		}
+		return ticketDAO.recurringUsers(vehicleRegNumber);
+	}
+
+	/**
+	 * Close the journal, giving it some time to apply what is pending
+	 */
+	@Override
+	public void close() {
+		journal.close();
+	}
+
+	private boolean journalSpot(int number, ParkingType parkingType, boolean available) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(SPOT_UPDATED);
+			out.writeInt(number);
+			out.writeByte(parkingType.ordinal());
+			out.writeBoolean(available);
+			journal.append(bytes.toByteArray());
+			return true;
+		} catch (IOException | RuntimeException ex) {
+			logger.error("Error journaling parking info", ex);
+			return false;
+		}
+	}
+
+	/**
+	 * A spot of another lot would be journaled but never applied, holding up
+	 * every record behind it
+	 */
+	private boolean isOwnLot(ParkingSpot parkingSpot) {
+		if (parkingSpot.getLotId() != parkingSpotDAO.getLotId()) {
+			logger.error("Spot {} of lot {} sent to the journal of lot {}", parkingSpot.getId(),
+					parkingSpot.getLotId(), parkingSpotDAO.getLotId());
+			return false;
+		}
+		return true;
+	}
+
+	private boolean journalTicket(byte tag, Ticket ticket) {
+		try {
+			byte[] record = encode(tag, ticket);
+			String plate = PlateCodec.normalize(ticket.getVehicleRegNumber());
+			synchronized (pendingTickets) {
+				if (tag == TICKET_SAVED && hasOpenTicket(plate)) {
+					logger.error("Vehicle number {} already has an open ticket", ticket.getVehicleRegNumber());
+					return false;
+				}
+				long sequence = journal.append(record);
+				pendingTickets.put(plate, new PendingTicket(sequence, copy(ticket)));
+			}
+			return true;
+		} catch (IOException | RuntimeException ex) {
+			logger.error("Error journaling ticket", ex);
+			return false;
+		}
+	}
+
+	/**
+	 * Called holding the lock of pendingTickets; a pending record hides the
+	 * state of the open ticket index
+	 */
+	private boolean hasOpenTicket(String plate) {
+		PendingTicket pending = pendingTickets.get(plate);
+		if (pending != null) {
+			return pending.ticket.getOutTime() == null;
+		}
+		return openTicketIndex.get(plate) != null;
+	}
+
+	private void track(long sequence, byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		byte tag = in.readByte();
+		if (tag == SPOT_UPDATED) {
+			freeSpotIndex.setAvailable(in.readInt(), PARKING_TYPES[in.readByte()], in.readBoolean());
+			return;
+		}
+		Ticket ticket = decodeTicket(in);
+		synchronized (pendingTickets) {
+			pendingTickets.put(PlateCodec.normalize(ticket.getVehicleRegNumber()), new PendingTicket(sequence, ticket));
+		}
+	}
+
+	private void apply(long sequence, byte[] record) throws IOException, SQLException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		byte tag = in.readByte();
+		if (tag == SPOT_UPDATED) {
+			ParkingSpot parkingSpot = new ParkingSpot(parkingSpotDAO.getLotId(), in.readInt(),
+					PARKING_TYPES[in.readByte()], in.readBoolean());
+			if (!parkingSpotDAO.updateParking(parkingSpot)) {
+				throw new SQLException("Unable to update parking spot " + parkingSpot.getId());
+			}
+			return;
+		}
+		Ticket ticket = decodeTicket(in);
+		boolean applied = tag == TICKET_SAVED ? ticketDAO.saveOpenTicket(ticket) : ticketDAO.closeOpenTicket(ticket);
+		if (!applied) {
+			throw new SQLException("Unable to apply ticket of vehicle number " + ticket.getVehicleRegNumber());
+		}
+		String plate = PlateCodec.normalize(ticket.getVehicleRegNumber());
+		synchronized (pendingTickets) {
+			PendingTicket pending = pendingTickets.get(plate);
+			if (pending != null && pending.sequence == sequence) {
+				pendingTickets.remove(plate);
+			}
+		}
+	}
+
+	private static byte[] encode(byte tag, Ticket ticket) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(tag);
+		out.writeInt(ticket.getParkingSpot().getId());
+		out.writeByte(ticket.getParkingSpot().getParkingType().ordinal());
+		out.writeUTF(ticket.getVehicleRegNumber());
+		out.writeLong(ticket.getInTime().getTime());
+		out.writeLong(ticket.getOutTime() == null ? NO_OUT_TIME : ticket.getOutTime().getTime());
+		out.writeDouble(ticket.getPrice());
+		out.writeBoolean(ticket.isUserRecurring());
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Records do not hold the lot, the journal being kept for the lot of its
+	 * DAOs
+	 */
+	private Ticket decodeTicket(DataInputStream in) throws IOException {
+		Ticket ticket = new Ticket();
+		ticket.setParkingSpot(new ParkingSpot(ticketDAO.getLotId(), in.readInt(), PARKING_TYPES[in.readByte()], false));
+		ticket.setVehicleRegNumber(in.readUTF());
+		ticket.setInTime(new Date(in.readLong()));
+		long outTime = in.readLong();
+		ticket.setOutTime(outTime == NO_OUT_TIME ? null : new Date(outTime));
+		ticket.setPrice(in.readDouble());
+		ticket.setUserRecurring(in.readBoolean());
+		return ticket;
+	}
+
+	private static Ticket copy(Ticket ticket) {
+		Ticket copy = new Ticket();
+		copy.setId(ticket.getId());
+		ParkingSpot parkingSpot = ticket.getParkingSpot();
+		copy.setParkingSpot(new ParkingSpot(parkingSpot.getLotId(), parkingSpot.getId(), parkingSpot.getParkingType(),
+				parkingSpot.isAvailable()));
+		copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+		copy.setPrice(ticket.getPrice());
+		copy.setInTime(ticket.getInTime());
+		copy.setOutTime(ticket.getOutTime());
+		copy.setUserRecurring(ticket.isUserRecurring());
+		return copy;
+	}
+
+	private static final class PendingTicket {
+		private final long sequence;
+		private final Ticket ticket;
+
+		private PendingTicket(long sequence, Ticket ticket) {
+			this.sequence = sequence;
+			this.ticket = ticket;
+		}
+	}
+}
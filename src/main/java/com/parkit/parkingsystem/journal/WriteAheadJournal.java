@@ -0,0 +1,464 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of records kept in memory mapped segment files, with a
+ * background thread applying the records in order.
+ *
+ * A record is acknowledged once it is copied into the mapped segment: from
+ * then on it survives a crash of the process, and with forceOnAppend a crash
+ * of the machine too. Each record is written as its length, a CRC32 of its
+ * bytes, its sequence number and its bytes. The length is written last, so a
+ * record torn by a crash is seen as the end of the journal when the segment
+ * is scanned at the next start.
+ *
+ * The sequence of the last applied record is kept in a checkpoint file,
+ * synced to the disk after each record whatever forceOnAppend says: a
+ * checkpoint lagging behind would have several applied records applied again
+ * after a crash of the machine, and replaying a ticket saved then paid on
+ * top of a newer ticket of the same vehicle would pay the newer one. After a
+ * restart the records following the checkpoint are applied again, so the
+ * handler must only tolerate applying the last record twice. A record that
+ * can not be applied is retried with a growing delay, the following ones
+ * waiting behind it. Segments whose records are all applied are deleted.
+ *
+ */
+
+public class WriteAheadJournal implements AutoCloseable {
+
+	/**
+	 * Applies or reads one record.
+	 */
+	public interface RecordHandler {
+		void handle(long sequence, byte[] record) throws Exception;
+	}
+
+	private static final Logger logger = LogManager.getLogger("WriteAheadJournal");
+
+	private static final LatencyHistogram appendLatency = Metrics.histogram("WriteAheadJournal.append");
+	private static final LatencyHistogram applyLatency = Metrics.histogram("WriteAheadJournal.apply");
+
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".wal";
+	private static final String CHECKPOINT_FILE = "applied.checkpoint";
+	private static final int HEADER_BYTES = 16;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+	private static final long FIRST_RETRY_MILLIS = 10;
+	private static final long MAX_RETRY_MILLIS = 5000;
+	private static final long CLOSE_DRAIN_MILLIS = 10_000;
+
+	private final Path directory;
+	private final int segmentSize;
+	private final boolean forceOnAppend;
+
+	/**
+	 * segments by the sequence of their first record
+	 */
+	private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+	private final FileChannel checkpointChannel;
+	private final MappedByteBuffer checkpoint;
+
+	private Segment tail;
+	private boolean closed;
+	private volatile long appendedSequence;
+	private volatile long appliedSequence;
+	private volatile boolean draining;
+	private volatile Thread drainer;
+
+	/**
+	 * Open the journal kept in a directory, recovering what a previous run
+	 * left in it
+	 *
+	 * @param directory     where the segments and the checkpoint are kept
+	 * @param segmentSize   size of each segment file in bytes
+	 * @param forceOnAppend true to sync each record to the disk before
+	 *                      acknowledging it
+	 * @throws IOException if the files can not be read or created
+	 */
+	public WriteAheadJournal(Path directory, int segmentSize, boolean forceOnAppend) throws IOException {
+		if (segmentSize <= HEADER_BYTES) {
+			throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.forceOnAppend = forceOnAppend;
+		Files.createDirectories(directory);
+		checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+		appliedSequence = checkpoint.getLong(0);
+		appendedSequence = appliedSequence;
+		recover();
+		logger.info("Opened journal {}: {} records applied, {} to apply", directory, appliedSequence,
+				appendedSequence - appliedSequence);
+	}
+
+	/**
+	 * Append a record
+	 *
+	 * @param record bytes of the record, not empty
+	 * @return sequence number of the record
+	 * @throws IOException if a new segment can not be created
+	 */
+	public long append(byte[] record) throws IOException {
+		if (record.length == 0 || HEADER_BYTES + record.length > segmentSize) {
+			throw new IllegalArgumentException("Record of " + record.length + " bytes does not fit a segment");
+		}
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			long sequence;
+			synchronized (this) {
+				if (closed) {
+					throw new IllegalStateException("Journal " + directory + " is closed");
+				}
+				if (tail.end + HEADER_BYTES + record.length > segmentSize) {
+					tail = createSegment(appendedSequence + 1);
+				}
+				sequence = appendedSequence + 1;
+				int position = tail.end;
+				ByteBuffer buffer = tail.buffer;
+				buffer.putInt(position + 4, crc(record));
+				buffer.putLong(position + 8, sequence);
+				ByteBuffer payload = buffer.duplicate();
+				payload.position(position + HEADER_BYTES);
+				payload.put(record);
+				buffer.putInt(position, record.length);
+				tail.end = position + HEADER_BYTES + record.length;
+				if (forceOnAppend) {
+					tail.buffer.force();
+				}
+				appendedSequence = sequence;
+			}
+			Thread thread = drainer;
+			if (thread != null) {
+				LockSupport.unpark(thread);
+			}
+			failed = false;
+			return sequence;
+		} finally {
+			appendLatency.record(start, failed);
+		}
+	}
+
+	/**
+	 * Read the records appended but not applied yet, without applying them
+	 *
+	 * @param handler called with each record in order
+	 * @throws Exception what the handler threw
+	 */
+	public void readPending(RecordHandler handler) throws Exception {
+		Cursor cursor = new Cursor(appliedSequence + 1);
+		byte[] record;
+		while ((record = cursor.next()) != null) {
+			handler.handle(cursor.sequence, record);
+		}
+	}
+
+	/**
+	 * Start applying the pending records and every record appended from now
+	 * on, in order, from a background thread
+	 *
+	 * @param handler applies a record, throws when it has to be retried
+	 */
+	public synchronized void startDraining(RecordHandler handler) {
+		if (drainer != null) {
+			throw new IllegalStateException("Journal " + directory + " is already draining");
+		}
+		draining = true;
+		drainer = new Thread(() -> drain(handler), "journal-drainer");
+		drainer.setDaemon(true);
+		drainer.start();
+	}
+
+	/**
+	 * @return sequence of the last appended record
+	 */
+	public long getAppendedSequence() {
+		return appendedSequence;
+	}
+
+	/**
+	 * @return sequence of the last applied record
+	 */
+	public long getAppliedSequence() {
+		return appliedSequence;
+	}
+
+	/**
+	 * Refuse new records, give the drainer some time to apply the pending ones
+	 * and close the files. Records still pending are applied at the next
+	 * start.
+	 */
+	@Override
+	public void close() {
+		Thread thread;
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			thread = drainer;
+		}
+		if (thread != null) {
+			long deadline = System.currentTimeMillis() + CLOSE_DRAIN_MILLIS;
+			while (appliedSequence < appendedSequence && System.currentTimeMillis() < deadline) {
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+			}
+			draining = false;
+			LockSupport.unpark(thread);
+			try {
+				thread.join(CLOSE_DRAIN_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (appliedSequence < appendedSequence) {
+			logger.warn("Closing journal {} with {} records to apply", directory, appendedSequence - appliedSequence);
+		}
+		for (Segment segment : segments.values()) {
+			segment.buffer.force();
+			closeQuietly(segment.channel);
+		}
+		checkpoint.force();
+		closeQuietly(checkpointChannel);
+	}
+
+	private void drain(RecordHandler handler) {
+		Cursor cursor = new Cursor(appliedSequence + 1);
+		while (draining) {
+			byte[] record = cursor.next();
+			if (record == null) {
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+				continue;
+			}
+			if (apply(handler, cursor.sequence, record)) {
+				appliedSequence = cursor.sequence;
+				checkpoint.putLong(0, cursor.sequence);
+				checkpoint.force();
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return false when the journal was closed before the record could be
+	 *         applied
+	 */
+	private boolean apply(RecordHandler handler, long sequence, byte[] record) {
+		long retryMillis = FIRST_RETRY_MILLIS;
+		while (true) {
+			long start = System.nanoTime();
+			boolean failed = true;
+			try {
+				handler.handle(sequence, record);
+				failed = false;
+				return true;
+			} catch (Exception e) {
+				logger.warn("Unable to apply journal record {}, retrying in {}ms: {}", sequence, retryMillis,
+						e.getMessage());
+			} finally {
+				applyLatency.record(start, failed);
+			}
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryMillis));
+			if (!draining) {
+				return false;
+			}
+			retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+		}
+	}
+
+	/**
+	 * Scan the segments left by the previous run. The first record that is
+	 * missing, torn or out of sequence ends the journal; what follows it is
+	 * wiped so that it can not be mistaken for records later.
+	 */
+	private void recover() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+				SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				Segment segment = openSegment(file, firstSequenceOf(file));
+				segments.put(segment.firstSequence, segment);
+			}
+		}
+		long nextSequence = 0;
+		boolean ended = false;
+		for (Segment segment : new ArrayList<>(segments.values())) {
+			if (ended || nextSequence > 0 && segment.firstSequence != nextSequence) {
+				logger.warn("Dropping journal segment {} that does not follow record {}", segment.file,
+						nextSequence - 1);
+				segments.remove(segment.firstSequence);
+				closeQuietly(segment.channel);
+				Files.delete(segment.file);
+				ended = true;
+				continue;
+			}
+			if (nextSequence == 0 && segment.firstSequence > appliedSequence + 1) {
+				logger.error("Journal records {} to {} are missing", appliedSequence + 1, segment.firstSequence - 1);
+				appliedSequence = segment.firstSequence - 1;
+			}
+			long sequence = segment.firstSequence - 1;
+			int position = 0;
+			while (position + HEADER_BYTES <= segmentSize) {
+				int length = segment.buffer.getInt(position);
+				if (length <= 0 || position + HEADER_BYTES + length > segmentSize
+						|| segment.buffer.getLong(position + 8) != sequence + 1
+						|| segment.buffer.getInt(position + 4) != crc(read(segment.buffer, position, length))) {
+					break;
+				}
+				sequence++;
+				position += HEADER_BYTES + length;
+			}
+			if (position + HEADER_BYTES <= segmentSize && segment.buffer.getInt(position) != 0) {
+				logger.warn("Journal segment {} ends with a torn record after record {}", segment.file, sequence);
+				ended = true;
+			}
+			for (int wipe = position; wipe < segmentSize; wipe++) {
+				segment.buffer.put(wipe, (byte) 0);
+			}
+			segment.end = position;
+			nextSequence = sequence + 1;
+			appendedSequence = Math.max(appliedSequence, sequence);
+		}
+		while (segments.size() > 1 && segments.higherKey(segments.firstKey()) <= appliedSequence + 1) {
+			Segment applied = segments.pollFirstEntry().getValue();
+			closeQuietly(applied.channel);
+			Files.delete(applied.file);
+		}
+		tail = segments.isEmpty() ? createSegment(appendedSequence + 1) : segments.lastEntry().getValue();
+	}
+
+	private Segment createSegment(long firstSequence) throws IOException {
+		Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+		Segment segment = openSegment(file, firstSequence);
+		segments.put(firstSequence, segment);
+		return segment;
+	}
+
+	private Segment openSegment(Path file, long firstSequence) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		return new Segment(file, firstSequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+	}
+
+	private static long firstSequenceOf(Path file) {
+		String name = file.getFileName().toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	private static byte[] read(ByteBuffer buffer, int position, int length) {
+		byte[] record = new byte[length];
+		ByteBuffer payload = buffer.duplicate();
+		payload.position(position + HEADER_BYTES);
+		payload.get(record);
+		return record;
+	}
+
+	private static int crc(byte[] record) {
+		CRC32 crc = new CRC32();
+		crc.update(record, 0, record.length);
+		return (int) crc.getValue();
+	}
+
+	private static void closeQuietly(FileChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.error("Error closing journal file", e);
+		}
+	}
+
+	/**
+	 * Reads the records in sequence order from a given sequence on, moving to
+	 * the next segment at the end of one. Only records already appended are
+	 * read, so a record is never seen half written.
+	 */
+	private final class Cursor {
+		private Segment segment;
+		private int position;
+		private long sequence;
+
+		private Cursor(long firstSequence) {
+			sequence = firstSequence - 1;
+			Map.Entry<Long, Segment> entry = segments.floorEntry(firstSequence);
+			segment = entry == null ? segments.firstEntry().getValue() : entry.getValue();
+			long skipped = segment.firstSequence;
+			while (skipped < firstSequence && position + HEADER_BYTES <= segmentSize
+					&& segment.buffer.getInt(position) > 0) {
+				position += HEADER_BYTES + segment.buffer.getInt(position);
+				skipped++;
+			}
+		}
+
+		/**
+		 * @return the next record, null when none has been appended yet
+		 */
+		private byte[] next() {
+			if (sequence >= appendedSequence) {
+				return null;
+			}
+			if (position + HEADER_BYTES > segmentSize || segment.buffer.getInt(position) == 0) {
+				Segment previous = segment;
+				segment = segments.get(sequence + 1);
+				if (segment == null) {
+					throw new IllegalStateException("Journal record " + (sequence + 1) + " is missing");
+				}
+				position = 0;
+				deleteApplied(previous);
+			}
+			int length = segment.buffer.getInt(position);
+			byte[] record = read(segment.buffer, position, length);
+			position += HEADER_BYTES + length;
+			sequence++;
+			return record;
+		}
+
+		private void deleteApplied(Segment applied) {
+			if (!draining) {
+				return;
+			}
+			segments.remove(applied.firstSequence);
+			closeQuietly(applied.channel);
+			try {
+				Files.deleteIfExists(applied.file);
+			} catch (IOException e) {
+				logger.error("Error deleting applied journal segment {}", applied.file, e);
+			}
+		}
+	}
+
+	private static final class Segment {
+		private final Path file;
+		private final long firstSequence;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+		private int end;
+
+		private Segment(Path file, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+			this.file = file;
+			this.firstSequence = firstSequence;
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+	}
+}
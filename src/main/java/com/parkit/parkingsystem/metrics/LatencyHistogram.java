@@ -0,0 +1,193 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Lock free latency histogram of one operation.
+ *
+ * Durations are counted in log linear buckets: every power of two is split in
+ * 16 equal buckets, so a percentile is reported at most 1/16th above the real
+ * value whatever the scale, from nanoseconds to minutes. Recording is a few
+ * atomic increments and never allocates.
+ *
+ */
+
+public class LatencyHistogram implements LatencyHistogramMXBean {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Record an operation started at the given System.nanoTime()
+	 *
+	 * @param startNanos System.nanoTime() when the operation started
+	 * @param failed     whether the operation failed
+	 */
+	public void record(long startNanos, boolean failed) {
+		recordNanos(System.nanoTime() - startNanos, failed);
+	}
+
+	/**
+	 * Run an operation and record its latency, as failed when it throws
+	 *
+	 * @param operation the operation
+	 * @return the result of the operation
+	 * @throws Exception what the operation throws
+	 */
+	public <T> T time(Callable<T> operation) throws Exception {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			T result = operation.call();
+			failed = false;
+			return result;
+		} finally {
+			record(start, failed);
+		}
+	}
+
+	/**
+	 * Run an operation and record its latency. When it throws, it is recorded
+	 * as failed and the result is the one of the failure handler.
+	 *
+	 * @param operation the operation
+	 * @param onFailure gives the result from what the operation threw
+	 * @return the result of the operation or of the failure handler
+	 */
+	public <T> T time(Callable<T> operation, Function<Exception, T> onFailure) {
+		try {
+			return time(operation);
+		} catch (Exception e) {
+			return onFailure.apply(e);
+		}
+	}
+
+	/**
+	 * @param nanos  duration of the operation
+	 * @param failed whether the operation failed
+	 */
+	public void recordNanos(long nanos, boolean failed) {
+		long duration = Math.max(0, nanos);
+		buckets.incrementAndGet(bucketOf(duration));
+		totalNanos.add(duration);
+		maxNanos.accumulate(duration);
+		if (failed) {
+			errors.increment();
+		}
+	}
+
+	static int bucketOf(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return the largest duration counted in the bucket
+	 */
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Read the counters. Operations recorded meanwhile may or may not be
+	 * included.
+	 *
+	 * @return the distribution recorded so far
+	 */
+	public LatencySnapshot snapshot() {
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			count += counts[i];
+		}
+		long max = maxNanos.get();
+		return new LatencySnapshot(name, count, errors.sum(), count == 0 ? 0 : totalNanos.sum() / count,
+				percentile(counts, count, 0.50, max), percentile(counts, count, 0.99, max),
+				percentile(counts, count, 0.999, max), max);
+	}
+
+	private static long percentile(long[] counts, long count, double quantile, long max) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(quantile * count);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), max);
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getCount() {
+		return snapshot().getCount();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public double getMeanMicros() {
+		return toMicros(snapshot().getMeanNanos());
+	}
+
+	@Override
+	public double getP50Micros() {
+		return toMicros(snapshot().getP50Nanos());
+	}
+
+	@Override
+	public double getP99Micros() {
+		return toMicros(snapshot().getP99Nanos());
+	}
+
+	@Override
+	public double getP999Micros() {
+		return toMicros(snapshot().getP999Nanos());
+	}
+
+	@Override
+	public double getMaxMicros() {
+		return toMicros(maxNanos.get());
+	}
+
+	static double toMicros(long nanos) {
+		return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+	}
+}
@@ -0,0 +1,25 @@
+package com.parkit.parkingsystem.metrics;
+
+/**
+ * JMX view of a LatencyHistogram. Durations are in microseconds.
+ *
+ */
+
+public interface LatencyHistogramMXBean {
+
+	String getName();
+
+	long getCount();
+
+	long getErrors();
+
+	double getMeanMicros();
+
+	double getP50Micros();
+
+	double getP99Micros();
+
+	double getP999Micros();
+
+	double getMaxMicros();
+}
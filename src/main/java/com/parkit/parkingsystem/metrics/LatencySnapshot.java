@@ -0,0 +1,71 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.Locale;
+
+/**
+ * Point in time summary of a LatencyHistogram.
+ *
+ */
+
+public class LatencySnapshot {
+	private final String name;
+	private final long count;
+	private final long errors;
+	private final long meanNanos;
+	private final long p50Nanos;
+	private final long p99Nanos;
+	private final long p999Nanos;
+	private final long maxNanos;
+
+	public LatencySnapshot(String name, long count, long errors, long meanNanos, long p50Nanos, long p99Nanos,
+			long p999Nanos, long maxNanos) {
+		this.name = name;
+		this.count = count;
+		this.errors = errors;
+		this.meanNanos = meanNanos;
+		this.p50Nanos = p50Nanos;
+		this.p99Nanos = p99Nanos;
+		this.p999Nanos = p999Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getMeanNanos() {
+		return meanNanos;
+	}
+
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	public long getP999Nanos() {
+		return p999Nanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%s count=%d errors=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+				name, count, errors, LatencyHistogram.toMicros(meanNanos), LatencyHistogram.toMicros(p50Nanos),
+				LatencyHistogram.toMicros(p99Nanos), LatencyHistogram.toMicros(p999Nanos),
+				LatencyHistogram.toMicros(maxNanos));
+	}
+}
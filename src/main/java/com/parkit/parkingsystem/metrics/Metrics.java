@@ -0,0 +1,36 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registry of the latency histograms of the application, one per operation
+ * name. Classes keep the histograms of their operations in static fields.
+ *
+ */
+
+public final class Metrics {
+
+	private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+	private Metrics() {
+
+	}
+
+	/**
+	 * @param name operation name, by convention Class.method
+	 * @return the histogram of the operation, created on first use
+	 */
+	public static LatencyHistogram histogram(String name) {
+		return HISTOGRAMS.computeIfAbsent(name, LatencyHistogram::new);
+	}
+
+	/**
+	 * @return every histogram, sorted by name
+	 */
+	public static List<LatencyHistogram> histograms() {
+		return new ArrayList<>(HISTOGRAMS.values());
+	}
+}
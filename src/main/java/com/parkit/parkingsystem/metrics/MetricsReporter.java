@@ -0,0 +1,115 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the histograms of Metrics: each one is registered as an MXBean
+ * named com.parkit.parkingsystem:type=Latency,name=[operation], and a snapshot
+ * of all operations seen so far is logged periodically.
+ *
+ */
+
+public class MetricsReporter {
+
+	private static final Logger logger = LogManager.getLogger("MetricsReporter");
+
+	static final String JMX_DOMAIN = "com.parkit.parkingsystem";
+
+	private final long periodMillis;
+	private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+	private final Set<ObjectName> registered = new HashSet<>();
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * @param periodMillis interval between two logged snapshots
+	 */
+	public MetricsReporter(long periodMillis) {
+		this.periodMillis = periodMillis;
+	}
+
+	/**
+	 * Register the MXBeans and start logging snapshots
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		registerMBeans();
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-reporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleAtFixedRate(this::report, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Log a last snapshot and unregister the MXBeans
+	 */
+	public synchronized void stop() {
+		if (scheduler == null) {
+			return;
+		}
+		scheduler.shutdownNow();
+		scheduler = null;
+		logSnapshot();
+		for (ObjectName objectName : registered) {
+			try {
+				mBeanServer.unregisterMBean(objectName);
+			} catch (JMException e) {
+				logger.warn("Unable to unregister {}", objectName, e);
+			}
+		}
+		registered.clear();
+	}
+
+	private synchronized void report() {
+		try {
+			registerMBeans();
+			logSnapshot();
+		} catch (RuntimeException e) {
+			logger.error("Error reporting metrics", e);
+		}
+	}
+
+	/**
+	 * Register the histograms created since the last call
+	 */
+	void registerMBeans() {
+		for (LatencyHistogram histogram : Metrics.histograms()) {
+			try {
+				ObjectName objectName = objectNameOf(histogram.getName());
+				if (!registered.contains(objectName) && !mBeanServer.isRegistered(objectName)) {
+					mBeanServer.registerMBean(histogram, objectName);
+					registered.add(objectName);
+				}
+			} catch (JMException e) {
+				logger.warn("Unable to register latency of {}", histogram.getName(), e);
+			}
+		}
+	}
+
+	static ObjectName objectNameOf(String operation) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=Latency,name=" + ObjectName.quote(operation));
+	}
+
+	private void logSnapshot() {
+		for (LatencyHistogram histogram : Metrics.histograms()) {
+			LatencySnapshot snapshot = histogram.snapshot();
+			if (snapshot.getCount() > 0) {
+				logger.info("Latency {}", snapshot);
+			}
+		}
+	}
+}
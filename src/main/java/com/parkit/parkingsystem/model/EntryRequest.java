@@ -0,0 +1,51 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Date;
+
+/**
+ * A vehicle asking to enter the parking at a gate.
+ *
+ */
+
+public class EntryRequest {
+	private final String vehicleRegNumber;
+	private final ParkingType parkingType;
+	private final String gateId;
+	private final long timestamp;
+
+	/**
+	 * @param vehicleRegNumber vehicle registration number
+	 * @param parkingType      type of spot the vehicle needs
+	 * @param gateId           gate or kiosk the request comes from
+	 * @param timestamp        entry time, becomes the in time of the ticket
+	 */
+	public EntryRequest(String vehicleRegNumber, ParkingType parkingType, String gateId, Date timestamp) {
+		this.vehicleRegNumber = vehicleRegNumber;
+		this.parkingType = parkingType;
+		this.gateId = gateId;
+		this.timestamp = timestamp.getTime();
+	}
+
+	public String getVehicleRegNumber() {
+		return vehicleRegNumber;
+	}
+
+	public ParkingType getParkingType() {
+		return parkingType;
+	}
+
+	public String getGateId() {
+		return gateId;
+	}
+
+	public Date getTimestamp() {
+		return new Date(timestamp);
+	}
+
+	@Override
+	public String toString() {
+		return "EntryRequest[" + vehicleRegNumber + ", " + parkingType + ", gate " + gateId + "]";
+	}
+}
@@ -0,0 +1,42 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.Date;
+
+/**
+ * A vehicle asking to leave the parking at a gate.
+ *
+ */
+
+public class ExitRequest {
+	private final String vehicleRegNumber;
+	private final String gateId;
+	private final long timestamp;
+
+	/**
+	 * @param vehicleRegNumber vehicle registration number
+	 * @param gateId           gate or kiosk the request comes from
+	 * @param timestamp        exit time, becomes the out time of the ticket
+	 */
+	public ExitRequest(String vehicleRegNumber, String gateId, Date timestamp) {
+		this.vehicleRegNumber = vehicleRegNumber;
+		this.gateId = gateId;
+		this.timestamp = timestamp.getTime();
+	}
+
+	public String getVehicleRegNumber() {
+		return vehicleRegNumber;
+	}
+
+	public String getGateId() {
+		return gateId;
+	}
+
+	public Date getTimestamp() {
+		return new Date(timestamp);
+	}
+
+	@Override
+	public String toString() {
+		return "ExitRequest[" + vehicleRegNumber + ", gate " + gateId + "]";
+	}
+}
@@ -0,0 +1,94 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Arrays;
+
+/**
+ * model of the free and total spots of each parking type at one instant.
+ * Instances are immutable, a change gives a new instance.
+ */
+
+public final class Occupancy {
+
+	/**
+	 * no spot of any type
+	 */
+	public static final Occupancy EMPTY = new Occupancy(new int[ParkingType.values().length],
+			new int[ParkingType.values().length]);
+
+	private final int[] freeSpots;
+	private final int[] totalSpots;
+
+	private Occupancy(int[] freeSpots, int[] totalSpots) {
+		this.freeSpots = freeSpots;
+		this.totalSpots = totalSpots;
+	}
+
+	/**
+	 * @param parkingType type of the spots
+	 * @param freeSpots   number of free spots of the type
+	 * @param totalSpots  number of spots of the type
+	 * @return a copy with the counts of the type replaced
+	 */
+	public Occupancy withSpots(ParkingType parkingType, int freeSpots, int totalSpots) {
+		int[] free = this.freeSpots.clone();
+		int[] total = this.totalSpots.clone();
+		free[parkingType.ordinal()] = freeSpots;
+		total[parkingType.ordinal()] = totalSpots;
+		return new Occupancy(free, total);
+	}
+
+	/**
+	 * @param parkingType type of the spot
+	 * @param delta       1 when a spot is freed, -1 when one is taken
+	 * @return a copy with the free spots of the type changed
+	 */
+	public Occupancy withFreeSpotsChanged(ParkingType parkingType, int delta) {
+		int[] free = freeSpots.clone();
+		free[parkingType.ordinal()] += delta;
+		return new Occupancy(free, totalSpots);
+	}
+
+	public int getFreeSpots(ParkingType parkingType) {
+		return freeSpots[parkingType.ordinal()];
+	}
+
+	public int getTotalSpots(ParkingType parkingType) {
+		return totalSpots[parkingType.ordinal()];
+	}
+
+	public int getOccupiedSpots(ParkingType parkingType) {
+		return getTotalSpots(parkingType) - getFreeSpots(parkingType);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof Occupancy)) {
+			return false;
+		}
+		Occupancy occupancy = (Occupancy) other;
+		return Arrays.equals(freeSpots, occupancy.freeSpots) && Arrays.equals(totalSpots, occupancy.totalSpots);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(freeSpots) + Arrays.hashCode(totalSpots);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (ParkingType parkingType : ParkingType.values()) {
+			if (text.length() > 0) {
+				text.append(", ");
+			}
+			text.append(parkingType).append(' ').append(getFreeSpots(parkingType)).append('/')
+					.append(getTotalSpots(parkingType)).append(" free");
+		}
+		return text.toString();
+	}
+}
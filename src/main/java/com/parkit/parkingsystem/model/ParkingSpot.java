@@ -7,16 +7,41 @@ import com.parkit.parkingsystem.constants.ParkingType;
  */
 
 public class ParkingSpot {
+	/**
+	 * lot of the deployments with a single parking
+	 */
+	public static final int DEFAULT_LOT_ID = 1;
+
+	private int lotId;
 	private int number;
 	private ParkingType parkingType;
 	private boolean isAvailable;
 
 	public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable) {
+		this(DEFAULT_LOT_ID, number, parkingType, isAvailable);
+	}
+
+	/**
+	 * @param lotId       parking lot of the spot
+	 * @param number      number of the spot in its lot
+	 * @param parkingType type of vehicle the spot takes
+	 * @param isAvailable true when the spot is free
+	 */
+	public ParkingSpot(int lotId, int number, ParkingType parkingType, boolean isAvailable) {
+		this.lotId = lotId;
 		this.number = number;
 		this.parkingType = parkingType;
 		this.isAvailable = isAvailable;
 	}
 
+	public int getLotId() {
+		return lotId;
+	}
+
+	public void setLotId(int lotId) {
+		this.lotId = lotId;
+	}
+
 	public int getId() {
 	    return number;
 	}
@@ -48,11 +73,11 @@ public class ParkingSpot {
 		if (o == null || getClass() != o.getClass())
 			return false;
 		ParkingSpot that = (ParkingSpot) o;
-		return number == that.number;
+		return lotId == that.lotId && number == that.number;
 	}
 
 	@Override
 	public int hashCode() {
-		return number;
+		return 31 * lotId + number;
 	}
 }
@@ -0,0 +1,87 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Date;
+
+/**
+ * model of a spot booked ahead by a vehicle, from its start time included to
+ * its end time excluded.
+ */
+
+public final class Reservation {
+	private final int id;
+	private final int parkingNumber;
+	private final ParkingType parkingType;
+	private final String vehicleRegNumber;
+	private final long startTime;
+	private final long endTime;
+
+	/**
+	 * @param id               id of the reservation, 0 until saved
+	 * @param parkingNumber    the booked spot
+	 * @param parkingType      type of the booked spot
+	 * @param vehicleRegNumber vehicle registration number
+	 * @param startTime        start of the booking
+	 * @param endTime          end of the booking, after its start
+	 */
+	public Reservation(int id, int parkingNumber, ParkingType parkingType, String vehicleRegNumber, Date startTime,
+			Date endTime) {
+		if (!endTime.after(startTime)) {
+			throw new IllegalArgumentException("A reservation must end after it starts");
+		}
+		this.id = id;
+		this.parkingNumber = parkingNumber;
+		this.parkingType = parkingType;
+		this.vehicleRegNumber = vehicleRegNumber;
+		this.startTime = startTime.getTime();
+		this.endTime = endTime.getTime();
+	}
+
+	/**
+	 * @param id id given by the database
+	 * @return a copy with the id set
+	 */
+	public Reservation withId(int id) {
+		return new Reservation(id, parkingNumber, parkingType, vehicleRegNumber, getStartTime(), getEndTime());
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getParkingNumber() {
+		return parkingNumber;
+	}
+
+	public ParkingType getParkingType() {
+		return parkingType;
+	}
+
+	public String getVehicleRegNumber() {
+		return vehicleRegNumber;
+	}
+
+	public Date getStartTime() {
+		return new Date(startTime);
+	}
+
+	public Date getEndTime() {
+		return new Date(endTime);
+	}
+
+	/**
+	 * @param from start of a window, epoch millis
+	 * @param to   end of the window, epoch millis
+	 * @return true when the reservation and the window share an instant
+	 */
+	public boolean overlaps(long from, long to) {
+		return startTime < to && from < endTime;
+	}
+
+	@Override
+	public String toString() {
+		return "Reservation " + id + " of spot " + parkingNumber + " for " + vehicleRegNumber + " from "
+				+ getStartTime() + " to " + getEndTime();
+	}
+}
@@ -27,6 +27,13 @@ public class Ticket {
 		this.parkingSpot = parkingSpot;
 	}
 
+	/**
+	 * @return parking lot of the spot of the ticket
+	 */
+	public int getLotId() {
+		return parkingSpot.getLotId();
+	}
+
 	public String getVehicleRegNumber() {
 		return vehicleRegNumber;
 	}
@@ -0,0 +1,82 @@
+package com.parkit.parkingsystem.replay;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryRequest;
+import com.parkit.parkingsystem.model.ExitRequest;
+
+import java.util.Date;
+
+/**
+ * One line of a gate event log: a vehicle entering or leaving at a gate.
+ *
+ */
+
+public class GateEvent {
+
+	public enum Direction {
+		ENTRY, EXIT
+	}
+
+	private final long sequence;
+	private final long timestamp;
+	private final Direction direction;
+	private final String vehicleRegNumber;
+	private final ParkingType parkingType;
+	private final String gateId;
+
+	/**
+	 * @param sequence         position of the event in the log
+	 * @param timestamp        epoch millis of the event
+	 * @param direction        entry or exit
+	 * @param vehicleRegNumber vehicle registration number
+	 * @param parkingType      type of spot, only needed for entries
+	 * @param gateId           gate that recorded the event
+	 */
+	public GateEvent(long sequence, long timestamp, Direction direction, String vehicleRegNumber,
+			ParkingType parkingType, String gateId) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.direction = direction;
+		this.vehicleRegNumber = vehicleRegNumber;
+		this.parkingType = parkingType;
+		this.gateId = gateId;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public Direction getDirection() {
+		return direction;
+	}
+
+	public String getVehicleRegNumber() {
+		return vehicleRegNumber;
+	}
+
+	public ParkingType getParkingType() {
+		return parkingType;
+	}
+
+	public String getGateId() {
+		return gateId;
+	}
+
+	public EntryRequest toEntryRequest() {
+		return new EntryRequest(vehicleRegNumber, parkingType, gateId, new Date(timestamp));
+	}
+
+	public ExitRequest toExitRequest() {
+		return new ExitRequest(vehicleRegNumber, gateId, new Date(timestamp));
+	}
+
+	@Override
+	public String toString() {
+		return "#" + sequence + " " + direction + " " + vehicleRegNumber + " at " + new Date(timestamp) + " gate "
+				+ gateId;
+	}
+}
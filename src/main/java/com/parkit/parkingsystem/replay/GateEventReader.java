@@ -0,0 +1,259 @@
+package com.parkit.parkingsystem.replay;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads gate events one line at a time, so a log of any size is streamed with
+ * constant memory.
+ *
+ * Two formats are accepted. NDJSON: one flat JSON object per line, such as
+ * {"timestamp":"2021-03-01T08:15:00Z","direction":"entry","plate":"AB123CD","type":"CAR","gate":"north"}.
+ * CSV: a header line naming the columns timestamp, direction, plate, type and
+ * gate in any order, then one event per line. Timestamps are epoch millis, ISO
+ * instants or ISO local date times in the default time zone. Directions are
+ * entry/in or exit/out. Type is only required for entries and gate is
+ * optional.
+ *
+ * Lines that can not be parsed are logged and skipped.
+ *
+ */
+
+public class GateEventReader implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger("GateEventReader");
+
+	static final String DEFAULT_GATE_ID = "replay";
+
+	private static final String[] COLUMNS = { "timestamp", "direction", "plate", "type", "gate" };
+
+	private final BufferedReader reader;
+	private final ZoneId zoneId = ZoneId.systemDefault();
+	private Map<String, Integer> csvColumns;
+	private long lineNumber;
+	private long sequence;
+	private long malformedLines;
+
+	public GateEventReader(BufferedReader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * @return the next event of the log, null at the end
+	 * @throws IOException if the log can not be read
+	 */
+	public GateEvent next() throws IOException {
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			String trimmed = line.trim();
+			if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+				continue;
+			}
+			try {
+				Map<String, String> fields;
+				if (trimmed.charAt(0) == '{') {
+					fields = parseJsonObject(trimmed);
+				} else if (csvColumns == null) {
+					csvColumns = parseCsvHeader(trimmed);
+					continue;
+				} else {
+					fields = parseCsvLine(trimmed);
+				}
+				return toEvent(fields);
+			} catch (IllegalArgumentException | DateTimeParseException e) {
+				malformedLines++;
+				logger.warn("Skipping line {} of gate event log: {}", lineNumber, e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return number of lines skipped because they could not be parsed
+	 */
+	public long getMalformedLines() {
+		return malformedLines;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private GateEvent toEvent(Map<String, String> fields) {
+		String direction = required(fields, "direction").toLowerCase(Locale.ROOT);
+		String plate = required(fields, "plate");
+		String gate = fields.get("gate");
+		long timestamp = parseTimestamp(required(fields, "timestamp"));
+		if ("entry".equals(direction) || "in".equals(direction)) {
+			ParkingType parkingType = ParkingType.valueOf(required(fields, "type").toUpperCase(Locale.ROOT));
+			return new GateEvent(sequence++, timestamp, GateEvent.Direction.ENTRY, plate, parkingType,
+					gate == null || gate.isEmpty() ? DEFAULT_GATE_ID : gate);
+		}
+		if ("exit".equals(direction) || "out".equals(direction)) {
+			return new GateEvent(sequence++, timestamp, GateEvent.Direction.EXIT, plate, null,
+					gate == null || gate.isEmpty() ? DEFAULT_GATE_ID : gate);
+		}
+		throw new IllegalArgumentException("Unknown direction " + direction);
+	}
+
+	private static String required(Map<String, String> fields, String name) {
+		String value = fields.get(name);
+		if (value == null || value.isEmpty()) {
+			throw new IllegalArgumentException("Missing " + name);
+		}
+		return value;
+	}
+
+	private long parseTimestamp(String value) {
+		if (value.chars().allMatch(Character::isDigit)) {
+			return Long.parseLong(value);
+		}
+		if (value.endsWith("Z") || value.endsWith("z")) {
+			return Instant.parse(value).toEpochMilli();
+		}
+		return LocalDateTime.parse(value).atZone(zoneId).toInstant().toEpochMilli();
+	}
+
+	private static Map<String, Integer> parseCsvHeader(String line) {
+		Map<String, Integer> columns = new HashMap<>();
+		String[] names = line.split(",", -1);
+		for (int i = 0; i < names.length; i++) {
+			columns.put(names[i].trim().toLowerCase(Locale.ROOT), i);
+		}
+		if (!columns.containsKey("timestamp") || !columns.containsKey("direction") || !columns.containsKey("plate")) {
+			throw new IllegalArgumentException("CSV header must name at least timestamp, direction and plate");
+		}
+		return columns;
+	}
+
+	private Map<String, String> parseCsvLine(String line) {
+		String[] values = line.split(",", -1);
+		Map<String, String> fields = new HashMap<>();
+		for (String column : COLUMNS) {
+			Integer index = csvColumns.get(column);
+			if (index != null && index < values.length) {
+				fields.put(column, values[index].trim());
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Parse a flat JSON object whose values are strings, numbers, booleans or
+	 * null
+	 */
+	static Map<String, String> parseJsonObject(String json) {
+		Map<String, String> fields = new HashMap<>();
+		int[] position = { skipWhitespace(json, 1) };
+		if (position[0] < json.length() && json.charAt(position[0]) == '}') {
+			return fields;
+		}
+		while (true) {
+			String name = readJsonString(json, position);
+			position[0] = expect(json, skipWhitespace(json, position[0]), ':');
+			position[0] = skipWhitespace(json, position[0]);
+			String value;
+			if (position[0] < json.length() && json.charAt(position[0]) == '"') {
+				value = readJsonString(json, position);
+			} else {
+				int start = position[0];
+				while (position[0] < json.length() && ",} \t".indexOf(json.charAt(position[0])) < 0) {
+					position[0]++;
+				}
+				value = json.substring(start, position[0]);
+				if ("null".equals(value)) {
+					value = null;
+				}
+			}
+			fields.put(name.toLowerCase(Locale.ROOT), value);
+			position[0] = skipWhitespace(json, position[0]);
+			if (position[0] >= json.length()) {
+				throw new IllegalArgumentException("Unterminated JSON object");
+			}
+			char separator = json.charAt(position[0]++);
+			if (separator == '}') {
+				return fields;
+			}
+			if (separator != ',') {
+				throw new IllegalArgumentException("Expected , or } at " + (position[0] - 1));
+			}
+			position[0] = skipWhitespace(json, position[0]);
+		}
+	}
+
+	private static String readJsonString(String json, int[] position) {
+		int index = expect(json, position[0], '"');
+		StringBuilder value = new StringBuilder();
+		while (index < json.length()) {
+			char c = json.charAt(index++);
+			if (c == '"') {
+				position[0] = index;
+				return value.toString();
+			}
+			if (c != '\\') {
+				value.append(c);
+				continue;
+			}
+			if (index >= json.length()) {
+				break;
+			}
+			char escaped = json.charAt(index++);
+			switch (escaped) {
+			case 'n':
+				value.append('\n');
+				break;
+			case 't':
+				value.append('\t');
+				break;
+			case 'r':
+				value.append('\r');
+				break;
+			case 'b':
+				value.append('\b');
+				break;
+			case 'f':
+				value.append('\f');
+				break;
+			case 'u':
+				if (index + 4 > json.length()) {
+					throw new IllegalArgumentException("Truncated unicode escape");
+				}
+				value.append((char) Integer.parseInt(json.substring(index, index + 4), 16));
+				index += 4;
+				break;
+			default:
+				value.append(escaped);
+			}
+		}
+		throw new IllegalArgumentException("Unterminated JSON string");
+	}
+
+	private static int expect(String json, int index, char expected) {
+		if (index >= json.length() || json.charAt(index) != expected) {
+			throw new IllegalArgumentException("Expected " + expected + " at " + index);
+		}
+		return index + 1;
+	}
+
+	private static int skipWhitespace(String json, int index) {
+		int current = index;
+		while (current < json.length() && Character.isWhitespace(json.charAt(current))) {
+			current++;
+		}
+		return current;
+	}
+}
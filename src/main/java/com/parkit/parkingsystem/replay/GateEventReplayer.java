@@ -0,0 +1,169 @@
+package com.parkit.parkingsystem.replay;
+
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Runs a gate event log through ParkingService, entries and exits going
+ * through the same spot allocation and fare code as at the gates.
+ *
+ * Events are applied in timestamp order: a bounded reorder buffer holds the
+ * last events read and always applies the oldest, so logs merged from several
+ * gates only need to be sorted within the window. Memory stays bounded by the
+ * window and the chunk size whatever the size of the log.
+ *
+ * Events are written in chunks, one transaction per chunk, so the database
+ * commits once per chunk instead of once per event. When an event of a chunk
+ * fails the chunk is rolled back and replayed one event per transaction, so
+ * only the failing events are skipped.
+ *
+ */
+
+public class GateEventReplayer {
+
+	private static final Logger logger = LogManager.getLogger("GateEventReplayer");
+
+	private static final Comparator<GateEvent> TIMESTAMP_ORDER = Comparator.comparingLong(GateEvent::getTimestamp)
+			.thenComparingLong(GateEvent::getSequence);
+
+	private final ParkingService parkingService;
+	private final TransactionManager transactionManager;
+	private final int reorderWindow;
+	private final int chunkSize;
+	private long progressIntervalMillis = 5000;
+
+	private long appliedEvents;
+	private long failedEvents;
+	private long outOfOrderEvents;
+
+	/**
+	 * @param parkingService     applies the events
+	 * @param transactionManager runs each chunk in a transaction, chunks are
+	 *                           one event long with TransactionManager.NONE
+	 * @param reorderWindow      number of events held to restore timestamp
+	 *                           order
+	 * @param chunkSize          number of events committed together
+	 */
+	public GateEventReplayer(ParkingService parkingService, TransactionManager transactionManager, int reorderWindow,
+			int chunkSize) {
+		this.parkingService = parkingService;
+		this.transactionManager = transactionManager;
+		this.reorderWindow = Math.max(1, reorderWindow);
+		this.chunkSize = transactionManager == TransactionManager.NONE ? 1 : Math.max(1, chunkSize);
+	}
+
+	/**
+	 * Replay every event of the log
+	 *
+	 * @param gateEventReader the log
+	 * @return counts and throughput of the replay
+	 * @throws IOException if the log can not be read
+	 */
+	public ReplayReport replay(GateEventReader gateEventReader) throws IOException {
+		appliedEvents = 0;
+		failedEvents = 0;
+		outOfOrderEvents = 0;
+		long start = System.currentTimeMillis();
+		long nextProgress = start + progressIntervalMillis;
+		long watermark = Long.MIN_VALUE;
+		PriorityQueue<GateEvent> reorderBuffer = new PriorityQueue<>(reorderWindow + 1, TIMESTAMP_ORDER);
+		List<GateEvent> chunk = new ArrayList<>(chunkSize);
+
+		GateEvent event;
+		while ((event = gateEventReader.next()) != null) {
+			reorderBuffer.add(event);
+			if (reorderBuffer.size() > reorderWindow) {
+				watermark = release(reorderBuffer.poll(), watermark, chunk);
+			}
+			long now = System.currentTimeMillis();
+			if (now >= nextProgress) {
+				logger.info("Replayed {} events ({} events/s)", appliedEvents + failedEvents,
+						Math.round(ReplayReport.eventsPerSecond(appliedEvents + failedEvents, now - start)));
+				nextProgress = now + progressIntervalMillis;
+			}
+		}
+		while (!reorderBuffer.isEmpty()) {
+			watermark = release(reorderBuffer.poll(), watermark, chunk);
+		}
+		applyChunk(chunk);
+
+		ReplayReport report = new ReplayReport(appliedEvents, failedEvents, outOfOrderEvents,
+				gateEventReader.getMalformedLines(), System.currentTimeMillis() - start);
+		logger.info("Replay done: {}", report);
+		return report;
+	}
+
+	private long release(GateEvent event, long watermark, List<GateEvent> chunk) {
+		if (event.getTimestamp() < watermark) {
+			outOfOrderEvents++;
+			logger.warn("Event {} is older than events already replayed", event);
+		}
+		chunk.add(event);
+		if (chunk.size() >= chunkSize) {
+			applyChunk(chunk);
+		}
+		return Math.max(watermark, event.getTimestamp());
+	}
+
+	private void applyChunk(List<GateEvent> chunk) {
+		if (chunk.isEmpty()) {
+			return;
+		}
+		try {
+			transactionManager.inTransaction(() -> {
+				for (GateEvent event : chunk) {
+					apply(event);
+				}
+				return null;
+			});
+			appliedEvents += chunk.size();
+		} catch (Exception chunkError) {
+			if (chunk.size() == 1) {
+				failed(chunk.get(0), chunkError);
+			} else {
+				logger.debug("Chunk of {} events rolled back, replaying them one by one", chunk.size(), chunkError);
+				for (GateEvent event : chunk) {
+					applyAlone(event);
+				}
+			}
+		}
+		chunk.clear();
+	}
+
+	private void applyAlone(GateEvent event) {
+		try {
+			transactionManager.inTransaction(() -> {
+				apply(event);
+				return null;
+			});
+			appliedEvents++;
+		} catch (Exception e) {
+			failed(event, e);
+		}
+	}
+
+	private void failed(GateEvent event, Exception e) {
+		failedEvents++;
+		logger.warn("Skipping event {}: {}", event, e.getMessage());
+	}
+
+	private void apply(GateEvent event) throws Exception {
+		if (event.getDirection() == GateEvent.Direction.ENTRY) {
+			parkingService.enter(event.toEntryRequest());
+		} else {
+			parkingService.exit(event.toExitRequest());
+		}
+	}
+
+	public void setProgressIntervalMillis(long progressIntervalMillis) {
+		this.progressIntervalMillis = progressIntervalMillis;
+	}
+}
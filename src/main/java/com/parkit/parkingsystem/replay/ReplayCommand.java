@@ -0,0 +1,71 @@
+package com.parkit.parkingsystem.replay;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+
+/**
+ * Batch import mode of the app: replay [file] [reorder window] [chunk size]
+ *
+ */
+
+public class ReplayCommand {
+
+	private static final Logger logger = LogManager.getLogger("ReplayCommand");
+
+	static final int DEFAULT_REORDER_WINDOW = 10_000;
+	static final int DEFAULT_CHUNK_SIZE = 500;
+
+	private ReplayCommand() {
+
+	}
+
+	/**
+	 * @param args the file to replay, then optionally the reorder window and
+	 *             the chunk size
+	 * @return the replay report, null if the replay could not run
+	 */
+	public static ReplayReport run(String[] args) {
+		if (args.length < 1) {
+			logger.error("Usage: replay <gate event file> [reorder window] [chunk size]");
+			return null;
+		}
+		int reorderWindow = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REORDER_WINDOW;
+		int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CHUNK_SIZE;
+
+		DataBaseConfig dataBaseConfig = new DataBaseConfig();
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+				GateEventReader gateEventReader = new GateEventReader(reader)) {
+			new SchemaMigrator(dataBaseConfig).migrate();
+			ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+			parkingSpotDAO.setDataBaseConfig(dataBaseConfig);
+			parkingSpotDAO.loadFreeSpotIndex();
+			TicketDAO ticketDAO = new TicketDAO();
+			ticketDAO.setDataBaseConfig(dataBaseConfig);
+			ticketDAO.loadRecurringUserCache(1_000_000, 10_000);
+			ticketDAO.loadOpenTicketIndex();
+			ParkingService parkingService = new ParkingService(null, parkingSpotDAO, ticketDAO);
+			parkingService.setTransactionManager(dataBaseConfig);
+
+			logger.info("Replaying {}", args[0]);
+			return new GateEventReplayer(parkingService, dataBaseConfig, reorderWindow, chunkSize)
+					.replay(gateEventReader);
+		} catch (IOException | SQLException e) {
+			logger.error("Unable to replay {}", args[0], e);
+			return null;
+		} finally {
+			dataBaseConfig.shutdown();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.parkit.parkingsystem.replay;
+
+import java.util.Locale;
+
+/**
+ * Outcome of a gate event replay.
+ *
+ */
+
+public class ReplayReport {
+	private final long appliedEvents;
+	private final long failedEvents;
+	private final long outOfOrderEvents;
+	private final long malformedLines;
+	private final long elapsedMillis;
+
+	public ReplayReport(long appliedEvents, long failedEvents, long outOfOrderEvents, long malformedLines,
+			long elapsedMillis) {
+		this.appliedEvents = appliedEvents;
+		this.failedEvents = failedEvents;
+		this.outOfOrderEvents = outOfOrderEvents;
+		this.malformedLines = malformedLines;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public long getAppliedEvents() {
+		return appliedEvents;
+	}
+
+	/**
+	 * @return events rejected by the parking service, such as an exit without
+	 *         a ticket
+	 */
+	public long getFailedEvents() {
+		return failedEvents;
+	}
+
+	/**
+	 * @return events older than one already applied, further back in the log
+	 *         than the reorder window
+	 */
+	public long getOutOfOrderEvents() {
+		return outOfOrderEvents;
+	}
+
+	public long getMalformedLines() {
+		return malformedLines;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public double getEventsPerSecond() {
+		return eventsPerSecond(appliedEvents + failedEvents, elapsedMillis);
+	}
+
+	static double eventsPerSecond(long events, long elapsedMillis) {
+		return elapsedMillis == 0 ? 0 : events * 1000.0 / elapsedMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT,
+				"%d events applied, %d failed, %d out of order, %d malformed lines in %dms (%.0f events/s)",
+				appliedEvents, failedEvents, outOfOrderEvents, malformedLines, elapsedMillis, getEventsPerSecond());
+	}
+}
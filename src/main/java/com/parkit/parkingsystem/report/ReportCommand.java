@@ -0,0 +1,56 @@
+package com.parkit.parkingsystem.report;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.ZoneId;
+
+/**
+ * Reporting mode of the app: report [checkpoint file]
+ *
+ * Without a checkpoint every closed ticket is read. With one, only the
+ * tickets closed since the last run are read and the checkpoint is updated.
+ *
+ */
+
+public class ReportCommand {
+
+	private static final Logger logger = LogManager.getLogger("ReportCommand");
+
+	private ReportCommand() {
+
+	}
+
+	/**
+	 * @param args optionally the checkpoint file
+	 * @return the report, null if it could not be completed
+	 */
+	public static RevenueReport run(String[] args) {
+		Path checkpoint = args.length > 0 ? Paths.get(args[0]) : null;
+		DataBaseConfig dataBaseConfig = new DataBaseConfig();
+		try {
+			new SchemaMigrator(dataBaseConfig).migrate();
+			RevenueReport report = checkpoint == null ? new RevenueReport(ZoneId.systemDefault())
+					: RevenueReport.load(checkpoint, ZoneId.systemDefault());
+			new ReportEngine(dataBaseConfig, ReportEngine.STREAMING_FETCH_SIZE).run(report);
+			if (checkpoint != null) {
+				report.save(checkpoint);
+			}
+			for (String line : report.format()) {
+				logger.info(line);
+			}
+			return report;
+		} catch (IOException | SQLException e) {
+			logger.error("Unable to complete the revenue report", e);
+			return null;
+		} finally {
+			dataBaseConfig.shutdown();
+		}
+	}
+}
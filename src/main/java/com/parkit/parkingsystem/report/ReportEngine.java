@@ -0,0 +1,143 @@
+package com.parkit.parkingsystem.report;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Counts the closed tickets, archived or not, into a RevenueReport in one pass
+ * over a forward-only, read-only cursor, so the tickets are never all in
+ * memory at once.
+ *
+ * Each run only reads the tickets written closed since the report was last
+ * completed, by the UPDATED_AT the database sets on every ticket write. The
+ * exit time can not be used: a ticket replayed or drained from the journal
+ * late is written with an exit time older than the last run. Tickets written
+ * during the last minute, on the database clock, are left to the next run,
+ * so a ticket committed while the previous run was reading is not missed.
+ *
+ */
+
+public class ReportEngine {
+
+	private static final Logger logger = LogManager.getLogger("ReportEngine");
+
+	private static final LatencyHistogram runLatency = Metrics.histogram("ReportEngine.run");
+
+	/**
+	 * fetch size making MySQL Connector/J stream the rows one by one instead of
+	 * reading the whole result. A positive fetch size only streams with
+	 * useCursorFetch=true in the url.
+	 */
+	public static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+	static final long SETTLE_MILLIS = 60_000;
+
+	private final DataBaseConfig dataBaseConfig;
+	private final int fetchSize;
+
+	/**
+	 * @param dataBaseConfig where the tickets are
+	 * @param fetchSize      rows fetched per round trip, or
+	 *                       STREAMING_FETCH_SIZE
+	 */
+	public ReportEngine(DataBaseConfig dataBaseConfig, int fetchSize) {
+		this.dataBaseConfig = dataBaseConfig;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Complete the report with the tickets closed since it was last completed
+	 *
+	 * @param report the report to complete
+	 * @return number of tickets added
+	 * @throws SQLException if the tickets can not be read, the report is then
+	 *                      left as it was
+	 */
+	public long run(RevenueReport report) throws SQLException {
+		return run(report, new Date(getDataBaseTime() - SETTLE_MILLIS));
+	}
+
+	/**
+	 * Complete the report with the tickets written closed up to a time
+	 *
+	 * @param report      the report to complete
+	 * @param closedUntil time, on the database clock, up to which the tickets
+	 *                    written are added
+	 * @return number of tickets added
+	 * @throws SQLException if the tickets can not be read, the report is then
+	 *                      left as it was
+	 */
+	public long run(RevenueReport report, Date closedUntil) throws SQLException {
+		Date closedAfter = report.getClosedUntil();
+		if (!closedUntil.after(closedAfter)) {
+			return 0;
+		}
+		long start = System.nanoTime();
+		boolean failed = true;
+		Connection con = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			ps = con.prepareStatement(DBConstants.GET_CLOSED_TICKETS, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(fetchSize);
+			for (int range = 0; range < 2; range++) {
+				ps.setTimestamp(2 * range + 1, new Timestamp(closedAfter.getTime()));
+				ps.setTimestamp(2 * range + 2, new Timestamp(closedUntil.getTime()));
+			}
+			rs = ps.executeQuery();
+			RevenueReport added = new RevenueReport(report.getZone());
+			long tickets = 0;
+			while (rs.next()) {
+				added.add(ParkingType.valueOf(rs.getString(4)), rs.getDouble(1), rs.getTimestamp(2),
+						rs.getTimestamp(3));
+				tickets++;
+			}
+			report.addAll(added);
+			report.setClosedUntil(closedUntil);
+			failed = false;
+			logger.info("Added {} tickets written closed from {} to {}", tickets, closedAfter.toInstant(),
+					closedUntil.toInstant());
+			return tickets;
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("Unable to read the closed tickets", e);
+		} finally {
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			dataBaseConfig.closeConnection(con);
+			runLatency.record(start, failed);
+		}
+	}
+
+	private long getDataBaseTime() throws SQLException {
+		Connection con = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			ps = con.prepareStatement(DBConstants.GET_DATABASE_TIME);
+			rs = ps.executeQuery();
+			rs.next();
+			return rs.getTimestamp(1).getTime();
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("Unable to read the database time", e);
+		} finally {
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			dataBaseConfig.closeConnection(con);
+		}
+	}
+}
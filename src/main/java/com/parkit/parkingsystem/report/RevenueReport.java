@@ -0,0 +1,226 @@
+package com.parkit.parkingsystem.report;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Revenue, ticket count and average stay of the closed tickets, per day of
+ * exit, per parking type and per hour of exit. Memory does not grow with the
+ * number of tickets, only with the number of days.
+ *
+ * The report also remembers the exit time up to which tickets have been
+ * counted, so it can be saved as a checkpoint and later completed with the
+ * tickets closed since.
+ *
+ */
+
+public class RevenueReport {
+
+	private static final String CLOSED_UNTIL = "closedUntil";
+	private static final String DAY = "day.";
+	private static final String TYPE = "type.";
+	private static final String HOUR = "hour.";
+
+	private final ZoneId zone;
+	private final Totals overall = new Totals();
+	private final SortedMap<LocalDate, Totals> byDay = new TreeMap<>();
+	private final Map<ParkingType, Totals> byType = new EnumMap<>(ParkingType.class);
+	private final Totals[] byHour = new Totals[24];
+
+	private Date closedUntil = new Date(0);
+
+	/**
+	 * @param zone time zone of the days and hours
+	 */
+	public RevenueReport(ZoneId zone) {
+		this.zone = zone;
+		for (ParkingType parkingType : ParkingType.values()) {
+			byType.put(parkingType, new Totals());
+		}
+		for (int hour = 0; hour < byHour.length; hour++) {
+			byHour[hour] = new Totals();
+		}
+	}
+
+	/**
+	 * Count a closed ticket
+	 *
+	 * @param parkingType type of the spot of the ticket
+	 * @param price       price paid
+	 * @param inTime      entry time
+	 * @param outTime     exit time
+	 */
+	public void add(ParkingType parkingType, double price, Date inTime, Date outTime) {
+		long dwellMillis = outTime.getTime() - inTime.getTime();
+		LocalDateTime exit = LocalDateTime.ofInstant(outTime.toInstant(), zone);
+		overall.add(price, dwellMillis);
+		byDay.computeIfAbsent(exit.toLocalDate(), day -> new Totals()).add(price, dwellMillis);
+		byType.get(parkingType).add(price, dwellMillis);
+		byHour[exit.getHour()].add(price, dwellMillis);
+	}
+
+	/**
+	 * Add the tickets counted by another report of the same time zone
+	 *
+	 * @param other report of the tickets closed since this one
+	 */
+	public void addAll(RevenueReport other) {
+		overall.add(other.overall);
+		for (Map.Entry<LocalDate, Totals> day : other.byDay.entrySet()) {
+			byDay.computeIfAbsent(day.getKey(), key -> new Totals()).add(day.getValue());
+		}
+		for (Map.Entry<ParkingType, Totals> type : other.byType.entrySet()) {
+			byType.get(type.getKey()).add(type.getValue());
+		}
+		for (int hour = 0; hour < byHour.length; hour++) {
+			byHour[hour].add(other.byHour[hour]);
+		}
+	}
+
+	/**
+	 * @return time, on the database clock, up to which the tickets written
+	 *         closed are counted
+	 */
+	public Date getClosedUntil() {
+		return new Date(closedUntil.getTime());
+	}
+
+	/**
+	 * @param closedUntil time, on the database clock, up to which the tickets
+	 *                    written closed are now counted
+	 */
+	public void setClosedUntil(Date closedUntil) {
+		this.closedUntil = new Date(closedUntil.getTime());
+	}
+
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	public Totals getOverall() {
+		return overall;
+	}
+
+	/**
+	 * @param day day of exit
+	 * @return the totals of the day, empty when no ticket was closed that day
+	 */
+	public Totals getDay(LocalDate day) {
+		Totals totals = byDay.get(day);
+		return totals == null ? new Totals() : totals;
+	}
+
+	public Totals getType(ParkingType parkingType) {
+		return byType.get(parkingType);
+	}
+
+	/**
+	 * @param hour hour of exit, from 0 to 23
+	 */
+	public Totals getHour(int hour) {
+		return byHour[hour];
+	}
+
+	/**
+	 * @return the report, one line per day, type and hour with tickets
+	 */
+	public List<String> format() {
+		List<String> lines = new ArrayList<>();
+		lines.add("Tickets closed until " + closedUntil.toInstant() + ": " + overall);
+		for (Map.Entry<LocalDate, Totals> day : byDay.entrySet()) {
+			lines.add("day " + day.getKey() + ": " + day.getValue());
+		}
+		for (Map.Entry<ParkingType, Totals> type : byType.entrySet()) {
+			lines.add("type " + type.getKey() + ": " + type.getValue());
+		}
+		for (int hour = 0; hour < byHour.length; hour++) {
+			if (byHour[hour].getTickets() > 0) {
+				lines.add(String.format(Locale.ROOT, "hour %02d: %s", hour, byHour[hour]));
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Save the report as a checkpoint, replacing the previous one atomically
+	 *
+	 * @param file where the checkpoint is kept
+	 * @throws IOException if the checkpoint can not be written
+	 */
+	public void save(Path file) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(CLOSED_UNTIL, Long.toString(closedUntil.getTime()));
+		for (Map.Entry<LocalDate, Totals> day : byDay.entrySet()) {
+			properties.setProperty(DAY + day.getKey(), day.getValue().encode());
+		}
+		for (Map.Entry<ParkingType, Totals> type : byType.entrySet()) {
+			properties.setProperty(TYPE + type.getKey(), type.getValue().encode());
+		}
+		for (int hour = 0; hour < byHour.length; hour++) {
+			properties.setProperty(HOUR + hour, byHour[hour].encode());
+		}
+		Path saving = file.resolveSibling(file.getFileName() + ".saving");
+		try (Writer writer = Files.newBufferedWriter(saving, StandardCharsets.UTF_8)) {
+			properties.store(writer, "Revenue report checkpoint");
+		}
+		Files.move(saving, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Load a report saved as a checkpoint
+	 *
+	 * @param file where the checkpoint is kept
+	 * @param zone time zone of the days and hours
+	 * @return the report, empty when the file does not exist
+	 * @throws IOException if the checkpoint can not be read or is malformed
+	 */
+	public static RevenueReport load(Path file, ZoneId zone) throws IOException {
+		RevenueReport report = new RevenueReport(zone);
+		if (!Files.exists(file)) {
+			return report;
+		}
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		try {
+			for (String key : properties.stringPropertyNames()) {
+				String value = properties.getProperty(key);
+				if (key.equals(CLOSED_UNTIL)) {
+					report.closedUntil = Date.from(Instant.ofEpochMilli(Long.parseLong(value)));
+				} else if (key.startsWith(DAY)) {
+					Totals totals = Totals.decode(value);
+					report.byDay.put(LocalDate.parse(key.substring(DAY.length())), totals);
+					report.overall.add(totals);
+				} else if (key.startsWith(TYPE)) {
+					report.byType.put(ParkingType.valueOf(key.substring(TYPE.length())), Totals.decode(value));
+				} else if (key.startsWith(HOUR)) {
+					report.byHour[Integer.parseInt(key.substring(HOUR.length()))] = Totals.decode(value);
+				}
+			}
+		} catch (RuntimeException e) {
+			throw new IOException("Malformed checkpoint " + file, e);
+		}
+		return report;
+	}
+}
@@ -0,0 +1,70 @@
+package com.parkit.parkingsystem.report;
+
+import java.util.Locale;
+
+/**
+ * Ticket count, revenue and time parked of a group of closed tickets.
+ *
+ */
+
+public class Totals {
+	private long tickets;
+	private double revenue;
+	private long dwellMillis;
+
+	void add(double price, long dwellMillis) {
+		tickets++;
+		revenue += price;
+		this.dwellMillis += dwellMillis;
+	}
+
+	void add(Totals other) {
+		tickets += other.tickets;
+		revenue += other.revenue;
+		dwellMillis += other.dwellMillis;
+	}
+
+	public long getTickets() {
+		return tickets;
+	}
+
+	public double getRevenue() {
+		return revenue;
+	}
+
+	/**
+	 * @return total time parked by the tickets
+	 */
+	public long getDwellMillis() {
+		return dwellMillis;
+	}
+
+	public double getAverageDwellMinutes() {
+		return tickets == 0 ? 0 : dwellMillis / 60_000.0 / tickets;
+	}
+
+	/**
+	 * @return the totals as saved in a checkpoint
+	 */
+	String encode() {
+		return tickets + "," + revenue + "," + dwellMillis;
+	}
+
+	static Totals decode(String value) {
+		String[] fields = value.split(",");
+		if (fields.length != 3) {
+			throw new IllegalArgumentException("Malformed totals " + value);
+		}
+		Totals totals = new Totals();
+		totals.tickets = Long.parseLong(fields[0]);
+		totals.revenue = Double.parseDouble(fields[1]);
+		totals.dwellMillis = Long.parseLong(fields[2]);
+		return totals;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%d tickets, %.2f revenue, %.0f min average stay", tickets, revenue,
+				getAverageDwellMinutes());
+	}
+}
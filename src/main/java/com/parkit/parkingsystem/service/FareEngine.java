@@ -0,0 +1,89 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+/**
+ * Prices a stay from primitive epoch millis and returns whole cents, with the
+ * tariff of the lot of the stay.
+ *
+ * The hourly rates are applied in double in the same order as the pricing has
+ * always been computed, then rounded once to the cent, so with the default
+ * tariffs every price matches to the cent what tickets were charged before,
+ * including the half cent cases where binary rounding goes down.
+ *
+ */
+
+public class FareEngine {
+
+    private final Tariffs tariffs;
+
+    /**
+     * Price with the flat hourly rates of the Fare constants
+     */
+    public FareEngine() {
+	this(Tariffs.defaultTariffs());
+    }
+
+    /**
+     * @param tariffs the tariff of each lot
+     */
+    public FareEngine(Tariffs tariffs) {
+	this.tariffs = tariffs;
+    }
+
+    /**
+     * Price a stay in the default lot
+     * 
+     * @param inTimeMillis  entry time, epoch millis
+     * @param outTimeMillis exit time, epoch millis
+     * @param parkingType   type of the spot used
+     * @param userRecurring whether the recurring user reduction applies
+     * @return the price in cents
+     * @throws IllegalArgumentException if the exit is before the entry
+     */
+    public long fareCents(long inTimeMillis, long outTimeMillis, ParkingType parkingType, boolean userRecurring) {
+	return fareCents(ParkingSpot.DEFAULT_LOT_ID, inTimeMillis, outTimeMillis, parkingType, userRecurring);
+    }
+
+    /**
+     * @param lotId         lot of the spot used
+     * @param inTimeMillis  entry time, epoch millis
+     * @param outTimeMillis exit time, epoch millis
+     * @param parkingType   type of the spot used
+     * @param userRecurring whether the recurring user reduction applies
+     * @return the price in cents
+     * @throws IllegalArgumentException if the exit is before the entry
+     */
+    public long fareCents(int lotId, long inTimeMillis, long outTimeMillis, ParkingType parkingType,
+	    boolean userRecurring) {
+	if (outTimeMillis < inTimeMillis) {
+	    throw new IllegalArgumentException("Out time provided is incorrect:" + outTimeMillis);
+	}
+	return tariffs.forLot(lotId).fareCents(inTimeMillis, outTimeMillis, parkingType, userRecurring);
+    }
+
+    /**
+     * Prices a batch of stays given as parallel arrays, element i of every
+     * array describing the same ticket.
+     *
+     * @param inTimeMillis  entry times, epoch millis
+     * @param outTimeMillis exit times, epoch millis
+     * @param parkingTypes  types of the spots used
+     * @param userRecurring whether the recurring user reduction applies
+     * @param fareCents     receives the prices in cents
+     * @throws IllegalArgumentException if the arrays differ in length or an
+     *                                  exit is before its entry
+     */
+    public void fareCents(long[] inTimeMillis, long[] outTimeMillis, ParkingType[] parkingTypes,
+	    boolean[] userRecurring, long[] fareCents) {
+	int count = inTimeMillis.length;
+	if (outTimeMillis.length != count || parkingTypes.length != count || userRecurring.length != count
+		|| fareCents.length != count) {
+	    throw new IllegalArgumentException("Fare arrays must all have the same length");
+	}
+	for (int i = 0; i < count; i++) {
+	    fareCents[i] = fareCents(inTimeMillis[i], outTimeMillis[i], parkingTypes[i], userRecurring[i]);
+	}
+    }
+}
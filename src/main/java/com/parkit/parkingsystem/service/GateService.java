@@ -0,0 +1,134 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.model.EntryRequest;
+import com.parkit.parkingsystem.model.ExitRequest;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non blocking front of ParkingService for gates and kiosks: each entry or
+ * exit runs on the executor of the service and the caller gets a future of the
+ * ticket, so one process can serve many gates at once.
+ *
+ * The default executor starts a virtual thread per request when the JDK
+ * provides them and falls back to a fixed pool of platform threads otherwise.
+ * Requests mostly wait on the database, so the pool size bounds how many are
+ * in flight, not how much CPU they use.
+ *
+ */
+
+public class GateService implements AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger("GateService");
+
+	private final ParkingService parkingService;
+	private final Executor executor;
+	private final ExecutorService ownedExecutor;
+
+	/**
+	 * Run requests on a default gate executor, shut down by close()
+	 *
+	 * @param parkingService handles the requests
+	 * @param poolSize       number of threads when virtual threads are not
+	 *                       available
+	 */
+	public GateService(ParkingService parkingService, int poolSize) {
+		this.parkingService = parkingService;
+		this.ownedExecutor = newGateExecutor(poolSize);
+		this.executor = ownedExecutor;
+	}
+
+	/**
+	 * Run requests on the given executor, left running by close()
+	 *
+	 * @param parkingService handles the requests
+	 * @param executor       runs the requests
+	 */
+	public GateService(ParkingService parkingService, Executor executor) {
+		this.parkingService = parkingService;
+		this.executor = executor;
+		this.ownedExecutor = null;
+	}
+
+	/**
+	 * @param entryRequest the vehicle entering
+	 * @return completed with the saved ticket, or exceptionally when the
+	 *         vehicle can not enter
+	 */
+	public CompletableFuture<Ticket> enter(EntryRequest entryRequest) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return parkingService.enter(entryRequest);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * @param exitRequest the vehicle leaving
+	 * @return completed with the priced ticket, or exceptionally when the
+	 *         vehicle can not leave
+	 */
+	public CompletableFuture<Ticket> exit(ExitRequest exitRequest) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return parkingService.exit(exitRequest);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Stop the default executor once the requests already submitted are done
+	 */
+	@Override
+	public void close() {
+		if (ownedExecutor == null) {
+			return;
+		}
+		ownedExecutor.shutdown();
+		try {
+			if (!ownedExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+				logger.warn("Gate requests still running after 30s, interrupting them");
+				ownedExecutor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			ownedExecutor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A virtual thread per task executor when the JDK has one, else a fixed
+	 * pool of daemon threads.
+	 *
+	 * @param poolSize number of platform threads of the fallback pool
+	 * @return a new executor
+	 */
+	public static ExecutorService newGateExecutor(int poolSize) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			logger.debug("Virtual threads are not available, using {} gate threads", poolSize);
+		}
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "gate-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		return Executors.newFixedThreadPool(poolSize, threadFactory);
+	}
+}
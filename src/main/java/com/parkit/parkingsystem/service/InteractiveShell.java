@@ -1,31 +1,292 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.allocation.AllocationStrategy;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.LotRouter;
+import com.parkit.parkingsystem.config.QueryPlanChecker;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.EmbeddedParkingStore;
+import com.parkit.parkingsystem.dao.GroupCommitWriter;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.dao.SpotWriteBehind;
+import com.parkit.parkingsystem.dao.TicketArchiver;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.journal.JournaledParkingStore;
+import com.parkit.parkingsystem.journal.WriteAheadJournal;
+import com.parkit.parkingsystem.metrics.MetricsReporter;
+import com.parkit.parkingsystem.model.Occupancy;
+import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 public class InteractiveShell {
 
 	private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
+	private static final long METRICS_REPORT_PERIOD_MILLIS = 60_000;
+	private static final int JOURNAL_SEGMENT_BYTES = 16 * 1024 * 1024;
+
+	/**
+	 * Whether each journal record is synced to the disk before the gate goes
+	 * on. Turned off, a power cut or an operating system crash loses the
+	 * entries and exits acknowledged since the last sync.
+	 */
+	private static final String JOURNAL_FORCE_ON_APPEND_PROPERTY = "parking.journalForceOnAppend";
+
+	/**
+	 * Milliseconds between two writes of the spot availability, 0 to write
+	 * each change right away. Off by default, as a crash loses the changes
+	 * not written yet.
+	 */
+	private static final String SPOT_FLUSH_INTERVAL_PROPERTY = "parking.spotFlushIntervalMillis";
+	private static final long DEFAULT_SPOT_FLUSH_INTERVAL_MILLIS = 0;
+
+	/**
+	 * Milliseconds a spot or ticket write waits for others to share its
+	 * commit, 0 to commit each write on its own and run the gates in
+	 * transactions, and the number of writes that commits a group at once
+	 */
+	private static final String GROUP_COMMIT_WINDOW_PROPERTY = "parking.groupCommitWindowMillis";
+	private static final long DEFAULT_GROUP_COMMIT_WINDOW_MILLIS = 0;
+	private static final String GROUP_COMMIT_MAX_BATCH_PROPERTY = "parking.groupCommitMaxBatch";
+	private static final int DEFAULT_GROUP_COMMIT_MAX_BATCH = 64;
+
+	/**
+	 * Days after its exit before a ticket moves to ticket_history, 0 to keep
+	 * every ticket in the ticket table
+	 */
+	private static final String ARCHIVE_AFTER_DAYS_PROPERTY = "parking.archiveAfterDays";
+	private static final long DEFAULT_ARCHIVE_AFTER_DAYS = 90;
+	private static final long ARCHIVE_PERIOD_MILLIS = 60 * 60 * 1000;
+	private static final int ARCHIVE_CHUNK_SIZE = 1000;
+	private static final long ARCHIVE_PAUSE_MILLIS = 200;
+
+	/**
+	 * Milliseconds between two reconciliations of the free spot counts with
+	 * the parking table
+	 */
+	private static final String OCCUPANCY_RECONCILE_INTERVAL_PROPERTY = "parking.occupancyReconcileIntervalMillis";
+	private static final long DEFAULT_OCCUPANCY_RECONCILE_INTERVAL_MILLIS = 60_000;
+
+	/**
+	 * Strategy picking the spot of an entering vehicle, see
+	 * AllocationStrategy, and the spots per zone of the zone-balanced one
+	 */
+	private static final String SPOT_ALLOCATOR_PROPERTY = "parking.spotAllocator";
+	private static final String DEFAULT_SPOT_ALLOCATOR = "lowest-number";
+	private static final String SPOT_ZONE_SIZE_PROPERTY = "parking.spotZoneSize";
+	private static final int DEFAULT_SPOT_ZONE_SIZE = 100;
+
+	/**
+	 * Minutes before its start a reservation keeps its spot from walk-in
+	 * vehicles
+	 */
+	private static final String RESERVATION_HOLD_MINUTES_PROPERTY = "parking.reservationHoldMinutes";
+	private static final long DEFAULT_RESERVATION_HOLD_MINUTES = 60;
+	private static final long RESERVATION_EXPIRY_PERIOD_MILLIS = 60_000;
+
+	/**
+	 * Properties file of the Tariffs, the flat Fare rates when not set
+	 */
+	private static final String TARIFF_FILE_PROPERTY = "parking.tariffFile";
+
 	private InteractiveShell() {
 
 	}
 
-	public static void loadInterface() {
-		logger.info("App initialized!!!");
-		logger.info("Welcome to Parking System!");
+	public static void loadInterface() throws IOException {
+		loadInterface(null);
+	}
 
-		boolean continueApp = true;
+	/**
+	 * Run the console against the database. With a journal directory, the
+	 * writes of the gates are journaled there and applied to the database in
+	 * the background.
+	 *
+	 * @param journalDirectory where the journal is kept, null for none
+	 * @throws IOException if the journal can not be opened
+	 */
+	public static void loadInterface(Path journalDirectory) throws IOException {
+		loadInterface(new DataBaseConfig(), ParkingSpot.DEFAULT_LOT_ID, journalDirectory);
+	}
+
+	/**
+	 * Run the console for one lot of a parking spread over several schemas
+	 *
+	 * @param lotsFile properties file of the LotRouter
+	 * @param lotId    the lot of the console
+	 * @throws IOException if the file can not be read
+	 */
+	public static void loadLotInterface(Path lotsFile, int lotId) throws IOException {
+		loadInterface(LotRouter.load(lotsFile).getDataBaseConfig(lotId), lotId, null);
+	}
+
+	private static void loadInterface(DataBaseConfig dataBaseConfig, int lotId, Path journalDirectory)
+			throws IOException {
 		InputReaderUtil inputReaderUtil = new InputReaderUtil();
+		migrateSchema(dataBaseConfig);
 		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.setDataBaseConfig(dataBaseConfig);
+		parkingSpotDAO.setLotId(lotId);
+		parkingSpotDAO.setSpotAllocators(
+				AllocationStrategy.fromName(System.getProperty(SPOT_ALLOCATOR_PROPERTY, DEFAULT_SPOT_ALLOCATOR))
+						.allocators(Integer.getInteger(SPOT_ZONE_SIZE_PROPERTY, DEFAULT_SPOT_ZONE_SIZE)));
+		parkingSpotDAO.loadFreeSpotIndex();
+		long spotFlushIntervalMillis = Long.getLong(SPOT_FLUSH_INTERVAL_PROPERTY, DEFAULT_SPOT_FLUSH_INTERVAL_MILLIS);
+		SpotWriteBehind spotWriteBehind = spotFlushIntervalMillis > 0
+				? new SpotWriteBehind(dataBaseConfig, spotFlushIntervalMillis)
+				: null;
+		parkingSpotDAO.setSpotWriteBehind(spotWriteBehind);
+		GroupCommitWriter groupCommitWriter = startGroupCommitWriter(dataBaseConfig);
+		parkingSpotDAO.setGroupCommitWriter(groupCommitWriter);
+		OccupancyService occupancyService = new OccupancyService(parkingSpotDAO);
+		parkingSpotDAO.setSpotAvailabilityListener(occupancyService);
+		occupancyService.start(Long.getLong(OCCUPANCY_RECONCILE_INTERVAL_PROPERTY,
+				DEFAULT_OCCUPANCY_RECONCILE_INTERVAL_MILLIS));
 		TicketDAO ticketDAO = new TicketDAO();
-		ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+		ticketDAO.setDataBaseConfig(dataBaseConfig);
+		ticketDAO.setLotId(lotId);
+		ticketDAO.setGroupCommitWriter(groupCommitWriter);
+		ticketDAO.loadRecurringUserCache(1_000_000, 10_000);
+		ticketDAO.loadOpenTicketIndex();
+		ReservationDAO reservationDAO = new ReservationDAO();
+		reservationDAO.setDataBaseConfig(dataBaseConfig);
+		if (reservationDAO.loadReservationIndex(TimeUnit.MINUTES
+				.toMillis(Long.getLong(RESERVATION_HOLD_MINUTES_PROPERTY, DEFAULT_RESERVATION_HOLD_MINUTES)))) {
+			parkingSpotDAO.setReservationIndex(reservationDAO.getReservationIndex());
+			reservationDAO.startExpiring(RESERVATION_EXPIRY_PERIOD_MILLIS);
+		}
+		TicketArchiver ticketArchiver = startTicketArchiver(dataBaseConfig);
+		if (journalDirectory == null) {
+			ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+			// the DAOs write on the transaction connection while one runs, so with
+			// group commit the gates run without one for their writes to be grouped
+			if (groupCommitWriter == null) {
+				parkingService.setTransactionManager(dataBaseConfig);
+			}
+			parkingService.setLotId(lotId);
+			parkingService.setReservationDAO(reservationDAO);
+			setTariffs(parkingService);
+			runMenu(inputReaderUtil, parkingService, occupancyService::getOccupancy, () -> shutdown(spotWriteBehind,
+					groupCommitWriter, ticketArchiver, occupancyService, reservationDAO, dataBaseConfig));
+			return;
+		}
+		JournaledParkingStore store = new JournaledParkingStore(parkingSpotDAO, ticketDAO,
+				new WriteAheadJournal(journalDirectory, JOURNAL_SEGMENT_BYTES,
+						Boolean.parseBoolean(System.getProperty(JOURNAL_FORCE_ON_APPEND_PROPERTY, "true"))));
+		ParkingService parkingService = new ParkingService(inputReaderUtil, store, store);
+		parkingService.setLotId(lotId);
+		parkingService.setReservationDAO(reservationDAO);
+		setTariffs(parkingService);
+		runMenu(inputReaderUtil, parkingService, occupancyService::getOccupancy, () -> {
+			store.close();
+			shutdown(spotWriteBehind, groupCommitWriter, ticketArchiver, occupancyService, reservationDAO,
+					dataBaseConfig);
+		});
+	}
+
+	private static void setTariffs(ParkingService parkingService) throws IOException {
+		String tariffFile = System.getProperty(TARIFF_FILE_PROPERTY);
+		if (tariffFile != null) {
+			parkingService.setFareCalculatorService(
+					new FareCalculatorService(new FareEngine(Tariffs.load(Paths.get(tariffFile)))));
+		}
+	}
+
+	/**
+	 * Group the writes made outside a transaction, the gate writes included,
+	 * unless disabled
+	 */
+	private static GroupCommitWriter startGroupCommitWriter(DataBaseConfig dataBaseConfig) {
+		long commitWindowMillis = Long.getLong(GROUP_COMMIT_WINDOW_PROPERTY, DEFAULT_GROUP_COMMIT_WINDOW_MILLIS);
+		if (commitWindowMillis <= 0) {
+			return null;
+		}
+		return new GroupCommitWriter(dataBaseConfig, commitWindowMillis,
+				Integer.getInteger(GROUP_COMMIT_MAX_BATCH_PROPERTY, DEFAULT_GROUP_COMMIT_MAX_BATCH));
+	}
+
+	/**
+	 * Archive old tickets every hour, unless disabled
+	 */
+	private static TicketArchiver startTicketArchiver(DataBaseConfig dataBaseConfig) {
+		long archiveAfterDays = Long.getLong(ARCHIVE_AFTER_DAYS_PROPERTY, DEFAULT_ARCHIVE_AFTER_DAYS);
+		if (archiveAfterDays <= 0) {
+			return null;
+		}
+		TicketArchiver ticketArchiver = new TicketArchiver(dataBaseConfig, TimeUnit.DAYS.toMillis(archiveAfterDays),
+				ARCHIVE_CHUNK_SIZE, ARCHIVE_PAUSE_MILLIS);
+		ticketArchiver.start(ARCHIVE_PERIOD_MILLIS);
+		return ticketArchiver;
+	}
+
+	/**
+	 * Write the spot changes not written yet and stop the background tasks
+	 * before closing the connections
+	 */
+	private static void shutdown(SpotWriteBehind spotWriteBehind, GroupCommitWriter groupCommitWriter,
+			TicketArchiver ticketArchiver, OccupancyService occupancyService, ReservationDAO reservationDAO,
+			DataBaseConfig dataBaseConfig) {
+		occupancyService.close();
+		reservationDAO.close();
+		if (spotWriteBehind != null) {
+			spotWriteBehind.close();
+		}
+		if (groupCommitWriter != null) {
+			groupCommitWriter.close();
+		}
+		if (ticketArchiver != null) {
+			ticketArchiver.close();
+		}
+		dataBaseConfig.shutdown();
+	}
+
+	/**
+	 * Run the console against an embedded store instead of the database. A
+	 * new store gets the spots of the baseline schema, 3 for cars and 2 for
+	 * bikes.
+	 *
+	 * @param file where the store is kept
+	 * @throws IOException if the store can not be opened
+	 */
+	public static void loadEmbeddedInterface(Path file) throws IOException {
+		InputReaderUtil inputReaderUtil = new InputReaderUtil();
+		EmbeddedParkingStore store = EmbeddedParkingStore.open(file);
+		if (store.countParkingSpots() == 0) {
+			for (int number = 1; number <= 5; number++) {
+				store.addParkingSpot(number, number <= 3 ? ParkingType.CAR : ParkingType.BIKE);
+			}
+		}
+		ParkingService parkingService = new ParkingService(inputReaderUtil, store, store);
+		setTariffs(parkingService);
+		runMenu(inputReaderUtil, parkingService, null, store::close);
+	}
+
+	/**
+	 * @param occupancy gives the live free spot counts, null when they are not
+	 *                  tracked
+	 */
+	private static void runMenu(InputReaderUtil inputReaderUtil, ParkingService parkingService,
+			Supplier<Occupancy> occupancy, Runnable shutdown) {
+		logger.info("App initialized!!!");
+		logger.info("Welcome to Parking System!");
+
+		boolean continueApp = true;
+		MetricsReporter metricsReporter = new MetricsReporter(METRICS_REPORT_PERIOD_MILLIS);
+		metricsReporter.start();
 
 		while (continueApp) {
-			loadMenu();
+			loadMenu(occupancy != null, parkingService.isReservationEnabled());
 			int option = inputReaderUtil.readSelection();
 			switch (option) {
 			case 1:
@@ -36,19 +297,54 @@ public class InteractiveShell {
 				break;
 			case 3:
 				logger.info("Exiting from the system!");
+				metricsReporter.stop();
+				shutdown.run();
 				continueApp = false;
 				break;
+			case 4:
+				if (occupancy != null) {
+					logger.info("Free spots: {}", occupancy.get());
+				} else {
+					unsupportedOption();
+				}
+				break;
+			case 5:
+				if (parkingService.isReservationEnabled()) {
+					parkingService.processReservation();
+				} else {
+					unsupportedOption();
+				}
+				break;
 			default:
-				logger.info("Unsupported option. Please enter a number corresponding to the provided menu");
+				unsupportedOption();
 			}
 		}
 	}
 
-	private static void loadMenu() {
+	private static void migrateSchema(DataBaseConfig dataBaseConfig) {
+		try {
+			new SchemaMigrator(dataBaseConfig).migrate();
+			new QueryPlanChecker(dataBaseConfig).check();
+		} catch (SQLException e) {
+			logger.error("Error migrating database schema", e);
+		}
+	}
+
+	private static void unsupportedOption() {
+		logger.info("Unsupported option. Please enter a number corresponding to the provided menu");
+	}
+
+	private static void loadMenu(boolean showOccupancy, boolean showReservation) {
 		logger.info("Please select an option. Simply enter the number to choose an action");
 		logger.info("1 New Vehicle Entering - Allocate Parking Space");
 		logger.info("2 Vehicle Exiting - Generate Ticket Price");
 		logger.info("3 Shutdown System");
+		if (showOccupancy) {
+			logger.info("4 Show Free Spots");
+		}
+		if (showReservation) {
+			logger.info("5 Reserve a Spot");
+		}
 	}
 
 }
\ No newline at end of file
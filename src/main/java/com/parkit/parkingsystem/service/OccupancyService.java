@@ -0,0 +1,123 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.SpotAvailabilityListener;
+import com.parkit.parkingsystem.model.Occupancy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Live count of the free spots of each parking type, for the entrance signs
+ * and dashboards, without querying the parking table.
+ *
+ * ParkingSpotDAO reports every spot it takes or frees to it as its
+ * SpotAvailabilityListener. The counts are one immutable Occupancy swapped by
+ * compare and set, so readers never block and always see the counts of every
+ * type at the same instant. The shell shows them as a menu option.
+ *
+ * The counts are reconciled on a schedule with what ParkingSpotDAO counts,
+ * which corrects the changes made to the parking table by other processes.
+ * A reconciliation racing with a gate is dropped and done at the next run.
+ *
+ */
+
+public class OccupancyService implements SpotAvailabilityListener, AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger("OccupancyService");
+
+	private static final int RECONCILE_ATTEMPTS = 3;
+
+	private final ParkingSpotDAO parkingSpotDAO;
+	private final AtomicReference<Occupancy> occupancy = new AtomicReference<>(Occupancy.EMPTY);
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * @param parkingSpotDAO the DAO the counts are reconciled with
+	 */
+	public OccupancyService(ParkingSpotDAO parkingSpotDAO) {
+		this.parkingSpotDAO = parkingSpotDAO;
+	}
+
+	/**
+	 * @return the free and total spots of every type
+	 */
+	public Occupancy getOccupancy() {
+		return occupancy.get();
+	}
+
+	@Override
+	public void spotTaken(ParkingType parkingType) {
+		changeFreeSpots(parkingType, -1);
+	}
+
+	@Override
+	public void spotFreed(ParkingType parkingType) {
+		changeFreeSpots(parkingType, 1);
+	}
+
+	/**
+	 * Replace the counts with the ones of ParkingSpotDAO
+	 *
+	 * @return true when the counts have been replaced
+	 */
+	public boolean reconcile() {
+		for (int attempt = 0; attempt < RECONCILE_ATTEMPTS; attempt++) {
+			Occupancy before = occupancy.get();
+			Occupancy counted = parkingSpotDAO.countOccupancy();
+			if (counted == null) {
+				return false;
+			}
+			if (occupancy.compareAndSet(before, counted)) {
+				if (!counted.equals(before)) {
+					logger.info("Occupancy reconciled from {} to {}", before, counted);
+				}
+				return true;
+			}
+		}
+		logger.info("Occupancy changed while counting, reconciling at the next run");
+		return false;
+	}
+
+	/**
+	 * Reconcile now, then in the background
+	 *
+	 * @param periodMillis time between two reconciliations
+	 */
+	public synchronized void start(long periodMillis) {
+		reconcile();
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "occupancy-reconciler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::reconcile, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop reconciling in the background
+	 */
+	@Override
+	public synchronized void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	private void changeFreeSpots(ParkingType parkingType, int delta) {
+		Occupancy current;
+		do {
+			current = occupancy.get();
+		} while (!occupancy.compareAndSet(current, current.withFreeSpotsChanged(parkingType, delta)));
+	}
+}
@@ -1,9 +1,16 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.config.TransactionManager;
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.EntryRequest;
+import com.parkit.parkingsystem.model.ExitRequest;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
@@ -11,6 +18,7 @@ import org.apache.logging.log4j.Logger;
 
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 
@@ -26,11 +34,23 @@ public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
+    private static final LatencyHistogram processIncomingVehicleLatency = Metrics
+	    .histogram("ParkingService.processIncomingVehicle");
+    private static final LatencyHistogram processExitingVehicleLatency = Metrics
+	    .histogram("ParkingService.processExitingVehicle");
+    private static final LatencyHistogram enterLatency = Metrics.histogram("ParkingService.enter");
+    private static final LatencyHistogram exitLatency = Metrics.histogram("ParkingService.exit");
+
+    /**
+     * Gate id of the requests typed in the console
+     */
+    public static final String CONSOLE_GATE_ID = "console";
+
     /**
      * @see FareCalculatorService
      */
 
-    private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private FareCalculatorService fareCalculatorService = new FareCalculatorService();
 
     /**
      * @see InputReaderUtil
@@ -38,14 +58,29 @@ public class ParkingService {
     private InputReaderUtil inputReaderUtil;
 
     /**
-     * @see ParkingSpotDAO
+     * @see ParkingSpotStore
+     */
+    private ParkingSpotStore parkingSpotDAO;
+
+    /**
+     * @see TicketStore
+     */
+    private TicketStore ticketDAO;
+
+    /**
+     * @see TransactionManager
+     */
+    private TransactionManager transactionManager = TransactionManager.NONE;
+
+    /**
+     * @see ReservationDAO
      */
-    private ParkingSpotDAO parkingSpotDAO;
+    private ReservationDAO reservationDAO;
 
     /**
-     * @see TicketDao
+     * lot of the spots handed out by this service
      */
-    private TicketDAO ticketDAO;
+    private int lotId = ParkingSpot.DEFAULT_LOT_ID;
 
     /**
      * Constructor with parameters.
@@ -54,47 +89,218 @@ public class ParkingService {
      * @param parkingSpotDAO
      * @param ticketDAO
      */
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotStore parkingSpotDAO, TicketStore ticketDAO) {
 	this.inputReaderUtil = inputReaderUtil;
 	this.parkingSpotDAO = parkingSpotDAO;
 	this.ticketDAO = ticketDAO;
     }
 
     /**
-     * Process when vehicle enter.
+     * Process when vehicle enter. The reservation of the vehicle is looked up
+     * before any free spot, as the spot it holds is the one walk-in vehicles
+     * are not given.
      */
     public void processIncomingVehicle() {
+	long start = System.nanoTime();
+	boolean failed = false;
 	try {
-	    ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
-	    if (parkingSpot != null && parkingSpot.getId() > 0) {
-		String vehicleRegNumber = getVehicleRegNumber();
-
-// ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-
-		boolean isUserRecurring = ticketDAO.recurringUsers(vehicleRegNumber);
-		if (isUserRecurring) {
-		    logger.info("Welcome back!As a recurring user," + "of hour parking lot "
-			    + "you'll benefit from a {} discount.", "5%");
-		}
-		parkingSpot.setAvailable(false);
-		parkingSpotDAO.updateParking(parkingSpot);// allot this parking space and mark it's availability as
-// false
-		Date inTime = new Date();
-		Ticket ticket = new Ticket();
-		ticket.setParkingSpot(parkingSpot);
-		ticket.setVehicleRegNumber(vehicleRegNumber);
-		ticket.setPrice(0);
-		ticket.setInTime(inTime);
-		ticket.setOutTime(null);
-		ticket.setUserRecurring(isUserRecurring);
-		ticketDAO.saveTicket(ticket);
-
-		logger.info("Generated Ticket and saved in DB");
-		logger.info("Please park your vehicle in spot number:{}", parkingSpot.getId());
-		logger.info("Recorded in-time for vehicle number:{} is:{} ", vehicleRegNumber, inTime);
-	    }
+	    ParkingType parkingType = getVehicleType();
+	    String vehicleRegNumber = getVehicleRegNumber();
+	    Ticket ticket = enter(new EntryRequest(vehicleRegNumber, parkingType, CONSOLE_GATE_ID, new Date()));
+
+	    logger.info("Generated Ticket and saved in DB");
+	    logger.info("Please park your vehicle in spot number:{}", ticket.getParkingSpot().getId());
+	    logger.info("Recorded in-time for vehicle number:{} is:{} ", vehicleRegNumber, ticket.getInTime());
+	} catch (IllegalArgumentException ie) {
+	    failed = true;
+	    logger.error("Error parsing user input for vehicle", ie);
 	} catch (Exception e) {
+	    failed = true;
 	    logger.error("Unable to process incoming vehicle", e);
+	} finally {
+	    processIncomingVehicleLatency.record(start, failed);
+	}
+    }
+
+    /**
+     * Let a vehicle in without going through the console. Safe to call from
+     * many gates at once. A vehicle with a reservation gets its booked spot.
+     * 
+     * @param entryRequest the vehicle, its type, the gate and the entry time
+     * @return the saved ticket
+     * @throws Exception if the parking is full or the entry could not be saved
+     */
+    public Ticket enter(EntryRequest entryRequest) throws Exception {
+	Reservation reservation = getReservation(entryRequest);
+	if (reservation != null) {
+	    return enter(entryRequest, reservedSpot(reservation), reservation);
+	}
+	int parkingNumber = parkingSpotDAO.getNextAvailableSlot(entryRequest.getParkingType());
+	if (parkingNumber <= 0) {
+	    throw new SQLException("Error fetching parking number from DB. Parking slots might be full");
+	}
+	return enter(entryRequest, new ParkingSpot(lotId, parkingNumber, entryRequest.getParkingType(), true), null);
+    }
+
+    private Ticket enter(EntryRequest entryRequest, ParkingSpot parkingSpot, Reservation reservation)
+	    throws Exception {
+	long start = System.nanoTime();
+	boolean failed = true;
+	try {
+	    Ticket ticket = transactionManager.inTransaction(() -> enterVehicle(parkingSpot,
+		    entryRequest.getVehicleRegNumber(), entryRequest.getTimestamp(), reservation));
+	    logger.debug("Gate {} let vehicle {} in to spot {}", entryRequest.getGateId(),
+		    entryRequest.getVehicleRegNumber(), ticket.getParkingSpot().getId());
+	    failed = false;
+	    return ticket;
+	} finally {
+	    enterLatency.record(start, failed);
+	}
+    }
+
+    /**
+     * Process when a vehicle books a spot: its type, its plate, in how many
+     * minutes it arrives and for how many hours it stays.
+     */
+    public void processReservation() {
+	try {
+	    ParkingType parkingType = getVehicleType();
+	    String vehicleRegNumber = getVehicleRegNumber();
+	    logger.info("In how many minutes will the vehicle arrive?");
+	    int arrivalMinutes = inputReaderUtil.readSelection();
+	    logger.info("For how many hours?");
+	    int hours = inputReaderUtil.readSelection();
+	    if (arrivalMinutes < 0 || hours <= 0) {
+		throw new IllegalArgumentException("Invalid reservation window");
+	    }
+	    Date startTime = new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(arrivalMinutes));
+	    Reservation reservation = reserve(vehicleRegNumber, parkingType, startTime,
+		    new Date(startTime.getTime() + TimeUnit.HOURS.toMillis(hours)));
+	    logger.info("Please park your vehicle in spot number:{} from {}", reservation.getParkingNumber(),
+		    startTime);
+	} catch (IllegalArgumentException ie) {
+	    logger.error("Error parsing user input for reservation", ie);
+	} catch (Exception e) {
+	    logger.error("Unable to process reservation", e);
+	}
+    }
+
+    /**
+     * Book a spot of a type for a vehicle ahead of its arrival
+     * 
+     * @param vehicleRegNumber vehicle registration number
+     * @param parkingType      type of spot the vehicle needs
+     * @param startTime        start of the booking
+     * @param endTime          end of the booking
+     * @return the saved reservation
+     * @throws SQLException if no spot is free for the window or the
+     *                      reservation could not be saved
+     */
+    public Reservation reserve(String vehicleRegNumber, ParkingType parkingType, Date startTime, Date endTime)
+	    throws SQLException {
+	if (reservationDAO == null) {
+	    throw new SQLException("Reservations are not enabled");
+	}
+	Reservation reservation = reservationDAO.reserve(vehicleRegNumber, parkingType, startTime, endTime);
+	if (reservation == null) {
+	    throw new SQLException("No " + parkingType + " spot free from " + startTime + " to " + endTime);
+	}
+	logger.info("Spot {} reserved for vehicle number:{} from {} to {}", reservation.getParkingNumber(),
+		vehicleRegNumber, startTime, endTime);
+	return reservation;
+    }
+
+    /**
+     * @return the reservation of the vehicle for the entry, when it is for
+     *         the type of spot asked
+     */
+    private Reservation getReservation(EntryRequest entryRequest) {
+	if (reservationDAO == null) {
+	    return null;
+	}
+	Reservation reservation = reservationDAO.getReservation(entryRequest.getVehicleRegNumber(),
+		entryRequest.getTimestamp());
+	return reservation != null && reservation.getParkingType() == entryRequest.getParkingType() ? reservation
+		: null;
+    }
+
+    private ParkingSpot reservedSpot(Reservation reservation) {
+	return new ParkingSpot(lotId, reservation.getParkingNumber(), reservation.getParkingType(), true);
+    }
+
+    /**
+     * Allot a spot to the vehicle and save its ticket. Runs as one unit of
+     * work. The reservation honoured, if any, is deleted with it.
+     * 
+     * @param parkingSpot      the spot picked for the vehicle
+     * @param vehicleRegNumber vehicle registration number
+     * @param inTime           entry time of the vehicle
+     * @param reservation      reservation of the vehicle, or null
+     * @return the saved ticket
+     * @throws SQLException if no spot could be claimed or the ticket was not
+     *                      saved
+     */
+    private Ticket enterVehicle(ParkingSpot parkingSpot, String vehicleRegNumber, Date inTime,
+	    Reservation reservation) throws SQLException {
+	boolean isUserRecurring = ticketDAO.recurringUsers(vehicleRegNumber);
+	if (isUserRecurring) {
+	    logger.info("Welcome back!As a recurring user," + "of hour parking lot "
+		    + "you'll benefit from a {} discount.", "5%");
+	}
+	ParkingSpot claimedSpot = claimParkingSpot(parkingSpot);// allot this parking space and mark it's
+// availability as false
+	Ticket ticket = new Ticket();
+	ticket.setParkingSpot(claimedSpot);
+	ticket.setVehicleRegNumber(vehicleRegNumber);
+	ticket.setPrice(0);
+	ticket.setInTime(inTime);
+	ticket.setOutTime(null);
+	ticket.setUserRecurring(isUserRecurring);
+	if (!ticketDAO.saveTicket(ticket)) {
+	    releaseUnsavedSpot(claimedSpot);
+	    throw new SQLException("Unable to save ticket for vehicle number " + vehicleRegNumber);
+	}
+	if (reservation != null && !reservationDAO.removeReservation(reservation)) {
+	    throw new SQLException("Unable to delete reservation " + reservation.getId());
+	}
+	return ticket;
+    }
+
+    /**
+     * Claim the spot for the vehicle. When another gate took it first, the next
+     * available spot of the same type is tried instead.
+     * 
+     * @param parkingSpot the spot picked for the vehicle
+     * @return the spot now owned by the vehicle
+     * @throws SQLException if no spot could be claimed
+     */
+    private ParkingSpot claimParkingSpot(ParkingSpot parkingSpot) throws SQLException {
+	ParkingSpot candidate = parkingSpot;
+	while (!parkingSpotDAO.claimParkingSpot(candidate)) {
+	    int parkingNumber = parkingSpotDAO.getNextAvailableSlot(candidate.getParkingType());
+	    if (parkingNumber <= 0 || parkingNumber == candidate.getId()) {
+		throw new SQLException("Error claiming parking spot " + candidate.getId()
+			+ ". Parking slots might be full");
+	    }
+	    candidate = new ParkingSpot(candidate.getLotId(), parkingNumber, candidate.getParkingType(), true);
+	}
+	return candidate;
+    }
+
+    /**
+     * Give back the spot claimed for a ticket that was not saved. Without a
+     * TransactionManager no rollback undoes the claim, and the spot would stay
+     * taken by no vehicle.
+     * 
+     * @param parkingSpot the claimed spot
+     */
+    private void releaseUnsavedSpot(ParkingSpot parkingSpot) {
+	if (transactionManager != TransactionManager.NONE) {
+	    return;
+	}
+	parkingSpot.setAvailable(true);
+	if (!parkingSpotDAO.updateParking(parkingSpot)) {
+	    logger.error("Unable to release parking spot {}", parkingSpot.getId());
 	}
     }
 
@@ -109,7 +315,8 @@ public class ParkingService {
     }
 
     /**
-     * Get the next parking number available
+     * Get the next parking number available, picked by the SpotAllocator of
+     * the store
      * 
      * @return parking spot
      * @throws Exception if parking is full
@@ -121,7 +328,7 @@ public class ParkingService {
 	    ParkingType parkingType = getVehicleType();
 	    parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
 	    if (parkingNumber > 0) {
-		parkingSpot = new ParkingSpot(parkingNumber, parkingType, true);
+		parkingSpot = new ParkingSpot(lotId, parkingNumber, parkingType, true);
 	    } else {
 		throw new SQLException("Error fetching parking number from DB. Parking slots might be full");
 	    }
@@ -162,29 +369,125 @@ public class ParkingService {
      * Process when vehicle exit
      */
     public void processExitingVehicle() {
+	long start = System.nanoTime();
+	boolean failed = false;
 	try {
 	    String vehicleRegNumber = getVehicleRegNumber();
-	    Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
-	    Date outTime = new Date();
-	    ticket.setOutTime(outTime);
-	    boolean isUserRecurring = ticketDAO.recurringUsers(vehicleRegNumber);
-	    if (isUserRecurring) {
-		ticket.setUserRecurring(isUserRecurring);
-	    } else {
-		fareCalculatorService.calculateFare(ticket);
-	    }
-	    if (ticketDAO.updateTicket(ticket)) {
-		ParkingSpot parkingSpot = ticket.getParkingSpot();
-		parkingSpot.setAvailable(true);
-		parkingSpotDAO.updateParking(parkingSpot);
-		logger.info("Please pay the parking fare:{}", ticket.getPrice());
-		logger.info("Recorded out-time for vehicle number:{} is: {}", ticket.getVehicleRegNumber(), outTime);
-	    } else {
-		logger.error("Unable to update ticket information. Error occurred");
-	    }
+	    Ticket ticket = exit(new ExitRequest(vehicleRegNumber, CONSOLE_GATE_ID, new Date()));
+	    logger.info("Please pay the parking fare:{}", ticket.getPrice());
+	    logger.info("Recorded out-time for vehicle number:{} is: {}", ticket.getVehicleRegNumber(),
+		    ticket.getOutTime());
 	} catch (Exception e) {
+	    failed = true;
 	    logger.error("Unable to process exiting vehicle", e);
+	} finally {
+	    processExitingVehicleLatency.record(start, failed);
 	}
     }
 
+    /**
+     * Let a vehicle out without going through the console. Safe to call from
+     * many gates at once.
+     * 
+     * @param exitRequest the vehicle, the gate and the exit time
+     * @return the priced ticket
+     * @throws Exception if the vehicle has no ticket or the exit could not be
+     *                   saved
+     */
+    public Ticket exit(ExitRequest exitRequest) throws Exception {
+	long start = System.nanoTime();
+	boolean failed = true;
+	try {
+	    Ticket ticket = transactionManager.inTransaction(
+		    () -> exitVehicle(exitRequest.getVehicleRegNumber(), exitRequest.getTimestamp()));
+	    logger.debug("Gate {} let vehicle {} out for {}", exitRequest.getGateId(),
+		    exitRequest.getVehicleRegNumber(), ticket.getPrice());
+	    failed = false;
+	    return ticket;
+	} finally {
+	    exitLatency.record(start, failed);
+	}
+    }
+
+    /**
+     * Price the ticket of the vehicle and free its spot. Runs as one unit of
+     * work.
+     * 
+     * @param vehicleRegNumber vehicle registration number
+     * @param outTime          exit time of the vehicle
+     * @return the paid ticket
+     * @throws SQLException if the ticket or the spot could not be updated
+     */
+    private Ticket exitVehicle(String vehicleRegNumber, Date outTime) throws SQLException {
+	Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
+	if (ticket == null) {
+	    throw new SQLException("No ticket found for vehicle number " + vehicleRegNumber);
+	}
+	if (ticket.getOutTime() != null) {
+	    throw new SQLException("Vehicle number " + vehicleRegNumber + " has already left");
+	}
+	ticket.setOutTime(outTime);
+	fareCalculatorService.calculateFare(ticket);
+	if (!ticketDAO.updateTicket(ticket)) {
+	    throw new SQLException("Unable to update ticket information. Error occurred");
+	}
+	ParkingSpot parkingSpot = ticket.getParkingSpot();
+	parkingSpot.setAvailable(true);
+	if (!parkingSpotDAO.updateParking(parkingSpot)) {
+	    throw new SQLException("Unable to release parking spot " + parkingSpot.getId());
+	}
+	return ticket;
+    }
+
+    /**
+     * Run entries and exits in a transaction of this manager. Without one, each
+     * DAO call uses its own connection.
+     * 
+     * @param transactionManager
+     */
+    public void setTransactionManager(TransactionManager transactionManager) {
+	this.transactionManager = transactionManager;
+    }
+
+    /**
+     * Price the exits with other tariffs than the flat hourly rates of the
+     * Fare constants
+     * 
+     * @param fareCalculatorService
+     */
+    public void setFareCalculatorService(FareCalculatorService fareCalculatorService) {
+	this.fareCalculatorService = fareCalculatorService;
+    }
+
+    /**
+     * Honour the reservations of this DAO at entry, or null to take no
+     * reservations
+     * 
+     * @param reservationDAO
+     */
+    public void setReservationDAO(ReservationDAO reservationDAO) {
+	this.reservationDAO = reservationDAO;
+    }
+
+    /**
+     * @return true when spots can be booked ahead of the arrival
+     */
+    public boolean isReservationEnabled() {
+	return reservationDAO != null;
+    }
+
+    public int getLotId() {
+	return lotId;
+    }
+
+    /**
+     * Hand out the spots of this lot. The stores of the service must hold the
+     * spots and tickets of the same lot.
+     * 
+     * @param lotId
+     */
+    public void setLotId(int lotId) {
+	this.lotId = lotId;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * The prices of one parking lot, compiled into lookup tables.
+ *
+ * Each parking type has time of day bands, each with its hourly rate, and
+ * an optional cap on the price of a calendar day. The day is cut into
+ * minutes; for every band a table holds the seconds of the band elapsed
+ * before each minute of the day. The seconds a stay spends in a band are
+ * then the difference of two table reads, whatever the length of the stay,
+ * and pricing a stay costs a few array reads per band.
+ *
+ * Band times are local times of the zone of the tariff, taken at the entry:
+ * on the days the clocks change, a stay keeps the offset it entered with.
+ *
+ */
+
+public final class Tariff {
+
+	static final int MINUTES_PER_DAY = 24 * 60;
+	private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+	private static final double SECONDS_PER_HOUR = 3600.0;
+	private static final double CENTS_PER_UNIT = 100;
+
+	/**
+	 * no cap on the price of a day
+	 */
+	public static final double NO_CAP = -1;
+
+	private final ZoneId zone;
+	private final long freeSeconds;
+	private final double recurringReduction;
+	private final Table[] tables = new Table[ParkingType.values().length];
+
+	/**
+	 * @param zone               zone of the band times and days
+	 * @param freeSeconds        stays up to this long are free
+	 * @param recurringReduction factor applied to the price of recurring users
+	 */
+	Tariff(ZoneId zone, long freeSeconds, double recurringReduction) {
+		this.zone = zone;
+		this.freeSeconds = freeSeconds;
+		this.recurringReduction = recurringReduction;
+	}
+
+	/**
+	 * Compile the prices of a parking type
+	 *
+	 * @param parkingType   the type
+	 * @param bandOfMinute  for each minute of the day, the band it belongs to,
+	 *                      or -1 when parking is free at that time
+	 * @param ratesPerHour  hourly rate of each band
+	 * @param dailyCap      highest price of a calendar day, or NO_CAP
+	 */
+	void setPrices(ParkingType parkingType, byte[] bandOfMinute, double[] ratesPerHour, double dailyCap) {
+		if (bandOfMinute.length != MINUTES_PER_DAY) {
+			throw new IllegalArgumentException("One band per minute of the day expected");
+		}
+		tables[parkingType.ordinal()] = new Table(bandOfMinute.clone(), ratesPerHour.clone(), dailyCap);
+	}
+
+	/**
+	 * @param inTimeMillis  entry time, epoch millis
+	 * @param outTimeMillis exit time, epoch millis, not before the entry
+	 * @param parkingType   type of the spot used
+	 * @param userRecurring whether the recurring user reduction applies
+	 * @return the price in cents
+	 */
+	public long fareCents(long inTimeMillis, long outTimeMillis, ParkingType parkingType, boolean userRecurring) {
+		Table table = tables[parkingType.ordinal()];
+		if (table == null) {
+			throw new IllegalArgumentException("No tariff for " + parkingType);
+		}
+		long seconds = (outTimeMillis - inTimeMillis) / 1000;
+		if (seconds <= freeSeconds) {
+			return 0;
+		}
+		double reduction = userRecurring ? recurringReduction : 1;
+		long start = table.flat ? 0 : localSeconds(inTimeMillis);
+		return Math.round(table.cents(start, start + seconds, reduction));
+	}
+
+	private long localSeconds(long epochMillis) {
+		long epochSeconds = Math.floorDiv(epochMillis, 1000);
+		return epochSeconds + zone.getRules().getOffset(Instant.ofEpochSecond(epochSeconds)).getTotalSeconds();
+	}
+
+	/**
+	 * Compiled prices of one parking type
+	 */
+	private static final class Table {
+		private final byte[] bandOfMinute;
+		private final double[] ratesPerHour;
+		private final long[][] bandSecondsBefore;
+		private final double dailyCapCents;
+		private final double fullDayCents;
+
+		/**
+		 * one band all day long without a cap, priced without looking at the
+		 * time of day
+		 */
+		private final boolean flat;
+
+		private Table(byte[] bandOfMinute, double[] ratesPerHour, double dailyCap) {
+			this.bandOfMinute = bandOfMinute;
+			this.ratesPerHour = ratesPerHour;
+			this.dailyCapCents = dailyCap == NO_CAP ? NO_CAP : dailyCap * CENTS_PER_UNIT;
+			bandSecondsBefore = new long[ratesPerHour.length][MINUTES_PER_DAY + 1];
+			for (int band = 0; band < ratesPerHour.length; band++) {
+				for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+					bandSecondsBefore[band][minute + 1] = bandSecondsBefore[band][minute]
+							+ (bandOfMinute[minute] == band ? 60 : 0);
+				}
+			}
+			double dayCents = uncappedCents(0, SECONDS_PER_DAY, 1);
+			this.fullDayCents = dailyCapCents == NO_CAP ? dayCents : Math.min(dayCents, dailyCapCents);
+			byte[] allDay = new byte[MINUTES_PER_DAY];
+			this.flat = ratesPerHour.length == 1 && dailyCap == NO_CAP && Arrays.equals(bandOfMinute, allDay);
+		}
+
+		/**
+		 * @param from local seconds of the entry
+		 * @param to   local seconds of the exit
+		 */
+		private double cents(long from, long to, double reduction) {
+			if (dailyCapCents == NO_CAP) {
+				return uncappedCents(from, to, reduction);
+			}
+			long firstMidnight = (Math.floorDiv(from, SECONDS_PER_DAY) + 1) * SECONDS_PER_DAY;
+			if (to <= firstMidnight) {
+				return reduction * cappedCents(from, to);
+			}
+			long lastMidnight = Math.floorDiv(to, SECONDS_PER_DAY) * SECONDS_PER_DAY;
+			long fullDays = (lastMidnight - firstMidnight) / SECONDS_PER_DAY;
+			return reduction * (cappedCents(from, firstMidnight) + fullDays * fullDayCents
+					+ cappedCents(lastMidnight, to));
+		}
+
+		private double cappedCents(long from, long to) {
+			return Math.min(dailyCapCents, uncappedCents(from, to, 1));
+		}
+
+		/**
+		 * Computed band by band in the order the flat hourly pricing always
+		 * used, so a single band prices to the cent like it
+		 */
+		private double uncappedCents(long from, long to, double reduction) {
+			double cents = 0;
+			for (int band = 0; band < ratesPerHour.length; band++) {
+				long seconds = bandSeconds(band, to) - bandSeconds(band, from);
+				cents += reduction * (seconds / SECONDS_PER_HOUR) * ratesPerHour[band] * CENTS_PER_UNIT;
+			}
+			return cents;
+		}
+
+		/**
+		 * @return seconds of the band from local midnight of day 0 to the time
+		 */
+		private long bandSeconds(int band, long localSeconds) {
+			long day = Math.floorDiv(localSeconds, SECONDS_PER_DAY);
+			int secondOfDay = (int) (localSeconds - day * SECONDS_PER_DAY);
+			int minute = secondOfDay / 60;
+			long seconds = day * bandSecondsBefore[band][MINUTES_PER_DAY] + bandSecondsBefore[band][minute];
+			return bandOfMinute[minute] == band ? seconds + secondOfDay % 60 : seconds;
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The tariff of each parking lot, loaded from a properties file:
+ *
+ * <pre>
+ * zone=Europe/Paris
+ * freeMinutes=30
+ * recurringReduction=0.95
+ * CAR.bands=00:00-08:00 1.0, 08:00-20:00 2.0, 20:00-24:00 1.0
+ * CAR.dailyCap=15
+ * BIKE.bands=00:00-24:00 1.0
+ * lot.2.CAR.bands=07:00-19:00 2.5
+ * </pre>
+ *
+ * Bands are local times with their hourly rate; a band may run past
+ * midnight, such as 20:00-08:00, and parking is free outside every band.
+ * Every entry is optional and defaults to the Fare constants: one band all
+ * day at the hourly rate of the type, no cap. An entry prefixed by
+ * lot.[id]. replaces the entry for that lot only.
+ *
+ */
+
+public final class Tariffs {
+
+	private static final Logger logger = LogManager.getLogger("Tariffs");
+
+	private static final Pattern LOT_KEY = Pattern.compile("lot\\.(\\d+)\\.(.+)");
+	private static final Pattern BAND = Pattern.compile("(\\d{1,2}):(\\d{2})\\s*-\\s*(\\d{1,2}):(\\d{2})\\s+(\\S+)");
+
+	private final Tariff defaultTariff;
+	private final Map<Integer, Tariff> lotTariffs;
+
+	private Tariffs(Tariff defaultTariff, Map<Integer, Tariff> lotTariffs) {
+		this.defaultTariff = defaultTariff;
+		this.lotTariffs = Collections.unmodifiableMap(new HashMap<>(lotTariffs));
+	}
+
+	/**
+	 * @return the flat hourly rates of the Fare constants for every lot
+	 */
+	public static Tariffs defaultTariffs() {
+		return fromProperties(new Properties());
+	}
+
+	/**
+	 * @param file properties file of the tariffs
+	 * @return the compiled tariffs
+	 * @throws IOException if the file can not be read
+	 */
+	public static Tariffs load(Path file) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		return fromProperties(properties);
+	}
+
+	/**
+	 * @param properties the entries of the tariffs
+	 * @return the compiled tariffs
+	 * @throws IllegalArgumentException if an entry is malformed or two bands
+	 *                                  overlap
+	 */
+	public static Tariffs fromProperties(Properties properties) {
+		Map<String, String> defaults = new HashMap<>();
+		Map<Integer, Map<String, String>> lots = new HashMap<>();
+		for (String key : properties.stringPropertyNames()) {
+			String value = properties.getProperty(key).trim();
+			Matcher matcher = LOT_KEY.matcher(key);
+			if (matcher.matches()) {
+				lots.computeIfAbsent(Integer.parseInt(matcher.group(1)), lotId -> new HashMap<>())
+						.put(matcher.group(2), value);
+			} else {
+				defaults.put(key, value);
+			}
+		}
+		Map<Integer, Tariff> lotTariffs = new HashMap<>();
+		for (Map.Entry<Integer, Map<String, String>> lot : lots.entrySet()) {
+			Map<String, String> entries = new HashMap<>(defaults);
+			entries.putAll(lot.getValue());
+			lotTariffs.put(lot.getKey(), compile(entries));
+		}
+		if (!lots.isEmpty()) {
+			logger.info("Lots {} have their own tariff", new TreeSet<>(lots.keySet()));
+		}
+		return new Tariffs(compile(defaults), lotTariffs);
+	}
+
+	/**
+	 * @param lotId parking lot
+	 * @return the tariff of the lot, the default one when it has none
+	 */
+	public Tariff forLot(int lotId) {
+		Tariff tariff = lotTariffs.get(lotId);
+		return tariff == null ? defaultTariff : tariff;
+	}
+
+	private static Tariff compile(Map<String, String> entries) {
+		ZoneId zone;
+		try {
+			zone = entries.containsKey("zone") ? ZoneId.of(entries.get("zone")) : ZoneId.systemDefault();
+		} catch (DateTimeException e) {
+			throw new IllegalArgumentException("Unknown zone " + entries.get("zone"), e);
+		}
+		long freeSeconds = entries.containsKey("freeMinutes") ? 60 * parseLong(entries, "freeMinutes")
+				: Fare.FREE_PARKING_SECONDS;
+		double recurringReduction = entries.containsKey("recurringReduction")
+				? parseAmount(entries, "recurringReduction")
+				: Fare.RECURRING_USER_REDUCTION;
+		Tariff tariff = new Tariff(zone, freeSeconds, recurringReduction);
+		for (ParkingType parkingType : ParkingType.values()) {
+			String bandsKey = parkingType + ".bands";
+			String bands = entries.containsKey(bandsKey) ? entries.get(bandsKey)
+					: "00:00-24:00 " + defaultRatePerHour(parkingType);
+			String capKey = parkingType + ".dailyCap";
+			double dailyCap = entries.containsKey(capKey) ? parseAmount(entries, capKey) : Tariff.NO_CAP;
+			compileBands(tariff, parkingType, bands, dailyCap);
+		}
+		return tariff;
+	}
+
+	private static void compileBands(Tariff tariff, ParkingType parkingType, String bands, double dailyCap) {
+		byte[] bandOfMinute = new byte[Tariff.MINUTES_PER_DAY];
+		Arrays.fill(bandOfMinute, (byte) -1);
+		String[] entries = bands.split(",");
+		if (entries.length > Byte.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many bands for " + parkingType);
+		}
+		double[] ratesPerHour = new double[entries.length];
+		for (int band = 0; band < entries.length; band++) {
+			Matcher matcher = BAND.matcher(entries[band].trim());
+			if (!matcher.matches()) {
+				throw new IllegalArgumentException("Malformed band '" + entries[band].trim() + "' of " + parkingType
+						+ ", expected HH:MM-HH:MM rate");
+			}
+			int from = minuteOfDay(matcher.group(1), matcher.group(2));
+			int to = minuteOfDay(matcher.group(3), matcher.group(4));
+			ratesPerHour[band] = parseAmount(parkingType + " band rate", matcher.group(5));
+			int length = Math.floorMod(to - from - 1, Tariff.MINUTES_PER_DAY) + 1;
+			for (int i = 0; i < length; i++) {
+				int minute = (from + i) % Tariff.MINUTES_PER_DAY;
+				if (bandOfMinute[minute] >= 0) {
+					throw new IllegalArgumentException("Overlapping bands for " + parkingType + " at "
+							+ String.format("%02d:%02d", minute / 60, minute % 60));
+				}
+				bandOfMinute[minute] = (byte) band;
+			}
+		}
+		tariff.setPrices(parkingType, bandOfMinute, ratesPerHour, dailyCap);
+	}
+
+	private static int minuteOfDay(String hours, String minutes) {
+		int hour = Integer.parseInt(hours);
+		int minute = Integer.parseInt(minutes);
+		if (hour > 24 || minute > 59 || (hour == 24 && minute > 0)) {
+			throw new IllegalArgumentException("Invalid time " + hours + ":" + minutes);
+		}
+		return hour * 60 + minute;
+	}
+
+	private static double defaultRatePerHour(ParkingType parkingType) {
+		switch (parkingType) {
+		case CAR:
+			return Fare.CAR_RATE_PER_HOUR;
+		case BIKE:
+			return Fare.BIKE_RATE_PER_HOUR;
+		default:
+			throw new IllegalArgumentException("Unkown Parking Type");
+		}
+	}
+
+	private static long parseLong(Map<String, String> entries, String key) {
+		try {
+			long value = Long.parseLong(entries.get(key));
+			if (value < 0) {
+				throw new IllegalArgumentException(key + " can not be negative");
+			}
+			return value;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + key + ": " + entries.get(key), e);
+		}
+	}
+
+	private static double parseAmount(Map<String, String> entries, String key) {
+		return parseAmount(key, entries.get(key));
+	}
+
+	private static double parseAmount(String name, String value) {
+		try {
+			double amount = Double.parseDouble(value);
+			if (amount < 0 || Double.isNaN(amount) || Double.isInfinite(amount)) {
+				throw new IllegalArgumentException(name + " must be a positive amount: " + value);
+			}
+			return amount;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + name + ": " + value, e);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.parkit.parkingsystem.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Fixed size Bloom filter over strings or longs. mightContain never answers false for
+ * a value that was added; it may answer true for a value that was not, with a
+ * probability set by the expected number of values and the bits per value.
+ *
+ */
+
+public class BloomFilter {
+
+	private final long[] bits;
+	private final long bitCount;
+	private final int hashCount;
+
+	/**
+	 * @param expectedValues          number of values the filter is sized for
+	 * @param falsePositiveProbability wanted false positive rate at that size
+	 */
+	public BloomFilter(long expectedValues, double falsePositiveProbability) {
+		long size = (long) Math.ceil(-expectedValues * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+		this.bits = new long[(int) Math.max(1, (size + 63) / 64)];
+		this.bitCount = bits.length * 64L;
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedValues * Math.log(2)));
+	}
+
+	public void add(String value) {
+		addHash(hash(value));
+	}
+
+	public void add(long value) {
+		addHash(hash(value));
+	}
+
+	public boolean mightContain(String value) {
+		return mightContainHash(hash(value));
+	}
+
+	public boolean mightContain(long value) {
+		return mightContainHash(hash(value));
+	}
+
+	private synchronized void addHash(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			long bit = Math.floorMod(h1 + i * h2, bitCount);
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	private synchronized boolean mightContainHash(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			long bit = Math.floorMod(h1 + i * h2, bitCount);
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public synchronized void clear() {
+		Arrays.fill(bits, 0L);
+	}
+
+	/**
+	 * @return memory used by the bit array, in bytes
+	 */
+	public long sizeInBytes() {
+		return bits.length * 8L;
+	}
+
+	/**
+	 * 64 bit FNV-1a followed by a final avalanche so both halves can be used
+	 * as independent hashes.
+	 */
+	private static long hash(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b;
+			hash *= 0x100000001b3L;
+		}
+		return hash(hash);
+	}
+
+	/**
+	 * Final avalanche of MurmurHash3, spreading every bit of the value over
+	 * both halves
+	 */
+	private static long hash(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+}
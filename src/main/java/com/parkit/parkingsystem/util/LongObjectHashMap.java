@@ -0,0 +1,160 @@
+package com.parkit.parkingsystem.util;
+
+import java.util.Arrays;
+
+/**
+ * Map from long keys to values in two open addressing arrays, without boxing
+ * the keys. A slot is taken when its value is not null, so null values are
+ * not allowed. Not thread safe.
+ *
+ * @param <V> type of the values
+ */
+
+public class LongObjectHashMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+
+	public LongObjectHashMap() {
+		this(0);
+	}
+
+	/**
+	 * @param expectedSize number of entries held without resizing
+	 */
+	public LongObjectHashMap(int expectedSize) {
+		int capacity = capacityFor(expectedSize);
+		keys = new long[capacity];
+		values = new Object[capacity];
+	}
+
+	/**
+	 * @param key the key
+	 * @return the value of the key, null when there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int mask = keys.length - 1;
+		for (int slot = mix(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return (V) values[slot];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param key   the key
+	 * @param value the new value of the key
+	 * @return the previous value of the key, null when there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values are not allowed");
+		}
+		int mask = keys.length - 1;
+		int slot = mix(key) & mask;
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > keys.length / 2) {
+			resize(keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * @param key the key
+	 * @return the value the key had, null when there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int mask = keys.length - 1;
+		for (int slot = mix(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				closeGap(slot);
+				size--;
+				return previous;
+			}
+		}
+		return null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * Move back the entries probed past a freed slot, so lookups never stop
+	 * early at it
+	 */
+	private void closeGap(int free) {
+		int mask = keys.length - 1;
+		for (int slot = (free + 1) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+			int home = mix(keys[slot]) & mask;
+			if (((slot - home) & mask) >= ((slot - free) & mask)) {
+				keys[free] = keys[slot];
+				values[free] = values[slot];
+				free = slot;
+			}
+		}
+		values[free] = null;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = mix(oldKeys[i]) & mask;
+				while (values[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * @return a power of two keeping the table at most half full
+	 */
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity / 2 < expectedSize) {
+			capacity *= 2;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Spread the bits of a key, as plate codes differ mostly in their high
+	 * bits
+	 */
+	private static int mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
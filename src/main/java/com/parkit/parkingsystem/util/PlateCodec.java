@@ -0,0 +1,124 @@
+package com.parkit.parkingsystem.util;
+
+import java.util.Locale;
+
+/**
+ * Canonical form of vehicle registration numbers and their packing into a
+ * long.
+ *
+ * The canonical plate is upper case without whitespace, so " ab 123" and
+ * "AB123" are the same vehicle. '-', digits and letters take 6 bits each and
+ * the 10 characters of VEHICLE_REG_NUMBER fit in 60 bits, the first
+ * character in the highest bits. The symbols follow the character order, '-'
+ * before the digits before the letters, so codes sort like the canonical
+ * plates they encode. encode does not allocate, which lets the in-memory
+ * plate indexes, OpenTicketIndex and RecurringUserCache, key on a long
+ * instead of a String.
+ *
+ * Plates longer than 10 characters or with other characters are not
+ * encodable; callers keep those as canonical Strings.
+ *
+ */
+
+public final class PlateCodec {
+
+	/**
+	 * returned by encode for a plate that does not fit in a long
+	 */
+	public static final long NOT_ENCODABLE = -1L;
+
+	public static final int MAX_LENGTH = 10;
+
+	private static final int BITS_PER_CHAR = 6;
+	private static final int DASH = 1;
+	private static final int DIGITS = DASH + 1;
+	private static final int LETTERS = DIGITS + 10;
+
+	private PlateCodec() {
+
+	}
+
+	/**
+	 * @param vehicleRegNumber vehicle registration number as typed
+	 * @return the plate in upper case without whitespace
+	 */
+	public static String normalize(String vehicleRegNumber) {
+		StringBuilder plate = new StringBuilder(vehicleRegNumber.length());
+		for (int i = 0; i < vehicleRegNumber.length(); i++) {
+			char c = vehicleRegNumber.charAt(i);
+			if (!Character.isWhitespace(c)) {
+				plate.append(c);
+			}
+		}
+		return plate.toString().toUpperCase(Locale.ROOT);
+	}
+
+	/**
+	 * Pack the canonical form of a plate
+	 *
+	 * @param vehicleRegNumber vehicle registration number as typed
+	 * @return the code of the plate, NOT_ENCODABLE when it does not fit
+	 */
+	public static long encode(String vehicleRegNumber) {
+		long code = 0;
+		int length = 0;
+		for (int i = 0; i < vehicleRegNumber.length(); i++) {
+			char c = vehicleRegNumber.charAt(i);
+			if (Character.isWhitespace(c)) {
+				continue;
+			}
+			int symbol = symbol(c);
+			if (symbol == 0 || length == MAX_LENGTH) {
+				return NOT_ENCODABLE;
+			}
+			code |= (long) symbol << (BITS_PER_CHAR * (MAX_LENGTH - 1 - length));
+			length++;
+		}
+		return length == 0 ? NOT_ENCODABLE : code;
+	}
+
+	/**
+	 * @param code code returned by encode
+	 * @return the canonical plate
+	 */
+	public static String decode(long code) {
+		if (code <= 0 || code >>> (BITS_PER_CHAR * MAX_LENGTH) != 0) {
+			throw new IllegalArgumentException("Not a plate code: " + code);
+		}
+		StringBuilder plate = new StringBuilder(MAX_LENGTH);
+		for (int i = MAX_LENGTH - 1; i >= 0; i--) {
+			int symbol = (int) (code >>> (BITS_PER_CHAR * i)) & ((1 << BITS_PER_CHAR) - 1);
+			if (symbol == 0) {
+				break;
+			}
+			plate.append(character(symbol));
+		}
+		return plate.toString();
+	}
+
+	private static int symbol(char c) {
+		if (c >= '0' && c <= '9') {
+			return DIGITS + c - '0';
+		}
+		if (c >= 'A' && c <= 'Z') {
+			return LETTERS + c - 'A';
+		}
+		if (c >= 'a' && c <= 'z') {
+			return LETTERS + c - 'a';
+		}
+		return c == '-' ? DASH : 0;
+	}
+
+	private static char character(int symbol) {
+		if (symbol == DASH) {
+			return '-';
+		}
+		if (symbol < LETTERS) {
+			return (char) ('0' + symbol - DIGITS);
+		}
+		if (symbol < LETTERS + 26) {
+			return (char) ('A' + symbol - LETTERS);
+		}
+		throw new IllegalArgumentException("Not a plate symbol: " + symbol);
+	}
+}
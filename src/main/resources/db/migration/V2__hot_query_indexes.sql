@@ -0,0 +1,5 @@
+/* GET_TICKET and RECURRING_USERS look tickets up by plate, then by out and in time */
+create index IDX_TICKET_PLATE on ticket(VEHICLE_REG_NUMBER, OUT_TIME, IN_TIME);
+
+/* GET_NEXT_PARKING_SPOT looks for the lowest free spot of a type */
+create index IDX_PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER);
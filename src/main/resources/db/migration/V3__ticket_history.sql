@@ -0,0 +1,23 @@
+/* Closed tickets moved out of ticket by TicketArchiver, one partition per month of exit on MySQL */
+create table if not exists ticket_history(
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ PRIMARY KEY (ID, OUT_TIME)) /*!50500 partition by range columns(OUT_TIME) (
+ partition p_start values less than ('2020-01-01'),
+ partition p_future values less than (MAXVALUE)) */;
+
+/* TicketArchiver picks the oldest closed tickets first */
+create index IDX_TICKET_OUT_TIME on ticket(OUT_TIME);
+
+/* Closed tickets per plate, kept up to date as tickets are paid so RECURRING_USERS does not read the history */
+create table if not exists recurring_user(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ CLOSED_TICKETS int NOT NULL,
+ LAST_OUT_TIME DATETIME NOT NULL);
+
+insert into recurring_user(VEHICLE_REG_NUMBER, CLOSED_TICKETS, LAST_OUT_TIME)
+ select VEHICLE_REG_NUMBER, count(*), max(OUT_TIME) from ticket where OUT_TIME is not null group by VEHICLE_REG_NUMBER;
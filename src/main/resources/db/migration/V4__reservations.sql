@@ -0,0 +1,14 @@
+/* Spots booked ahead for a time window, deleted when the vehicle arrives or the booking is cancelled */
+create table if not exists reservation(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ START_TIME DATETIME NOT NULL,
+ END_TIME DATETIME NOT NULL,
+ FOREIGN KEY (PARKING_NUMBER) REFERENCES parking(PARKING_NUMBER));
+
+/* GET_NEXT_UNRESERVED_PARKING_SPOT looks for reservations of a spot overlapping a window */
+create index IDX_RESERVATION_SPOT_TIME on reservation(PARKING_NUMBER, START_TIME, END_TIME);
+
+/* Loading and purging reservations skip the past ones */
+create index IDX_RESERVATION_END_TIME on reservation(END_TIME);
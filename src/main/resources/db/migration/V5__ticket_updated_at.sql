@@ -0,0 +1,13 @@
+/* Set by the database when a ticket row is written, so incremental reports pick up tickets in the order they were written rather than by exit time */
+alter table ticket add column UPDATED_AT DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+
+/* Archived tickets keep the UPDATED_AT they had in ticket, so a report does not count them twice */
+alter table ticket_history add column UPDATED_AT DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3);
+
+/* Tickets closed before this migration were reported by exit time, which stays their watermark */
+update ticket set UPDATED_AT = OUT_TIME where OUT_TIME is not null;
+update ticket_history set UPDATED_AT = OUT_TIME;
+
+/* GET_CLOSED_TICKETS reads the tickets written since the last report */
+create index IDX_TICKET_UPDATED_AT on ticket(UPDATED_AT);
+create index IDX_TICKET_HISTORY_UPDATED_AT on ticket_history(UPDATED_AT);
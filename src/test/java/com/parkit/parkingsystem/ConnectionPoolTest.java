@@ -0,0 +1,134 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains ConnectionPool unit tests
+ *
+ */
+
+class ConnectionPoolTest {
+
+    private final List<Connection> openedConnections = new ArrayList<>();
+    private ConnectionPool connectionPool;
+
+    private Connection openConnection() {
+	Connection connection = mock(Connection.class);
+	openedConnections.add(connection);
+	return connection;
+    }
+
+    @AfterEach
+    private void tearDown() {
+	if (connectionPool != null) {
+	    connectionPool.close();
+	}
+    }
+
+    @Test
+    @DisplayName("Closing a pooled connection gives it back for reuse")
+    void connectionIsReused() throws Exception {
+	// GIVEN
+	connectionPool = new ConnectionPool(this::openConnection, 0, 2, 100, 0);
+	// WHEN
+	Connection first = connectionPool.acquire();
+	first.close();
+	Connection second = connectionPool.acquire();
+	second.close();
+	// THEN
+	assertEquals(1, openedConnections.size());
+	assertEquals(2, connectionPool.getStats().getAcquiredConnections());
+	assertEquals(1, connectionPool.getStats().getIdleConnections());
+	verify(openedConnections.get(0), never()).close();
+    }
+
+    @Test
+    @DisplayName("Acquire times out when every connection is in use")
+    void acquireTimesOutWhenExhausted() throws Exception {
+	// GIVEN
+	connectionPool = new ConnectionPool(this::openConnection, 0, 1, 50, 0);
+	connectionPool.acquire();
+	// WHEN
+
+	// THEN
+	assertThrows(SQLTimeoutException.class, () -> connectionPool.acquire());
+	assertEquals(1, connectionPool.getStats().getAcquireTimeouts());
+    }
+
+    @Test
+    @DisplayName("A returned connection can not be used any more")
+    void returnedConnectionIsUnusable() throws Exception {
+	// GIVEN
+	connectionPool = new ConnectionPool(this::openConnection, 0, 1, 100, 0);
+	Connection connection = connectionPool.acquire();
+	// WHEN
+	connection.close();
+	// THEN
+	assertTrue(connection.isClosed());
+	assertThrows(SQLException.class, () -> connection.prepareStatement("select 1"));
+    }
+
+    @Test
+    @DisplayName("A broken idle connection is replaced")
+    void brokenIdleConnectionIsReplaced() throws Exception {
+	// GIVEN
+	connectionPool = new ConnectionPool(this::openConnection, 0, 1, 100, 0);
+	connectionPool.acquire().close();
+	when(openedConnections.get(0).isValid(2)).thenReturn(false);
+	Thread.sleep(600);
+	// WHEN
+	connectionPool.acquire().close();
+	// THEN
+	assertEquals(2, openedConnections.size());
+	verify(openedConnections.get(0), times(1)).close();
+	assertEquals(1, connectionPool.getStats().getDestroyedConnections());
+    }
+
+    @Test
+    @DisplayName("A connection held too long is reported as a leak")
+    void leakIsDetected() throws Exception {
+	// GIVEN
+	connectionPool = new ConnectionPool(this::openConnection, 0, 1, 100, 10);
+	connectionPool.acquire();
+	Thread.sleep(20);
+	// WHEN
+	int detected = connectionPool.detectLeaks();
+	// THEN
+	assertEquals(1, detected);
+	assertEquals(0, connectionPool.detectLeaks());
+	assertEquals(1, connectionPool.getStats().getLeakedConnections());
+    }
+
+    @Test
+    @DisplayName("Uncommitted work is rolled back when the connection is returned")
+    void openTransactionIsRolledBack() throws Exception {
+	// GIVEN
+	connectionPool = new ConnectionPool(this::openConnection, 0, 1, 100, 0);
+	Connection connection = connectionPool.acquire();
+	when(openedConnections.get(0).getAutoCommit()).thenReturn(false);
+	// WHEN
+	connection.close();
+	// THEN
+	verify(openedConnections.get(0)).rollback();
+	verify(openedConnections.get(0)).setAutoCommit(true);
+    }
+}
@@ -0,0 +1,90 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains DataBaseConfig transaction unit tests
+ *
+ */
+
+class DataBaseConfigTest {
+
+    private Connection physicalConnection;
+    private DataBaseConfig dataBaseConfig;
+
+    @BeforeEach
+    private void setUpPerTest() throws SQLException {
+	physicalConnection = mock(Connection.class);
+	when(physicalConnection.getAutoCommit()).thenReturn(true);
+	dataBaseConfig = new DataBaseConfig() {
+	    @Override
+	    protected Connection createConnection() {
+		return physicalConnection;
+	    }
+	};
+	dataBaseConfig.setPoolMinSize(0);
+	dataBaseConfig.setPoolMaxSize(1);
+    }
+
+    @AfterEach
+    private void tearDown() {
+	dataBaseConfig.shutdown();
+    }
+
+    @Test
+    @DisplayName("Every DAO call of a unit of work shares one connection and one commit")
+    void unitOfWorkSharesConnection() throws Exception {
+	// GIVEN
+	AtomicBoolean committed = new AtomicBoolean();
+	// WHEN
+	dataBaseConfig.inTransaction(() -> {
+	    Connection first = dataBaseConfig.getConnection();
+	    dataBaseConfig.closeConnection(first);
+	    Connection second = dataBaseConfig.getConnection();
+	    assertSame(first, second);
+	    dataBaseConfig.afterCommit(() -> committed.set(true));
+	    assertFalse(committed.get());
+	    return null;
+	});
+	// THEN
+	assertTrue(committed.get());
+	verify(physicalConnection).setAutoCommit(false);
+	verify(physicalConnection).commit();
+	verify(physicalConnection, never()).rollback();
+    }
+
+    @Test
+    @DisplayName("A failing unit of work is rolled back")
+    void failingUnitOfWorkIsRolledBack() throws Exception {
+	// GIVEN
+	AtomicBoolean rolledBack = new AtomicBoolean();
+	// WHEN
+	assertThrows(SQLException.class, () -> dataBaseConfig.inTransaction(() -> {
+	    dataBaseConfig.afterRollback(() -> rolledBack.set(true));
+	    throw new SQLException("Unable to update ticket information");
+	}));
+	// THEN
+	assertTrue(rolledBack.get());
+	assertFalse(dataBaseConfig.isInTransaction());
+	verify(physicalConnection).rollback();
+	verify(physicalConnection, never()).commit();
+    }
+}
@@ -0,0 +1,181 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.EmbeddedParkingStore;
+import com.parkit.parkingsystem.model.EntryRequest;
+import com.parkit.parkingsystem.model.ExitRequest;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * this class contains EmbeddedParkingStore unit tests
+ *
+ */
+
+class EmbeddedParkingStoreTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private Path file;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+	file = Files.createTempFile("parking", ".journal");
+	Files.delete(file);
+    }
+
+    @AfterEach
+    private void tearDown() throws Exception {
+	Files.deleteIfExists(file);
+    }
+
+    private static EmbeddedParkingStore withSpots(EmbeddedParkingStore store) {
+	store.addParkingSpot(1, ParkingType.CAR);
+	store.addParkingSpot(2, ParkingType.CAR);
+	store.addParkingSpot(3, ParkingType.BIKE);
+	return store;
+    }
+
+    @Test
+    @DisplayName("Entries and exits through ParkingService are served by the embedded store")
+    void enterAndExit() throws Exception {
+	// GIVEN
+	EmbeddedParkingStore store = withSpots(EmbeddedParkingStore.inMemory());
+	ParkingService parkingService = new ParkingService(null, store, store);
+	// WHEN
+	Ticket entry = parkingService.enter(new EntryRequest("ABCDEF", ParkingType.CAR, "north", new Date(0)));
+	int nextCarSpot = store.getNextAvailableSlot(ParkingType.CAR);
+	Ticket exit = parkingService.exit(new ExitRequest("ABCDEF", "south", new Date(2 * HOUR)));
+	Ticket secondEntry = parkingService.enter(new EntryRequest("ABCDEF", ParkingType.CAR, "north", new Date(3 * HOUR)));
+	// THEN
+	assertEquals(1, entry.getParkingSpot().getId());
+	assertEquals(2, nextCarSpot);
+	assertEquals(entry.getId(), exit.getId());
+	assertEquals(3.0, exit.getPrice());
+	assertFalse(entry.isUserRecurring());
+	assertTrue(secondEntry.isUserRecurring());
+	assertEquals(1, secondEntry.getParkingSpot().getId());
+	assertEquals(3, store.getNextAvailableSlot(ParkingType.BIKE));
+    }
+
+    @Test
+    @DisplayName("A vehicle already parked can not get a second ticket")
+    void oneOpenTicketPerPlate() {
+	// GIVEN
+	EmbeddedParkingStore store = withSpots(EmbeddedParkingStore.inMemory());
+	// WHEN
+	boolean first = store.saveTicket(ticket("ABCDEF", 1));
+	boolean second = store.saveTicket(ticket("ABCDEF", 2));
+	// THEN
+	assertTrue(first);
+	assertFalse(second);
+	assertEquals(1, store.getTicket("ABCDEF").getParkingSpot().getId());
+	assertNull(store.getTicket("GHIJKL"));
+    }
+
+    @Test
+    @DisplayName("A paid ticket is neither served to the gates nor paid again")
+    void paidTicketClosed() {
+	// GIVEN
+	EmbeddedParkingStore store = withSpots(EmbeddedParkingStore.inMemory());
+	Ticket ticket = ticket("ABCDEF", 1);
+	store.saveTicket(ticket);
+	ticket.setOutTime(new Date(HOUR));
+	ticket.setPrice(1.5);
+	// WHEN
+	boolean paid = store.updateTicket(ticket);
+	ticket.setPrice(3.0);
+	boolean paidTwice = store.updateTicket(ticket);
+	// THEN
+	assertTrue(paid);
+	assertFalse(paidTwice);
+	assertNull(store.getTicket("ABCDEF"));
+	assertTrue(store.recurringUsers("ABCDEF"));
+    }
+
+    @Test
+    @DisplayName("A parked vehicle refused at the gate gives back the spot claimed for it")
+    void refusedEntryReleasesSpot() throws Exception {
+	// GIVEN
+	EmbeddedParkingStore store = withSpots(EmbeddedParkingStore.inMemory());
+	ParkingService parkingService = new ParkingService(null, store, store);
+	parkingService.enter(new EntryRequest("ABCDEF", ParkingType.CAR, "north", new Date(0)));
+	// WHEN
+	assertThrows(SQLException.class,
+		() -> parkingService.enter(new EntryRequest("ABCDEF", ParkingType.CAR, "south", new Date(HOUR))));
+	// THEN
+	assertEquals(1, store.getTicket("ABCDEF").getParkingSpot().getId());
+	assertEquals(2, store.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("Spots and tickets are found again after reopening the file")
+    void reopen() throws Exception {
+	// GIVEN
+	try (EmbeddedParkingStore store = withSpots(EmbeddedParkingStore.open(file))) {
+	    ParkingService parkingService = new ParkingService(null, store, store);
+	    parkingService.enter(new EntryRequest("ABCDEF", ParkingType.CAR, "north", new Date(0)));
+	    parkingService.exit(new ExitRequest("ABCDEF", "south", new Date(HOUR)));
+	    parkingService.enter(new EntryRequest("GHIJKL", ParkingType.CAR, "north", new Date(HOUR)));
+	}
+	// WHEN
+	try (EmbeddedParkingStore store = EmbeddedParkingStore.open(file)) {
+	    // THEN
+	    assertEquals(3, store.countParkingSpots());
+	    assertEquals(2, store.getNextAvailableSlot(ParkingType.CAR));
+	    assertTrue(store.recurringUsers("ABCDEF"));
+	    assertFalse(store.recurringUsers("GHIJKL"));
+	    Ticket open = store.getTicket("GHIJKL");
+	    assertEquals(2, open.getId());
+	    assertNull(open.getOutTime());
+	    assertNull(store.getTicket("ABCDEF"));
+	}
+    }
+
+    @Test
+    @DisplayName("A record cut short by a crash is dropped when the file is replayed")
+    void truncatedRecord() throws Exception {
+	// GIVEN
+	try (EmbeddedParkingStore store = withSpots(EmbeddedParkingStore.open(file))) {
+	    store.saveTicket(ticket("ABCDEF", 1));
+	    store.saveTicket(ticket("GHIJKL", 2));
+	}
+	try (RandomAccessFile journal = new RandomAccessFile(file.toFile(), "rw")) {
+	    journal.setLength(journal.length() - 3);
+	}
+	// WHEN
+	try (EmbeddedParkingStore store = EmbeddedParkingStore.open(file)) {
+	    // THEN
+	    assertNotNull(store.getTicket("ABCDEF"));
+	    assertNull(store.getTicket("GHIJKL"));
+	    assertTrue(store.saveTicket(ticket("MNOPQR", 2)));
+	}
+    }
+
+    private static Ticket ticket(String plate, int parkingNumber) {
+	Ticket ticket = new Ticket();
+	ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+	ticket.setVehicleRegNumber(plate);
+	ticket.setInTime(new Date(0));
+	return ticket;
+    }
+}
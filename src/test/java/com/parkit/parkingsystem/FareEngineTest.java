@@ -0,0 +1,88 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * this class contains FareEngine unit tests
+ *
+ */
+
+class FareEngineTest {
+
+    private static final long IN_TIME = 1_600_000_000_000L;
+
+    private FareEngine fareEngine;
+
+    @BeforeEach
+    private void setUpPerTest() {
+	fareEngine = new FareEngine();
+    }
+
+    @Test
+    @DisplayName("Every stay up to two days is priced to the cent like the double based pricing")
+    void fareCentsMatchesDoublePricing() {
+	for (ParkingType parkingType : ParkingType.values()) {
+	    double ratePerHour = parkingType == ParkingType.CAR ? Fare.CAR_RATE_PER_HOUR : Fare.BIKE_RATE_PER_HOUR;
+	    for (long seconds = 0; seconds <= 2 * 24 * 3600; seconds++) {
+		for (boolean userRecurring : new boolean[] { false, true }) {
+		    // GIVEN
+		    double reduction = userRecurring ? 0.95 : 1;
+		    double expectedPrice = seconds <= 1800 ? 0
+			    : Fare.roundedFare(reduction * (seconds / 3600.0) * ratePerHour);
+		    // WHEN
+		    long fareCents = fareEngine.fareCents(IN_TIME, IN_TIME + seconds * 1000 + 999, parkingType,
+			    userRecurring);
+		    // THEN
+		    assertEquals(expectedPrice, fareCents / 100.0, parkingType + " " + seconds + "s");
+		}
+	    }
+	}
+    }
+
+    @Test
+    @DisplayName("The first thirty minutes are free")
+    void thirtyMinutesFree() {
+	assertEquals(0, fareEngine.fareCents(IN_TIME, IN_TIME + 30 * 60 * 1000, ParkingType.CAR, false));
+	assertEquals(75, fareEngine.fareCents(IN_TIME, IN_TIME + 30 * 60 * 1000 + 1000, ParkingType.CAR, false));
+    }
+
+    @Test
+    @DisplayName("The bulk variant prices every element of the arrays")
+    void bulkFareCents() {
+	// GIVEN
+	long hour = 3600 * 1000;
+	long[] inTimes = { IN_TIME, IN_TIME, IN_TIME, IN_TIME };
+	long[] outTimes = { IN_TIME + hour, IN_TIME + hour, IN_TIME + 24 * hour, IN_TIME + hour / 4 };
+	ParkingType[] parkingTypes = { ParkingType.CAR, ParkingType.BIKE, ParkingType.CAR, ParkingType.BIKE };
+	boolean[] userRecurring = { false, true, false, false };
+	long[] fareCents = new long[4];
+	// WHEN
+	fareEngine.fareCents(inTimes, outTimes, parkingTypes, userRecurring, fareCents);
+	// THEN
+	assertArrayEquals(new long[] { 150, 95, 3600, 0 }, fareCents);
+    }
+
+    @Test
+    @DisplayName("An exit before the entry is rejected")
+    void outTimeBeforeInTime() {
+	assertThrows(IllegalArgumentException.class,
+		() -> fareEngine.fareCents(IN_TIME, IN_TIME - 1, ParkingType.CAR, false));
+    }
+
+    @Test
+    @DisplayName("Parallel arrays of different lengths are rejected")
+    void bulkLengthMismatch() {
+	assertThrows(IllegalArgumentException.class, () -> fareEngine.fareCents(new long[2], new long[2],
+		new ParkingType[2], new boolean[2], new long[1]));
+    }
+}
@@ -0,0 +1,132 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains FreeSpotIndex unit tests
+ *
+ */
+
+class FreeSpotIndexTest {
+
+    private FreeSpotIndex freeSpotIndex;
+
+    @BeforeEach
+    private void setUpPerTest() {
+	freeSpotIndex = new FreeSpotIndex();
+	freeSpotIndex.setAvailable(1, ParkingType.CAR, true);
+	freeSpotIndex.setAvailable(2, ParkingType.CAR, true);
+	freeSpotIndex.setAvailable(3, ParkingType.CAR, true);
+	freeSpotIndex.setAvailable(4, ParkingType.BIKE, true);
+	freeSpotIndex.setAvailable(5, ParkingType.BIKE, true);
+    }
+
+    @Test
+    @DisplayName("The lowest free spot of the requested type is returned")
+    void nextFreeSpotIsLowestOfType() {
+	// GIVEN
+	freeSpotIndex.setAvailable(1, ParkingType.CAR, false);
+	// WHEN
+
+	// THEN
+	assertEquals(2, freeSpotIndex.nextFreeSpot(ParkingType.CAR));
+	assertEquals(4, freeSpotIndex.nextFreeSpot(ParkingType.BIKE));
+	assertEquals(2, freeSpotIndex.countFreeSpots(ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("A released spot is handed out again first")
+    void releasedSpotIsReused() {
+	// GIVEN
+	freeSpotIndex.setAvailable(1, ParkingType.CAR, false);
+	freeSpotIndex.setAvailable(2, ParkingType.CAR, false);
+	// WHEN
+	freeSpotIndex.setAvailable(1, ParkingType.CAR, true);
+	// THEN
+	assertEquals(1, freeSpotIndex.nextFreeSpot(ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("No spot is returned when every spot of the type is taken")
+    void noFreeSpotWhenFull() {
+	// GIVEN
+	freeSpotIndex.setAvailable(4, ParkingType.BIKE, false);
+	freeSpotIndex.setAvailable(5, ParkingType.BIKE, false);
+	// WHEN
+
+	// THEN
+	assertEquals(0, freeSpotIndex.nextFreeSpot(ParkingType.BIKE));
+    }
+
+    @Test
+    @DisplayName("The DAO answers from the index without touching the database")
+    void daoUsesIndex() {
+	// GIVEN
+	DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+	ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+	parkingSpotDAO.setDataBaseConfig(dataBaseConfig);
+	parkingSpotDAO.setFreeSpotIndex(freeSpotIndex);
+	// WHEN
+	int next = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+	// THEN
+	assertEquals(1, next);
+	verifyZeroInteractions(dataBaseConfig);
+    }
+
+    @Test
+    @DisplayName("Swapping the availability of a spot returns the one it replaces")
+    void swapAvailable() {
+	// GIVEN
+	freeSpotIndex.setAvailable(2, ParkingType.CAR, false);
+	// WHEN
+	boolean wasFree = freeSpotIndex.swapAvailable(2, ParkingType.CAR, true);
+	boolean wasFreeAgain = freeSpotIndex.swapAvailable(2, ParkingType.CAR, false);
+	// THEN
+	assertFalse(wasFree);
+	assertTrue(wasFreeAgain);
+	assertFalse(freeSpotIndex.isAvailable(2, ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("The index is loaded from the availability that counts open tickets as taken spots")
+    void loadCountsOpenTickets() throws Exception {
+	// GIVEN
+	DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+	Connection connection = mock(Connection.class);
+	PreparedStatement ps = mock(PreparedStatement.class);
+	ResultSet rs = mock(ResultSet.class);
+	when(dataBaseConfig.getConnection()).thenReturn(connection);
+	when(connection.prepareStatement(DBConstants.GET_PARKING_SPOTS_AVAILABILITY)).thenReturn(ps);
+	when(ps.executeQuery()).thenReturn(rs);
+	when(rs.next()).thenReturn(true, true, false);
+	when(rs.getInt(1)).thenReturn(1, 2);
+	when(rs.getString(2)).thenReturn("CAR");
+	when(rs.getBoolean(3)).thenReturn(false, true);
+	ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+	parkingSpotDAO.setDataBaseConfig(dataBaseConfig);
+	// WHEN
+	boolean loaded = parkingSpotDAO.loadFreeSpotIndex();
+	// THEN
+	assertTrue(loaded);
+	assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+}
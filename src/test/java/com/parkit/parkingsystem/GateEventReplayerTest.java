@@ -0,0 +1,143 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryRequest;
+import com.parkit.parkingsystem.model.ExitRequest;
+import com.parkit.parkingsystem.replay.GateEvent;
+import com.parkit.parkingsystem.replay.GateEventReader;
+import com.parkit.parkingsystem.replay.GateEventReplayer;
+import com.parkit.parkingsystem.replay.ReplayReport;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains the gate event log reader and replayer unit tests
+ *
+ */
+
+@ExtendWith(MockitoExtension.class)
+class GateEventReplayerTest {
+
+    @Mock
+    private ParkingService parkingService;
+
+    private List<String> appliedEvents;
+    private int transactions;
+    private TransactionManager countingTransactionManager;
+
+    @BeforeEach
+    private void setUpPerTest() {
+	appliedEvents = new ArrayList<>();
+	transactions = 0;
+	countingTransactionManager = new TransactionManager() {
+	    @Override
+	    public <T> T inTransaction(UnitOfWork<T> work) throws Exception {
+		transactions++;
+		return work.execute();
+	    }
+	};
+    }
+
+    @Test
+    @DisplayName("CSV and NDJSON lines are read, malformed lines are skipped")
+    void readCsvAndNdjson() throws Exception {
+	// GIVEN
+	String log = "plate,direction,timestamp,type\n" + "AB123CD,entry,1000,car\n" + "AB123CD,sideways,2000,car\n"
+		+ "{\"timestamp\":\"2021-03-01T08:15:00Z\",\"direction\":\"out\",\"plate\":\"AB123CD\",\"gate\":\"south\"}\n";
+	// WHEN
+	try (GateEventReader reader = new GateEventReader(new BufferedReader(new StringReader(log)))) {
+	    GateEvent entry = reader.next();
+	    GateEvent exit = reader.next();
+	    // THEN
+	    assertEquals(GateEvent.Direction.ENTRY, entry.getDirection());
+	    assertEquals(ParkingType.CAR, entry.getParkingType());
+	    assertEquals(1000, entry.getTimestamp());
+	    assertEquals("replay", entry.getGateId());
+	    assertEquals(GateEvent.Direction.EXIT, exit.getDirection());
+	    assertEquals(Instant.parse("2021-03-01T08:15:00Z").toEpochMilli(), exit.getTimestamp());
+	    assertEquals("south", exit.getGateId());
+	    assertNull(reader.next());
+	    assertEquals(1, reader.getMalformedLines());
+	}
+    }
+
+    @Test
+    @DisplayName("Events are applied in timestamp order within the reorder window, in chunks")
+    void replayInTimestampOrder() throws Exception {
+	// GIVEN
+	recordAppliedEvents();
+	String log = "timestamp,direction,plate,type\n" + "3000,exit,A,\n" + "1000,entry,A,CAR\n" + "2000,entry,B,BIKE\n"
+		+ "5000,exit,B,\n" + "4000,entry,C,CAR\n";
+	GateEventReplayer replayer = new GateEventReplayer(parkingService, countingTransactionManager, 2, 2);
+	// WHEN
+	ReplayReport report = replayer.replay(new GateEventReader(new BufferedReader(new StringReader(log))));
+	// THEN
+	assertEquals(Arrays.asList("in A", "in B", "out A", "in C", "out B"), appliedEvents);
+	assertEquals(5, report.getAppliedEvents());
+	assertEquals(0, report.getOutOfOrderEvents());
+	assertEquals(3, transactions);
+    }
+
+    @Test
+    @DisplayName("A failing event only skips itself, the rest of its chunk is applied")
+    void failingEventIsSkipped() throws Exception {
+	// GIVEN
+	when(parkingService.enter(any(EntryRequest.class))).thenReturn(null);
+	when(parkingService.exit(any(ExitRequest.class))).thenThrow(new SQLException("No ticket found"));
+	String log = "timestamp,direction,plate,type\n" + "1000,entry,A,CAR\n" + "2000,exit,Z,\n" + "3000,entry,B,CAR\n";
+	GateEventReplayer replayer = new GateEventReplayer(parkingService, countingTransactionManager, 10, 10);
+	// WHEN
+	ReplayReport report = replayer.replay(new GateEventReader(new BufferedReader(new StringReader(log))));
+	// THEN
+	assertEquals(2, report.getAppliedEvents());
+	assertEquals(1, report.getFailedEvents());
+	assertEquals(4, transactions);
+    }
+
+    @Test
+    @DisplayName("Events further back than the reorder window are applied late and counted")
+    void outOfOrderEvents() throws Exception {
+	// GIVEN
+	recordAppliedEvents();
+	String log = "timestamp,direction,plate,type\n" + "2000,entry,A,CAR\n" + "3000,entry,B,CAR\n"
+		+ "1000,entry,C,CAR\n";
+	GateEventReplayer replayer = new GateEventReplayer(parkingService, countingTransactionManager, 1, 1);
+	// WHEN
+	ReplayReport report = replayer.replay(new GateEventReader(new BufferedReader(new StringReader(log))));
+	// THEN
+	assertEquals(Arrays.asList("in A", "in C", "in B"), appliedEvents);
+	assertEquals(1, report.getOutOfOrderEvents());
+    }
+
+    private void recordAppliedEvents() throws Exception {
+	when(parkingService.enter(any(EntryRequest.class))).thenAnswer(invocation -> {
+	    appliedEvents.add("in " + invocation.<EntryRequest>getArgument(0).getVehicleRegNumber());
+	    return null;
+	});
+	lenient().when(parkingService.exit(any(ExitRequest.class))).thenAnswer(invocation -> {
+	    appliedEvents.add("out " + invocation.<ExitRequest>getArgument(0).getVehicleRegNumber());
+	    return null;
+	});
+    }
+}
@@ -0,0 +1,136 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryRequest;
+import com.parkit.parkingsystem.model.ExitRequest;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.GateService;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains GateService unit tests, the requests never go through
+ * the console input
+ *
+ */
+
+@ExtendWith(MockitoExtension.class)
+class GateServiceTest {
+
+    @Mock
+    private ParkingSpotDAO parkingSpotDAO;
+    @Mock
+    private TicketDAO ticketDAO;
+
+    private GateService gateService;
+
+    @BeforeEach
+    private void setUpPerTest() {
+	gateService = new GateService(new ParkingService(null, parkingSpotDAO, ticketDAO), 4);
+    }
+
+    @AfterEach
+    private void tearDown() {
+	gateService.close();
+    }
+
+    @Test
+    @DisplayName("An entry request gets a ticket for the next free spot at the requested time")
+    void enter() throws Exception {
+	// GIVEN
+	Date inTime = new Date(System.currentTimeMillis() - 1000);
+	when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(3);
+	when(parkingSpotDAO.claimParkingSpot(any(ParkingSpot.class))).thenReturn(true);
+	when(ticketDAO.recurringUsers("ABCDEF")).thenReturn(false);
+	when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+	// WHEN
+	Ticket ticket = gateService.enter(new EntryRequest("ABCDEF", ParkingType.CAR, "north-1", inTime)).get(5,
+		TimeUnit.SECONDS);
+	// THEN
+	assertEquals(3, ticket.getParkingSpot().getId());
+	assertEquals("ABCDEF", ticket.getVehicleRegNumber());
+	assertEquals(inTime, ticket.getInTime());
+    }
+
+    @Test
+    @DisplayName("An exit request prices the ticket at the requested time and frees the spot")
+    void exit() throws Exception {
+	// GIVEN
+	Date outTime = new Date();
+	Ticket ticket = new Ticket();
+	ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+	ticket.setVehicleRegNumber("ABCDEF");
+	ticket.setInTime(new Date(outTime.getTime() - 60 * 60 * 1000));
+	when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+	when(ticketDAO.updateTicket(ticket)).thenReturn(true);
+	when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+	// WHEN
+	Ticket paid = gateService.exit(new ExitRequest("ABCDEF", "south-2", outTime)).get(5, TimeUnit.SECONDS);
+	// THEN
+	assertEquals(outTime, paid.getOutTime());
+	assertEquals(Fare.CAR_RATE_PER_HOUR, paid.getPrice());
+	assertTrue(paid.getParkingSpot().isAvailable());
+    }
+
+    @Test
+    @DisplayName("An entry into a full parking completes exceptionally")
+    void enterFullParking() {
+	// GIVEN
+	when(parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE)).thenReturn(0);
+	// WHEN
+	CompletableFuture<Ticket> entry = gateService
+		.enter(new EntryRequest("ABCDEF", ParkingType.BIKE, "north-1", new Date()));
+	// THEN
+	ExecutionException failure = assertThrows(ExecutionException.class, () -> entry.get(5, TimeUnit.SECONDS));
+	assertTrue(failure.getCause() instanceof SQLException);
+	verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    @DisplayName("Many gates are served at once")
+    void manyGates() throws Exception {
+	// GIVEN
+	when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(3);
+	when(parkingSpotDAO.claimParkingSpot(any(ParkingSpot.class))).thenReturn(true);
+	when(ticketDAO.recurringUsers(anyString())).thenReturn(false);
+	when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+	List<CompletableFuture<Ticket>> entries = new ArrayList<>();
+	// WHEN
+	for (int gate = 0; gate < 50; gate++) {
+	    entries.add(gateService.enter(new EntryRequest("CAR" + gate, ParkingType.CAR, "gate-" + gate, new Date())));
+	}
+	// THEN
+	CompletableFuture.allOf(entries.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+	for (int gate = 0; gate < 50; gate++) {
+	    assertEquals("CAR" + gate, entries.get(gate).get().getVehicleRegNumber());
+	}
+    }
+}
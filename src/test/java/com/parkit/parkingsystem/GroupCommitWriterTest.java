@@ -0,0 +1,228 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.GroupCommitWriter;
+import com.parkit.parkingsystem.dao.GroupCommitWriter.StatementBinder;
+import com.parkit.parkingsystem.dao.OpenTicketIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryRequest;
+import com.parkit.parkingsystem.model.ExitRequest;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains GroupCommitWriter unit tests
+ *
+ */
+
+class GroupCommitWriterTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private PreparedStatement ps;
+    private GroupCommitWriter groupCommitWriter;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+	dataBaseConfig = mock(DataBaseConfig.class);
+	connection = mock(Connection.class);
+	ps = mock(PreparedStatement.class);
+	when(dataBaseConfig.getConnection()).thenReturn(connection);
+	when(connection.prepareStatement(anyString())).thenReturn(ps);
+    }
+
+    @AfterEach
+    private void tearDown() {
+	groupCommitWriter.close();
+    }
+
+    @Test
+    @DisplayName("Writes from several gates are committed together in one batch")
+    void writesShareOneCommit() throws Exception {
+	// GIVEN
+	AtomicInteger batched = new AtomicInteger();
+	doAnswer(invocation -> batched.incrementAndGet()).when(ps).addBatch();
+	when(ps.executeBatch()).thenAnswer(invocation -> {
+	    int[] counts = new int[batched.getAndSet(0)];
+	    Arrays.fill(counts, 1);
+	    return counts;
+	});
+	groupCommitWriter = new GroupCommitWriter(dataBaseConfig, 5000, 10);
+	List<CompletableFuture<Integer>> writes = new ArrayList<>();
+	// WHEN
+	for (int i = 1; i <= 10; i++) {
+	    int parkingNumber = i;
+	    writes.add(groupCommitWriter.submit(DBConstants.UPDATE_PARKING_SPOT, statement -> {
+		statement.setBoolean(1, false);
+		statement.setInt(2, parkingNumber);
+	    }));
+	}
+	// THEN
+	for (CompletableFuture<Integer> write : writes) {
+	    assertEquals(1, write.get(5, TimeUnit.SECONDS).intValue());
+	}
+	verify(ps, times(1)).executeBatch();
+	verify(connection, times(1)).commit();
+    }
+
+    @Test
+    @DisplayName("A failed group is rolled back and its writes are retried one by one")
+    void failedGroupIsRetriedAlone() throws Exception {
+	// GIVEN
+	when(ps.executeBatch()).thenThrow(new BatchUpdateException());
+	when(ps.executeUpdate()).thenReturn(1);
+	groupCommitWriter = new GroupCommitWriter(dataBaseConfig, 5000, 2);
+	// WHEN
+	CompletableFuture<Integer> first = groupCommitWriter.submit(DBConstants.UPDATE_TICKET, statement -> {
+	});
+	CompletableFuture<Integer> second = groupCommitWriter.submit(DBConstants.UPDATE_TICKET, statement -> {
+	});
+	// THEN
+	assertEquals(1, first.get(5, TimeUnit.SECONDS).intValue());
+	assertEquals(1, second.get(5, TimeUnit.SECONDS).intValue());
+	verify(connection, times(1)).rollback();
+	verify(ps, times(2)).executeUpdate();
+    }
+
+    @Test
+    @DisplayName("A follow-up write commits with its write, and only when the write updated a row")
+    void followUpSharesTheCommit() throws Exception {
+	// GIVEN
+	PreparedStatement closedTicket = mock(PreparedStatement.class);
+	when(connection.prepareStatement(DBConstants.SAVE_CLOSED_TICKET)).thenReturn(closedTicket);
+	when(ps.executeBatch()).thenReturn(new int[] { 1, 0 });
+	when(closedTicket.executeBatch()).thenReturn(new int[] { 1 });
+	groupCommitWriter = new GroupCommitWriter(dataBaseConfig, 5000, 2);
+	// WHEN
+	CompletableFuture<Integer> closed = groupCommitWriter.submit(DBConstants.UPDATE_TICKET, statement -> {
+	}, DBConstants.SAVE_CLOSED_TICKET, statement -> {
+	});
+	CompletableFuture<Integer> alreadyClosed = groupCommitWriter.submit(DBConstants.UPDATE_TICKET, statement -> {
+	}, DBConstants.SAVE_CLOSED_TICKET, statement -> {
+	});
+	// THEN
+	assertEquals(1, closed.get(5, TimeUnit.SECONDS).intValue());
+	assertEquals(0, alreadyClosed.get(5, TimeUnit.SECONDS).intValue());
+	verify(closedTicket, times(1)).addBatch();
+	verify(connection, times(1)).commit();
+    }
+
+    @Test
+    @DisplayName("A failed follow-up write fails its write too")
+    void failedFollowUpFailsTheWrite() throws Exception {
+	// GIVEN
+	PreparedStatement closedTicket = mock(PreparedStatement.class);
+	when(connection.prepareStatement(DBConstants.SAVE_CLOSED_TICKET)).thenReturn(closedTicket);
+	when(ps.executeBatch()).thenReturn(new int[] { 1 });
+	when(ps.executeUpdate()).thenReturn(1);
+	when(closedTicket.executeBatch()).thenThrow(new BatchUpdateException());
+	when(closedTicket.executeUpdate()).thenThrow(new BatchUpdateException());
+	groupCommitWriter = new GroupCommitWriter(dataBaseConfig, 1, 1);
+	// WHEN
+	CompletableFuture<Integer> closed = groupCommitWriter.submit(DBConstants.UPDATE_TICKET, statement -> {
+	}, DBConstants.SAVE_CLOSED_TICKET, statement -> {
+	});
+	// THEN
+	assertThrows(ExecutionException.class, () -> closed.get(5, TimeUnit.SECONDS));
+	verify(connection, times(2)).rollback();
+	verify(connection, never()).commit();
+    }
+
+    @Test
+    @DisplayName("Writes racing close are either committed or failed, never left waiting")
+    void closeRacingSubmit() throws Exception {
+	// GIVEN
+	when(ps.executeBatch()).thenAnswer(invocation -> new int[] { 1 });
+	when(ps.executeUpdate()).thenReturn(1);
+	groupCommitWriter = new GroupCommitWriter(dataBaseConfig, 1, 1);
+	List<CompletableFuture<Integer>> writes = new CopyOnWriteArrayList<>();
+	Thread gate = new Thread(() -> {
+	    for (int i = 0; i < 10_000; i++) {
+		writes.add(groupCommitWriter.submit(DBConstants.UPDATE_PARKING_SPOT, statement -> {
+		}));
+	    }
+	});
+	// WHEN
+	gate.start();
+	groupCommitWriter.close();
+	gate.join();
+	// THEN
+	for (CompletableFuture<Integer> write : writes) {
+	    assertTrue(write.isDone(), "write left waiting after close");
+	}
+	assertTrue(groupCommitWriter.submit(DBConstants.UPDATE_PARKING_SPOT, statement -> {
+	}).isCompletedExceptionally());
+    }
+
+    @Test
+    @DisplayName("An entry and an exit through ParkingService send every write to the writer")
+    void gateWritesReachWriter() throws Exception {
+	// GIVEN
+	groupCommitWriter = mock(GroupCommitWriter.class);
+	when(groupCommitWriter.write(anyString(), any(StatementBinder.class))).thenReturn(1);
+	when(groupCommitWriter.write(anyString(), any(StatementBinder.class), anyString(), any(StatementBinder.class)))
+		.thenReturn(1);
+	when(ps.executeQuery()).thenReturn(mock(ResultSet.class));
+	doAnswer(invocation -> {
+	    invocation.<Runnable>getArgument(0).run();
+	    return null;
+	}).when(dataBaseConfig).afterCommit(any(Runnable.class));
+	FreeSpotIndex freeSpotIndex = new FreeSpotIndex();
+	freeSpotIndex.setAvailable(1, ParkingType.CAR, true);
+	ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+	parkingSpotDAO.setDataBaseConfig(dataBaseConfig);
+	parkingSpotDAO.setFreeSpotIndex(freeSpotIndex);
+	parkingSpotDAO.setGroupCommitWriter(groupCommitWriter);
+	TicketDAO ticketDAO = new TicketDAO();
+	ticketDAO.setDataBaseConfig(dataBaseConfig);
+	ticketDAO.setOpenTicketIndex(new OpenTicketIndex());
+	ticketDAO.setGroupCommitWriter(groupCommitWriter);
+	ParkingService parkingService = new ParkingService(null, parkingSpotDAO, ticketDAO);
+	// WHEN
+	parkingService.enter(new EntryRequest("ABCDEF", ParkingType.CAR, "north", new Date(0)));
+	parkingService.exit(new ExitRequest("ABCDEF", "south", new Date(60 * 60 * 1000)));
+	// THEN
+	verify(groupCommitWriter).write(eq(DBConstants.CLAIM_PARKING_SPOT), any(StatementBinder.class));
+	verify(groupCommitWriter).write(eq(DBConstants.SAVE_TICKET), any(StatementBinder.class));
+	verify(groupCommitWriter).write(eq(DBConstants.CLOSE_OPEN_TICKET), any(StatementBinder.class),
+		eq(DBConstants.SAVE_CLOSED_TICKET), any(StatementBinder.class));
+	verify(groupCommitWriter).write(eq(DBConstants.UPDATE_PARKING_SPOT), any(StatementBinder.class));
+	verify(ps, never()).executeUpdate();
+	assertTrue(freeSpotIndex.isAvailable(1, ParkingType.CAR));
+    }
+}
@@ -0,0 +1,136 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.LatencySnapshot;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.MetricsReporter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * this class contains LatencyHistogram unit tests
+ *
+ */
+
+class LatencyHistogramTest {
+
+    private LatencyHistogram latencyHistogram;
+
+    @BeforeEach
+    private void setUpPerTest() {
+	latencyHistogram = new LatencyHistogram("test");
+    }
+
+    @Test
+    @DisplayName("Percentiles are reported within 1/16th of the recorded durations")
+    void percentiles() {
+	// GIVEN
+	for (long micros = 1; micros <= 1000; micros++) {
+	    latencyHistogram.recordNanos(micros * 1000, false);
+	}
+	// WHEN
+	LatencySnapshot snapshot = latencyHistogram.snapshot();
+	// THEN
+	assertEquals(1000, snapshot.getCount());
+	assertEquals(0, snapshot.getErrors());
+	assertWithinBucket(500_000, snapshot.getP50Nanos());
+	assertWithinBucket(990_000, snapshot.getP99Nanos());
+	assertWithinBucket(999_000, snapshot.getP999Nanos());
+	assertEquals(1_000_000, snapshot.getMaxNanos());
+	assertEquals(500_500, snapshot.getMeanNanos());
+    }
+
+    @Test
+    @DisplayName("Timed operations are recorded, as errors when they throw")
+    void timedOperations() {
+	// GIVEN
+	String result = latencyHistogram.time(() -> "done", ex -> "failed");
+	// WHEN
+	String failure = latencyHistogram.time(() -> {
+	    throw new IllegalStateException("boom");
+	}, ex -> ex.getMessage());
+	// THEN
+	assertEquals("done", result);
+	assertEquals("boom", failure);
+	assertEquals(2, latencyHistogram.snapshot().getCount());
+	assertEquals(1, latencyHistogram.snapshot().getErrors());
+    }
+
+    @Test
+    @DisplayName("Short durations are counted exactly")
+    void shortDurations() {
+	// GIVEN
+	latencyHistogram.recordNanos(3, false);
+	latencyHistogram.recordNanos(20, true);
+	// WHEN
+	LatencySnapshot snapshot = latencyHistogram.snapshot();
+	// THEN
+	assertEquals(3, snapshot.getP50Nanos());
+	assertEquals(20, snapshot.getP99Nanos());
+	assertEquals(1, snapshot.getErrors());
+    }
+
+    @Test
+    @DisplayName("Concurrent recordings are all counted")
+    void concurrentRecordings() throws InterruptedException {
+	// GIVEN
+	List<Thread> threads = new ArrayList<>();
+	for (int i = 0; i < 4; i++) {
+	    threads.add(new Thread(() -> {
+		for (int j = 0; j < 10_000; j++) {
+		    latencyHistogram.recordNanos(j, j % 10 == 0);
+		}
+	    }));
+	}
+	// WHEN
+	threads.forEach(Thread::start);
+	for (Thread thread : threads) {
+	    thread.join();
+	}
+	// THEN
+	LatencySnapshot snapshot = latencyHistogram.snapshot();
+	assertEquals(40_000, snapshot.getCount());
+	assertEquals(4_000, snapshot.getErrors());
+    }
+
+    @Test
+    @DisplayName("The reporter exposes every operation over JMX until stopped")
+    void reporterRegistersMBeans() throws Exception {
+	// GIVEN
+	LatencyHistogram histogram = Metrics.histogram("LatencyHistogramTest.operation");
+	histogram.recordNanos(2_000, false);
+	MetricsReporter metricsReporter = new MetricsReporter(60_000);
+	MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+	ObjectName objectName = new ObjectName(
+		"com.parkit.parkingsystem:type=Latency,name=\"LatencyHistogramTest.operation\"");
+	// WHEN
+	metricsReporter.start();
+	// THEN
+	try {
+	    assertSame(histogram, Metrics.histogram("LatencyHistogramTest.operation"));
+	    assertEquals(1L, mBeanServer.getAttribute(objectName, "Count"));
+	    assertEquals(2.0, (Double) mBeanServer.getAttribute(objectName, "P50Micros"), 0.125);
+	} finally {
+	    metricsReporter.stop();
+	}
+	assertFalse(mBeanServer.isRegistered(objectName));
+    }
+
+    private static void assertWithinBucket(long expectedNanos, long actualNanos) {
+	assertTrue(actualNanos >= expectedNanos && actualNanos <= expectedNanos + expectedNanos / 16,
+		"expected about " + expectedNanos + " but was " + actualNanos);
+    }
+}
@@ -0,0 +1,166 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.SpotWriteBehind;
+import com.parkit.parkingsystem.model.Occupancy;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.OccupancyService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains OccupancyService unit tests
+ *
+ */
+
+class OccupancyServiceTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private PreparedStatement ps;
+    private ResultSet rs;
+    private ParkingSpotDAO parkingSpotDAO;
+    private OccupancyService occupancyService;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+	dataBaseConfig = mock(DataBaseConfig.class);
+	Connection connection = mock(Connection.class);
+	ps = mock(PreparedStatement.class);
+	rs = mock(ResultSet.class);
+	when(dataBaseConfig.getConnection()).thenReturn(connection);
+	when(connection.prepareStatement(DBConstants.COUNT_PARKING_SPOTS)).thenReturn(ps);
+	when(ps.executeQuery()).thenReturn(rs);
+	when(rs.next()).thenReturn(true, true, false);
+	when(rs.getString(1)).thenReturn("CAR", "BIKE");
+	when(rs.getInt(2)).thenReturn(3, 2);
+	when(rs.getInt(3)).thenReturn(3, 2);
+	doAnswer(invocation -> {
+	    invocation.<Runnable>getArgument(0).run();
+	    return null;
+	}).when(dataBaseConfig).afterCommit(any(Runnable.class));
+	parkingSpotDAO = new ParkingSpotDAO();
+	parkingSpotDAO.setDataBaseConfig(dataBaseConfig);
+	occupancyService = new OccupancyService(parkingSpotDAO);
+	parkingSpotDAO.setSpotAvailabilityListener(occupancyService);
+    }
+
+    @Test
+    @DisplayName("The counts are loaded from the parking table")
+    void reconciledWithParkingTable() {
+	// GIVEN
+
+	// WHEN
+	boolean reconciled = occupancyService.reconcile();
+	// THEN
+	Occupancy occupancy = occupancyService.getOccupancy();
+	assertTrue(reconciled);
+	assertEquals(3, occupancy.getFreeSpots(ParkingType.CAR));
+	assertEquals(3, occupancy.getTotalSpots(ParkingType.CAR));
+	assertEquals(2, occupancy.getFreeSpots(ParkingType.BIKE));
+	assertEquals(0, occupancy.getOccupiedSpots(ParkingType.BIKE));
+    }
+
+    @Test
+    @DisplayName("Taking and freeing spots changes the counts, a rolled back claim gives its spot back")
+    void countsFollowSpots() {
+	// GIVEN
+	FreeSpotIndex freeSpotIndex = new FreeSpotIndex();
+	for (int number = 1; number <= 3; number++) {
+	    freeSpotIndex.setAvailable(number, ParkingType.CAR, true);
+	}
+	freeSpotIndex.setAvailable(4, ParkingType.BIKE, true);
+	freeSpotIndex.setAvailable(5, ParkingType.BIKE, true);
+	parkingSpotDAO.setFreeSpotIndex(freeSpotIndex);
+	parkingSpotDAO.setSpotWriteBehind(mock(SpotWriteBehind.class));
+	List<Runnable> rollbacks = new ArrayList<>();
+	doAnswer(invocation -> rollbacks.add(invocation.getArgument(0))).when(dataBaseConfig)
+		.afterRollback(any(Runnable.class));
+	occupancyService.reconcile();
+	// WHEN
+	parkingSpotDAO.claimParkingSpot(new ParkingSpot(1, ParkingType.CAR, true));
+	parkingSpotDAO.claimParkingSpot(new ParkingSpot(2, ParkingType.CAR, true));
+	parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, true));
+	// freeing a free spot again changes nothing
+	parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, true));
+	Occupancy beforeRollback = occupancyService.getOccupancy();
+	rollbacks.get(1).run();
+	// THEN
+	assertEquals(2, beforeRollback.getFreeSpots(ParkingType.CAR));
+	assertEquals(3, occupancyService.getOccupancy().getFreeSpots(ParkingType.CAR));
+	assertEquals(2, occupancyService.getOccupancy().getFreeSpots(ParkingType.BIKE));
+    }
+
+    @Test
+    @DisplayName("Gates updating the counts at once lose no change")
+    void concurrentChanges() throws Exception {
+	// GIVEN
+	occupancyService.reconcile();
+	int gates = 8;
+	CountDownLatch start = new CountDownLatch(1);
+	List<Thread> threads = new ArrayList<>();
+	for (int gate = 0; gate < gates; gate++) {
+	    Thread thread = new Thread(() -> {
+		try {
+		    start.await();
+		} catch (InterruptedException e) {
+		    return;
+		}
+		for (int i = 0; i < 10_000; i++) {
+		    occupancyService.spotTaken(ParkingType.CAR);
+		    occupancyService.spotFreed(ParkingType.CAR);
+		}
+	    });
+	    thread.start();
+	    threads.add(thread);
+	}
+	// WHEN
+	start.countDown();
+	int lowest = Integer.MAX_VALUE;
+	while (threads.stream().anyMatch(Thread::isAlive)) {
+	    lowest = Math.min(lowest, occupancyService.getOccupancy().getFreeSpots(ParkingType.CAR));
+	}
+	for (Thread thread : threads) {
+	    thread.join();
+	}
+	// THEN
+	assertTrue(lowest >= 3 - gates);
+	assertEquals(3, occupancyService.getOccupancy().getFreeSpots(ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("A failed count keeps the current counts")
+    void failedCountKeepsCounts() throws Exception {
+	// GIVEN
+	occupancyService.reconcile();
+	when(ps.executeQuery()).thenThrow(new SQLException("down"));
+	// WHEN
+	boolean reconciled = occupancyService.reconcile();
+	// THEN
+	assertFalse(reconciled);
+	assertNull(parkingSpotDAO.countOccupancy());
+	assertEquals(3, occupancyService.getOccupancy().getFreeSpots(ParkingType.CAR));
+    }
+}
@@ -0,0 +1,177 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OpenTicketIndex;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains OpenTicketIndex unit tests
+ *
+ */
+
+class OpenTicketIndexTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private PreparedStatement ps;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+	dataBaseConfig = mock(DataBaseConfig.class);
+	connection = mock(Connection.class);
+	ps = mock(PreparedStatement.class);
+	when(dataBaseConfig.getConnection()).thenReturn(connection);
+	when(connection.prepareStatement(anyString())).thenReturn(ps);
+	doAnswer(invocation -> {
+	    invocation.<Runnable>getArgument(0).run();
+	    return null;
+	}).when(dataBaseConfig).afterCommit(any(Runnable.class));
+	ticketDAO = new TicketDAO();
+	ticketDAO.setDataBaseConfig(dataBaseConfig);
+    }
+
+    @Test
+    @DisplayName("The ticket of a leaving vehicle is found without a query and paid by plate")
+    void exitWithoutQuery() throws Exception {
+	// GIVEN
+	ticketDAO.setOpenTicketIndex(new OpenTicketIndex());
+	when(ps.executeUpdate()).thenReturn(1);
+	Ticket saved = new Ticket();
+	saved.setParkingSpot(new ParkingSpot(2, ParkingType.BIKE, false));
+	saved.setVehicleRegNumber("ABCDEF");
+	saved.setInTime(new Date(0));
+	saved.setUserRecurring(true);
+	ticketDAO.saveTicket(saved);
+	// WHEN
+	Ticket ticket = ticketDAO.getTicket("ABCDEF");
+	ticket.setOutTime(new Date(HOUR));
+	ticket.setPrice(1.0);
+	boolean paid = ticketDAO.updateTicket(ticket);
+	// THEN
+	assertEquals(2, ticket.getParkingSpot().getId());
+	assertEquals(ParkingType.BIKE, ticket.getParkingSpot().getParkingType());
+	assertEquals(new Date(0), ticket.getInTime());
+	assertTrue(ticket.isUserRecurring());
+	assertTrue(paid);
+	verify(connection, never()).prepareStatement(DBConstants.GET_TICKET);
+	verify(connection).prepareStatement(DBConstants.CLOSE_OPEN_TICKET);
+	verify(ps).setString(3, "ABCDEF");
+	when(ps.executeQuery()).thenReturn(mock(ResultSet.class));
+	assertNull(ticketDAO.getTicket("ABCDEF"));
+	verify(connection).prepareStatement(DBConstants.GET_TICKET);
+    }
+
+    @Test
+    @DisplayName("A plate typed differently finds the ticket, which keeps the plate it was saved with")
+    void lookupByCanonicalPlate() {
+	// GIVEN
+	OpenTicketIndex openTicketIndex = new OpenTicketIndex();
+	Ticket saved = new Ticket();
+	saved.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+	saved.setVehicleRegNumber("ab 123");
+	saved.setInTime(new Date(0));
+	openTicketIndex.put(saved);
+	// WHEN
+	Ticket ticket = openTicketIndex.get("AB123");
+	openTicketIndex.remove(" Ab123");
+	// THEN
+	assertEquals("ab 123", ticket.getVehicleRegNumber());
+	assertNull(openTicketIndex.get("ab 123"));
+	assertEquals(0, openTicketIndex.size());
+    }
+
+    @Test
+    @DisplayName("Gates entering and leaving at once keep every open ticket, long plates included")
+    void concurrentGates() throws Exception {
+	// GIVEN
+	OpenTicketIndex openTicketIndex = new OpenTicketIndex();
+	ExecutorService gates = Executors.newFixedThreadPool(4);
+	List<Future<?>> entries = new ArrayList<>();
+	// WHEN
+	for (int gate = 0; gate < 4; gate++) {
+	    int first = gate * 1_000;
+	    entries.add(gates.submit(() -> {
+		for (int number = first; number < first + 1_000; number++) {
+		    Ticket ticket = new Ticket();
+		    ticket.setParkingSpot(new ParkingSpot(number, ParkingType.CAR, false));
+		    ticket.setVehicleRegNumber(number % 10 == 0 ? "LONG-PLATE-" + number : "AB-" + number);
+		    ticket.setInTime(new Date(0));
+		    openTicketIndex.put(ticket);
+		    if (number % 2 == 1) {
+			openTicketIndex.remove(ticket.getVehicleRegNumber());
+		    }
+		}
+	    }));
+	}
+	for (Future<?> entry : entries) {
+	    entry.get();
+	}
+	gates.shutdown();
+	// THEN
+	assertEquals(2_000, openTicketIndex.size());
+	assertEquals(12, openTicketIndex.get("ab-12").getParkingSpot().getId());
+	assertEquals("LONG-PLATE-3990", openTicketIndex.get("long-plate-3990").getVehicleRegNumber());
+	assertNull(openTicketIndex.get("AB-11"));
+    }
+
+    @Test
+    @DisplayName("The index is loaded with the open tickets of the ticket table")
+    void loadedFromTicketTable() throws Exception {
+	// GIVEN
+	ResultSet rs = mock(ResultSet.class);
+	when(connection.prepareStatement(DBConstants.GET_OPEN_TICKETS)).thenReturn(ps);
+	when(ps.executeQuery()).thenReturn(rs);
+	when(rs.next()).thenReturn(true, false);
+	when(rs.getInt(1)).thenReturn(3);
+	when(rs.getInt(2)).thenReturn(42);
+	when(rs.getString(3)).thenReturn("ABCDEF");
+	when(rs.getTimestamp(4)).thenReturn(new Timestamp(HOUR));
+	when(rs.getString(5)).thenReturn("CAR");
+	when(rs.getInt(6)).thenReturn(0);
+	// WHEN
+	boolean loaded = ticketDAO.loadOpenTicketIndex();
+	Ticket ticket = ticketDAO.getTicket("ABCDEF");
+	ticket.setOutTime(new Date(2 * HOUR));
+	ticketDAO.updateTicket(ticket);
+	// THEN
+	assertTrue(loaded);
+	assertEquals(42, ticket.getId());
+	assertEquals(3, ticket.getParkingSpot().getId());
+	assertEquals(HOUR, ticket.getInTime().getTime());
+	verify(connection).prepareStatement(DBConstants.UPDATE_TICKET);
+	verify(ps).setInt(3, 42);
+    }
+}
@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
@@ -11,12 +12,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Date;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
@@ -53,12 +56,12 @@ class ParkingServiceTest {
 	when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
 	when(inputReaderUtil.readSelection()).thenReturn(1);
 	when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(8);
-	when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenThrow(IllegalArgumentException.class);
+	when(parkingSpotDAO.claimParkingSpot(any(ParkingSpot.class))).thenThrow(IllegalArgumentException.class);
 	// WHEN
 	parkingService.processIncomingVehicle();
 	// THEN
 	verify(ticketDAO, Mockito.times(0)).saveTicket(any(Ticket.class));
-	verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+	verify(parkingSpotDAO, Mockito.times(1)).claimParkingSpot(any(ParkingSpot.class));
     }
 
     @Test
@@ -67,12 +70,12 @@ class ParkingServiceTest {
 	when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
 	when(inputReaderUtil.readSelection()).thenReturn(2);
 	when(parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE)).thenReturn(9);
-	when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenThrow(IllegalArgumentException.class);
+	when(parkingSpotDAO.claimParkingSpot(any(ParkingSpot.class))).thenThrow(IllegalArgumentException.class);
 	// WHEN
 	parkingService.processIncomingVehicle();
 	// THEN
 	verify(ticketDAO, Mockito.times(0)).saveTicket(any(Ticket.class));
-	verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+	verify(parkingSpotDAO, Mockito.times(1)).claimParkingSpot(any(ParkingSpot.class));
     }
 
     @Test
@@ -157,11 +160,30 @@ class ParkingServiceTest {
 	when(inputReaderUtil.readSelection()).thenReturn(1);
 	when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
 	when(ticketDAO.recurringUsers(anyString())).thenReturn(true);
+	when(parkingSpotDAO.claimParkingSpot(any(ParkingSpot.class))).thenReturn(true);
 	// WHEN
 	parkingService.processIncomingVehicle();
 	// THEN
 	verify(ticketDAO, Mockito.times(1)).recurringUsers(anyString());
-	verify(parkingSpotDAO).updateParking(any(ParkingSpot.class));
+	verify(parkingSpotDAO).claimParkingSpot(any(ParkingSpot.class));
+	verify(ticketDAO).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    @DisplayName("Vehicle entry falls back to the next spot when another gate took the first one")
+    void processIncomingVehicleSpotTakenByAnotherGateTest() {
+	// GIVEN
+	when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+	when(inputReaderUtil.readSelection()).thenReturn(1);
+	when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1, 2);
+	when(parkingSpotDAO.claimParkingSpot(any(ParkingSpot.class)))
+		.thenAnswer(invocation -> invocation.<ParkingSpot>getArgument(0).getId() == 2);
+	ArgumentCaptor<Ticket> ticketCaptor = ArgumentCaptor.forClass(Ticket.class);
+	// WHEN
+	parkingService.processIncomingVehicle();
+	// THEN
+	verify(ticketDAO).saveTicket(ticketCaptor.capture());
+	assertEquals(2, ticketCaptor.getValue().getParkingSpot().getId());
     }
 
     @Test
@@ -200,6 +222,26 @@ class ParkingServiceTest {
 	verify(parkingSpotDAO, Mockito.times(0)).updateParking(any(ParkingSpot.class));
     }
 
+    @Test
+    @DisplayName("A vehicle exiting twice is charged once and does not free its spot again")
+    void processExitingVehicleTwiceTest() {
+	// GIVEN
+	when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+	Ticket ticket = new Ticket();
+	ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+	ticket.setOutTime(new Date(System.currentTimeMillis() - (10 * 60 * 1000)));
+	ticket.setPrice(Fare.CAR_RATE_PER_HOUR);
+	ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+	ticket.setVehicleRegNumber("ABCDEF");
+	when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
+	// WHEN
+	parkingService.processExitingVehicle();
+	// THEN
+	assertEquals(Fare.CAR_RATE_PER_HOUR, ticket.getPrice());
+	verify(ticketDAO, Mockito.times(0)).updateTicket(any(Ticket.class));
+	verify(parkingSpotDAO, Mockito.times(0)).updateParking(any(ParkingSpot.class));
+    }
+
     @Test
     @DisplayName("Unable to process exiting vehicle")
     void processExitingVehicleNoCarTest() throws Exception {
@@ -238,4 +280,24 @@ class ParkingServiceTest {
 	verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("A recurring user pays the discounted fare on exit")
+    void processExitingVehicleRecurringUserTest() {
+	// GIVEN
+	when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+	Ticket ticket = new Ticket();
+	ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+	ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+	ticket.setVehicleRegNumber("ABCDEF");
+	ticket.setUserRecurring(true);
+	when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
+	when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
+	when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+	// WHEN
+	parkingService.processExitingVehicle();
+	// THEN
+	assertEquals(Fare.roundedFare(0.95 * Fare.CAR_RATE_PER_HOUR), ticket.getPrice());
+	verify(ticketDAO, Mockito.times(0)).recurringUsers(anyString());
+    }
+
+}
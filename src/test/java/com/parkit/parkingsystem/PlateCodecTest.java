@@ -0,0 +1,99 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.util.LongObjectHashMap;
+import com.parkit.parkingsystem.util.PlateCodec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * this class contains PlateCodec and LongObjectHashMap unit tests
+ *
+ */
+
+class PlateCodecTest {
+
+    @Test
+    @DisplayName("Plates typed differently have the same code and decode to the canonical plate")
+    void canonicalPlate() {
+	// GIVEN
+	long code = PlateCodec.encode("AB-123-CD");
+	// WHEN
+
+	// THEN
+	assertEquals(code, PlateCodec.encode(" ab-123 -cd\t"));
+	assertEquals("AB-123-CD", PlateCodec.decode(code));
+	assertEquals("AB-123-CD", PlateCodec.normalize(" ab-123 -cd\t"));
+	assertEquals("0123456789", PlateCodec.decode(PlateCodec.encode("0123456789")));
+    }
+
+    @Test
+    @DisplayName("Codes sort like plates")
+    void codesSortLikePlates() {
+	// GIVEN
+	String[] plates = { "A", "A-1", "A-A", "A0", "A9", "AA", "AB", "B", "B-", "B1", "Z9Z9Z9Z9Z9" };
+	// WHEN
+	String[] sorted = plates.clone();
+	Arrays.sort(sorted);
+	// THEN
+	assertEquals(Arrays.asList(plates), Arrays.asList(sorted));
+	for (int i = 1; i < plates.length; i++) {
+	    assertTrue(PlateCodec.encode(plates[i - 1]) < PlateCodec.encode(plates[i]), plates[i]);
+	}
+    }
+
+    @Test
+    @DisplayName("Empty, too long or unusual plates are not encodable")
+    void notEncodable() {
+	// GIVEN
+
+	// WHEN
+
+	// THEN
+	assertEquals(PlateCodec.NOT_ENCODABLE, PlateCodec.encode(" "));
+	assertEquals(PlateCodec.NOT_ENCODABLE, PlateCodec.encode("ABCDEFGHIJK"));
+	assertEquals(PlateCodec.NOT_ENCODABLE, PlateCodec.encode("ÄB123"));
+	assertEquals(PlateCodec.NOT_ENCODABLE, PlateCodec.encode("AB.123"));
+    }
+
+    @Test
+    @DisplayName("The long map behaves like java.util.HashMap")
+    void longObjectHashMap() {
+	// GIVEN
+	Random random = new Random(42);
+	LongObjectHashMap<String> map = new LongObjectHashMap<>();
+	Map<Long, String> expected = new HashMap<>();
+	// WHEN
+	for (int i = 0; i < 100_000; i++) {
+	    // a small key range so keys collide and get removed often
+	    long key = random.nextInt(2_000) - 10;
+	    switch (random.nextInt(3)) {
+	    case 0:
+		assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+		break;
+	    case 1:
+		assertEquals(expected.remove(key), map.remove(key));
+		break;
+	    default:
+		assertEquals(expected.get(key), map.get(key));
+	    }
+	}
+	// THEN
+	assertEquals(expected.size(), map.size());
+	for (long key = -10; key < 1_990; key++) {
+	    assertEquals(expected.get(key), map.get(key));
+	}
+	map.clear();
+	assertNull(map.get(0));
+	assertEquals(0, map.size());
+    }
+}
@@ -0,0 +1,86 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.RecurringUserCache;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ *
+ * this class contains RecurringUserCache unit tests
+ *
+ */
+
+class RecurringUserCacheTest {
+
+    private RecurringUserCache recurringUserCache;
+
+    @BeforeEach
+    private void setUpPerTest() {
+	recurringUserCache = new RecurringUserCache(1000, 2);
+    }
+
+    @Test
+    @DisplayName("A plate never seen leaving is not recurring")
+    void unknownPlateIsNotRecurring() {
+	// GIVEN
+	recurringUserCache.markRecurring("ABCDEF");
+	// WHEN
+
+	// THEN
+	assertEquals(Boolean.FALSE, recurringUserCache.isRecurring("GHIJKL"));
+    }
+
+    @Test
+    @DisplayName("A plate that left once is recurring, whatever its case")
+    void closedTicketPlateIsRecurring() {
+	// GIVEN
+	recurringUserCache.markRecurring("abcdef");
+	// WHEN
+
+	// THEN
+	assertEquals(Boolean.TRUE, recurringUserCache.isRecurring(" ABCDEF"));
+    }
+
+    @Test
+    @DisplayName("A filter hit outside the confirmed plates has to be checked")
+    void evictedPlateIsUnknown() {
+	// GIVEN
+	recurringUserCache.markRecurring("AAA");
+	recurringUserCache.markRecurring("BBB");
+	recurringUserCache.markRecurring("CCC");
+	recurringUserCache.warm("DDD");
+	// WHEN
+
+	// THEN
+	assertNull(recurringUserCache.isRecurring("AAA"));
+	assertNull(recurringUserCache.isRecurring("DDD"));
+	assertEquals(Boolean.TRUE, recurringUserCache.isRecurring("CCC"));
+    }
+
+    @Test
+    @DisplayName("The DAO answers known plates without touching the database")
+    void daoUsesCache() {
+	// GIVEN
+	DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+	TicketDAO ticketDAO = new TicketDAO();
+	ticketDAO.setDataBaseConfig(dataBaseConfig);
+	ticketDAO.setRecurringUserCache(recurringUserCache);
+	recurringUserCache.markRecurring("ABCDEF");
+	// WHEN
+
+	// THEN
+	assertTrue(ticketDAO.recurringUsers("ABCDEF"));
+	assertFalse(ticketDAO.recurringUsers("GHIJKL"));
+	verifyZeroInteractions(dataBaseConfig);
+    }
+}
@@ -0,0 +1,162 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.report.ReportEngine;
+import com.parkit.parkingsystem.report.RevenueReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains ReportEngine and RevenueReport unit tests
+ *
+ */
+
+class ReportEngineTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final long DAY = 24 * HOUR;
+
+    private Connection connection;
+    private PreparedStatement ps;
+    private ResultSet rs;
+    private ReportEngine reportEngine;
+    private Path checkpoint;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+	DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+	connection = mock(Connection.class);
+	ps = mock(PreparedStatement.class);
+	rs = mock(ResultSet.class);
+	when(dataBaseConfig.getConnection()).thenReturn(connection);
+	when(connection.prepareStatement(DBConstants.GET_CLOSED_TICKETS, ResultSet.TYPE_FORWARD_ONLY,
+		ResultSet.CONCUR_READ_ONLY)).thenReturn(ps);
+	when(ps.executeQuery()).thenReturn(rs);
+	// a car parked 1h leaving at 10:00 on day 1, a bike parked 2h leaving at
+	// 10:30 on day 1 and a car parked 3h leaving at 15:00 on day 2
+	when(rs.next()).thenReturn(true, true, true, false);
+	when(rs.getString(4)).thenReturn("CAR", "BIKE", "CAR");
+	when(rs.getDouble(1)).thenReturn(1.5, 2.0, 4.5);
+	when(rs.getTimestamp(2)).thenReturn(new Timestamp(9 * HOUR), new Timestamp(8 * HOUR + HOUR / 2),
+		new Timestamp(DAY + 12 * HOUR));
+	when(rs.getTimestamp(3)).thenReturn(new Timestamp(10 * HOUR), new Timestamp(10 * HOUR + HOUR / 2),
+		new Timestamp(DAY + 15 * HOUR));
+	reportEngine = new ReportEngine(dataBaseConfig, ReportEngine.STREAMING_FETCH_SIZE);
+	checkpoint = Files.createTempFile("revenue", ".checkpoint");
+	Files.delete(checkpoint);
+    }
+
+    @AfterEach
+    private void tearDown() throws Exception {
+	Files.deleteIfExists(checkpoint);
+    }
+
+    @Test
+    @DisplayName("Closed tickets are streamed and counted per day, type and hour")
+    void aggregatesInOnePass() throws Exception {
+	// GIVEN
+	RevenueReport report = new RevenueReport(ZoneOffset.UTC);
+	// WHEN
+	long tickets = reportEngine.run(report, new Date(2 * DAY));
+	// THEN
+	assertEquals(3, tickets);
+	verify(ps).setFetchSize(Integer.MIN_VALUE);
+	verify(ps).setTimestamp(1, new Timestamp(0));
+	verify(ps).setTimestamp(4, new Timestamp(2 * DAY));
+	assertEquals(8.0, report.getOverall().getRevenue(), 0.001);
+	assertEquals(2, report.getDay(LocalDate.of(1970, 1, 1)).getTickets());
+	assertEquals(3.5, report.getDay(LocalDate.of(1970, 1, 1)).getRevenue(), 0.001);
+	assertEquals(90, report.getDay(LocalDate.of(1970, 1, 1)).getAverageDwellMinutes(), 0.001);
+	assertEquals(2, report.getType(ParkingType.CAR).getTickets());
+	assertEquals(120, report.getType(ParkingType.CAR).getAverageDwellMinutes(), 0.001);
+	assertEquals(2, report.getHour(10).getTickets());
+	assertEquals(4.5, report.getHour(15).getRevenue(), 0.001);
+	assertEquals(new Date(2 * DAY), report.getClosedUntil());
+    }
+
+    @Test
+    @DisplayName("A run from a checkpoint only reads the tickets closed since and keeps the totals")
+    void incrementalRun() throws Exception {
+	// GIVEN
+	RevenueReport report = RevenueReport.load(checkpoint, ZoneOffset.UTC);
+	reportEngine.run(report, new Date(2 * DAY));
+	report.save(checkpoint);
+	when(rs.next()).thenReturn(true, false);
+	when(rs.getString(4)).thenReturn("BIKE");
+	when(rs.getDouble(1)).thenReturn(1.0);
+	when(rs.getTimestamp(2)).thenReturn(new Timestamp(2 * DAY + HOUR));
+	when(rs.getTimestamp(3)).thenReturn(new Timestamp(2 * DAY + 2 * HOUR));
+	// WHEN
+	RevenueReport resumed = RevenueReport.load(checkpoint, ZoneOffset.UTC);
+	long tickets = reportEngine.run(resumed, new Date(3 * DAY));
+	// THEN
+	assertEquals(1, tickets);
+	verify(ps).setTimestamp(1, new Timestamp(2 * DAY));
+	verify(ps).setTimestamp(3, new Timestamp(2 * DAY));
+	assertEquals(4, resumed.getOverall().getTickets());
+	assertEquals(9.0, resumed.getOverall().getRevenue(), 0.001);
+	assertEquals(2, resumed.getType(ParkingType.BIKE).getTickets());
+	assertEquals(1, resumed.getDay(LocalDate.of(1970, 1, 3)).getTickets());
+	assertEquals(report.format().get(1), resumed.format().get(1));
+    }
+
+    @Test
+    @DisplayName("A run reads the tickets written until a minute before the database time")
+    void runUntilDataBaseTime() throws Exception {
+	// GIVEN
+	PreparedStatement clock = mock(PreparedStatement.class);
+	ResultSet now = mock(ResultSet.class);
+	when(connection.prepareStatement(DBConstants.GET_DATABASE_TIME)).thenReturn(clock);
+	when(clock.executeQuery()).thenReturn(now);
+	when(now.next()).thenReturn(true);
+	when(now.getTimestamp(1)).thenReturn(new Timestamp(3 * DAY));
+	RevenueReport report = new RevenueReport(ZoneOffset.UTC);
+	// WHEN
+	long tickets = reportEngine.run(report);
+	// THEN
+	assertEquals(3, tickets);
+	verify(ps).setTimestamp(2, new Timestamp(3 * DAY - 60_000));
+	verify(ps).setTimestamp(4, new Timestamp(3 * DAY - 60_000));
+	assertEquals(new Date(3 * DAY - 60_000), report.getClosedUntil());
+    }
+
+    @Test
+    @DisplayName("A failed run leaves the report as it was")
+    void failedRunKeepsReport() throws Exception {
+	// GIVEN
+	RevenueReport report = new RevenueReport(ZoneOffset.UTC);
+	when(rs.next()).thenReturn(true, true).thenThrow(new SQLException("connection lost"));
+	// WHEN
+	assertThrows(SQLException.class, () -> reportEngine.run(report, new Date(2 * DAY)));
+	long upToDate = reportEngine.run(report, new Date(0));
+	// THEN
+	assertEquals(0, upToDate);
+	assertEquals(0, report.getOverall().getTickets());
+	assertEquals(new Date(0), report.getClosedUntil());
+	verify(connection, never()).prepareStatement(anyString());
+    }
+}
@@ -0,0 +1,279 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.dao.ReservationIndex;
+import com.parkit.parkingsystem.dao.SpotWriteBehind;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryRequest;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains ReservationIndex and reservation handling unit tests
+ *
+ */
+
+class ReservationTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private ReservationIndex reservationIndex;
+    private int lastId;
+
+    @BeforeEach
+    private void setUpPerTest() {
+	reservationIndex = new ReservationIndex(HOUR);
+	reservationIndex.addSpot(1, ParkingType.CAR);
+	reservationIndex.addSpot(2, ParkingType.CAR);
+	reservationIndex.addSpot(3, ParkingType.CAR);
+	reservationIndex.addSpot(4, ParkingType.BIKE);
+	lastId = 0;
+    }
+
+    @Test
+    @DisplayName("A spot is booked for a window only when no reservation of it overlaps the window")
+    void reservationsNeverOverlap() {
+	// GIVEN
+	Reservation first = reserve(ParkingType.CAR, "AAA", new Date(10 * HOUR), new Date(12 * HOUR));
+	// WHEN
+	Reservation overlapping = reserve(ParkingType.CAR, "BBB", new Date(11 * HOUR),
+		new Date(13 * HOUR));
+	Reservation after = reserve(ParkingType.CAR, "CCC", new Date(12 * HOUR),
+		new Date(14 * HOUR));
+	Reservation before = reserve(ParkingType.CAR, "DDD", new Date(8 * HOUR),
+		new Date(10 * HOUR));
+	// THEN
+	assertEquals(1, first.getParkingNumber());
+	assertEquals(2, overlapping.getParkingNumber());
+	assertEquals(1, after.getParkingNumber());
+	assertEquals(1, before.getParkingNumber());
+	assertFalse(reservationIndex.isFree(1, 9 * HOUR, 15 * HOUR));
+	assertTrue(reservationIndex.isFree(1, 14 * HOUR, 15 * HOUR));
+	assertEquals(3, reservationIndex.findFreeSpot(ParkingType.CAR, 11 * HOUR, 12 * HOUR));
+	assertEquals(4, reserve(ParkingType.BIKE, "EEE", new Date(0), new Date(HOUR))
+		.getParkingNumber());
+	assertNull(reserve(ParkingType.BIKE, "FFF", new Date(0), new Date(HOUR)));
+    }
+
+    @Test
+    @DisplayName("A vehicle finds its reservation from the hold time before its start to its end")
+    void arrivalWindow() {
+	// GIVEN
+	Reservation reservation = reserve(ParkingType.CAR, "AAA", new Date(10 * HOUR),
+		new Date(12 * HOUR));
+	// WHEN
+
+	// THEN
+	assertNull(reservationIndex.findArrival("AAA", 9 * HOUR - 1));
+	assertSame(reservation, reservationIndex.findArrival("AAA", 9 * HOUR));
+	assertSame(reservation, reservationIndex.findArrival("AAA", 12 * HOUR - 1));
+	assertNull(reservationIndex.findArrival("AAA", 12 * HOUR));
+	assertNull(reservationIndex.findArrival("BBB", 10 * HOUR));
+	assertTrue(reservationIndex.isHeld(1, 9 * HOUR + 1));
+	assertFalse(reservationIndex.isHeld(1, 8 * HOUR));
+	assertTrue(reservationIndex.remove(reservation));
+	assertNull(reservationIndex.findArrival("AAA", 10 * HOUR));
+	assertEquals(0, reservationIndex.size());
+    }
+
+    @Test
+    @DisplayName("A vehicle finds its reservation however its plate is typed")
+    void arrivalByCanonicalPlate() {
+	// GIVEN
+	Reservation reservation = reserve(ParkingType.CAR, "ab 123", new Date(10 * HOUR), new Date(12 * HOUR));
+	// WHEN
+	Reservation arrival = reservationIndex.findArrival(" AB123", 10 * HOUR);
+	// THEN
+	assertSame(reservation, arrival);
+	assertTrue(reservationIndex.remove(reservation));
+	assertNull(reservationIndex.findArrival("ab 123", 10 * HOUR));
+    }
+
+    @Test
+    @DisplayName("Walk-in vehicles are not given a spot held by a reservation")
+    void walkInsSkipHeldSpots() {
+	// GIVEN
+	DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+	FreeSpotIndex freeSpotIndex = new FreeSpotIndex();
+	freeSpotIndex.setAvailable(1, ParkingType.CAR, true);
+	freeSpotIndex.setAvailable(2, ParkingType.CAR, true);
+	ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+	parkingSpotDAO.setDataBaseConfig(dataBaseConfig);
+	parkingSpotDAO.setFreeSpotIndex(freeSpotIndex);
+	parkingSpotDAO.setReservationIndex(reservationIndex);
+	long now = System.currentTimeMillis();
+	reserve(ParkingType.CAR, "AAA", new Date(now + HOUR / 2), new Date(now + 2 * HOUR));
+	// WHEN
+	int walkIn = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+	freeSpotIndex.setAvailable(2, ParkingType.CAR, false);
+	int full = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+	// THEN
+	assertEquals(2, walkIn);
+	assertEquals(0, full);
+	verifyZeroInteractions(dataBaseConfig);
+    }
+
+    @Test
+    @DisplayName("A vehicle with a reservation is let in to its booked spot and the reservation is used up")
+    void entryHonoursReservation() throws Exception {
+	// GIVEN
+	ParkingSpotDAO parkingSpotDAO = mock(ParkingSpotDAO.class);
+	TicketDAO ticketDAO = mock(TicketDAO.class);
+	ReservationDAO reservationDAO = mock(ReservationDAO.class);
+	Reservation reservation = new Reservation(7, 3, ParkingType.CAR, "AAA", new Date(10 * HOUR),
+		new Date(12 * HOUR));
+	when(reservationDAO.getReservation("AAA", new Date(10 * HOUR))).thenReturn(reservation);
+	when(reservationDAO.removeReservation(reservation)).thenReturn(true);
+	when(parkingSpotDAO.claimParkingSpot(any(ParkingSpot.class))).thenReturn(true);
+	when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+	ParkingService parkingService = new ParkingService(null, parkingSpotDAO, ticketDAO);
+	parkingService.setReservationDAO(reservationDAO);
+	// WHEN
+	Ticket ticket = parkingService
+		.enter(new EntryRequest("AAA", ParkingType.CAR, "gate-1", new Date(10 * HOUR)));
+	// THEN
+	assertEquals(3, ticket.getParkingSpot().getId());
+	verify(parkingSpotDAO, never()).getNextAvailableSlot(ParkingType.CAR);
+	verify(reservationDAO).removeReservation(reservation);
+    }
+
+    @Test
+    @DisplayName("A reservation can not be made when no spot of the type is free for the window")
+    void reserveWhenFull() throws Exception {
+	// GIVEN
+	ReservationDAO reservationDAO = new ReservationDAO();
+	reservationDAO.setDataBaseConfig(mock(DataBaseConfig.class));
+	reservationDAO.setReservationIndex(reservationIndex);
+	reserve(ParkingType.BIKE, "AAA", new Date(0), new Date(2 * HOUR));
+	ParkingService parkingService = new ParkingService(null, mock(ParkingSpotDAO.class), mock(TicketDAO.class));
+	parkingService.setReservationDAO(reservationDAO);
+	// WHEN
+
+	// THEN
+	assertThrows(Exception.class,
+		() -> parkingService.reserve("BBB", ParkingType.BIKE, new Date(HOUR), new Date(3 * HOUR)));
+	assertThrows(IllegalArgumentException.class,
+		() -> new Reservation(0, 1, ParkingType.CAR, "BBB", new Date(HOUR), new Date(HOUR)));
+	assertEquals(1, reservationIndex.size());
+    }
+
+    @Test
+    @DisplayName("A booked vehicle is let in at the console when its held spot is the only free one")
+    void consoleEntryWithOnlyHeldSpotFree() throws Exception {
+	// GIVEN
+	FreeSpotIndex freeSpotIndex = new FreeSpotIndex();
+	freeSpotIndex.setAvailable(1, ParkingType.CAR, true);
+	freeSpotIndex.setAvailable(2, ParkingType.CAR, false);
+	ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+	parkingSpotDAO.setDataBaseConfig(mock(DataBaseConfig.class));
+	parkingSpotDAO.setFreeSpotIndex(freeSpotIndex);
+	parkingSpotDAO.setSpotWriteBehind(mock(SpotWriteBehind.class));
+	parkingSpotDAO.setReservationIndex(reservationIndex);
+	long now = System.currentTimeMillis();
+	Reservation reservation = reserve(ParkingType.CAR, "AAA", new Date(now + HOUR / 2), new Date(now + 2 * HOUR));
+	ReservationDAO reservationDAO = mock(ReservationDAO.class);
+	when(reservationDAO.getReservation(eq("AAA"), any(Date.class))).thenAnswer(
+		invocation -> reservationIndex.findArrival("AAA", invocation.<Date>getArgument(1).getTime()));
+	when(reservationDAO.removeReservation(reservation)).thenReturn(true);
+	InputReaderUtil inputReaderUtil = mock(InputReaderUtil.class);
+	when(inputReaderUtil.readSelection()).thenReturn(1);
+	when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("AAA");
+	TicketDAO ticketDAO = mock(TicketDAO.class);
+	when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+	ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+	parkingService.setReservationDAO(reservationDAO);
+	ArgumentCaptor<Ticket> ticketCaptor = ArgumentCaptor.forClass(Ticket.class);
+	// WHEN
+	int walkIn = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+	parkingService.processIncomingVehicle();
+	// THEN
+	assertEquals(0, walkIn);
+	verify(ticketDAO).saveTicket(ticketCaptor.capture());
+	assertEquals(1, ticketCaptor.getValue().getParkingSpot().getId());
+	assertFalse(freeSpotIndex.isAvailable(1, ParkingType.CAR));
+	verify(reservationDAO).removeReservation(reservation);
+    }
+
+    @Test
+    @DisplayName("A reservation reaches the index only once saved with its id, and reservations over expire")
+    void reservePublishesSavedReservation() throws Exception {
+	// GIVEN
+	DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+	Connection connection = mock(Connection.class);
+	PreparedStatement ps = mock(PreparedStatement.class);
+	ResultSet generatedKeys = mock(ResultSet.class);
+	when(dataBaseConfig.getConnection()).thenReturn(connection);
+	when(connection.prepareStatement(DBConstants.SAVE_RESERVATION, Statement.RETURN_GENERATED_KEYS))
+		.thenReturn(ps);
+	when(ps.executeUpdate()).thenReturn(1).thenThrow(new SQLException("database down"));
+	when(ps.getGeneratedKeys()).thenReturn(generatedKeys);
+	when(generatedKeys.next()).thenReturn(true);
+	when(generatedKeys.getInt(1)).thenReturn(42);
+	ReservationDAO reservationDAO = new ReservationDAO();
+	reservationDAO.setDataBaseConfig(dataBaseConfig);
+	reservationDAO.setReservationIndex(reservationIndex);
+	reserve(ParkingType.CAR, "OLD", new Date(0), new Date(HOUR));
+	// WHEN
+	Reservation saved = reservationDAO.reserve("AAA", ParkingType.CAR, new Date(10 * HOUR), new Date(12 * HOUR));
+	Reservation failed = reservationDAO.reserve("BBB", ParkingType.CAR, new Date(10 * HOUR),
+		new Date(12 * HOUR));
+	int expired = reservationIndex.expire(11 * HOUR);
+	// THEN
+	assertEquals(42, saved.getId());
+	assertSame(saved, reservationIndex.findArrival("AAA", 10 * HOUR));
+	assertNull(failed);
+	assertNull(reservationIndex.findArrival("BBB", 10 * HOUR));
+	assertEquals(1, expired);
+	assertNull(reservationIndex.findArrival("OLD", 0));
+	assertEquals(1, reservationIndex.size());
+    }
+
+    /**
+     * Book the lowest spot of the type free for the window, as ReservationDAO
+     * does, without saving it
+     */
+    private Reservation reserve(ParkingType parkingType, String vehicleRegNumber, Date startTime, Date endTime) {
+	int number = reservationIndex.findFreeSpot(parkingType, startTime.getTime(), endTime.getTime());
+	if (number <= 0) {
+	    return null;
+	}
+	Reservation reservation = new Reservation(++lastId, number, parkingType, vehicleRegNumber, startTime,
+		endTime);
+	assertTrue(reservationIndex.add(reservation));
+	return reservation;
+    }
+}
@@ -0,0 +1,161 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class runs several entry gates at once against the same parking and
+ * checks that no spot is ever given to two vehicles
+ *
+ */
+
+class SpotAllocationStressTest {
+
+    private static final Logger logger = LogManager.getLogger("SpotAllocationStressTest");
+
+    private static final int SPOTS = 200;
+    private static final long DB_LATENCY_MILLIS = 1;
+
+    /**
+     * parking table stand-in, 1 means available
+     */
+    private AtomicIntegerArray parkingTable;
+
+    /**
+     * claims the parking table stand-in accepted
+     */
+    private AtomicInteger successfulClaims;
+
+    @Test
+    @DisplayName("Concurrent gates never allocate the same spot twice")
+    void noDoubleAllocation() throws Exception {
+	fillParking(1);
+	fillParking(4);
+	fillParking(8);
+    }
+
+    /**
+     * Let vehicles in through the gates until the parking is full. How fast
+     * more gates fill it is measured by GateBenchmark, not here.
+     */
+    private void fillParking(int gates) throws Exception {
+	parkingTable = new AtomicIntegerArray(SPOTS + 1);
+	successfulClaims = new AtomicInteger();
+	FreeSpotIndex freeSpotIndex = new FreeSpotIndex();
+	for (int number = 1; number <= SPOTS; number++) {
+	    parkingTable.set(number, 1);
+	    freeSpotIndex.setAvailable(number, ParkingType.CAR, true);
+	}
+	ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+	parkingSpotDAO.setDataBaseConfig(new StubDataBaseConfig());
+	parkingSpotDAO.setFreeSpotIndex(freeSpotIndex);
+
+	List<Integer> allocatedSpots = new CopyOnWriteArrayList<>();
+	TicketDAO ticketDAO = mock(TicketDAO.class);
+	when(ticketDAO.saveTicket(any(Ticket.class))).thenAnswer(invocation -> {
+	    allocatedSpots.add(invocation.<Ticket>getArgument(0).getParkingSpot().getId());
+	    return true;
+	});
+	InputReaderUtil inputReaderUtil = mock(InputReaderUtil.class);
+	when(inputReaderUtil.readSelection()).thenReturn(1);
+	when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+	ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+
+	CountDownLatch start = new CountDownLatch(1);
+	List<Thread> threads = new CopyOnWriteArrayList<>();
+	for (int gate = 0; gate < gates; gate++) {
+	    Thread thread = new Thread(() -> {
+		try {
+		    start.await();
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		}
+		while (allocatedSpots.size() < SPOTS && parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR) > 0) {
+		    parkingService.processIncomingVehicle();
+		}
+	    });
+	    thread.start();
+	    threads.add(thread);
+	}
+	long begin = System.nanoTime();
+	start.countDown();
+	for (Thread thread : threads) {
+	    thread.join();
+	}
+	long elapsed = System.nanoTime() - begin;
+	logger.info("{} gates allocated {} spots at {} entries/s", gates, allocatedSpots.size(),
+		allocatedSpots.size() * 1_000_000_000L / elapsed);
+
+	assertEquals(SPOTS, allocatedSpots.size());
+	assertEquals(SPOTS, allocatedSpots.stream().distinct().count(), "double allocation "
+		+ allocatedSpots.stream().filter(n -> Collections.frequency(allocatedSpots, n) > 1)
+			.collect(Collectors.toSet()));
+	assertEquals(SPOTS, successfulClaims.get(), "every spot is claimed once in the parking table");
+	for (int number = 1; number <= SPOTS; number++) {
+	    assertEquals(0, parkingTable.get(number), "spot " + number + " left available");
+	}
+    }
+
+    /**
+     * Runs CLAIM_PARKING_SPOT against the in memory parking table with a
+     * fixed latency per statement.
+     */
+    private class StubDataBaseConfig extends DataBaseConfig {
+
+	@Override
+	public Connection getConnection() throws SQLException {
+	    Connection connection = mock(Connection.class);
+	    when(connection.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)).thenAnswer(invocation -> claimStatement());
+	    return connection;
+	}
+
+	private PreparedStatement claimStatement() throws SQLException {
+	    PreparedStatement ps = mock(PreparedStatement.class);
+	    int[] parkingNumber = new int[1];
+	    doAnswer(invocation -> {
+		parkingNumber[0] = invocation.getArgument(1);
+		return null;
+	    }).when(ps).setInt(eq(1), anyInt());
+	    when(ps.executeUpdate()).thenAnswer(invocation -> {
+		Thread.sleep(DB_LATENCY_MILLIS);
+		if (parkingTable.compareAndSet(parkingNumber[0], 1, 0)) {
+		    successfulClaims.incrementAndGet();
+		    return 1;
+		}
+		return 0;
+	    });
+	    return ps;
+	}
+    }
+}
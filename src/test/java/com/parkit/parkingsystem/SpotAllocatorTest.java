@@ -0,0 +1,128 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.allocation.AllocationStrategy;
+import com.parkit.parkingsystem.allocation.LeastRecentlyUsedAllocator;
+import com.parkit.parkingsystem.allocation.RoundRobinAllocator;
+import com.parkit.parkingsystem.allocation.SpotAllocator;
+import com.parkit.parkingsystem.allocation.ZoneBalancedAllocator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * this class contains SpotAllocator unit tests
+ *
+ */
+
+class SpotAllocatorTest {
+
+    @Test
+    @DisplayName("Round robin hands out the spot after the last one taken, then wraps around")
+    void roundRobin() {
+	// GIVEN
+	SpotAllocator allocator = allocator(new RoundRobinAllocator(), 5);
+	// WHEN
+	allocator.spotTaken(allocator.nextSpot(number -> true));
+	allocator.spotTaken(allocator.nextSpot(number -> true));
+	allocator.spotFreed(1);
+	allocator.spotTaken(4);
+	// THEN
+	assertEquals(5, allocator.nextSpot(number -> true));
+	allocator.spotTaken(5);
+	assertEquals(1, allocator.nextSpot(number -> true));
+	assertEquals(3, allocator.nextSpot(number -> number != 1));
+    }
+
+    @Test
+    @DisplayName("Least recently used hands out the spot free for the longest time")
+    void leastRecentlyUsed() {
+	// GIVEN
+	SpotAllocator allocator = allocator(new LeastRecentlyUsedAllocator(), 3);
+	// WHEN
+	allocator.spotTaken(1);
+	allocator.spotTaken(2);
+	allocator.spotFreed(2);
+	allocator.spotFreed(1);
+	// THEN
+	assertEquals(3, allocator.nextSpot(number -> true));
+	allocator.spotTaken(3);
+	assertEquals(2, allocator.nextSpot(number -> true));
+	assertEquals(1, allocator.nextSpot(number -> number != 2));
+	assertEquals(2, allocator.countFreeSpots());
+	allocator.clear();
+	assertEquals(0, allocator.nextSpot(number -> true));
+    }
+
+    @Test
+    @DisplayName("Zone balanced hands out the lowest spot of the zone with the most free spots")
+    void zoneBalanced() {
+	// GIVEN
+	SpotAllocator allocator = allocator(new ZoneBalancedAllocator(10), 30);
+	// WHEN
+	allocator.spotTaken(allocator.nextSpot(number -> true));
+	allocator.spotTaken(allocator.nextSpot(number -> true));
+	int third = allocator.nextSpot(number -> true);
+	allocator.spotTaken(third);
+	allocator.spotTaken(12);
+	// THEN
+	assertEquals(21, third);
+	assertEquals(2, allocator.nextSpot(number -> true));
+	assertEquals(22, allocator.nextSpot(number -> number <= 10 ? false : number != 11));
+	assertEquals(26, allocator.countFreeSpots());
+    }
+
+    @Test
+    @DisplayName("Every strategy hands out a free spot while one is left and never a taken one")
+    void everyStrategyTracksFreeSpots() {
+	for (AllocationStrategy strategy : AllocationStrategy.values()) {
+	    // GIVEN
+	    FreeSpotIndex freeSpotIndex = new FreeSpotIndex(strategy.allocators(7));
+	    BitSet free = new BitSet();
+	    Random random = new Random(7);
+	    for (int i = 0; i < 5_000; i++) {
+		// WHEN
+		int number = 1 + random.nextInt(50);
+		boolean available = random.nextBoolean();
+		freeSpotIndex.setAvailable(number, ParkingType.CAR, available);
+		free.set(number, available);
+		int next = freeSpotIndex.nextFreeSpot(ParkingType.CAR);
+		// THEN
+		assertEquals(free.isEmpty(), next == 0, strategy.toString());
+		assertTrue(next == 0 || free.get(next), strategy.toString());
+		assertEquals(free.cardinality(), freeSpotIndex.countFreeSpots(ParkingType.CAR), strategy.toString());
+	    }
+	    assertFalse(freeSpotIndex.claim(0, ParkingType.BIKE));
+	}
+    }
+
+    @Test
+    @DisplayName("Strategies are chosen by name")
+    void strategyNames() {
+	// GIVEN
+
+	// WHEN
+
+	// THEN
+	assertEquals(AllocationStrategy.ROUND_ROBIN, AllocationStrategy.fromName("round-robin"));
+	assertEquals(AllocationStrategy.LEAST_RECENTLY_USED, AllocationStrategy.fromName("least_recently_used"));
+	assertThrows(IllegalArgumentException.class, () -> AllocationStrategy.fromName("random"));
+	assertThrows(IllegalArgumentException.class, () -> AllocationStrategy.ZONE_BALANCED.allocators(0));
+    }
+
+    private static SpotAllocator allocator(SpotAllocator allocator, int spots) {
+	for (int number = 1; number <= spots; number++) {
+	    allocator.spotFreed(number);
+	}
+	return allocator;
+    }
+}
@@ -0,0 +1,140 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.SpotWriteBehind;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains SpotWriteBehind unit tests
+ *
+ */
+
+class SpotWriteBehindTest {
+
+    private static final long NO_BACKGROUND_FLUSH_MILLIS = 60_000;
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private PreparedStatement ps;
+    private SpotWriteBehind spotWriteBehind;
+
+    /**
+     * availability written per spot number
+     */
+    private Map<Integer, Boolean> parkingTable;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+	dataBaseConfig = mock(DataBaseConfig.class);
+	connection = mock(Connection.class);
+	ps = mock(PreparedStatement.class);
+	when(dataBaseConfig.getConnection()).thenReturn(connection);
+	when(connection.prepareStatement(anyString())).thenReturn(ps);
+	parkingTable = new TreeMap<>();
+	boolean[] available = new boolean[1];
+	doAnswer(invocation -> available[0] = invocation.getArgument(1)).when(ps).setBoolean(eq(1), anyBoolean());
+	doAnswer(invocation -> parkingTable.put(invocation.getArgument(1), available[0])).when(ps).setInt(eq(2),
+		anyInt());
+	spotWriteBehind = new SpotWriteBehind(dataBaseConfig, NO_BACKGROUND_FLUSH_MILLIS);
+    }
+
+    @AfterEach
+    private void tearDown() {
+	spotWriteBehind.close();
+    }
+
+    @Test
+    @DisplayName("Several changes of a spot between two flushes are written as one update")
+    void changesAreCoalesced() throws Exception {
+	// GIVEN
+	spotWriteBehind.markAvailable(1, false);
+	spotWriteBehind.markAvailable(1, true);
+	spotWriteBehind.markAvailable(1, false);
+	spotWriteBehind.markAvailable(2, false);
+	// WHEN
+	boolean flushed = spotWriteBehind.flush();
+	// THEN
+	assertTrue(flushed);
+	assertEquals(false, parkingTable.get(1));
+	assertEquals(false, parkingTable.get(2));
+	verify(ps, times(2)).addBatch();
+	verify(connection, times(1)).commit();
+	assertEquals(0, spotWriteBehind.countPendingSpots());
+    }
+
+    @Test
+    @DisplayName("Changes of a failed flush are written at the next flush")
+    void failedFlushIsRetried() throws Exception {
+	// GIVEN
+	when(ps.executeBatch()).thenThrow(new BatchUpdateException()).thenReturn(new int[] { 1, 1 });
+	spotWriteBehind.markAvailable(1, false);
+	spotWriteBehind.markAvailable(2, false);
+	// WHEN
+	boolean first = spotWriteBehind.flush();
+	boolean second = spotWriteBehind.flush();
+	// THEN
+	assertFalse(first);
+	assertTrue(second);
+	verify(connection, times(1)).rollback();
+	verify(ps, times(4)).addBatch();
+	assertEquals(0, spotWriteBehind.countPendingSpots());
+    }
+
+    @Test
+    @DisplayName("With write-behind, spots are taken and freed without a database round trip")
+    void parkingSpotDAOWritesBehind() throws Exception {
+	// GIVEN
+	FreeSpotIndex freeSpotIndex = new FreeSpotIndex();
+	freeSpotIndex.setAvailable(1, ParkingType.CAR, true);
+	freeSpotIndex.setAvailable(2, ParkingType.CAR, true);
+	ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+	parkingSpotDAO.setDataBaseConfig(dataBaseConfig);
+	parkingSpotDAO.setFreeSpotIndex(freeSpotIndex);
+	parkingSpotDAO.setSpotWriteBehind(spotWriteBehind);
+	ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR, true);
+	// WHEN
+	boolean claimed = parkingSpotDAO.claimParkingSpot(parkingSpot);
+	boolean claimedTwice = parkingSpotDAO.claimParkingSpot(new ParkingSpot(1, ParkingType.CAR, true));
+	int nextWhileTaken = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+	parkingSpot.setAvailable(true);
+	boolean freed = parkingSpotDAO.updateParking(parkingSpot);
+	// THEN
+	assertTrue(claimed);
+	assertFalse(claimedTwice);
+	assertEquals(2, nextWhileTaken);
+	assertTrue(freed);
+	assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+	verify(dataBaseConfig, never()).getConnection();
+	spotWriteBehind.close();
+	assertEquals(true, parkingTable.get(1));
+	verify(ps, times(1)).addBatch();
+    }
+}
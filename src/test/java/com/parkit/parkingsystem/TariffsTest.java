@@ -0,0 +1,147 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.FareEngine;
+import com.parkit.parkingsystem.service.Tariff;
+import com.parkit.parkingsystem.service.Tariffs;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * this class contains Tariffs and Tariff unit tests
+ *
+ */
+
+class TariffsTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private Properties properties;
+
+    @BeforeEach
+    private void setUpPerTest() {
+	properties = new Properties();
+	properties.setProperty("zone", "UTC");
+	properties.setProperty("freeMinutes", "0");
+	properties.setProperty("CAR.bands", "00:00-08:00 1.0, 08:00-20:00 2.0, 20:00-24:00 1.0");
+	properties.setProperty("BIKE.bands", "20:00-08:00 0.5");
+    }
+
+    @Test
+    @DisplayName("Each part of a stay is priced at the rate of its band, nothing outside the bands")
+    void timeOfDayBands() {
+	// GIVEN
+	Tariff tariff = Tariffs.fromProperties(properties).forLot(1);
+	// WHEN
+
+	// THEN
+	assertEquals(300, tariff.fareCents(7 * HOUR, 9 * HOUR, ParkingType.CAR, false));
+	// a full day costs 8h at 1.0, 12h at 2.0 and 4h at 1.0
+	assertEquals(2 * 3600 + 300, tariff.fareCents(7 * HOUR, 2 * DAY + 9 * HOUR, ParkingType.CAR, false));
+	assertEquals(50, tariff.fareCents(19 * HOUR, 21 * HOUR, ParkingType.BIKE, false));
+	assertEquals(0, tariff.fareCents(9 * HOUR, 19 * HOUR, ParkingType.BIKE, false));
+	assertEquals(200, tariff.fareCents(DAY + 4 * HOUR, DAY + 12 * HOUR, ParkingType.BIKE, false));
+    }
+
+    @Test
+    @DisplayName("No calendar day of a stay costs more than the daily cap")
+    void dailyCap() {
+	// GIVEN
+	properties.setProperty("CAR.bands", "00:00-24:00 2.0");
+	properties.setProperty("CAR.dailyCap", "10");
+	properties.setProperty("recurringReduction", "0.5");
+	Tariff tariff = Tariffs.fromProperties(properties).forLot(1);
+	// WHEN
+
+	// THEN
+	assertEquals(600, tariff.fareCents(HOUR, 4 * HOUR, ParkingType.CAR, false));
+	assertEquals(1000, tariff.fareCents(HOUR, 12 * HOUR, ParkingType.CAR, false));
+	// 12h on the first day, two full days, 2h on the last day
+	assertEquals(1000 + 2 * 1000 + 400, tariff.fareCents(12 * HOUR, 3 * DAY + 2 * HOUR, ParkingType.CAR, false));
+	assertEquals(1700, tariff.fareCents(12 * HOUR, 3 * DAY + 2 * HOUR, ParkingType.CAR, true));
+    }
+
+    @Test
+    @DisplayName("Any stay is priced like adding up its minutes one by one")
+    void matchesMinuteByMinutePricing() {
+	// GIVEN
+	properties.setProperty("CAR.dailyCap", "30");
+	Tariff tariff = Tariffs.fromProperties(properties).forLot(1);
+	double[] carRates = new double[24];
+	for (int hour = 0; hour < 24; hour++) {
+	    carRates[hour] = hour >= 8 && hour < 20 ? 2.0 : 1.0;
+	}
+	Random random = new Random(42);
+	for (int i = 0; i < 2_000; i++) {
+	    long inTime = random.nextInt(10 * 24 * 60) * MINUTE;
+	    long outTime = inTime + random.nextInt(5 * 24 * 60) * MINUTE;
+	    // WHEN
+	    long fareCents = tariff.fareCents(inTime, outTime, ParkingType.CAR, false);
+	    // THEN
+	    double expected = 0;
+	    double dayCents = 0;
+	    for (long minute = inTime; minute < outTime; minute += MINUTE) {
+		if (minute > inTime && minute % DAY == 0) {
+		    expected += Math.min(3000, dayCents);
+		    dayCents = 0;
+		}
+		dayCents += carRates[(int) (minute % DAY / HOUR)] * 100 / 60;
+	    }
+	    expected += Math.min(3000, dayCents);
+	    assertTrue(Math.abs(expected - fareCents) <= 1, inTime + " to " + outTime);
+	}
+    }
+
+    @Test
+    @DisplayName("A lot with its own entries gets its own tariff, the others the default one")
+    void perLotTariffs() {
+	// GIVEN
+	properties.setProperty("lot.2.CAR.bands", "00:00-24:00 3.0");
+	properties.setProperty("lot.2.freeMinutes", "30");
+	FareEngine fareEngine = new FareEngine(Tariffs.fromProperties(properties));
+	Ticket ticket = new Ticket();
+	ticket.setParkingSpot(new ParkingSpot(2, 1, ParkingType.CAR, false));
+	ticket.setInTime(new Date(DAY + 9 * HOUR));
+	ticket.setOutTime(new Date(DAY + 10 * HOUR));
+	// WHEN
+	new FareCalculatorService(fareEngine).calculateFare(ticket);
+	// THEN
+	assertEquals(3.0, ticket.getPrice());
+	assertEquals(0, fareEngine.fareCents(2, 0, 30 * MINUTE, ParkingType.CAR, false));
+	assertEquals(200, fareEngine.fareCents(1, DAY + 9 * HOUR, DAY + 10 * HOUR, ParkingType.CAR, false));
+	assertEquals(200, fareEngine.fareCents(7, DAY + 9 * HOUR, DAY + 10 * HOUR, ParkingType.CAR, false));
+    }
+
+    @Test
+    @DisplayName("Malformed or overlapping bands are rejected")
+    void invalidTariffs() {
+	// GIVEN
+	Properties overlapping = new Properties();
+	overlapping.setProperty("CAR.bands", "00:00-12:00 1.0, 11:00-13:00 2.0");
+	Properties malformed = new Properties();
+	malformed.setProperty("BIKE.bands", "8h-20h 1.0");
+	Properties negative = new Properties();
+	negative.setProperty("lot.3.CAR.dailyCap", "-5");
+	// WHEN
+
+	// THEN
+	assertThrows(IllegalArgumentException.class, () -> Tariffs.fromProperties(overlapping));
+	assertThrows(IllegalArgumentException.class, () -> Tariffs.fromProperties(malformed));
+	assertThrows(IllegalArgumentException.class, () -> Tariffs.fromProperties(negative));
+    }
+}
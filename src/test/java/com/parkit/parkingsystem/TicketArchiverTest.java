@@ -0,0 +1,176 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketArchiver;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains TicketArchiver and recurring user summary unit tests
+ *
+ */
+
+class TicketArchiverTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private PreparedStatement select;
+    private PreparedStatement copy;
+    private PreparedStatement delete;
+    private PreparedStatement partitions;
+    private Statement statement;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+	dataBaseConfig = mock(DataBaseConfig.class);
+	connection = mock(Connection.class);
+	select = mock(PreparedStatement.class);
+	copy = mock(PreparedStatement.class);
+	delete = mock(PreparedStatement.class);
+	partitions = mock(PreparedStatement.class);
+	statement = mock(Statement.class);
+	when(dataBaseConfig.getConnection()).thenReturn(connection);
+	doAnswer(invocation -> invocation.<TransactionManager.UnitOfWork<?>>getArgument(0).execute())
+		.when(dataBaseConfig).inTransaction(any());
+	when(connection.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKETS)).thenReturn(select);
+	when(connection.prepareStatement(DBConstants.ARCHIVE_TICKET)).thenReturn(copy);
+	when(connection.prepareStatement(DBConstants.DELETE_TICKET)).thenReturn(delete);
+	when(connection.prepareStatement(DBConstants.GET_HISTORY_PARTITIONS)).thenReturn(partitions);
+	when(connection.createStatement()).thenReturn(statement);
+    }
+
+    @Test
+    @DisplayName("Old tickets are moved in chunks until a chunk is not full")
+    void archivesInChunks() throws Exception {
+	// GIVEN
+	ResultSet noPartition = mock(ResultSet.class);
+	when(partitions.executeQuery()).thenReturn(noPartition);
+	ResultSet fullChunk = mock(ResultSet.class);
+	when(fullChunk.next()).thenReturn(true, true, false);
+	when(fullChunk.getInt(1)).thenReturn(1, 2);
+	ResultSet lastChunk = mock(ResultSet.class);
+	when(lastChunk.next()).thenReturn(true, false);
+	when(lastChunk.getInt(1)).thenReturn(3);
+	when(select.executeQuery()).thenReturn(fullChunk, lastChunk);
+	TicketArchiver ticketArchiver = new TicketArchiver(dataBaseConfig, 0, 2, 0);
+	// WHEN
+	int archived = ticketArchiver.archive(date(2019, 12, 15));
+	// THEN
+	assertEquals(3, archived);
+	verify(dataBaseConfig, times(2)).inTransaction(any());
+	verify(select, times(2)).setInt(2, 2);
+	verify(copy, times(3)).addBatch();
+	verify(delete, times(3)).addBatch();
+	verify(copy, times(2)).executeBatch();
+	verify(delete, times(2)).executeBatch();
+	verify(delete).setInt(1, 3);
+	verify(statement, never()).execute(anyString());
+    }
+
+    @Test
+    @DisplayName("Closing the archiver stops a run after its current chunk without waiting for it")
+    void closeStopsARun() throws Exception {
+	// GIVEN
+	when(partitions.executeQuery()).thenReturn(mock(ResultSet.class));
+	ResultSet firstChunk = mock(ResultSet.class);
+	when(firstChunk.next()).thenReturn(true, true, false);
+	ResultSet secondChunk = mock(ResultSet.class);
+	when(secondChunk.next()).thenReturn(true, true, false);
+	TicketArchiver ticketArchiver = new TicketArchiver(dataBaseConfig, 0, 2, 0);
+	AtomicBoolean closedDuringRun = new AtomicBoolean();
+	when(select.executeQuery()).thenAnswer(invocation -> {
+	    Thread closer = new Thread(ticketArchiver::close);
+	    closer.start();
+	    closer.join(5000);
+	    closedDuringRun.set(!closer.isAlive());
+	    return firstChunk;
+	}).thenReturn(secondChunk);
+	// WHEN
+	int archived = ticketArchiver.archive(date(2019, 12, 15));
+	// THEN
+	assertTrue(closedDuringRun.get());
+	assertEquals(2, archived);
+	verify(dataBaseConfig, times(1)).inTransaction(any());
+    }
+
+    @Test
+    @DisplayName("The missing monthly partitions are split from p_future before archiving")
+    void addsMonthlyPartitions() throws Exception {
+	// GIVEN
+	ResultSet names = mock(ResultSet.class);
+	when(names.next()).thenReturn(true, true, true, false);
+	when(names.getString(1)).thenReturn("p_start", "p202001", "p_future");
+	when(partitions.executeQuery()).thenReturn(names);
+	when(select.executeQuery()).thenReturn(mock(ResultSet.class));
+	TicketArchiver ticketArchiver = new TicketArchiver(dataBaseConfig, 0, 100, 0);
+	// WHEN
+	int archived = ticketArchiver.archive(date(2020, 3, 10));
+	// THEN
+	assertEquals(0, archived);
+	verify(statement).execute("alter table ticket_history reorganize partition p_future into ("
+		+ "partition p202002 values less than ('2020-03-01'), "
+		+ "partition p202003 values less than ('2020-04-01'), "
+		+ "partition p_future values less than (MAXVALUE))");
+	verify(copy, never()).executeBatch();
+    }
+
+    @Test
+    @DisplayName("A paid ticket is paid and counted in the recurring user summary once")
+    void paidTicketCountedOnce() throws Exception {
+	// GIVEN
+	PreparedStatement update = mock(PreparedStatement.class);
+	PreparedStatement summary = mock(PreparedStatement.class);
+	when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(update);
+	when(connection.prepareStatement(DBConstants.SAVE_CLOSED_TICKET)).thenReturn(summary);
+	when(update.executeUpdate()).thenReturn(1, 0);
+	TicketDAO ticketDAO = new TicketDAO();
+	ticketDAO.setDataBaseConfig(dataBaseConfig);
+	Ticket ticket = new Ticket();
+	ticket.setId(7);
+	ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+	ticket.setVehicleRegNumber("ABCDEF");
+	ticket.setInTime(new Date(0));
+	ticket.setOutTime(new Date(60 * 60 * 1000));
+	// WHEN
+	boolean first = ticketDAO.updateTicket(ticket);
+	boolean second = ticketDAO.updateTicket(ticket);
+	// THEN
+	assertTrue(first);
+	assertFalse(second);
+	verify(summary).setString(1, "ABCDEF");
+	verify(summary, times(1)).executeUpdate();
+    }
+
+    private static Date date(int year, int month, int day) {
+	return Date.from(LocalDate.of(year, month, day).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
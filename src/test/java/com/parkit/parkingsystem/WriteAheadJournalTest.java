@@ -0,0 +1,308 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.OpenTicketIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.journal.JournaledParkingStore;
+import com.parkit.parkingsystem.journal.WriteAheadJournal;
+import com.parkit.parkingsystem.model.EntryRequest;
+import com.parkit.parkingsystem.model.ExitRequest;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * this class contains WriteAheadJournal and JournaledParkingStore unit tests
+ *
+ */
+
+class WriteAheadJournalTest {
+
+    private static final int SEGMENT_BYTES = 256;
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private Path directory;
+    private WriteAheadJournal journal;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+	directory = Files.createTempDirectory("journal");
+    }
+
+    @AfterEach
+    private void tearDown() throws Exception {
+	if (journal != null) {
+	    journal.close();
+	}
+	try (Stream<Path> files = Files.walk(directory)) {
+	    for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+		Files.delete(file);
+	    }
+	}
+    }
+
+    @Test
+    @DisplayName("Records are applied in order across segments and applied segments are deleted")
+    void appliedInOrder() throws Exception {
+	// GIVEN
+	journal = new WriteAheadJournal(directory, SEGMENT_BYTES, false);
+	List<String> applied = new CopyOnWriteArrayList<>();
+	journal.startDraining((sequence, record) -> applied.add(new String(record, StandardCharsets.UTF_8)));
+	// WHEN
+	for (int i = 1; i <= 100; i++) {
+	    journal.append(("record " + i).getBytes(StandardCharsets.UTF_8));
+	}
+	// THEN
+	waitUntil(() -> journal.getAppliedSequence() == 100);
+	assertEquals(IntStream.rangeClosed(1, 100).mapToObj(i -> "record " + i).collect(Collectors.toList()), applied);
+	try (Stream<Path> segments = Files.list(directory).filter(file -> file.toString().endsWith(".wal"))) {
+	    assertTrue(segments.count() <= 2);
+	}
+    }
+
+    @Test
+    @DisplayName("Records not applied before the journal was closed are applied at the next start")
+    void pendingRecordsAfterRestart() throws Exception {
+	// GIVEN
+	journal = new WriteAheadJournal(directory, SEGMENT_BYTES, false);
+	for (int i = 1; i <= 20; i++) {
+	    journal.append(new byte[] { (byte) i });
+	}
+	journal.close();
+	// WHEN
+	journal = new WriteAheadJournal(directory, SEGMENT_BYTES, false);
+	List<Byte> pending = new CopyOnWriteArrayList<>();
+	journal.readPending((sequence, record) -> pending.add(record[0]));
+	List<Byte> applied = new CopyOnWriteArrayList<>();
+	journal.startDraining((sequence, record) -> applied.add(record[0]));
+	// THEN
+	waitUntil(() -> journal.getAppliedSequence() == 20);
+	assertEquals(20, pending.size());
+	assertEquals(pending, applied);
+	assertEquals(21, journal.append(new byte[] { 21 }));
+    }
+
+    @Test
+    @DisplayName("A record torn by a crash ends the journal and its sequence is reused")
+    void tornRecord() throws Exception {
+	// GIVEN
+	journal = new WriteAheadJournal(directory, SEGMENT_BYTES, false);
+	journal.append("first".getBytes(StandardCharsets.UTF_8));
+	journal.append("second".getBytes(StandardCharsets.UTF_8));
+	journal.close();
+	try (Stream<Path> segments = Files.list(directory).filter(file -> file.toString().endsWith(".wal"));
+		RandomAccessFile segment = new RandomAccessFile(segments.findFirst().get().toFile(), "rw")) {
+	    // last byte of the second record
+	    segment.seek(2 * 16 + "first".length() + "second".length() - 1);
+	    segment.write('X');
+	}
+	// WHEN
+	journal = new WriteAheadJournal(directory, SEGMENT_BYTES, false);
+	// THEN
+	assertEquals(1, journal.getAppendedSequence());
+	assertEquals(2, journal.append("third".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @DisplayName("A record that can not be applied is retried before the next one")
+    void failedRecordRetried() throws Exception {
+	// GIVEN
+	journal = new WriteAheadJournal(directory, SEGMENT_BYTES, false);
+	AtomicInteger failures = new AtomicInteger();
+	List<Long> applied = new CopyOnWriteArrayList<>();
+	journal.startDraining((sequence, record) -> {
+	    if (sequence == 1 && failures.incrementAndGet() <= 2) {
+		throw new IllegalStateException("database down");
+	    }
+	    applied.add(sequence);
+	});
+	// WHEN
+	journal.append(new byte[] { 1 });
+	journal.append(new byte[] { 2 });
+	// THEN
+	waitUntil(() -> journal.getAppliedSequence() == 2);
+	assertEquals(3, failures.get());
+	assertEquals(Arrays.asList(1L, 2L), applied);
+    }
+
+    @Test
+    @DisplayName("A vehicle enters and leaves while the database is down, the database catches up after")
+    void gatesRunWhileDatabaseIsDown() throws Exception {
+	// GIVEN
+	ParkingSpotDAO parkingSpotDAO = mockParkingSpotDAO(1);
+	TicketDAO ticketDAO = mock(TicketDAO.class);
+	when(ticketDAO.getOpenTicketIndex()).thenReturn(new OpenTicketIndex());
+	when(ticketDAO.recurringUsers(anyString())).thenReturn(false);
+	AtomicInteger saveAttempts = new AtomicInteger();
+	when(ticketDAO.saveOpenTicket(any(Ticket.class))).thenAnswer(invocation -> saveAttempts.incrementAndGet() > 3);
+	when(ticketDAO.closeOpenTicket(any(Ticket.class))).thenReturn(true);
+	journal = new WriteAheadJournal(directory, SEGMENT_BYTES, false);
+	JournaledParkingStore store = new JournaledParkingStore(parkingSpotDAO, ticketDAO, journal);
+	ParkingService parkingService = new ParkingService(null, store, store);
+	// WHEN
+	parkingService.enter(new EntryRequest("ABCDEF", ParkingType.CAR, "north", new Date(0)));
+	Ticket exit = parkingService.exit(new ExitRequest("ABCDEF", "south", new Date(2 * HOUR)));
+	// THEN
+	assertEquals(3.0, exit.getPrice());
+	waitUntil(() -> journal.getAppliedSequence() == 4);
+	InOrder applied = inOrder(ticketDAO, parkingSpotDAO);
+	applied.verify(parkingSpotDAO).updateParking(any(ParkingSpot.class));
+	applied.verify(ticketDAO, atLeastOnce()).saveOpenTicket(any(Ticket.class));
+	applied.verify(ticketDAO).closeOpenTicket(any(Ticket.class));
+	applied.verify(parkingSpotDAO).updateParking(any(ParkingSpot.class));
+	assertNull(store.getTicket("ABCDEF"));
+	verify(ticketDAO, never()).getTicket(anyString());
+    }
+
+    @Test
+    @DisplayName("A vehicle paid but not applied yet can not leave again and free the spot of the next vehicle")
+    void paidTicketPendingLeavesOnce() throws Exception {
+	// GIVEN
+	ParkingSpotDAO parkingSpotDAO = mockParkingSpotDAO(1);
+	TicketDAO ticketDAO = mock(TicketDAO.class);
+	when(ticketDAO.getOpenTicketIndex()).thenReturn(new OpenTicketIndex());
+	when(ticketDAO.recurringUsers(anyString())).thenReturn(false);
+	AtomicBoolean databaseUp = new AtomicBoolean();
+	when(ticketDAO.saveOpenTicket(any(Ticket.class))).thenAnswer(invocation -> databaseUp.get());
+	when(ticketDAO.closeOpenTicket(any(Ticket.class))).thenReturn(true);
+	journal = new WriteAheadJournal(directory, SEGMENT_BYTES, false);
+	JournaledParkingStore store = new JournaledParkingStore(parkingSpotDAO, ticketDAO, journal);
+	ParkingService parkingService = new ParkingService(null, store, store);
+	parkingService.enter(new EntryRequest("ABCDEF", ParkingType.CAR, "north", new Date(0)));
+	parkingService.exit(new ExitRequest("ABCDEF", "south", new Date(2 * HOUR)));
+	parkingService.enter(new EntryRequest("GHIJKL", ParkingType.CAR, "north", new Date(2 * HOUR)));
+	// WHEN
+	assertThrows(SQLException.class,
+		() -> parkingService.exit(new ExitRequest("ABCDEF", "south", new Date(3 * HOUR))));
+	// THEN
+	assertNull(store.getTicket("ABCDEF"));
+	assertEquals(1, store.getTicket("GHIJKL").getParkingSpot().getId());
+	assertEquals(0, store.getNextAvailableSlot(ParkingType.CAR));
+	databaseUp.set(true);
+    }
+
+    @Test
+    @DisplayName("A vehicle with an open ticket, however its plate is typed, can not enter again and take a second spot")
+    void openTicketEntersOnce() throws Exception {
+	// GIVEN
+	ParkingSpotDAO parkingSpotDAO = mockParkingSpotDAO(3);
+	TicketDAO ticketDAO = mock(TicketDAO.class);
+	OpenTicketIndex openTicketIndex = new OpenTicketIndex();
+	Ticket applied = new Ticket();
+	applied.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+	applied.setVehicleRegNumber("GHIJKL");
+	applied.setInTime(new Date(0));
+	openTicketIndex.put(applied);
+	parkingSpotDAO.getFreeSpotIndex().setAvailable(2, ParkingType.CAR, false);
+	when(ticketDAO.getOpenTicketIndex()).thenReturn(openTicketIndex);
+	when(ticketDAO.recurringUsers(anyString())).thenReturn(false);
+	AtomicBoolean databaseUp = new AtomicBoolean();
+	when(ticketDAO.saveOpenTicket(any(Ticket.class))).thenAnswer(invocation -> databaseUp.get());
+	journal = new WriteAheadJournal(directory, SEGMENT_BYTES, false);
+	JournaledParkingStore store = new JournaledParkingStore(parkingSpotDAO, ticketDAO, journal);
+	ParkingService parkingService = new ParkingService(null, store, store);
+	parkingService.enter(new EntryRequest("ABC-123", ParkingType.CAR, "north", new Date(0)));
+	// WHEN
+	assertThrows(SQLException.class,
+		() -> parkingService.enter(new EntryRequest(" abc-123", ParkingType.CAR, "south", new Date(HOUR))));
+	assertThrows(SQLException.class,
+		() -> parkingService.enter(new EntryRequest("ghijkl", ParkingType.CAR, "south", new Date(HOUR))));
+	// THEN
+	assertEquals(0, store.getTicket("abc-123").getInTime().getTime());
+	assertEquals(1, store.getTicket("ABC-123").getParkingSpot().getId());
+	assertEquals(2, store.getTicket("GHIJKL").getParkingSpot().getId());
+	assertEquals(3, store.getNextAvailableSlot(ParkingType.CAR));
+	databaseUp.set(true);
+    }
+
+    @Test
+    @DisplayName("Spots are handed out and claimed in memory, a claim that can not be journaled gives the spot back")
+    void spotsClaimedInMemory() throws Exception {
+	// GIVEN
+	ParkingSpotDAO parkingSpotDAO = mockParkingSpotDAO(2);
+	TicketDAO ticketDAO = mock(TicketDAO.class);
+	when(ticketDAO.getOpenTicketIndex()).thenReturn(new OpenTicketIndex());
+	journal = new WriteAheadJournal(directory, SEGMENT_BYTES, false);
+	JournaledParkingStore store = new JournaledParkingStore(parkingSpotDAO, ticketDAO, journal);
+	// WHEN
+	int first = store.getNextAvailableSlot(ParkingType.CAR);
+	boolean claimed = store.claimParkingSpot(new ParkingSpot(first, ParkingType.CAR, true));
+	boolean claimedTwice = store.claimParkingSpot(new ParkingSpot(first, ParkingType.CAR, true));
+	int second = store.getNextAvailableSlot(ParkingType.CAR);
+	journal.close();
+	boolean claimedClosed = store.claimParkingSpot(new ParkingSpot(second, ParkingType.CAR, true));
+	// THEN
+	assertEquals(1, first);
+	assertTrue(claimed);
+	assertFalse(claimedTwice);
+	assertEquals(2, second);
+	assertFalse(claimedClosed);
+	assertEquals(2, store.getNextAvailableSlot(ParkingType.CAR));
+	verify(parkingSpotDAO).setFreeSpotIndex(null);
+	verify(parkingSpotDAO, never()).getNextAvailableSlot(any(ParkingType.class));
+	verify(parkingSpotDAO, never()).claimParkingSpot(any(ParkingSpot.class));
+    }
+
+    /**
+     * A ParkingSpotDAO whose free spot index holds the given number of free
+     * car spots and that applies every update
+     */
+    private static ParkingSpotDAO mockParkingSpotDAO(int spots) {
+	FreeSpotIndex freeSpotIndex = new FreeSpotIndex();
+	for (int number = 1; number <= spots; number++) {
+	    freeSpotIndex.setAvailable(number, ParkingType.CAR, true);
+	}
+	ParkingSpotDAO parkingSpotDAO = mock(ParkingSpotDAO.class);
+	when(parkingSpotDAO.getFreeSpotIndex()).thenReturn(freeSpotIndex);
+	when(parkingSpotDAO.getLotId()).thenReturn(ParkingSpot.DEFAULT_LOT_ID);
+	when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+	return parkingSpotDAO;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+	long deadline = System.currentTimeMillis() + 10_000;
+	while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+	    Thread.sleep(10);
+	}
+	assertTrue(condition.getAsBoolean(), "timed out");
+    }
+}
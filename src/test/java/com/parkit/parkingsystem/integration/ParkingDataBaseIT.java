@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.integration;
 
+import com.parkit.parkingsystem.config.SchemaMigrator;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
@@ -42,6 +43,7 @@ class ParkingDataBaseIT {
 
     @BeforeAll
     private static void setUp() throws Exception {
+	new SchemaMigrator(dataBaseTestConfig).migrate();
 	parkingSpotDAO = new ParkingSpotDAO();
 	parkingSpotDAO.setDataBaseConfig(dataBaseTestConfig);
 	ticketDAO = new TicketDAO();
@@ -67,6 +69,7 @@ class ParkingDataBaseIT {
     void testParkingACar() {
 	// GIVEN:
 	ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+	parkingService.setTransactionManager(dataBaseTestConfig);
 	int next = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
 	// WHEN
 	parkingService.processIncomingVehicle();
@@ -86,6 +89,7 @@ class ParkingDataBaseIT {
     void testParkingLotExitACar() throws InterruptedException {
 	// GIVEN:
 	ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+	parkingService.setTransactionManager(dataBaseTestConfig);
 	int numberOfNextAvailableSlot = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
 	parkingService.processIncomingVehicle();
 	Thread.sleep(500);
@@ -0,0 +1,51 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.config.QueryPlanChecker;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 
+ * this class contains schema migration integration tests
+ *
+ */
+
+class SchemaMigrationIT {
+
+    private static DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+	new SchemaMigrator(dataBaseTestConfig).migrate();
+    }
+
+    @Test
+    @DisplayName("Migrating twice leaves the schema at the same version")
+    void migrationIsIdempotent() throws Exception {
+	// GIVEN
+	int version = new SchemaMigrator(dataBaseTestConfig).migrate();
+	// WHEN
+	int again = new SchemaMigrator(dataBaseTestConfig).migrate();
+	// THEN
+	assertEquals(version, again);
+    }
+
+    @Test
+    @DisplayName("Hot queries are served by the migration indexes")
+    void hotQueriesUseIndexes() throws Exception {
+	// GIVEN
+	QueryPlanChecker queryPlanChecker = new QueryPlanChecker(dataBaseTestConfig);
+	// WHEN
+	List<String> violations = queryPlanChecker.check();
+	// THEN
+	assertTrue(violations.isEmpty(), "Hot queries should use their indexes");
+    }
+}
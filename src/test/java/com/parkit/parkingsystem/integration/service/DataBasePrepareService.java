@@ -18,6 +18,9 @@ public class DataBasePrepareService {
 
 			// clear ticket entries;
 			connection.prepareStatement("truncate table ticket").execute();
+			connection.prepareStatement("truncate table ticket_history").execute();
+			connection.prepareStatement("truncate table recurring_user").execute();
+			connection.prepareStatement("truncate table reservation").execute();
 
 		} catch (Exception e) {
 			e.printStackTrace();